@@ -9,6 +9,10 @@
  */
 package org.carewebframework.amqp.rabbitmq;
 
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.Binding.DestinationType;
@@ -17,7 +21,9 @@ import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessagePostProcessor;
 import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.Connection;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionListener;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 
 /**
@@ -27,10 +33,14 @@ public class Broker extends RabbitAdmin {
     
     protected static final String RECIPIENTS_PROPERTY = "recipients";
     
+    protected static final String RECIPIENT_MASK_PROPERTY = "recipientMask";
+    
     protected static final String SENDER_PROPERTY = "sender";
     
     private final Exchange exchange;
     
+    private final Set<String> declaredQueues = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    
     /**
      * Creates a broker instance with the specified connection factory and default exchange.
      * 
@@ -40,6 +50,18 @@ public class Broker extends RabbitAdmin {
     public Broker(ConnectionFactory connectionFactory, Exchange exchange) {
         super(connectionFactory);
         this.exchange = exchange;
+        connectionFactory.addConnectionListener(new ConnectionListener() {
+            
+            @Override
+            public void onCreate(Connection connection) {
+            }
+            
+            @Override
+            public void onClose(Connection connection) {
+                declaredQueues.clear();
+            }
+            
+        });
     }
     
     /**
@@ -52,16 +74,31 @@ public class Broker extends RabbitAdmin {
     }
     
     /**
-     * Declares an event queue if one does not exist.
+     * Declares an event queue if one does not exist. Queues known to have been declared over the
+     * current connection are not checked again.
      * 
      * @param eventName Name of event handled by queue.
      */
     public void declareEventQueue(String eventName) {
-        if (!queueExists(eventName)) {
-            createEventQueue(eventName);
+        if (!declaredQueues.contains(eventName)) {
+            if (!queueExists(eventName)) {
+                createEventQueue(eventName);
+            }
+            
+            declaredQueues.add(eventName);
         }
     }
     
+    /**
+     * Removes an event queue from the set of known queues. Event queues are deleted by the server
+     * once they have no consumers, so this should be called when the last consumer is removed.
+     * 
+     * @param eventName Name of event handled by queue.
+     */
+    public void forgetEventQueue(String eventName) {
+        declaredQueues.remove(eventName);
+    }
+    
     /**
      * Returns true if the named queue already exists.
      * 
@@ -107,7 +144,7 @@ public class Broker extends RabbitAdmin {
     
     /**
      * Given a Message, supplement the message with additional properties/attributes ( recipients,
-     * sender).
+     * recipient mask, sender).
      * 
      * @param message The message.
      * @param sender Sender client ID.
@@ -118,6 +155,11 @@ public class Broker extends RabbitAdmin {
         MessageProperties props = message.getMessageProperties();
         props.setHeader(SENDER_PROPERTY, sender);
         props.setHeader(RECIPIENTS_PROPERTY, recipients);
+        
+        if (recipients != null && !recipients.isEmpty()) {
+            props.setHeader(RECIPIENT_MASK_PROPERTY, RecipientFilter.getMask(recipients));
+        }
+        
         return message;
     }
     
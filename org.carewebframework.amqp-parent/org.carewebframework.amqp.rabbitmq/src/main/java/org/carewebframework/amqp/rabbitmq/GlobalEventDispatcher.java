@@ -11,18 +11,19 @@ package org.carewebframework.amqp.rabbitmq;
 
 import java.io.Serializable;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.carewebframework.api.event.AbstractGlobalEventDispatcher;
+import org.carewebframework.api.thread.ThreadUtil;
 
 import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageListener;
-import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
 
 /**
  * This class is responsible for communicating with the global messaging server (in this case, an
@@ -34,10 +35,16 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
     
     private static final Log log = LogFactory.getLog(GlobalEventDispatcher.class);
     
-    private final Map<String, Subscriber> subscribers = Collections.synchronizedMap(new HashMap<String, Subscriber>());
+    private final Set<String> subscriptions = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     
     private Broker broker;
     
+    private Subscriber subscriber;
+    
+    private boolean sharedSubscriber;
+    
+    private volatile RecipientFilter recipientFilter;
+    
     /**
      * Create the global event dispatcher.
      */
@@ -63,15 +70,19 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
      * Remove all remote subscriptions.
      */
     private void removeSubscriptions() {
-        for (SimpleMessageListenerContainer subscriber : this.subscribers.values()) {
+        for (String eventName : this.subscriptions) {
             try {
-                subscriber.stop();
+                doHostUnsubscribe(eventName);
             } catch (Throwable e) {
                 log.debug("Error closing subscriber", e);//is level appropriate - previously hidden exception -afranken
             }
         }
         
-        this.subscribers.clear();
+        this.subscriptions.clear();
+        
+        if (this.subscriber != null && !this.sharedSubscriber) {
+            this.subscriber.stop();
+        }
     }
     
     /**
@@ -105,7 +116,7 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
      */
     private void doHostSubscribe(String eventName) throws AmqpException {
         
-        if (this.subscribers.get(eventName) != null) {
+        if (!this.subscriptions.add(eventName)) {
             if (log.isDebugEnabled()) {
                 log.debug(String.format("Already subscribed to Topic[%s]", eventName));
             }
@@ -115,13 +126,13 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
             log.debug(String.format("Subscribing to Topic[%s]", eventName));
         }
         
-        broker.declareEventQueue(eventName);
-        Subscriber subscriber = new Subscriber(publisherInfo);
-        subscriber.setMessageListener(this);
-        subscriber.setConnectionFactory(broker.getRabbitTemplate().getConnectionFactory());
-        subscriber.setQueueNames(eventName);
-        subscriber.start();
-        subscribers.put(eventName, subscriber);
+        try {
+            broker.declareEventQueue(eventName);
+            getSubscriber().subscribe(eventName, this);
+        } catch (RuntimeException e) {
+            this.subscriptions.remove(eventName);
+            throw e;
+        }
     }
     
     /**
@@ -131,12 +142,32 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
      * @throws AmqpException RabbitMQ exception.
      */
     private void doHostUnsubscribe(String eventName) throws AmqpException {
-        Subscriber subscriber = this.subscribers.remove(eventName);
-        
-        if (subscriber != null) {
-            log.debug(String.format("Unsubscribing Subscriber[%s] for Topic [%s].", subscriber, eventName));
-            subscriber.stop();
+        if (this.subscriptions.remove(eventName)) {
+            log.debug(String.format("Unsubscribing from Topic [%s].", eventName));
+            
+            if (getSubscriber().unsubscribe(eventName, this)) {
+                broker.forgetEventQueue(eventName);
+            }
+        }
+    }
+    
+    /**
+     * Returns the subscriber, creating one private to this dispatcher if a shared subscriber has
+     * not been provided.
+     * 
+     * @return The subscriber.
+     */
+    private synchronized Subscriber getSubscriber() {
+        if (this.subscriber == null) {
+            this.subscriber = new Subscriber(broker.getRabbitTemplate().getConnectionFactory());
+            Executor executor = ThreadUtil.getTaskExecutor();
+            
+            if (executor != null) {
+                this.subscriber.setTaskExecutor(executor);
+            }
         }
+        
+        return this.subscriber;
     }
     
     /**
@@ -166,6 +197,20 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
         broker.sendEvent(eventName, eventData, publisherInfo.getEndpointId(), recipients);
     }
     
+    /**
+     * Returns the filter for messages addressed to specific recipients, built from the publisher
+     * info on first use.
+     * 
+     * @return The recipient filter.
+     */
+    public RecipientFilter getRecipientFilter() {
+        if (recipientFilter == null) {
+            recipientFilter = new RecipientFilter(publisherInfo.getAttributes().values());
+        }
+        
+        return recipientFilter;
+    }
+    
     /**
      * This is the callback for messages received from the AMQP server.
      * 
@@ -223,4 +268,14 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
         this.broker = broker;
     }
     
+    /**
+     * Sets the subscriber shared by all dispatchers on this node.
+     * 
+     * @param subscriber The shared subscriber.
+     */
+    public void setSubscriber(Subscriber subscriber) {
+        this.subscriber = subscriber;
+        this.sharedSubscriber = subscriber != null;
+    }
+    
 }
@@ -0,0 +1,131 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.amqp.rabbitmq;
+
+import java.util.Collection;
+
+/**
+ * Pre-parsed form of a dispatcher's recipient ids, used to decide whether a message addressed to
+ * specific recipients should be delivered. A message carries, in addition to its comma-delimited
+ * recipient list, a 64-bit mask in which each recipient sets a single bit. A message whose mask
+ * shares no bits with the filter's mask is rejected outright; otherwise, the recipient list is
+ * scanned in place for an exact match. Neither test splits the list or allocates.
+ */
+public class RecipientFilter {
+    
+    private final String[] recipientIds;
+    
+    private final long mask;
+    
+    /**
+     * Returns the mask for a comma-delimited list of recipients.
+     *
+     * @param recipients Comma-delimited list of recipients.
+     * @return The recipient mask (0 if there are no recipients).
+     */
+    public static long getMask(String recipients) {
+        long mask = 0;
+        int length = recipients == null ? 0 : recipients.length();
+        int start = 0;
+        
+        while (start < length) {
+            int end = recipients.indexOf(',', start);
+            end = end < 0 ? length : end;
+            mask |= getMask(recipients, start, end);
+            start = end + 1;
+        }
+        
+        return mask;
+    }
+    
+    /**
+     * Returns the single-bit mask for the recipient occupying the specified region of a string.
+     * Mixes the same hash as {@link String#hashCode} over the region, so the mask is stable
+     * across nodes.
+     *
+     * @param value String containing the recipient.
+     * @param start Start of region (inclusive).
+     * @param end End of region (exclusive).
+     * @return The recipient's bit.
+     */
+    private static long getMask(String value, int start, int end) {
+        int hash = 0;
+        
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+        
+        hash ^= hash >>> 16;
+        hash *= 0x9E3779B9;
+        return 1L << (hash >>> 26);
+    }
+    
+    /**
+     * Creates a filter for the specified recipient ids.
+     *
+     * @param recipientIds The recipient ids.
+     */
+    public RecipientFilter(Collection<String> recipientIds) {
+        this.recipientIds = recipientIds.toArray(new String[recipientIds.size()]);
+        long mask = 0;
+        
+        for (String recipientId : this.recipientIds) {
+            mask |= getMask(recipientId, 0, recipientId.length());
+        }
+        
+        this.mask = mask;
+    }
+    
+    /**
+     * Returns true if a message with the specified recipients should be delivered. A message with
+     * no recipients is delivered to all.
+     *
+     * @param recipients Comma-delimited list of recipients (may be null).
+     * @param recipientMask The message's recipient mask, or null if the message does not carry one.
+     * @return True if the message should be delivered.
+     */
+    public boolean accept(String recipients, Long recipientMask) {
+        if (recipients == null || recipients.isEmpty()) {
+            return true;
+        }
+        
+        if (recipientMask != null && (recipientMask & mask) == 0) {
+            return false;
+        }
+        
+        int length = recipients.length();
+        int start = 0;
+        
+        while (start < length) {
+            int end = recipients.indexOf(',', start);
+            end = end < 0 ? length : end;
+            int len = end - start;
+            
+            for (String recipientId : recipientIds) {
+                if (recipientId.length() == len && recipients.regionMatches(start, recipientId, 0, len)) {
+                    return true;
+                }
+            }
+            
+            start = end + 1;
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Returns the mask formed from the recipient ids.
+     *
+     * @return The recipient mask.
+     */
+    public long getMask() {
+        return mask;
+    }
+}
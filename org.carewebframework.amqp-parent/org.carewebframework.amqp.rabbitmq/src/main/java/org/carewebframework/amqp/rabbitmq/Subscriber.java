@@ -1,56 +1,128 @@
 /**
- * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. 
- * If a copy of the MPL was not distributed with this file, You can obtain one at 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
  * http://mozilla.org/MPL/2.0/.
- * 
+ *
  * This Source Code Form is also subject to the terms of the Health-Related Additional
  * Disclaimer of Warranty and Limitation of Liability available at
  * http://www.carewebframework.org/licensing/disclaimer.
  */
 package org.carewebframework.amqp.rabbitmq;
 
-import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import com.rabbitmq.client.Channel;
 
-import org.carewebframework.api.event.PublisherInfo;
-import org.carewebframework.api.thread.ThreadUtil;
-
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
 
 /**
- * Subscriber is really an AMQP message listener that has an additional delivery filter based on
- * recipients possibly specified in the message header.
+ * Subscriber is an AMQP message listener shared by all global event dispatchers on a node. It
+ * consumes from every subscribed event queue and routes each message to the dispatchers subscribed
+ * to the queue from which it was received, applying an additional delivery filter based on
+ * recipients possibly specified in the message header (see {@link RecipientFilter}). The container is started when the first
+ * queue is added and stopped when the last is removed.
  */
 public class Subscriber extends SimpleMessageListenerContainer {
     
-    private final Collection<String> recipientIds;
+    private static final Set<GlobalEventDispatcher> EMPTY = Collections.emptySet();
+    
+    private final Map<String, Set<GlobalEventDispatcher>> routes = new ConcurrentHashMap<>();
     
-    public Subscriber(PublisherInfo publisherInfo) {
-        this.recipientIds = publisherInfo.getAttributes().values();
-        setTaskExecutor(ThreadUtil.getTaskExecutor());
+    /**
+     * Creates a subscriber using the specified connection factory.
+     *
+     * @param connectionFactory The connection factory.
+     */
+    public Subscriber(ConnectionFactory connectionFactory) {
+        super(connectionFactory);
+    }
+    
+    /**
+     * Routes messages from the named queue to the dispatcher, consuming from the queue if not
+     * already doing so.
+     *
+     * @param queueName The queue name.
+     * @param dispatcher The dispatcher.
+     */
+    public synchronized void subscribe(String queueName, GlobalEventDispatcher dispatcher) {
+        Set<GlobalEventDispatcher> dispatchers = routes.get(queueName);
+        
+        if (dispatchers == null) {
+            dispatchers = new CopyOnWriteArraySet<>();
+            dispatchers.add(dispatcher);
+            routes.put(queueName, dispatchers);
+            
+            if (routes.size() == 1) {
+                setQueueNames(queueName);
+                start();
+            } else {
+                addQueueNames(queueName);
+            }
+        } else {
+            dispatchers.add(dispatcher);
+        }
+    }
+    
+    /**
+     * Stops routing messages from the named queue to the dispatcher. If no dispatchers remain for
+     * the queue, consumption from the queue ceases.
+     *
+     * @param queueName The queue name.
+     * @param dispatcher The dispatcher.
+     * @return True if no dispatchers remain for the queue.
+     */
+    public synchronized boolean unsubscribe(String queueName, GlobalEventDispatcher dispatcher) {
+        Set<GlobalEventDispatcher> dispatchers = routes.get(queueName);
+        
+        if (dispatchers == null || !dispatchers.remove(dispatcher) || !dispatchers.isEmpty()) {
+            return false;
+        }
+        
+        routes.remove(queueName);
+        
+        if (routes.isEmpty()) {
+            stop();
+        } else {
+            removeQueueNames(queueName);
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Returns the dispatchers subscribed to the named queue.
+     *
+     * @param queueName The queue name.
+     * @return The subscribed dispatchers (never null).
+     */
+    public Set<GlobalEventDispatcher> getDispatchers(String queueName) {
+        Set<GlobalEventDispatcher> dispatchers = queueName == null ? null : routes.get(queueName);
+        return dispatchers == null ? EMPTY : dispatchers;
     }
     
     @Override
     protected void invokeListener(Channel channel, Message message) throws Exception {
         MessageProperties props = message.getMessageProperties();
-        String recipients = props == null ? null : (String) props.getHeaders().get(Broker.RECIPIENTS_PROPERTY);
-        boolean found = true;
-        
-        if (recipients != null) {
-            for (String recipient : recipients.split("\\,")) {
-                found = recipientIds.contains(recipient);
-                
-                if (found) {
-                    break;
-                }
-            }
+        
+        if (props == null) {
+            return;
         }
         
-        if (found) {
-            super.invokeListener(channel, message);
+        Map<String, Object> headers = props.getHeaders();
+        String recipients = (String) headers.get(Broker.RECIPIENTS_PROPERTY);
+        Long recipientMask = (Long) headers.get(Broker.RECIPIENT_MASK_PROPERTY);
+        
+        for (GlobalEventDispatcher dispatcher : getDispatchers(props.getConsumerQueue())) {
+            if (dispatcher.getRecipientFilter().accept(recipients, recipientMask)) {
+                dispatcher.onMessage(message);
+            }
         }
     }
 }
@@ -0,0 +1,226 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.amqp.rabbitmq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.carewebframework.api.test.CommonTest;
+
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+
+import org.junit.Test;
+
+/**
+ * Tests routing of messages by a shared subscriber, recipient filtering and caching of event queue
+ * declarations. The broker and listener container are simulated, as no AMQP server is available for
+ * testing.
+ */
+public class SubscriberTest extends CommonTest {
+    
+    private static final int EVENT_COUNT = 200;
+    
+    private static final int DISPATCHER_COUNT = 10;
+    
+    private static final ConnectionFactory connectionFactory = (ConnectionFactory) Proxy.newProxyInstance(
+        ConnectionFactory.class.getClassLoader(), new Class<?>[] { ConnectionFactory.class }, new InvocationHandler() {
+            
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                return null;
+            }
+            
+        });
+    
+    /**
+     * Broker that counts server round trips.
+     */
+    private static class TestBroker extends Broker {
+        
+        final Set<String> queues = new HashSet<>();
+        
+        int roundTrips;
+        
+        TestBroker() {
+            super(connectionFactory, new TopicExchange("test"));
+        }
+        
+        @Override
+        public Properties getQueueProperties(String queueName) {
+            roundTrips++;
+            return queues.contains(queueName) ? new Properties() : null;
+        }
+        
+        @Override
+        public String declareQueue(Queue queue) {
+            roundTrips++;
+            queues.add(queue.getName());
+            return queue.getName();
+        }
+        
+        @Override
+        public void declareBinding(Binding binding) {
+            roundTrips++;
+        }
+    }
+    
+    /**
+     * Subscriber that tracks container lifecycle instead of consuming.
+     */
+    private static class TestSubscriber extends Subscriber {
+        
+        boolean running;
+        
+        int starts;
+        
+        int queueChanges;
+        
+        TestSubscriber() {
+            super(connectionFactory);
+        }
+        
+        @Override
+        public void start() {
+            running = true;
+            starts++;
+        }
+        
+        @Override
+        public void stop() {
+            running = false;
+        }
+        
+        @Override
+        public void addQueueNames(String... queueNames) {
+            queueChanges++;
+        }
+        
+        @Override
+        public boolean removeQueueNames(String... queueNames) {
+            queueChanges++;
+            return true;
+        }
+    }
+    
+    /**
+     * Dispatcher that counts received messages.
+     */
+    private static class TestDispatcher extends GlobalEventDispatcher {
+        
+        int received;
+        
+        @Override
+        public void onMessage(Message message) {
+            received++;
+        }
+    }
+    
+    @Test
+    public void testSubscriber() throws Exception {
+        TestBroker broker = new TestBroker();
+        TestSubscriber subscriber = new TestSubscriber();
+        List<TestDispatcher> dispatchers = new ArrayList<>();
+        
+        for (int i = 0; i < DISPATCHER_COUNT; i++) {
+            TestDispatcher dispatcher = new TestDispatcher();
+            dispatcher.setBroker(broker);
+            dispatcher.setSubscriber(subscriber);
+            dispatcher.init();
+            dispatchers.add(dispatcher);
+        }
+        
+        for (TestDispatcher dispatcher : dispatchers) {
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                dispatcher.subscribeRemoteEvent("EVENT." + i, true);
+            }
+        }
+        
+        assertEquals(EVENT_COUNT * 4, broker.roundTrips);
+        assertEquals(1, subscriber.starts);
+        assertEquals(EVENT_COUNT - 1, subscriber.queueChanges);
+        
+        TestDispatcher target = dispatchers.get(1);
+        MessageProperties props = new MessageProperties();
+        props.setConsumerQueue("EVENT.1");
+        Message message = new Message(new byte[0], props);
+        subscriber.invokeListener(null, message);
+        props.setHeader(Broker.RECIPIENTS_PROPERTY, "other," + target.getPublisherInfo().getEndpointId());
+        subscriber.invokeListener(null, message);
+        props.setHeader(Broker.RECIPIENTS_PROPERTY, "other");
+        subscriber.invokeListener(null, message);
+        assertEquals(2, target.received);
+        assertEquals(1, dispatchers.get(0).received);
+        
+        for (TestDispatcher dispatcher : dispatchers) {
+            dispatcher.destroy();
+        }
+        
+        assertFalse(subscriber.running);
+        assertTrue(subscriber.getDispatchers("EVENT.1").isEmpty());
+        broker.roundTrips = 0;
+        dispatchers.get(0).subscribeRemoteEvent("EVENT.1", true);
+        assertEquals(1, broker.roundTrips);
+        assertTrue(subscriber.running);
+    }
+    
+    @Test
+    public void testRecipientFilter() throws Exception {
+        RecipientFilter filter = new RecipientFilter(Arrays.asList("ep1", "u-user1", "n-node1"));
+        String recipients = "ep2,u-user1";
+        assertTrue(filter.accept(null, null));
+        assertTrue(filter.accept("", null));
+        assertTrue(filter.accept(recipients, null));
+        assertTrue(filter.accept(recipients, RecipientFilter.getMask(recipients)));
+        assertFalse(filter.accept("ep2,u-user", null));
+        assertFalse(filter.accept("ep2,u-user", RecipientFilter.getMask("ep2,u-user")));
+        assertFalse(filter.accept("ep2,u-user1x", null));
+        assertTrue((RecipientFilter.getMask(recipients) & filter.getMask()) != 0);
+    }
+    
+    @Test
+    public void testMaskedDelivery() throws Exception {
+        TestSubscriber subscriber = new TestSubscriber();
+        TestDispatcher dispatcher = new TestDispatcher();
+        dispatcher.setBroker(new TestBroker());
+        dispatcher.setSubscriber(subscriber);
+        dispatcher.init();
+        dispatcher.subscribeRemoteEvent("MASK", true);
+        String endpointId = dispatcher.getPublisherInfo().getEndpointId();
+        
+        for (String recipients : new String[] { "ep-other1,u-other1", "ep-other1," + endpointId }) {
+            MessageProperties props = new MessageProperties();
+            props.setConsumerQueue("MASK");
+            props.setHeader(Broker.RECIPIENTS_PROPERTY, recipients);
+            Message message = new Message(new byte[0], props);
+            subscriber.invokeListener(null, message);
+            props.setHeader(Broker.RECIPIENT_MASK_PROPERTY, RecipientFilter.getMask(recipients));
+            subscriber.invokeListener(null, message);
+        }
+        
+        assertEquals(2, dispatcher.received);
+    }
+    
+}
@@ -9,74 +9,76 @@
  */
 package org.carewebframework.api.context;
 
+import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.carewebframework.common.DateUtil;
 import org.carewebframework.common.ISerializer;
+import org.carewebframework.common.MiscUtil;
 
 /**
- * Encapsulates a set of context items. Internally, these are stored in a hash map with a separate
- * index to allow case-insensitive lookup.
+ * Encapsulates a set of context items. Internally, these are stored in a map sorted without regard
+ * to case, allowing case-insensitive lookup and prefix queries in logarithmic time. An item name
+ * retains the case with which it was first stored.
  */
 public class ContextItems {
     
-    private final Map<String, String> items = new HashMap<>();
-    
-    private final Map<String, String> index = new HashMap<>();
+    private final NavigableMap<String, String> items = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
     
     /**
      * Serializes the context item set to a string.
      */
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = new StringBuilder(getSerializedLength());
         
-        for (String key : items.keySet()) {
-            sb.append(key).append('=').append(items.get(key)).append('\n');
+        try {
+            write(sb);
+        } catch (IOException e) {
+            throw MiscUtil.toUnchecked(e);
         }
         
         return sb.toString();
     }
     
     /**
-     * Performs a case-insensitive lookup of the item name in the index.
+     * Writes the serialized form of the context item set.
      * 
-     * @param itemName Item name
-     * @param autoAdd If true and item name not in index, add it.
-     * @return Item name as stored internally. If not already stored, returns the item name as it
-     *         was specified in itemName.
+     * @param out Destination for the serialized context items.
+     * @throws IOException IO exception.
      */
-    private String lookupItemName(String itemName, boolean autoAdd) {
-        String indexedName = index.get(itemName.toLowerCase());
-        
-        if (indexedName == null && autoAdd) {
-            index.put(itemName.toLowerCase(), itemName);
+    public void write(Appendable out) throws IOException {
+        for (Entry<String, String> entry : items.entrySet()) {
+            out.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
         }
-        
-        return indexedName == null ? itemName : indexedName;
     }
     
     /**
-     * Performs a case-insensitive lookup of the item name + suffix in the index.
+     * Returns the length of the serialized form of the context item set.
      * 
-     * @param itemName Item name
-     * @param suffix Item suffix
-     * @param autoAdd If true and item name not in index, add it.
-     * @return Item name with suffix as stored internally
+     * @return Length of the serialized context items.
      */
-    private String lookupItemName(String itemName, String suffix, boolean autoAdd) {
-        return lookupItemName(itemName + "." + suffix, autoAdd);
+    public int getSerializedLength() {
+        int length = 0;
+        
+        for (Entry<String, String> entry : items.entrySet()) {
+            length += entry.getKey().length() + entry.getValue().length() + 2;
+        }
+        
+        return length;
     }
     
     /**
-     * Clear all context items and the index.
+     * Clear all context items.
      */
     public void clear() {
         items.clear();
-        index.clear();
     }
     
     /**
@@ -85,11 +87,7 @@ public class ContextItems {
      * @param subject Prefix whose items are to be removed.
      */
     public void removeSubject(String subject) {
-        String prefix = normalizePrefix(subject);
-        
-        for (String suffix : getSuffixes(prefix).keySet()) {
-            setItem(prefix + suffix, null);
-        }
+        getSubject(subject).clear();
     }
     
     /**
@@ -123,23 +121,34 @@ public class ContextItems {
      */
     private Map<String, String> getSuffixes(String prefix, Boolean firstOnly) {
         HashMap<String, String> matches = new HashMap<>();
-        prefix = normalizePrefix(prefix);
-        int i = prefix.length();
+        NavigableMap<String, String> subject = getSubject(prefix);
+        int i = normalizePrefix(prefix).length();
         
-        for (String itemName : index.keySet()) {
-            if (itemName.startsWith(prefix)) {
-                String suffix = lookupItemName(itemName, false).substring(i);
-                matches.put(suffix, getItem(itemName));
-                
-                if (firstOnly) {
-                    break;
-                }
+        for (Entry<String, String> entry : subject.entrySet()) {
+            matches.put(entry.getKey().substring(i), entry.getValue());
+            
+            if (firstOnly) {
+                break;
             }
         }
         
         return matches;
     }
     
+    /**
+     * Returns a view of all context items belonging to the specified subject. Since a "." sorts
+     * immediately before a "/" regardless of case, these are the items falling between the
+     * normalized prefix and the same prefix terminated by a "/".
+     * 
+     * @param subject The subject of interest.
+     * @return Context items belonging to the subject.
+     */
+    private NavigableMap<String, String> getSubject(String subject) {
+        String prefix = normalizePrefix(subject);
+        String limit = prefix.substring(0, prefix.length() - 1) + "/";
+        return items.subMap(prefix, true, limit, false);
+    }
+    
     /**
      * Returns true if any context item belonging to the specified subject exists.
      * 
@@ -147,17 +156,17 @@ public class ContextItems {
      * @return True if the subject was found.
      */
     public boolean containsSubject(String subject) {
-        return !getSuffixes(subject, true).isEmpty();
+        return !getSubject(subject).isEmpty();
     }
     
     /**
-     * Normalizes a prefix by appending a "." if necessary and converting to lower case.
+     * Normalizes a prefix by appending a "." if necessary.
      * 
      * @param prefix Prefix to normalize.
      * @return Normalized prefix.
      */
     private String normalizePrefix(String prefix) {
-        return (prefix.endsWith(".") ? prefix : prefix + ".").toLowerCase();
+        return prefix.endsWith(".") ? prefix : prefix + ".";
     }
     
     /**
@@ -167,7 +176,7 @@ public class ContextItems {
      * @return Item value
      */
     public String getItem(String itemName) {
-        return items.get(lookupItemName(itemName, false));
+        return items.get(itemName);
     }
     
     /**
@@ -178,7 +187,7 @@ public class ContextItems {
      * @return Item value
      */
     public String getItem(String itemName, String suffix) {
-        return items.get(lookupItemName(itemName, suffix, false));
+        return items.get(itemName + "." + suffix);
     }
     
     /**
@@ -214,11 +223,8 @@ public class ContextItems {
      * @param value Item value
      */
     public void setItem(String itemName, String value) {
-        itemName = lookupItemName(itemName, value != null);
-        
         if (value == null) {
             items.remove(itemName);
-            index.remove(itemName.toLowerCase());
         } else {
             items.put(itemName, value);
         }
@@ -255,8 +261,7 @@ public class ContextItems {
      * @param suffix Item suffix
      */
     public void setItem(String itemName, String value, String suffix) {
-        itemName = lookupItemName(itemName, suffix, value != null);
-        items.put(itemName, value);
+        setItem(itemName + "." + suffix, value);
     }
     
     /**
@@ -290,16 +295,15 @@ public class ContextItems {
     /**
      * Adds context items from a serialized string.
      * 
+     * @see ContextItemsReader
      * @param values Serialized context items to add.
      * @throws Exception Unspecified exception.
      */
     public void addItems(String values) throws Exception {
-        for (String line : values.split("[\\r\\n]")) {
-            String[] pcs = line.split("\\=", 2);
-            
-            if (pcs.length == 2) {
-                setItem(pcs[0], pcs[1]);
-            }
+        ContextItemsReader reader = new ContextItemsReader(values);
+        
+        while (reader.next()) {
+            setItem(reader.getName(), reader.getValue());
         }
     }
     
@@ -318,8 +322,8 @@ public class ContextItems {
      * @param values Values to add.
      */
     private void addItems(Map<String, String> values) {
-        for (String itemName : values.keySet()) {
-            setItem(itemName, values.get(itemName));
+        for (Entry<String, String> entry : values.entrySet()) {
+            setItem(entry.getKey(), entry.getValue());
         }
     }
 }
@@ -0,0 +1,97 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.context;
+
+/**
+ * Reads context items, one at a time, from their serialized form. Each item occupies a line of the
+ * form <code>name=value</code>, where a line is terminated by a carriage return or line feed.
+ * Lines without an equals sign are skipped. Names and values are only extracted on request, so
+ * items may be inspected without allocation.
+ */
+public class ContextItemsReader {
+    
+    private final String source;
+    
+    private final int length;
+    
+    private int start;
+    
+    private int separator;
+    
+    private int end = -1;
+    
+    /**
+     * Creates a reader for serialized context items.
+     *
+     * @param source Serialized context items.
+     */
+    public ContextItemsReader(String source) {
+        this.source = source;
+        this.length = source.length();
+    }
+    
+    /**
+     * Advances to the next context item.
+     *
+     * @return True if there is another item, false if the end of input has been reached.
+     */
+    public boolean next() {
+        while (end < length) {
+            start = end + 1;
+            end = start;
+            separator = -1;
+            char c;
+            
+            while (end < length && (c = source.charAt(end)) != '\n' && c != '\r') {
+                if (separator < 0 && c == '=') {
+                    separator = end;
+                }
+                
+                end++;
+            }
+            
+            if (separator >= 0) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Returns true if the current item has the specified name, ignoring case.
+     *
+     * @param itemName The item name.
+     * @return True if the name matches.
+     */
+    public boolean isItem(String itemName) {
+        int len = separator - start;
+        return itemName.length() == len && source.regionMatches(true, start, itemName, 0, len);
+    }
+    
+    /**
+     * Returns the name of the current item.
+     *
+     * @return The item name.
+     */
+    public String getName() {
+        return source.substring(start, separator);
+    }
+    
+    /**
+     * Returns the value of the current item.
+     *
+     * @return The item value.
+     */
+    public String getValue() {
+        return source.substring(separator + 1, end);
+    }
+    
+}
@@ -9,9 +9,11 @@
  */
 package org.carewebframework.api.context;
 
-import java.text.SimpleDateFormat;
+import java.io.IOException;
 import java.util.Date;
 
+import org.apache.commons.lang.time.FastDateFormat;
+
 import org.carewebframework.api.security.IDigitalSignature;
 
 /**
@@ -23,6 +25,8 @@ public class ContextMarshaller {
     
     public static final String PROPNAME_TIME = "Signature.Time";
     
+    private static final FastDateFormat TIMESTAMP_FORMAT = FastDateFormat.getInstance("yyyyMMddHHmmssz");
+    
     private final IDigitalSignature signer;
     
     public ContextMarshaller(IDigitalSignature signer) throws Exception {
@@ -37,12 +41,32 @@ public class ContextMarshaller {
      * @return The marshaled context.
      */
     public String marshal(ContextItems contextItems) {
-        SimpleDateFormat timestampFormat = new SimpleDateFormat("yyyyMMddHHmmssz");
-        contextItems.setItem(PROPNAME_TIME, timestampFormat.format(new Date()));
-        contextItems.setItem(PROPNAME_KEY, signer.getKeyName());
+        addSignatureItems(contextItems);
         return contextItems.toString();
     }
     
+    /**
+     * Marshals the current context to the specified destination.
+     * 
+     * @param contextItems The context items to marshal.
+     * @param out Destination for the marshaled context.
+     * @throws IOException IO exception.
+     */
+    public void marshal(ContextItems contextItems, Appendable out) throws IOException {
+        addSignatureItems(contextItems);
+        contextItems.write(out);
+    }
+    
+    /**
+     * Adds the timestamp and key name items used in verifying the digital signature.
+     * 
+     * @param contextItems The context items to be marshaled.
+     */
+    private void addSignatureItems(ContextItems contextItems) {
+        contextItems.setItem(PROPNAME_TIME, TIMESTAMP_FORMAT.format(new Date()));
+        contextItems.setItem(PROPNAME_KEY, signer.getKeyName());
+    }
+    
     /**
      * Digitally signs the specified text.
      * 
@@ -56,7 +80,8 @@ public class ContextMarshaller {
     
     /**
      * Unmarshals the marshaled context. Performs digital signature verification, then returns the
-     * unmarshaled context items.
+     * unmarshaled context items. Only the signature items are extracted prior to verification, so
+     * a context with an invalid signature is rejected without being fully parsed.
      * 
      * @param marshaledContext Marshaled context
      * @param authSignature If set, the digital signature is verified.
@@ -64,15 +89,26 @@ public class ContextMarshaller {
      * @throws Exception Unspecified exception.
      */
     public ContextItems unmarshal(String marshaledContext, String authSignature) throws Exception {
-        ContextItems contextItems = new ContextItems();
-        contextItems.addItems(marshaledContext);
-        String whichKey = contextItems.getItem(PROPNAME_KEY);
-        String timestamp = contextItems.getItem(PROPNAME_TIME);
-        
-        if (authSignature != null && !signer.verify(authSignature, marshaledContext, timestamp, whichKey)) {
-            throw new MarshalException("Invalid digital signature");
+        if (authSignature != null) {
+            String whichKey = null;
+            String timestamp = null;
+            ContextItemsReader reader = new ContextItemsReader(marshaledContext);
+            
+            while (reader.next()) {
+                if (reader.isItem(PROPNAME_KEY)) {
+                    whichKey = reader.getValue();
+                } else if (reader.isItem(PROPNAME_TIME)) {
+                    timestamp = reader.getValue();
+                }
+            }
+            
+            if (!signer.verify(authSignature, marshaledContext, timestamp, whichKey)) {
+                throw new MarshalException("Invalid digital signature");
+            }
         }
         
+        ContextItems contextItems = new ContextItems();
+        contextItems.addItems(marshaledContext);
         return contextItems;
     }
 }
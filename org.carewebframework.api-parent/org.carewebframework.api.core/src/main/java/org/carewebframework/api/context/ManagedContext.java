@@ -10,9 +10,20 @@
 package org.carewebframework.api.context;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.logging.Log;
@@ -53,6 +64,14 @@ public class ManagedContext<DomainClass> implements Comparable<IManagedContext<D
     
     private final List<IContextEvent> surveyed = new ArrayList<>();
     
+    private final ConcurrentMap<String, SurveyTiming> surveyTimings = new ConcurrentHashMap<>();
+    
+    private boolean concurrentSurvey;
+    
+    private long surveyTimeout = 5000;
+    
+    private ExecutorService surveyExecutor;
+    
     protected IContextManager contextManager;
     
     protected IEventManager eventManager;
@@ -160,6 +179,95 @@ public class ManagedContext<DomainClass> implements Comparable<IManagedContext<D
         this.appFramework = appFramework;
     }
     
+    /**
+     * Returns true if subscribers are surveyed concurrently.
+     * 
+     * @return True if subscribers are surveyed concurrently.
+     */
+    public boolean isConcurrentSurvey() {
+        return concurrentSurvey;
+    }
+    
+    /**
+     * If true, subscribers are surveyed concurrently on background threads, each being allowed up
+     * to the survey timeout to respond (default is false). Only enable this if no subscriber
+     * requires the caller's thread to respond to a survey (for example, to interact with the user).
+     * 
+     * @param concurrentSurvey If true, survey subscribers concurrently.
+     */
+    public void setConcurrentSurvey(boolean concurrentSurvey) {
+        this.concurrentSurvey = concurrentSurvey;
+    }
+    
+    /**
+     * Returns the time allowed for subscribers to respond to a concurrent survey.
+     * 
+     * @return The survey timeout in milliseconds.
+     */
+    public long getSurveyTimeout() {
+        return surveyTimeout;
+    }
+    
+    /**
+     * Sets the time, measured from when a subscriber's poll begins, allowed for each subscriber to
+     * respond to a concurrent survey (default is 5000). A poll still awaiting an executor thread is
+     * allowed the same interval to begin, measured from when earlier subscribers were resolved. A
+     * subscriber that fails to respond in time is treated as having rejected the context change.
+     * 
+     * @param surveyTimeout The survey timeout in milliseconds.
+     */
+    public void setSurveyTimeout(long surveyTimeout) {
+        this.surveyTimeout = surveyTimeout;
+    }
+    
+    /**
+     * Returns the executor used for concurrent surveys.
+     * 
+     * @return The survey executor (may be null).
+     */
+    public ExecutorService getSurveyExecutor() {
+        return surveyExecutor;
+    }
+    
+    /**
+     * Sets the executor used for concurrent surveys. This should be a bounded executor dedicated to
+     * surveys, so that slow subscribers cannot exhaust threads needed for other work. If null, each
+     * subscriber is polled on a separate daemon thread.
+     * 
+     * @param surveyExecutor The survey executor.
+     */
+    public void setSurveyExecutor(ExecutorService surveyExecutor) {
+        this.surveyExecutor = surveyExecutor;
+    }
+    
+    /**
+     * Returns the accumulated survey response times, one entry per subscriber class.
+     * 
+     * @return The survey timings.
+     */
+    public Collection<SurveyTiming> getSurveyTimings() {
+        return Collections.unmodifiableCollection(surveyTimings.values());
+    }
+    
+    /**
+     * Returns the survey timing record for a subscriber, creating one if necessary.
+     * 
+     * @param event The subscriber.
+     * @return The survey timing record.
+     */
+    private SurveyTiming getSurveyTiming(IContextEvent event) {
+        String name = event.getClass().getName();
+        SurveyTiming timing = surveyTimings.get(name);
+        
+        if (timing == null) {
+            timing = new SurveyTiming(name);
+            SurveyTiming existing = surveyTimings.putIfAbsent(name, timing);
+            timing = existing == null ? timing : existing;
+        }
+        
+        return timing;
+    }
+    
     // ************************************************************************************************
     // * IManagedContext implementation
     // ***********************************************************************************************/
@@ -365,11 +473,15 @@ public class ManagedContext<DomainClass> implements Comparable<IManagedContext<D
      */
     @Override
     public String surveySubscribers(boolean silent) {
+        if (concurrentSurvey) {
+            return surveySubscribersConcurrently(silent);
+        }
+        
         StringBuilder result = new StringBuilder();
         
         for (IContextEvent event : getIterable(true)) {
             try {
-                ContextManager.appendResponse(result, event.pending(silent));
+                ContextManager.appendResponse(result, new SurveyTask(event, silent).call());
             } catch (Throwable e) {
                 log.error("Error during surveysubscribers.", e);
                 ContextManager.appendResponse(result, e.toString());
@@ -385,6 +497,200 @@ public class ManagedContext<DomainClass> implements Comparable<IManagedContext<D
         return result.toString();
     }
     
+    /**
+     * Surveys all subscribers concurrently. Responses are aggregated in subscription order under
+     * the same rules as a sequential survey: if not silent, only the first rejection is returned
+     * and polling of the remaining subscribers is cancelled. Every subscriber whose poll was begun,
+     * including those that timed out or were cancelled while responding, is considered surveyed
+     * and so will be notified of the outcome.
+     * 
+     * @param silent If true, user interaction is not permitted.
+     * @return The aggregated responses.
+     */
+    private String surveySubscribersConcurrently(boolean silent) {
+        List<IContextEvent> events = new ArrayList<>();
+        List<SurveyTask> surveyTasks = new ArrayList<>();
+        List<FutureTask<String>> tasks = new ArrayList<>();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(surveyTimeout);
+        
+        for (IContextEvent event : getIterable(true)) {
+            SurveyTask surveyTask = new SurveyTask(event, silent);
+            FutureTask<String> task = new FutureTask<>(surveyTask);
+            events.add(event);
+            surveyTasks.add(surveyTask);
+            tasks.add(task);
+            execute(task);
+        }
+        
+        StringBuilder result = new StringBuilder();
+        
+        for (int i = 0; i < events.size(); i++) {
+            IContextEvent event = events.get(i);
+            FutureTask<String> task = tasks.get(i);
+            String response;
+            
+            try {
+                response = awaitResponse(task, surveyTasks.get(i), timeout);
+            } catch (TimeoutException e) {
+                task.cancel(true);
+                getSurveyTiming(event).recordTimeout();
+                response = "Subscriber " + event.getClass().getName() + " did not respond within " + surveyTimeout
+                        + " ms.";
+                log.warn(response);
+            } catch (ExecutionException e) {
+                log.error("Error during surveysubscribers.", e.getCause());
+                response = e.getCause().toString();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                task.cancel(true);
+                response = e.toString();
+            }
+            
+            ContextManager.appendResponse(result, response);
+            
+            if (!silent && result.length() > 0) {
+                break;
+            }
+        }
+        
+        for (int i = 0; i < events.size(); i++) {
+            tasks.get(i).cancel(true);
+            
+            if (surveyTasks.get(i).abandon()) {
+                surveyed.add(events.get(i)); // Add to list of surveyed subscribers.
+            }
+        }
+        
+        return result.toString();
+    }
+    
+    /**
+     * Waits for a subscriber to respond. The timeout is measured from when the poll began or, if it
+     * has yet to begin, from when the wait began.
+     * 
+     * @param task The future for the survey task.
+     * @param surveyTask The survey task.
+     * @param timeout The timeout in nanoseconds.
+     * @return The subscriber's response.
+     * @throws TimeoutException If the subscriber did not respond in time.
+     * @throws ExecutionException If the subscriber threw an exception.
+     * @throws InterruptedException If the wait was interrupted.
+     */
+    private String awaitResponse(FutureTask<String> task, SurveyTask surveyTask, long timeout) throws TimeoutException,
+                                                                                                      ExecutionException,
+                                                                                                      InterruptedException {
+        long waitStart = System.nanoTime();
+        
+        while (true) {
+            boolean started = surveyTask.isStarted();
+            long deadline = (started ? surveyTask.getStartTime() : waitStart) + timeout;
+            
+            try {
+                return task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (started || !surveyTask.isStarted()) {
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Runs a survey task using the survey executor if available, or a separate thread if not. If
+     * the executor rejects the task, it is run on a separate thread so that the survey timeout
+     * still applies.
+     * 
+     * @param task The survey task.
+     */
+    private void execute(FutureTask<String> task) {
+        if (surveyExecutor != null) {
+            try {
+                surveyExecutor.execute(task);
+                return;
+            } catch (RejectedExecutionException e) {
+                log.warn("Survey executor rejected context survey; surveying on a separate thread.");
+            }
+        }
+        
+        Thread thread = new Thread(task, "ContextSurvey");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Polls a single subscriber, recording its response time.
+     */
+    private class SurveyTask implements Callable<String> {
+        
+        private final IContextEvent event;
+        
+        private final boolean silent;
+        
+        private volatile boolean started;
+        
+        private volatile long startTime;
+        
+        private boolean abandoned;
+        
+        SurveyTask(IContextEvent event, boolean silent) {
+            this.event = event;
+            this.silent = silent;
+        }
+        
+        /**
+         * Marks the poll as started, unless it has been abandoned.
+         * 
+         * @return True if the poll may proceed.
+         */
+        private synchronized boolean start() {
+            if (abandoned) {
+                return false;
+            }
+            
+            startTime = System.nanoTime();
+            started = true;
+            return true;
+        }
+        
+        /**
+         * Prevents the poll from starting if it has not already.
+         * 
+         * @return True if the poll was started.
+         */
+        synchronized boolean abandon() {
+            abandoned = true;
+            return started;
+        }
+        
+        boolean isStarted() {
+            return started;
+        }
+        
+        long getStartTime() {
+            return startTime;
+        }
+        
+        @Override
+        public String call() {
+            if (!start()) {
+                return null;
+            }
+            
+            long start = startTime;
+            
+            try {
+                return event.pending(silent);
+            } finally {
+                SurveyTiming timing = getSurveyTiming(event);
+                timing.record(System.nanoTime() - start);
+                
+                if (log.isDebugEnabled()) {
+                    log.debug("Survey of " + getContextName() + " context: " + timing);
+                }
+            }
+        }
+    }
+    
     // ************************************************************************************************
     // * ISharedContext implementation
     // ***********************************************************************************************/
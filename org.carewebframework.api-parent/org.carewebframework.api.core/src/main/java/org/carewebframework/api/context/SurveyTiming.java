@@ -0,0 +1,121 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.context;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulated response times of a context subscriber class to context change surveys.
+ */
+public class SurveyTiming {
+    
+    private final String subscriber;
+    
+    private long count;
+    
+    private long timeouts;
+    
+    private long totalTime;
+    
+    private long maxTime;
+    
+    private long lastTime;
+    
+    /**
+     * Creates a timing record for the named subscriber.
+     *
+     * @param subscriber Name of the subscriber class.
+     */
+    public SurveyTiming(String subscriber) {
+        this.subscriber = subscriber;
+    }
+    
+    /**
+     * Records the elapsed time of a survey response.
+     *
+     * @param elapsed Elapsed time in nanoseconds.
+     */
+    public synchronized void record(long elapsed) {
+        count++;
+        totalTime += elapsed;
+        lastTime = elapsed;
+        
+        if (elapsed > maxTime) {
+            maxTime = elapsed;
+        }
+    }
+    
+    /**
+     * Records a survey to which the subscriber failed to respond in time.
+     */
+    public synchronized void recordTimeout() {
+        timeouts++;
+    }
+    
+    /**
+     * Returns the name of the subscriber class.
+     *
+     * @return The subscriber class name.
+     */
+    public String getSubscriber() {
+        return subscriber;
+    }
+    
+    /**
+     * Returns the number of completed survey responses.
+     *
+     * @return The response count.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+    
+    /**
+     * Returns the number of surveys to which the subscriber failed to respond in time.
+     *
+     * @return The timeout count.
+     */
+    public synchronized long getTimeouts() {
+        return timeouts;
+    }
+    
+    /**
+     * Returns the average response time.
+     *
+     * @return Average response time in milliseconds.
+     */
+    public synchronized long getAverageTime() {
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalTime / count);
+    }
+    
+    /**
+     * Returns the longest response time.
+     *
+     * @return Longest response time in milliseconds.
+     */
+    public synchronized long getMaxTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxTime);
+    }
+    
+    /**
+     * Returns the most recent response time.
+     *
+     * @return Most recent response time in milliseconds.
+     */
+    public synchronized long getLastTime() {
+        return TimeUnit.NANOSECONDS.toMillis(lastTime);
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return subscriber + ": count=" + count + ", avg=" + getAverageTime() + "ms, max=" + getMaxTime() + "ms, last="
+                + getLastTime() + "ms, timeouts=" + timeouts;
+    }
+}
@@ -0,0 +1,266 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.event;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.carewebframework.api.event.EventManager.OverflowPolicy;
+import org.carewebframework.api.thread.ThreadUtil;
+
+/**
+ * Bounded queue for asynchronous delivery of local events. Queued events are delivered by a single
+ * drain task at a time, so all subscribers receive events in the order in which they were fired.
+ * The drain task runs on the shared task executor if one is available, or on a transient thread
+ * otherwise, and terminates when the queue is empty.
+ */
+/*package*/class AsyncEventQueue implements Runnable {
+    
+    private static final Log log = LogFactory.getLog(AsyncEventQueue.class);
+    
+    /**
+     * A queued event.
+     */
+    private static class QueuedEvent {
+        
+        final String eventName;
+        
+        final Object eventData;
+        
+        final long queued = System.nanoTime();
+        
+        QueuedEvent(String eventName, Object eventData) {
+            this.eventName = eventName;
+            this.eventData = eventData;
+        }
+    }
+    
+    private final EventSubscriptions<Object> subscriptions;
+    
+    private final BlockingQueue<QueuedEvent> queue;
+    
+    private final OverflowPolicy overflowPolicy;
+    
+    private final AtomicBoolean draining = new AtomicBoolean();
+    
+    private final AtomicLong dispatchedCount = new AtomicLong();
+    
+    private final AtomicLong droppedCount = new AtomicLong();
+    
+    private final AtomicLong rejectedCount = new AtomicLong();
+    
+    private final AtomicLong totalLatency = new AtomicLong();
+    
+    private final AtomicLong maxLatency = new AtomicLong();
+    
+    private volatile Thread drainThread;
+    
+    private volatile boolean closed;
+    
+    /**
+     * Creates a queue for asynchronous event delivery.
+     *
+     * @param subscriptions Subscriptions to which events are delivered.
+     * @param capacity Maximum number of queued events.
+     * @param overflowPolicy Action to take when the queue is full.
+     */
+    AsyncEventQueue(EventSubscriptions<Object> subscriptions, int capacity, OverflowPolicy overflowPolicy) {
+        this.subscriptions = subscriptions;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+    }
+    
+    /**
+     * Queues an event for delivery, applying the overflow policy if the queue is full. If called
+     * from within the drain task (i.e., a subscriber firing an event) and the queue is full, a BLOCK
+     * policy is treated as DROP_OLDEST, since the drain task cannot wait on itself.
+     *
+     * @param eventName Name of the event.
+     * @param eventData Data associated with the event.
+     * @throws RejectedExecutionException If the queue is full and the overflow policy is REJECT.
+     */
+    public void enqueue(String eventName, Object eventData) {
+        if (closed) {
+            return;
+        }
+        
+        QueuedEvent event = new QueuedEvent(eventName, eventData);
+        
+        if (!queue.offer(event)) {
+            OverflowPolicy policy = overflowPolicy;
+            
+            if (policy == OverflowPolicy.BLOCK && Thread.currentThread() == drainThread) {
+                policy = OverflowPolicy.DROP_OLDEST;
+            }
+            
+            switch (policy) {
+                case BLOCK:
+                    try {
+                        queue.put(event);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        droppedCount.incrementAndGet();
+                        return;
+                    }
+                    
+                    break;
+                
+                case DROP_OLDEST:
+                    while (!queue.offer(event)) {
+                        if (queue.poll() != null) {
+                            droppedCount.incrementAndGet();
+                        }
+                    }
+                    
+                    break;
+                
+                case REJECT:
+                    rejectedCount.incrementAndGet();
+                    throw new RejectedExecutionException("Event queue is full; event '" + eventName + "' was rejected.");
+            }
+        }
+        
+        startDrain();
+    }
+    
+    /**
+     * Starts a drain task if one is not already active.
+     */
+    private void startDrain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        
+        try {
+            ExecutorService executor = ThreadUtil.getTaskExecutor();
+            
+            if (executor != null) {
+                executor.execute(this);
+            } else {
+                Thread thread = new Thread(this, "AsyncEventQueue");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (RejectedExecutionException e) {
+            log.warn("Task executor rejected event queue drain; delivering on caller's thread.");
+            run();
+        }
+    }
+    
+    /**
+     * Drains the queue, delivering each event to its subscribers. Before terminating, checks for
+     * events queued after the last poll to avoid stranding them.
+     */
+    @Override
+    public void run() {
+        do {
+            drainThread = Thread.currentThread();
+            
+            try {
+                QueuedEvent event;
+                
+                while ((event = queue.poll()) != null) {
+                    deliver(event);
+                }
+            } finally {
+                drainThread = null;
+                draining.set(false);
+            }
+        } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+    }
+    
+    /**
+     * Delivers an event to its subscribers and records dispatch latency.
+     *
+     * @param event The event to deliver.
+     */
+    private void deliver(QueuedEvent event) {
+        long latency = System.nanoTime() - event.queued;
+        totalLatency.addAndGet(latency);
+        dispatchedCount.incrementAndGet();
+        long max = maxLatency.get();
+        
+        while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+            max = maxLatency.get();
+        }
+        
+        subscriptions.invokeCallbacks(event.eventName, event.eventData);
+    }
+    
+    /**
+     * Stops accepting events and discards any that are queued.
+     */
+    public void close() {
+        closed = true;
+        queue.clear();
+    }
+    
+    /**
+     * Returns the number of events awaiting delivery.
+     *
+     * @return Current queue depth.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+    
+    /**
+     * Returns the number of events that have been delivered.
+     *
+     * @return Count of delivered events.
+     */
+    public long getDispatchedCount() {
+        return dispatchedCount.get();
+    }
+    
+    /**
+     * Returns the number of events discarded due to queue overflow.
+     *
+     * @return Count of dropped events.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+    
+    /**
+     * Returns the number of events rejected due to queue overflow.
+     *
+     * @return Count of rejected events.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+    
+    /**
+     * Returns the average time, in microseconds, between queuing and delivery of an event.
+     *
+     * @return Average dispatch latency.
+     */
+    public long getAverageDispatchLatency() {
+        long count = dispatchedCount.get();
+        return count == 0 ? 0 : totalLatency.get() / count / 1000;
+    }
+    
+    /**
+     * Returns the maximum time, in microseconds, between queuing and delivery of an event.
+     *
+     * @return Maximum dispatch latency.
+     */
+    public long getMaxDispatchLatency() {
+        return maxLatency.get() / 1000;
+    }
+}
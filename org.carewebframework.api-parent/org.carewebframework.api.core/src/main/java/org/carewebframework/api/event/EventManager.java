@@ -17,16 +17,35 @@ import org.apache.commons.logging.LogFactory;
 import org.carewebframework.api.spring.SpringUtil;
 
 /**
- * Manages local event subscriptions and local and global event delivery.
+ * Manages local event subscriptions and local and global event delivery. By default, local events
+ * are delivered synchronously on the caller's thread. If asynchronous mode is enabled, local events
+ * are instead placed in a bounded queue and delivered in order on a background thread.
  */
 public class EventManager implements ILocalEventDispatcher, IEventManager {
     
+    /**
+     * Action to take when an event is fired in asynchronous mode and the queue is full.
+     */
+    public enum OverflowPolicy {
+        BLOCK, // The caller is blocked until space becomes available.
+        DROP_OLDEST, // The oldest queued event is discarded.
+        REJECT // The event is rejected with an exception.
+    };
+    
     private static final Log log = LogFactory.getLog(EventManager.class);
     
     private final EventSubscriptions<Object> subscriptions = new EventSubscriptions<>();
     
     private IGlobalEventDispatcher globalEventDispatcher;
     
+    private boolean asynchronous;
+    
+    private int queueCapacity = 1000;
+    
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    
+    private volatile AsyncEventQueue eventQueue;
+    
     /**
      * Returns the event manager for this application context.
      * 
@@ -41,6 +60,10 @@ public class EventManager implements ILocalEventDispatcher, IEventManager {
      */
     public void destroy() {
         subscriptions.clear();
+        
+        if (eventQueue != null) {
+            eventQueue.close();
+        }
     }
     
     /**
@@ -68,7 +91,11 @@ public class EventManager implements ILocalEventDispatcher, IEventManager {
     @Override
     public void fireLocalEvent(String eventName, Object eventData) {
         // TODO: Handle trace mode here
-        subscriptions.invokeCallbacks(eventName, eventData);
+        if (asynchronous) {
+            getEventQueue().enqueue(eventName, eventData);
+        } else {
+            subscriptions.invokeCallbacks(eventName, eventData);
+        }
     }
     
     /**
@@ -162,4 +189,133 @@ public class EventManager implements ILocalEventDispatcher, IEventManager {
         return globalEventDispatcher;
     }
     
+    /**
+     * Returns the queue used for asynchronous delivery, creating it if necessary.
+     * 
+     * @return The event queue.
+     */
+    private AsyncEventQueue getEventQueue() {
+        AsyncEventQueue queue = eventQueue;
+        
+        if (queue == null) {
+            synchronized (subscriptions) {
+                if ((queue = eventQueue) == null) {
+                    eventQueue = queue = new AsyncEventQueue(subscriptions, queueCapacity, overflowPolicy);
+                }
+            }
+        }
+        
+        return queue;
+    }
+    
+    /**
+     * Returns true if local events are delivered asynchronously.
+     * 
+     * @return True if asynchronous mode is enabled.
+     */
+    public boolean isAsynchronous() {
+        return asynchronous;
+    }
+    
+    /**
+     * Enables or disables asynchronous delivery of local events (default is false).
+     * 
+     * @param asynchronous If true, local events are queued and delivered on a background thread.
+     */
+    public void setAsynchronous(boolean asynchronous) {
+        this.asynchronous = asynchronous;
+    }
+    
+    /**
+     * Returns the maximum number of events that may be queued in asynchronous mode.
+     * 
+     * @return The queue capacity.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+    
+    /**
+     * Sets the maximum number of events that may be queued in asynchronous mode (default is 1000).
+     * Must be set before the first event is fired.
+     * 
+     * @param queueCapacity The queue capacity.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+    
+    /**
+     * Returns the action taken when the queue is full in asynchronous mode.
+     * 
+     * @return The overflow policy.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+    
+    /**
+     * Sets the action taken when the queue is full in asynchronous mode (default is BLOCK). Must be
+     * set before the first event is fired.
+     * 
+     * @param overflowPolicy The overflow policy.
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+    
+    /**
+     * Returns the number of events awaiting asynchronous delivery.
+     * 
+     * @return Current queue depth.
+     */
+    public int getQueueDepth() {
+        return eventQueue == null ? 0 : eventQueue.getQueueDepth();
+    }
+    
+    /**
+     * Returns the number of events that have been delivered asynchronously.
+     * 
+     * @return Count of delivered events.
+     */
+    public long getDispatchedCount() {
+        return eventQueue == null ? 0 : eventQueue.getDispatchedCount();
+    }
+    
+    /**
+     * Returns the number of events discarded because the queue was full.
+     * 
+     * @return Count of dropped events.
+     */
+    public long getDroppedCount() {
+        return eventQueue == null ? 0 : eventQueue.getDroppedCount();
+    }
+    
+    /**
+     * Returns the number of events rejected because the queue was full.
+     * 
+     * @return Count of rejected events.
+     */
+    public long getRejectedCount() {
+        return eventQueue == null ? 0 : eventQueue.getRejectedCount();
+    }
+    
+    /**
+     * Returns the average time, in microseconds, that events waited in the queue before delivery.
+     * 
+     * @return Average dispatch latency.
+     */
+    public long getAverageDispatchLatency() {
+        return eventQueue == null ? 0 : eventQueue.getAverageDispatchLatency();
+    }
+    
+    /**
+     * Returns the maximum time, in microseconds, that an event waited in the queue before delivery.
+     * 
+     * @return Maximum dispatch latency.
+     */
+    public long getMaxDispatchLatency() {
+        return eventQueue == null ? 0 : eventQueue.getMaxDispatchLatency();
+    }
+    
 }
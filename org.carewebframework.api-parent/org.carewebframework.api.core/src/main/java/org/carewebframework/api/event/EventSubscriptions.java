@@ -10,17 +10,27 @@
 package org.carewebframework.api.event;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 /**
- * Manages event subscriptions in a thread-safe way.
+ * Manages event subscriptions in a thread-safe way. Each event's subscriber list is an immutable
+ * snapshot that is replaced atomically (copy-on-write) when a subscriber is added or removed. As a
+ * result, event delivery requires no locking and no copying, and iterating a subscriber list is
+ * unaffected by concurrent subscription changes.
+ * <p>
+ * Because events are hierarchical (subscribers to <code>A.B</code> also receive <code>A.B.C</code>
+ * ), the complete set of subscribers for an event name is resolved once and cached along with the
+ * event's precomputed level names. A cached resolution remains valid until the next subscription
+ * change, so repeated delivery of the same event requires a single map lookup and no allocations.
  * 
  * @param <T> Event data type.
  */
@@ -28,7 +38,46 @@ import org.apache.commons.logging.LogFactory;
     
     private static final Log log = LogFactory.getLog(EventSubscriptions.class);
     
-    private final Map<String, List<IGenericEvent<T>>> subscriptions = new HashMap<>();
+    /**
+     * Maximum number of cached event resolutions. The cache is flushed when this is exceeded to
+     * guard against unbounded growth when event names are dynamically generated.
+     */
+    private static final int MAX_RESOLUTIONS = 2048;
+    
+    /**
+     * The resolved subscribers for an event name across all of its hierarchical levels.
+     */
+    private static class Resolution {
+        
+        /**
+         * The event name and its parent names, from the most specific to the least.
+         */
+        final String[] levels;
+        
+        /**
+         * The subscription version from which this resolution was computed.
+         */
+        final int version;
+        
+        /**
+         * Subscribers to all levels, ordered from the most specific level to the least.
+         */
+        final IGenericEvent<?>[] subscribers;
+        
+        Resolution(String[] levels, int version, IGenericEvent<?>[] subscribers) {
+            this.levels = levels;
+            this.version = version;
+            this.subscribers = subscribers;
+        }
+    }
+    
+    private static final IGenericEvent<?>[] NO_SUBSCRIBERS = new IGenericEvent<?>[0];
+    
+    private final ConcurrentMap<String, List<IGenericEvent<T>>> subscriptions = new ConcurrentHashMap<>();
+    
+    private final ConcurrentMap<String, Resolution> resolutions = new ConcurrentHashMap<>();
+    
+    private final AtomicInteger version = new AtomicInteger();
     
     /**
      * Adds a subscriber to the specified event.
@@ -37,10 +86,24 @@ import org.apache.commons.logging.LogFactory;
      * @param subscriber Subscriber to add.
      * @return Count of subscribers after the operation.
      */
-    public synchronized int addSubscriber(String eventName, IGenericEvent<T> subscriber) {
-        List<IGenericEvent<T>> subscribers = getSubscribers(eventName, true);
-        subscribers.add(subscriber);
-        return subscribers.size();
+    public int addSubscriber(String eventName, IGenericEvent<T> subscriber) {
+        while (true) {
+            List<IGenericEvent<T>> oldList = subscriptions.get(eventName);
+            
+            if (oldList == null) {
+                if (subscriptions.putIfAbsent(eventName, Collections.singletonList(subscriber)) == null) {
+                    version.incrementAndGet();
+                    return 1;
+                }
+            } else {
+                List<IGenericEvent<T>> newList = copyOf(oldList, subscriber, -1);
+                
+                if (subscriptions.replace(eventName, oldList, newList)) {
+                    version.incrementAndGet();
+                    return newList.size();
+                }
+            }
+        }
     }
     
     /**
@@ -50,20 +113,34 @@ import org.apache.commons.logging.LogFactory;
      * @param subscriber Subscriber to remove.
      * @return Count of subscribers after the operation, or -1 no subscriber list existed.
      */
-    public synchronized int removeSubscriber(String eventName, IGenericEvent<T> subscriber) {
-        List<IGenericEvent<T>> subscribers = getSubscribers(eventName, false);
-        
-        if (subscribers != null) {
-            subscribers.remove(subscriber);
+    public int removeSubscriber(String eventName, IGenericEvent<T> subscriber) {
+        while (true) {
+            List<IGenericEvent<T>> oldList = subscriptions.get(eventName);
             
-            if (subscribers.isEmpty()) {
-                subscriptions.remove(eventName);
+            if (oldList == null) {
+                return -1;
             }
             
-            return subscribers.size();
+            int index = oldList.indexOf(subscriber);
+            
+            if (index < 0) {
+                return oldList.size();
+            }
+            
+            if (oldList.size() == 1) {
+                if (subscriptions.remove(eventName, oldList)) {
+                    version.incrementAndGet();
+                    return 0;
+                }
+            } else {
+                List<IGenericEvent<T>> newList = copyOf(oldList, null, index);
+                
+                if (subscriptions.replace(eventName, oldList, newList)) {
+                    version.incrementAndGet();
+                    return newList.size();
+                }
+            }
         }
-        
-        return -1;
     }
     
     /**
@@ -72,8 +149,8 @@ import org.apache.commons.logging.LogFactory;
      * @param eventName Name of the event.
      * @return True if subscribers exist.
      */
-    public synchronized boolean hasSubscribers(String eventName) {
-        return getSubscribers(eventName, false) != null;
+    public boolean hasSubscribers(String eventName) {
+        return subscriptions.containsKey(eventName);
     }
     
     /**
@@ -85,28 +162,22 @@ import org.apache.commons.logging.LogFactory;
      * @return True if a subscriber was found.
      */
     public boolean hasSubscribers(String eventName, boolean exact) {
-        while (!StringUtils.isEmpty(eventName)) {
-            if (hasSubscribers(eventName)) {
-                return true;
-            } else if (exact) {
-                return false;
-            } else {
-                eventName = stripLevel(eventName);
-            }
+        if (StringUtils.isEmpty(eventName)) {
+            return false;
         }
         
-        return false;
+        return exact ? hasSubscribers(eventName) : resolve(eventName).subscribers.length > 0;
     }
     
     /**
-     * Returns a thread-safe iterable for the subscriber list.
+     * Returns a thread-safe iterable for the subscriber list. The returned value is an immutable
+     * snapshot that will not reflect subsequent subscription changes.
      * 
      * @param eventName Name of the event.
      * @return Iterable for the subscriber list, or null if no list exists.
      */
-    public synchronized Iterable<IGenericEvent<T>> getSubscribers(String eventName) {
-        List<IGenericEvent<T>> subscribers = getSubscribers(eventName, false);
-        return subscribers == null ? null : new ArrayList<>(subscribers);
+    public Iterable<IGenericEvent<T>> getSubscribers(String eventName) {
+        return subscriptions.get(eventName);
     }
     
     /**
@@ -114,15 +185,17 @@ import org.apache.commons.logging.LogFactory;
      * 
      * @return List of events.
      */
-    public synchronized Iterable<String> getEvents() {
+    public Iterable<String> getEvents() {
         return new ArrayList<>(subscriptions.keySet());
     }
     
     /**
      * Removes all subscriptions.
      */
-    public synchronized void clear() {
+    public void clear() {
         subscriptions.clear();
+        resolutions.clear();
+        version.incrementAndGet();
     }
     
     /**
@@ -131,56 +204,107 @@ import org.apache.commons.logging.LogFactory;
      * @param eventName Name of the event.
      * @param eventData The associated event data.
      */
+    @SuppressWarnings("unchecked")
     public void invokeCallbacks(String eventName, T eventData) {
-        String name = eventName;
+        if (StringUtils.isEmpty(eventName)) {
+            return;
+        }
         
-        while (!StringUtils.isEmpty(name)) {
-            Iterable<IGenericEvent<T>> subscribers = getSubscribers(name);
-            
-            if (subscribers != null) {
-                for (IGenericEvent<T> subscriber : subscribers) {
-                    try {
-                        if (log.isDebugEnabled()) {
-                            log.debug(String.format("Firing local Event[name=%s,data=%s]", eventName, eventData));
-                        }
-                        subscriber.eventCallback(eventName, eventData);
-                    } catch (Throwable e) {
-                        log.error("Error during local event callback.", e);
-                    }
+        IGenericEvent<?>[] subscribers = resolve(eventName).subscribers;
+        
+        for (int i = 0; i < subscribers.length; i++) {
+            try {
+                if (log.isDebugEnabled()) {
+                    log.debug(String.format("Firing local Event[name=%s,data=%s]", eventName, eventData));
                 }
+                ((IGenericEvent<T>) subscribers[i]).eventCallback(eventName, eventData);
+            } catch (Throwable e) {
+                log.error("Error during local event callback.", e);
             }
+        }
+    }
+    
+    /**
+     * Returns the resolved subscribers for an event and all of its parent events. A cached
+     * resolution is returned if it is still current. Otherwise, a new resolution is computed,
+     * reusing the precomputed level names of any stale resolution.
+     * 
+     * @param eventName Name of the event.
+     * @return The resolution for the event (never null).
+     */
+    private Resolution resolve(String eventName) {
+        Resolution resolution = resolutions.get(eventName);
+        int currentVersion = version.get();
+        
+        if (resolution != null && resolution.version == currentVersion) {
+            return resolution;
+        }
+        
+        String[] levels = resolution == null ? getLevels(eventName) : resolution.levels;
+        List<IGenericEvent<T>> subscribers = new ArrayList<>();
+        
+        for (String level : levels) {
+            List<IGenericEvent<T>> list = subscriptions.get(level);
             
-            name = stripLevel(name);
+            if (list != null) {
+                subscribers.addAll(list);
+            }
+        }
+        
+        resolution = new Resolution(levels, currentVersion, subscribers.isEmpty() ? NO_SUBSCRIBERS
+                : subscribers.toArray(new IGenericEvent<?>[subscribers.size()]));
+        
+        if (resolutions.size() >= MAX_RESOLUTIONS) {
+            resolutions.clear();
         }
+        
+        resolutions.put(eventName, resolution);
+        return resolution;
     }
     
     /**
-     * Gets the list of subscribers associated with an event.
+     * Returns the hierarchical levels of an event name, from the most specific to the least.
      * 
      * @param eventName Name of the event.
-     * @param canCreate If true and the list does not exist, create it.
-     * @return The requested list; may be null.
+     * @return Array of level names.
      */
-    private List<IGenericEvent<T>> getSubscribers(String eventName, boolean canCreate) {
-        List<IGenericEvent<T>> subscribers = subscriptions.get(eventName);
+    private String[] getLevels(String eventName) {
+        List<String> levels = new ArrayList<>();
+        String name = eventName;
         
-        if (subscribers == null && canCreate) {
-            subscribers = new LinkedList<>();
-            subscriptions.put(eventName, subscribers);
+        while (!StringUtils.isEmpty(name)) {
+            levels.add(name);
+            name = EventUtil.stripLevel(name);
         }
         
-        return subscribers;
+        return levels.toArray(new String[levels.size()]);
     }
     
     /**
-     * Strips the lowest hierarchical level from the event type.
+     * Creates an immutable copy of a subscriber list, either appending or removing a subscriber.
      * 
-     * @param eventName Event type.
-     * @return Event type with the lowest level removed.
+     * @param list The list to copy.
+     * @param append If not null, this subscriber is appended to the copy.
+     * @param remove If not negative, the subscriber at this index is omitted from the copy.
+     * @return The new, immutable subscriber list.
      */
-    private String stripLevel(String eventName) {
-        int i = eventName.lastIndexOf('.');
-        return i > 1 ? eventName.substring(0, i) : "";
+    private List<IGenericEvent<T>> copyOf(List<IGenericEvent<T>> list, IGenericEvent<T> append, int remove) {
+        int size = list.size();
+        @SuppressWarnings("unchecked")
+        IGenericEvent<T>[] array = new IGenericEvent[append == null ? size - 1 : size + 1];
+        int i = 0;
+        
+        for (int j = 0; j < size; j++) {
+            if (j != remove) {
+                array[i++] = list.get(j);
+            }
+        }
+        
+        if (append != null) {
+            array[i] = append;
+        }
+        
+        return Collections.unmodifiableList(Arrays.asList(array));
     }
     
 }
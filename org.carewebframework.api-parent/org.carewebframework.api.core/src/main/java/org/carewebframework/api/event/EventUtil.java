@@ -70,6 +70,19 @@ public class EventUtil {
         }
     }
     
+    /**
+     * Strips the lowest hierarchical level from an event name (e.g., <code>A.B.C</code> becomes
+     * <code>A.B</code>).
+     * 
+     * @param eventName The event name.
+     * @return Event name with the lowest level removed, or an empty string if there is no parent
+     *         level.
+     */
+    public static String stripLevel(String eventName) {
+        int i = eventName.lastIndexOf('.');
+        return i > 1 ? eventName.substring(0, i) : "";
+    }
+    
     /**
      * Enforce static class.
      */
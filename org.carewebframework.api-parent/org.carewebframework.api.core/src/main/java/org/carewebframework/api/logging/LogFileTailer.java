@@ -9,12 +9,35 @@
  */
 package org.carewebframework.api.logging;
 
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.RandomAccessFile;
-import java.util.Date;
-import java.util.HashSet;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -31,7 +54,19 @@ import org.apache.commons.logging.LogFactory;
  * </p>
  * <p>
  * It is your job to interpret the results, build meaningful sets of data, etc. This tailer simply
- * fires notifications containing new file lines, one at a time.
+ * fires notifications containing new file lines. Listeners implementing
+ * {@link LogFileTailerBatchListener} receive all lines read in one pass as a batch; other listeners
+ * receive them one at a time.
+ * </p>
+ * <p>
+ * The tailer waits for file change notifications from the file system, checking the file at least
+ * once per interval in case a notification is missed. Where notifications are not supported (or
+ * polling is requested), it checks the file once per interval. The file is read through a channel
+ * in large blocks and decoded with the configured character set; only complete lines are
+ * delivered. If the file shrinks, it is assumed to have been truncated and is read again from the
+ * beginning. If the file is replaced (e.g. by log rotation), the remainder of the old file is read,
+ * its handle is closed, and the new file is read from the beginning.
+ * </p>
  * 
  * @author Steven Haines {@link "http://www.informit.com/guides/content.aspx?g=java&seqNum=226"}
  */
@@ -40,7 +75,7 @@ public class LogFileTailer implements Runnable {
     private static final Log log = LogFactory.getLog(LogFileTailer.class);
     
     /**
-     * How frequently to check for file changes; defaults to 5 seconds
+     * Maximum time to wait between checks for file changes; defaults to 5 seconds
      */
     private long interval = 5000;
     
@@ -72,7 +107,43 @@ public class LogFileTailer implements Runnable {
     /**
      * Set of listeners
      */
-    private final Set<LogFileTailerListener> listeners = new HashSet<>();
+    private final Set<LogFileTailerListener> listeners = new CopyOnWriteArraySet<>();
+    
+    /**
+     * Character set used to decode the file
+     */
+    private Charset charset = Charset.defaultCharset();
+    
+    /**
+     * Size of the read buffer in bytes
+     */
+    private int bufferSize = 64 * 1024;
+    
+    /**
+     * Maximum number of lines delivered in a single notification
+     */
+    private int batchSize = 1000;
+    
+    /**
+     * If true, do not use file change notifications
+     */
+    private boolean polling;
+    
+    // The following are used only by the tailing thread.
+    
+    private FileChannel channel;
+    
+    private Object fileKey;
+    
+    private CharsetDecoder decoder;
+    
+    private ByteBuffer bytes;
+    
+    private CharBuffer chars;
+    
+    private final StringBuilder partialLine = new StringBuilder();
+    
+    private List<String> batch = new ArrayList<>();
     
     /**
      * Creates a new file tailer that tails an existing file and checks the file for updates every
@@ -88,7 +159,7 @@ public class LogFileTailer implements Runnable {
      * Creates a new file tailer
      * 
      * @param file The file to tail
-     * @param interval How often to check for updates to the file (default = 5000ms)
+     * @param interval Maximum time between checks for updates to the file (default = 5000ms)
      * @param startAtBeginning Should the tailer simply tail or should it process the entire file
      *            and continue tailing (true) or simply start tailing from the end of the file
      * @throws FileNotFoundException When no file found
@@ -126,9 +197,25 @@ public class LogFileTailer implements Runnable {
      * @param line Data read from the <code>file</code>
      */
     protected void fireNewFileLine(String line) {
-        for (LogFileTailerListener fileTailerListener : this.listeners) {
-            LogFileTailerListener l = fileTailerListener;
-            l.newFileLine(line);
+        fireNewFileLines(Collections.singletonList(line));
+    }
+    
+    /**
+     * @param lines Lines read from the <code>file</code>
+     */
+    protected void fireNewFileLines(List<String> lines) {
+        for (LogFileTailerListener l : this.listeners) {
+            try {
+                if (l instanceof LogFileTailerBatchListener) {
+                    ((LogFileTailerBatchListener) l).newFileLines(lines);
+                } else {
+                    for (String line : lines) {
+                        l.newFileLine(line);
+                    }
+                }
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
         }
     }
     
@@ -183,62 +270,274 @@ public class LogFileTailer implements Runnable {
      */
     @Override
     public void run() {
-        // The file pointer keeps track of where we are in the file
-        long filePointer = 0;
-        long startTime = new Date().getTime();
-        
-        // Determine start point
-        if (this.startAtBeginning) {
-            filePointer = 0;
-        } else {
-            filePointer = this.file.length();
-        }
+        long startTime = System.currentTimeMillis();
+        WatchService watcher = null;
         
         try {
-            // Start tailing
+            open(!this.startAtBeginning);
+            watcher = createWatcher();
             this.tailing = true;
-            RandomAccessFile file = new RandomAccessFile(this.file, "r");
+            
             while (isTailing()) {
                 //check to see if maxActiveInterval has been exceeded
-                if (new Date().getTime() - startTime > this.maxActiveInterval) {
+                if (System.currentTimeMillis() - startTime > this.maxActiveInterval) {
                     if (log.isWarnEnabled()) {
                         log.warn("FileTailer exceeded maxActiveInterval: " + this.maxActiveInterval);
                     }
                     stopTailing();
                     fireMaxActiveIntervalExceeded();
+                    break;
                 }
+                
                 try {
-                    // Compare the length of the file to the file pointer
-                    long fileLength = this.file.length();
-                    if (fileLength < filePointer) {
-                        // file must have been rotated or deleted;
-                        // reopen the file and reset the file pointer
-                        file = new RandomAccessFile(this.file, "r");
-                        filePointer = 0;
-                    }
-                    
-                    if (fileLength > filePointer) {
-                        // There is data to read
-                        file.seek(filePointer);
-                        String line = file.readLine();
-                        while (line != null) {
-                            fireNewFileLine(line);
-                            line = file.readLine();
-                        }
-                        filePointer = file.getFilePointer();
-                    }
-                    
-                    // Sleep for the specified interval
-                    Thread.sleep(this.interval);
-                } catch (Exception e) {
+                    checkFile();
+                } catch (IOException e) {
                     log.error(e.getMessage(), e);
                 }
+                
+                if (isTailing()) {
+                    await(watcher);
+                }
             }
-            
-            // Close the file that we are tailing
-            file.close();
+        } catch (InterruptedException e) {
+            stopTailing();
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             log.error(e.getMessage(), e);
+        } finally {
+            close(this.channel);
+            close(watcher);
+            this.channel = null;
+        }
+    }
+    
+    /**
+     * Opens the file and prepares to read from it.
+     * 
+     * @param atEnd If true, start reading at the end of the file; otherwise, at the beginning.
+     * @throws IOException Error opening the file.
+     */
+    private void open(boolean atEnd) throws IOException {
+        Path path = this.file.toPath();
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileKey = getFileKey(path);
+        this.channel.position(atEnd ? this.channel.size() : 0);
+        this.decoder = this.charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocate(this.bufferSize);
+        this.chars = CharBuffer.allocate((int) (this.bufferSize * this.decoder.maxCharsPerByte()) + 1);
+        this.partialLine.setLength(0);
+    }
+    
+    /**
+     * Reads any new lines from the file, handling truncation and replacement, and delivers them to
+     * listeners.
+     * 
+     * @throws IOException Error reading the file.
+     */
+    private void checkFile() throws IOException {
+        read();
+        
+        if (this.channel.size() < this.channel.position()) {
+            // file has been truncated; start again from the beginning
+            log.debug("File was truncated: " + this.file);
+            this.channel.position(0);
+            this.bytes.clear();
+            this.decoder.reset();
+            this.partialLine.setLength(0);
+            read();
+        } else if (isReplaced()) {
+            // file has been rotated; finish the old file, then switch to the new one
+            log.debug("File was replaced: " + this.file);
+            read();
+            close(this.channel);
+            open(false);
+            read();
+        }
+        
+        deliver();
+    }
+    
+    /**
+     * Reads and decodes all data currently available from the file, splitting it into lines.
+     * 
+     * @throws IOException Error reading the file.
+     */
+    private void read() throws IOException {
+        while (this.channel.read(this.bytes) > 0) {
+            this.bytes.flip();
+            CoderResult result;
+            
+            do {
+                result = this.decoder.decode(this.bytes, this.chars, false);
+                this.chars.flip();
+                splitLines();
+                this.chars.clear();
+            } while (result.isOverflow());
+            
+            this.bytes.compact();
+        }
+    }
+    
+    /**
+     * Extracts complete lines from the character buffer, retaining any incomplete final line until
+     * the remainder is read. Both LF and CRLF line terminators are recognized.
+     */
+    private void splitLines() {
+        char[] buffer = this.chars.array();
+        int limit = this.chars.limit();
+        int start = 0;
+        
+        for (int i = 0; i < limit; i++) {
+            if (buffer[i] != '\n') {
+                continue;
+            }
+            
+            String line;
+            
+            if (this.partialLine.length() == 0) {
+                int end = i > start && buffer[i - 1] == '\r' ? i - 1 : i;
+                line = new String(buffer, start, end - start);
+            } else {
+                this.partialLine.append(buffer, start, i - start);
+                int length = this.partialLine.length();
+                
+                if (this.partialLine.charAt(length - 1) == '\r') {
+                    this.partialLine.setLength(length - 1);
+                }
+                
+                line = this.partialLine.toString();
+                this.partialLine.setLength(0);
+            }
+            
+            this.batch.add(line);
+            start = i + 1;
+            
+            if (this.batch.size() >= this.batchSize) {
+                deliver();
+            }
+        }
+        
+        this.partialLine.append(buffer, start, limit - start);
+    }
+    
+    /**
+     * Delivers any pending lines to listeners.
+     */
+    private void deliver() {
+        if (!this.batch.isEmpty()) {
+            List<String> lines = Collections.unmodifiableList(this.batch);
+            this.batch = new ArrayList<>();
+            fireNewFileLines(lines);
+        }
+    }
+    
+    /**
+     * Returns true if the file at the tailed path is no longer the file being read. Where the file
+     * system does not supply file keys, a file shorter than the current read position is assumed to
+     * be a replacement.
+     * 
+     * @return True if the file has been replaced.
+     * @throws IOException Error accessing the file.
+     */
+    private boolean isReplaced() throws IOException {
+        Path path = this.file.toPath();
+        Object key = getFileKey(path);
+        
+        if (key != null) {
+            return !key.equals(this.fileKey);
+        }
+        
+        try {
+            return this.fileKey == null && Files.size(path) < this.channel.position();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Returns the key that uniquely identifies a file.
+     * 
+     * @param path Path to the file.
+     * @return The file key, or null if the file does not exist or the file system does not supply
+     *         file keys.
+     */
+    private Object getFileKey(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Creates a watch service for the directory containing the file.
+     * 
+     * @return The watch service, or null if polling is to be used.
+     */
+    private WatchService createWatcher() {
+        if (this.polling) {
+            return null;
+        }
+        
+        Path directory = this.file.getAbsoluteFile().toPath().getParent();
+        WatchService watcher = null;
+        
+        try {
+            watcher = directory.getFileSystem().newWatchService();
+            directory.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            return watcher;
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("File change notification is not available, using polling: " + this.file, e);
+            close(watcher);
+            return null;
+        }
+    }
+    
+    /**
+     * Waits for the file to change or for the interval to elapse, whichever comes first.
+     * 
+     * @param watcher The watch service, or null if polling.
+     * @throws InterruptedException If the thread is interrupted.
+     */
+    private void await(WatchService watcher) throws InterruptedException {
+        if (watcher == null) {
+            Thread.sleep(this.interval);
+            return;
+        }
+        
+        Path fileName = this.file.toPath().getFileName();
+        long deadline = System.currentTimeMillis() + this.interval;
+        long remaining = this.interval;
+        
+        while (remaining > 0) {
+            WatchKey key = watcher.poll(remaining, TimeUnit.MILLISECONDS);
+            
+            if (key == null) {
+                return;
+            }
+            
+            boolean changed = false;
+            
+            for (WatchEvent<?> event : key.pollEvents()) {
+                changed |= event.kind() == OVERFLOW || fileName.equals(event.context());
+            }
+            
+            if (!key.reset() || changed) {
+                return;
+            }
+            
+            remaining = deadline - System.currentTimeMillis();
+        }
+    }
+    
+    private void close(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (IOException e) {
+            log.warn(e.getMessage(), e);
         }
     }
     
@@ -260,4 +559,78 @@ public class LogFileTailer implements Runnable {
         this.maxActiveInterval = maxActiveInterval;
     }
     
+    /**
+     * Returns the character set used to decode the file.
+     * 
+     * @return The character set (defaults to the platform default).
+     */
+    public Charset getCharset() {
+        return this.charset;
+    }
+    
+    /**
+     * Sets the character set used to decode the file. Takes effect the next time tailing starts.
+     * 
+     * @param charset The character set.
+     */
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+    
+    /**
+     * Returns the size of the read buffer.
+     * 
+     * @return The buffer size in bytes.
+     */
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+    
+    /**
+     * Sets the size of the read buffer. Takes effect the next time tailing starts.
+     * 
+     * @param bufferSize The buffer size in bytes.
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+    
+    /**
+     * Returns the maximum number of lines delivered to listeners in a single notification.
+     * 
+     * @return The batch size.
+     */
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+    
+    /**
+     * Sets the maximum number of lines delivered to listeners in a single notification.
+     * 
+     * @param batchSize The batch size.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Returns whether the tailer polls the file rather than waiting for file change notifications.
+     * 
+     * @return True if polling.
+     */
+    public boolean isPolling() {
+        return this.polling;
+    }
+    
+    /**
+     * Sets whether the tailer polls the file rather than waiting for file change notifications.
+     * Polling may be required for network file systems that do not report changes made by other
+     * hosts. Takes effect the next time tailing starts.
+     * 
+     * @param polling True to poll.
+     */
+    public void setPolling(boolean polling) {
+        this.polling = polling;
+    }
+    
 }
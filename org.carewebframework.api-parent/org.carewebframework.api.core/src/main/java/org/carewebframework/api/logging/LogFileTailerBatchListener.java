@@ -0,0 +1,28 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.logging;
+
+import java.util.List;
+
+/**
+ * Listener that receives new lines from a tailed file in batches rather than one at a time. A
+ * tailer notifies a listener implementing this interface only through
+ * {@link #newFileLines(List)}; {@link #newFileLine(String)} is not called.
+ */
+public interface LogFileTailerBatchListener extends LogFileTailerListener {
+    
+    /**
+     * New lines have been added to the tailed file.
+     * 
+     * @param lines The new lines, in the order in which they appear in the file. The list is
+     *            unmodifiable and may be retained by the listener.
+     */
+    public void newFileLines(List<String> lines);
+}
@@ -0,0 +1,202 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.carewebframework.api.query.IQueryResult.CompletionStatus;
+import org.carewebframework.api.thread.IAbortable;
+
+/**
+ * Base class for query services that retrieve results a page at a time. Subclasses implement
+ * {@link #fetchPage} and, optionally, {@link #getTotalHint}.
+ * <p>
+ * A synchronous fetch, or an asynchronous fetch with an ordinary callback, collects all pages into
+ * a single result. An asynchronous fetch with an {@link IQueryPageCallback} delivers each page to
+ * the callback as soon as it is retrieved, so no more than one page is held in memory. In that
+ * case, the result reported on completion contains no results, but its "count" metadata gives the
+ * number of results delivered.
+ *
+ * @param <T> Class of query result.
+ */
+public abstract class AbstractPagedQueryService<T> extends AbstractQueryService<T> {
+    
+    /**
+     * Streams the pages of a single asynchronous query to its page callback.
+     */
+    private class PagedQuery implements IQueryService<T>, IQueryCallback<T> {
+        
+        private final IQueryPageCallback<T> callback;
+        
+        private volatile IAbortable thread;
+        
+        private PagedQuery(IQueryPageCallback<T> callback) {
+            this.callback = callback;
+        }
+        
+        @Override
+        public boolean hasRequired(IQueryContext context) {
+            return AbstractPagedQueryService.this.hasRequired(context);
+        }
+        
+        @Override
+        public IQueryResult<T> fetch(IQueryContext context) {
+            long totalHint = getTotalHint(context);
+            int count = 0;
+            
+            while (true) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return QueryUtil.abortResult(null);
+                }
+                
+                List<T> page = fetchPage(context, count, pageSize);
+                int size = page == null ? 0 : page.size();
+                
+                if (size > 0 && !Thread.currentThread().isInterrupted()) {
+                    callback.onQueryPage(thread, page, totalHint);
+                    count += size;
+                }
+                
+                if (size < pageSize) {
+                    break;
+                }
+            }
+            
+            return QueryUtil.packageResult(null, CompletionStatus.COMPLETED,
+                Collections.<String, Object> singletonMap("count", count));
+        }
+        
+        /**
+         * Streams the pages to the page callback using the service's asynchronous strategy,
+         * reporting completion to the specified callback.
+         */
+        @Override
+        public IAbortable fetch(IQueryContext context, IQueryCallback<T> callback) {
+            return getStrategy().fetch(this, context, callback);
+        }
+        
+        @Override
+        public void onQueryStart(IAbortable thread) {
+            this.thread = thread;
+            callback.onQueryStart(thread);
+        }
+        
+        @Override
+        public void onQueryFinish(IAbortable thread, IQueryResult<T> result) {
+            callback.onQueryFinish(thread, result);
+        }
+        
+    }
+    
+    private int pageSize = 100;
+    
+    /**
+     * Create the query service using the default async query strategy.
+     */
+    public AbstractPagedQueryService() {
+        super();
+    }
+    
+    /**
+     * Create the query service using the specified async query strategy.
+     * 
+     * @param strategy The async query strategy. If null, an asynchronous query operation is
+     *            simulated using a synchronous fetch invocation.
+     */
+    public AbstractPagedQueryService(IAsyncQueryStrategy<T> strategy) {
+        super(strategy);
+    }
+    
+    /**
+     * Fetches a single page of results.
+     *
+     * @param context The query context that supplies the query parameters.
+     * @param offset The zero-based index of the first result to return.
+     * @param limit The maximum number of results to return.
+     * @return The page of results. Fewer than the limit (or null) indicates there are no more.
+     */
+    protected abstract List<T> fetchPage(IQueryContext context, int offset, int limit);
+    
+    /**
+     * Returns an estimate of the total number of results a query will produce. Override this if
+     * the backend can supply a count cheaply.
+     *
+     * @param context The query context that supplies the query parameters.
+     * @return The estimated total, or -1 if unknown.
+     */
+    protected long getTotalHint(IQueryContext context) {
+        return -1;
+    }
+    
+    /**
+     * Fetches all pages, returning them as a single result.
+     */
+    @Override
+    public IQueryResult<T> fetch(IQueryContext context) {
+        long totalHint = getTotalHint(context);
+        List<T> results = new ArrayList<>(totalHint > 0 && totalHint < Integer.MAX_VALUE ? (int) totalHint : 10);
+        
+        while (true) {
+            if (Thread.currentThread().isInterrupted()) {
+                return QueryUtil.abortResult(null);
+            }
+            
+            List<T> page = fetchPage(context, results.size(), pageSize);
+            int size = page == null ? 0 : page.size();
+            
+            if (size > 0) {
+                results.addAll(page);
+            }
+            
+            if (size < pageSize) {
+                break;
+            }
+        }
+        
+        return QueryUtil.packageResult(results);
+    }
+    
+    /**
+     * If the callback is a page callback, results are delivered to it a page at a time.
+     * <p>
+     * {@inheritDoc}
+     */
+    @Override
+    public IAbortable fetch(IQueryContext context, IQueryCallback<T> callback) {
+        if (!(callback instanceof IQueryPageCallback)) {
+            return super.fetch(context, callback);
+        }
+        
+        context.reset();
+        PagedQuery query = new PagedQuery((IQueryPageCallback<T>) callback);
+        return getStrategy().fetch(query, context, query);
+    }
+    
+    /**
+     * Returns the maximum number of results retrieved at a time.
+     *
+     * @return The page size.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+    
+    /**
+     * Sets the maximum number of results retrieved at a time (default is 100).
+     *
+     * @param pageSize The page size.
+     */
+    public void setPageSize(int pageSize) {
+        this.pageSize = Math.max(1, pageSize);
+    }
+    
+}
@@ -16,7 +16,7 @@ import org.carewebframework.api.thread.IAbortable;
  * fetch modes. Asynchronous support is delegated to the specified asynchronous query strategy. In
  * the absence of an asynchronous query strategy, the asynchronous operation is performed
  * synchronously and the result reported immediately to the callback listener. The default strategy
- * is the ThreadedQueryStrategy, which will work for most implementations.
+ * is the PooledQueryStrategy, which will work for most implementations.
  *
  * @param <T> Class of query result.
  */
@@ -43,7 +43,7 @@ public abstract class AbstractQueryService<T> implements IQueryService<T> {
      * Create the query service using the default async query strategy.
      */
     public AbstractQueryService() {
-        this(new ThreadedQueryStrategy<T>());
+        this(new PooledQueryStrategy<T>());
     }
     
     /**
@@ -56,6 +56,15 @@ public abstract class AbstractQueryService<T> implements IQueryService<T> {
         this.strategy = strategy == null ? new NullAsyncQueryStrategy() : strategy;
     }
     
+    /**
+     * Returns the async query strategy.
+     * 
+     * @return The async query strategy.
+     */
+    protected IAsyncQueryStrategy<T> getStrategy() {
+        return strategy;
+    }
+    
     @Override
     public IAbortable fetch(IQueryContext context, IQueryCallback<T> callback) {
         context.reset();
@@ -0,0 +1,364 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.query;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.carewebframework.api.query.IQueryResult.CompletionStatus;
+
+/**
+ * Wraps a query service implementation to cache query results. Results are keyed on the parameters
+ * of the query context, so queries with equal parameters share a result. If several identical
+ * queries are issued while the first is still in progress, only the first is passed to the wrapped
+ * service and its result is shared with the others, unless that query was aborted, in which case
+ * the others are reissued. Only completed results are cached. Because results are shared, their
+ * result lists are unmodifiable.
+ * <p>
+ * Only query contexts derived from {@link QueryContext} expose their parameters, so queries using
+ * any other context bypass the cache. Asynchronous queries are run using the specified asynchronous
+ * query strategy and are cached like synchronous ones.
+ *
+ * @param <T> Class of query result.
+ */
+public class CachingQueryService<T> extends AbstractQueryService<T> {
+    
+    /**
+     * A cached query result and its expiration time.
+     */
+    private class CachedResult {
+        
+        private final IQueryResult<T> result;
+        
+        private final long expires;
+        
+        private CachedResult(IQueryResult<T> result) {
+            this.result = result;
+            this.expires = System.currentTimeMillis() + timeToLive;
+        }
+        
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expires;
+        }
+    }
+    
+    /**
+     * A query result whose result list is an unmodifiable view of the original's.
+     */
+    private static class SharedResult<T> implements IQueryResult<T> {
+        
+        private final IQueryResult<T> result;
+        
+        private final List<T> results;
+        
+        private SharedResult(IQueryResult<T> result) {
+            this.result = result;
+            List<T> list = result.getResults();
+            this.results = list == null ? null : Collections.unmodifiableList(list);
+        }
+        
+        @Override
+        public CompletionStatus getStatus() {
+            return result.getStatus();
+        }
+        
+        @Override
+        public List<T> getResults() {
+            return results;
+        }
+        
+        @Override
+        public Object getMetadata(String key) {
+            return result.getMetadata(key);
+        }
+        
+    }
+    
+    private final IQueryService<T> service;
+    
+    private final Map<Map<String, Object>, CachedResult> cache = new LinkedHashMap<Map<String, Object>, CachedResult>(
+            16, 0.75f, true) {
+        
+        private static final long serialVersionUID = 1L;
+        
+        @Override
+        protected boolean removeEldestEntry(Entry<Map<String, Object>, CachedResult> eldest) {
+            return size() > maxSize;
+        }
+        
+    };
+    
+    private final ConcurrentMap<Map<String, Object>, FutureTask<IQueryResult<T>>> inFlight = new ConcurrentHashMap<>();
+    
+    private final AtomicLong generation = new AtomicLong();
+    
+    private final AtomicLong hits = new AtomicLong();
+    
+    private final AtomicLong misses = new AtomicLong();
+    
+    private final AtomicLong coalesced = new AtomicLong();
+    
+    private long timeToLive = 60000;
+    
+    private int maxSize = 100;
+    
+    /**
+     * Create an instance using the specified query service and the default async query strategy.
+     *
+     * @param service The wrapped query service.
+     */
+    public CachingQueryService(IQueryService<T> service) {
+        super();
+        this.service = service;
+    }
+    
+    /**
+     * Create an instance using the specified query service and async query strategy.
+     *
+     * @param service The wrapped query service.
+     * @param strategy The async query strategy.
+     */
+    public CachingQueryService(IQueryService<T> service, IAsyncQueryStrategy<T> strategy) {
+        super(strategy);
+        this.service = service;
+    }
+    
+    @Override
+    public boolean hasRequired(IQueryContext context) {
+        return service.hasRequired(context);
+    }
+    
+    @Override
+    public IQueryResult<T> fetch(final IQueryContext context) {
+        Map<String, Object> key = getKey(context);
+        
+        if (key == null) {
+            return service.fetch(context);
+        }
+        
+        while (true) {
+            synchronized (cache) {
+                CachedResult cached = cache.get(key);
+                
+                if (cached != null) {
+                    if (!cached.isExpired()) {
+                        hits.incrementAndGet();
+                        return cached.result;
+                    }
+                    
+                    cache.remove(key);
+                }
+            }
+            
+            FutureTask<IQueryResult<T>> task = new FutureTask<>(new Callable<IQueryResult<T>>() {
+                
+                @Override
+                public IQueryResult<T> call() throws Exception {
+                    return new SharedResult<>(service.fetch(context));
+                }
+                
+            });
+            
+            FutureTask<IQueryResult<T>> pending = inFlight.putIfAbsent(key, task);
+            
+            if (pending != null) {
+                coalesced.incrementAndGet();
+                IQueryResult<T> result = getResult(pending);
+                
+                if (result.getStatus() != CompletionStatus.ABORTED || Thread.currentThread().isInterrupted()) {
+                    return result;
+                }
+                
+                inFlight.remove(key, pending);
+                continue; // The shared query was aborted, so reissue it.
+            }
+            
+            misses.incrementAndGet();
+            long gen = generation.get();
+            
+            try {
+                task.run();
+                IQueryResult<T> result = getResult(task);
+                
+                if (result.getStatus() == CompletionStatus.COMPLETED) {
+                    synchronized (cache) {
+                        if (gen == generation.get()) {
+                            cache.put(key, new CachedResult(result));
+                        }
+                    }
+                }
+                
+                return result;
+            } finally {
+                inFlight.remove(key, task);
+            }
+        }
+    }
+    
+    /**
+     * Waits for and returns the result of a query.
+     *
+     * @param task The query task.
+     * @return The query result.
+     */
+    private IQueryResult<T> getResult(FutureTask<IQueryResult<T>> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return QueryUtil.abortResult(null);
+        } catch (ExecutionException e) {
+            return QueryUtil.errorResult(e.getCause());
+        }
+    }
+    
+    /**
+     * Returns the cache key for a query context. This is a sorted copy of the context's non-null
+     * parameters.
+     *
+     * @param context The query context.
+     * @return The cache key, or null if the context does not expose its parameters.
+     */
+    private Map<String, Object> getKey(IQueryContext context) {
+        if (!(context instanceof QueryContext)) {
+            return null;
+        }
+        
+        Map<String, Object> key = new TreeMap<>();
+        
+        for (Entry<String, Object> entry : ((QueryContext) context).getParams().entrySet()) {
+            if (entry.getValue() != null) {
+                key.put(entry.getKey(), entry.getValue());
+            }
+        }
+        
+        return Collections.unmodifiableMap(key);
+    }
+    
+    /**
+     * Removes all cached results. Results of queries in progress will not be cached.
+     */
+    public void invalidate() {
+        synchronized (cache) {
+            generation.incrementAndGet();
+            cache.clear();
+            inFlight.clear();
+        }
+    }
+    
+    /**
+     * Removes the cached result for queries matching the specified context. Results of queries in
+     * progress will not be cached.
+     *
+     * @param context The query context.
+     */
+    public void invalidate(IQueryContext context) {
+        Map<String, Object> key = getKey(context);
+        
+        if (key != null) {
+            synchronized (cache) {
+                generation.incrementAndGet();
+                cache.remove(key);
+                inFlight.remove(key);
+            }
+        }
+    }
+    
+    /**
+     * Returns the time a result remains cached.
+     *
+     * @return Time to live in milliseconds.
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+    
+    /**
+     * Sets the time a result remains cached (default is 60000).
+     *
+     * @param timeToLive Time to live in milliseconds.
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+    
+    /**
+     * Returns the maximum number of cached results.
+     *
+     * @return The maximum cache size.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * Sets the maximum number of cached results (default is 100). When exceeded, the least recently
+     * used result is removed.
+     *
+     * @param maxSize The maximum cache size.
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+    
+    /**
+     * Returns the number of cached results.
+     *
+     * @return The cache size.
+     */
+    public int getSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+    
+    /**
+     * Returns the number of queries satisfied from the cache.
+     *
+     * @return The hit count.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+    
+    /**
+     * Returns the number of queries passed to the wrapped service.
+     *
+     * @return The miss count.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    /**
+     * Returns the number of queries that shared the result of an identical query in progress.
+     *
+     * @return The coalesced count.
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+    
+    @Override
+    public String toString() {
+        return "hits=" + hits + ", misses=" + misses + ", coalesced=" + coalesced + ", size=" + getSize();
+    }
+    
+}
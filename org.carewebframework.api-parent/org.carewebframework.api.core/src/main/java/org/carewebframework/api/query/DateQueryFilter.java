@@ -36,16 +36,52 @@ public class DateQueryFilter<T> extends AbstractQueryFilter<T> {
     
     private final IDateTypeExtractor<T> dateTypeExtractor;
     
+    private long lowerBound = Long.MIN_VALUE;
+    
+    private long upperBound = Long.MAX_VALUE;
+    
     public DateQueryFilter(IDateTypeExtractor<T> dateTypeExtractor) {
         this.dateTypeExtractor = dateTypeExtractor;
     }
     
     /**
-     * Filter result based on selected date range.
+     * Filter result based on selected date range. A result is included if the day on which its
+     * date falls is within the range, inclusive of both ends. If there is no date range, all
+     * results are included.
      */
     @Override
     public boolean include(T result) {
-        return getDateRange().inRange(DateUtil.stripTime(dateTypeExtractor.getDateByType(result, dateType)), true, true);
+        if (dateRange == null) {
+            return true;
+        }
+        
+        Date date = dateTypeExtractor.getDateByType(result, dateType);
+        
+        if (date == null) {
+            return false;
+        }
+        
+        long time = date.getTime();
+        return time >= lowerBound && time < upperBound;
+    }
+    
+    /**
+     * Converts the date range to bounds against which a result's date can be compared directly,
+     * without first stripping its time. The lower bound is the first midnight not before the start
+     * date. The upper bound (exclusive) is the midnight following the end date.
+     */
+    private void updateBounds() {
+        Date startDate = dateRange == null ? null : dateRange.getStartDate();
+        Date endDate = dateRange == null ? null : dateRange.getEndDate();
+        
+        if (startDate == null) {
+            lowerBound = Long.MIN_VALUE;
+        } else {
+            Date startDay = DateUtil.stripTime(startDate);
+            lowerBound = (startDay.equals(startDate) ? startDay : DateUtil.addDays(startDate, 1, true)).getTime();
+        }
+        
+        upperBound = endDate == null ? Long.MAX_VALUE : DateUtil.addDays(endDate, 1, true).getTime();
     }
     
     @Override
@@ -78,6 +114,7 @@ public class DateQueryFilter<T> extends AbstractQueryFilter<T> {
     public void setDateRange(DateRange dateRange) {
         if (this.dateRange != dateRange) {
             this.dateRange = dateRange == null ? null : new DateRange(dateRange);
+            updateBounds();
             notifyListeners();
         }
     }
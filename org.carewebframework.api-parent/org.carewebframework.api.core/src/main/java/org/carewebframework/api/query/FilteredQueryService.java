@@ -40,7 +40,34 @@ public class FilteredQueryService<T> implements IQueryService<T> {
         
         @Override
         public void onQueryFinish(IAbortable thread, IQueryResult<T> result) {
-            realCallback.onQueryFinish(thread, filteredResult(result));
+            realCallback.onQueryFinish(thread, filteredResult(result, true));
+        }
+        
+    }
+    
+    /**
+     * Intermediate callback that filters each page of data before invoking the real callback.
+     */
+    private class QueryPageCallback extends QueryCallback implements IQueryPageCallback<T> {
+        
+        private final IQueryPageCallback<T> realCallback;
+        
+        public QueryPageCallback(IQueryPageCallback<T> realCallback) {
+            super(realCallback);
+            this.realCallback = realCallback;
+        }
+        
+        /**
+         * Passes the filtered page to the real callback. Because filtering can only reduce the
+         * number of results, the total hint is passed on as an upper bound.
+         */
+        @Override
+        public void onQueryPage(IAbortable thread, List<T> results, long totalHint) {
+            List<T> filteredList = filters.filter(results, getVersion(results, true));
+            
+            if (!filteredList.isEmpty()) {
+                realCallback.onQueryPage(thread, filteredList, totalHint);
+            }
         }
         
     }
@@ -49,6 +76,10 @@ public class FilteredQueryService<T> implements IQueryService<T> {
     
     private final QueryFilterSet<T> filters;
     
+    private List<T> lastUnfiltered;
+    
+    private long version;
+    
     /**
      * Create an instance using the specified query service and filter set.
      * 
@@ -60,20 +91,52 @@ public class FilteredQueryService<T> implements IQueryService<T> {
         this.filters = filters;
     }
     
+    /**
+     * Returns the version of an unfiltered result list for use by the filter set. The version
+     * changes whenever a list is fetched, or when a list other than the last one is filtered.
+     * 
+     * @param unfilteredList The unfiltered result list.
+     * @param fetched True if the list was just fetched.
+     * @return Version of the list.
+     */
+    private synchronized long getVersion(List<T> unfilteredList, boolean fetched) {
+        if (fetched || unfilteredList != lastUnfiltered) {
+            lastUnfiltered = unfilteredList;
+            version++;
+        }
+        
+        return version;
+    }
+    
     /**
      * Repackages the query result as the filtered result with the unfiltered version stored in the
      * metadata under the "unfiltered" key.
      * 
      * @param unfilteredResult The unfiltered query result.
+     * @param fetched True if the result was just fetched.
      * @return The filtered query result.
      */
-    private IQueryResult<T> filteredResult(IQueryResult<T> unfilteredResult) {
+    private IQueryResult<T> filteredResult(IQueryResult<T> unfilteredResult, boolean fetched) {
         List<T> unfilteredList = unfilteredResult.getResults();
-        List<T> filteredList = unfilteredList == null ? null : filters.filter(unfilteredList);
+        List<T> filteredList = unfilteredList == null ? null
+                : filters.filter(unfilteredList, getVersion(unfilteredList, fetched));
         Map<String, Object> metadata = Collections.<String, Object> singletonMap("unfiltered", unfilteredResult);
         return QueryUtil.packageResult(filteredList, unfilteredResult.getStatus(), metadata);
     }
     
+    /**
+     * Reapplies the filters to a previously fetched result (e.g., after filter criteria have
+     * changed). If this is the most recently fetched result, only those filters that have changed
+     * since it was last filtered are reapplied, so its result list must not have been modified.
+     * 
+     * @param unfilteredResult The unfiltered query result (available as the "unfiltered" metadata
+     *            of a filtered result).
+     * @return The filtered query result.
+     */
+    public IQueryResult<T> refilter(IQueryResult<T> unfilteredResult) {
+        return filteredResult(unfilteredResult, false);
+    }
+    
     @Override
     public boolean hasRequired(IQueryContext context) {
         return service.hasRequired(context);
@@ -82,13 +145,14 @@ public class FilteredQueryService<T> implements IQueryService<T> {
     @Override
     public IQueryResult<T> fetch(IQueryContext context) {
         filters.updateContext(context);
-        return filteredResult(service.fetch(context));
+        return filteredResult(service.fetch(context), true);
     }
     
     @Override
     public IAbortable fetch(IQueryContext context, IQueryCallback<T> callback) {
         filters.updateContext(context);
-        return service.fetch(context, new QueryCallback(callback));
+        return service.fetch(context, callback instanceof IQueryPageCallback
+                ? new QueryPageCallback((IQueryPageCallback<T>) callback) : new QueryCallback(callback));
     }
     
 }
@@ -0,0 +1,41 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.query;
+
+import java.util.List;
+
+import org.carewebframework.api.thread.IAbortable;
+
+/**
+ * Callback interface used by an asynchronous query that wishes to receive results a page at a time
+ * as they become available, rather than all at once when the query finishes. Query services that
+ * support paging (see {@link AbstractPagedQueryService}) deliver every result through
+ * {@link #onQueryPage} and report only the outcome of the query to
+ * {@link #onQueryFinish(IAbortable, IQueryResult)}. Query services that do not support paging
+ * ignore this interface and report all results on completion, so implementations must handle
+ * results arriving either way.
+ *
+ * @param <T> Class of query result.
+ */
+public interface IQueryPageCallback<T> extends IQueryCallback<T> {
+    
+    /**
+     * Called when a page of results is available. This is called on the thread executing the
+     * query.
+     *
+     * @param thread The IAbortable instance associated with the asynchronous query. This may be
+     *            null (see {@link #onQueryStart(IAbortable)}).
+     * @param results The next page of results.
+     * @param totalHint An estimate of the total number of results the query will produce, or -1 if
+     *            unknown.
+     */
+    void onQueryPage(IAbortable thread, List<T> results, long totalHint);
+    
+}
@@ -0,0 +1,298 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.query;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.carewebframework.api.thread.IAbortable;
+import org.carewebframework.api.thread.ThreadUtil;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Implements a fetch strategy that runs queries on a bounded, shared executor. By default, this is
+ * the framework's task executor or, if that is not available, a pool shared by all instances of
+ * this strategy. Every query reports its outcome to the callback exactly once:
+ * <ul>
+ * <li>COMPLETED - The query ran to completion.</li>
+ * <li>ABORTED - The query was aborted, either explicitly or by being superseded by a subsequent
+ * query. The worker thread, if any, is interrupted and its eventual result discarded.</li>
+ * <li>ERROR - The query failed, timed out (the exception metadata will be a TimeoutException), or
+ * could not be scheduled.</li>
+ * </ul>
+ *
+ * @param <T> Class of query result.
+ */
+public class PooledQueryStrategy<T> implements IAsyncQueryStrategy<T> {
+    
+    private static final Log log = LogFactory.getLog(PooledQueryStrategy.class);
+    
+    private static ExecutorService defaultExecutor;
+    
+    private static ScheduledExecutorService defaultScheduler;
+    
+    private final ExecutorService executor;
+    
+    private final AtomicReference<Query> current = new AtomicReference<>();
+    
+    private long timeout;
+    
+    private boolean abortSuperseded;
+    
+    private class Query implements IAbortable, Runnable {
+        
+        private final IQueryService<T> service;
+        
+        private final IQueryContext context;
+        
+        private final IQueryCallback<T> callback;
+        
+        private final AtomicBoolean finished = new AtomicBoolean();
+        
+        private volatile ExecutorService pool;
+        
+        private volatile Future<?> future;
+        
+        private volatile ScheduledFuture<?> timer;
+        
+        private Query(IQueryService<T> service, IQueryContext context, IQueryCallback<T> callback) {
+            this.service = service;
+            this.context = context;
+            this.callback = callback;
+        }
+        
+        @Override
+        public void run() {
+            if (finished.get()) {
+                return;
+            }
+            
+            IQueryResult<T> result;
+            
+            try {
+                result = service.fetch(context);
+            } catch (Throwable t) {
+                result = QueryUtil.<T> errorResult(t);
+            }
+            
+            finish(result, false);
+        }
+        
+        @Override
+        public void abort() {
+            abort(null);
+        }
+        
+        private void abort(String reason) {
+            finish(QueryUtil.<T> abortResult(reason), true);
+        }
+        
+        private void timeout() {
+            finish(QueryUtil.<T> errorResult(new TimeoutException("Query did not complete within " + timeout + " ms.")),
+                true);
+        }
+        
+        /**
+         * Reports the outcome of the query, unless it has already been reported.
+         *
+         * @param result The query result.
+         * @param cancel If true, the query is cancelled if it has not yet run, or interrupted if it
+         *            is running.
+         */
+        private void finish(IQueryResult<T> result, boolean cancel) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            
+            current.compareAndSet(this, null);
+            
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            
+            if (cancel && future != null) {
+                future.cancel(true);
+                
+                if (pool instanceof ThreadPoolExecutor) {
+                    ((ThreadPoolExecutor) pool).remove((Runnable) future);
+                }
+            }
+            
+            try {
+                callback.onQueryFinish(this, result);
+            } catch (Throwable t) {
+                log.error("Error reporting query result.", t);
+            }
+        }
+        
+    }
+    
+    /**
+     * Returns the pool used when no task executor is available, creating it if necessary.
+     *
+     * @return The default executor.
+     */
+    private static synchronized ExecutorService getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            int size = Math.max(2, Runtime.getRuntime().availableProcessors());
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("queryExecutor-");
+            threadFactory.setDaemon(true);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), threadFactory);
+            executor.allowCoreThreadTimeOut(true);
+            defaultExecutor = executor;
+        }
+        
+        return defaultExecutor;
+    }
+    
+    /**
+     * Returns the scheduler used to enforce query timeouts when no task scheduler is available,
+     * creating it if necessary.
+     *
+     * @return The default scheduler.
+     */
+    private static synchronized ScheduledExecutorService getDefaultScheduler() {
+        if (defaultScheduler == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("queryTimer-");
+            threadFactory.setDaemon(true);
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+            scheduler.setRemoveOnCancelPolicy(true);
+            defaultScheduler = scheduler;
+        }
+        
+        return defaultScheduler;
+    }
+    
+    /**
+     * Creates a strategy that uses the framework's task executor if available, or a shared pool if
+     * not.
+     */
+    public PooledQueryStrategy() {
+        this(null);
+    }
+    
+    /**
+     * Creates a strategy that uses the specified executor.
+     *
+     * @param executor The executor. If null, the framework's task executor is used if available, or
+     *            a shared pool if not.
+     */
+    public PooledQueryStrategy(ExecutorService executor) {
+        this.executor = executor;
+    }
+    
+    /**
+     * Returns the time allowed for a query to complete.
+     *
+     * @return The timeout in milliseconds (0 means no timeout).
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+    
+    /**
+     * Sets the time allowed for each query to complete, measured from the time it is submitted
+     * (default is 0, meaning no timeout). A query that has not completed in time is cancelled and
+     * reported as an error.
+     *
+     * @param timeout The timeout in milliseconds.
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+    
+    /**
+     * Returns true if a new query aborts any query still in progress.
+     *
+     * @return True if superseded queries are aborted.
+     */
+    public boolean isAbortSuperseded() {
+        return abortSuperseded;
+    }
+    
+    /**
+     * If true, a new query aborts any query submitted earlier through this strategy that is still
+     * in progress (default is false). Only enable this if the strategy is not shared by unrelated
+     * callers, for example, when each list view has its own query service.
+     *
+     * @param abortSuperseded If true, superseded queries are aborted.
+     */
+    public void setAbortSuperseded(boolean abortSuperseded) {
+        this.abortSuperseded = abortSuperseded;
+    }
+    
+    @Override
+    public IAbortable fetch(IQueryService<T> service, IQueryContext context, IQueryCallback<T> callback) {
+        Query query = new Query(service, context, callback);
+        
+        if (abortSuperseded) {
+            Query previous = current.getAndSet(query);
+            
+            if (previous != null) {
+                previous.abort("Superseded by a subsequent query.");
+            }
+        }
+        
+        callback.onQueryStart(query);
+        
+        if (timeout > 0) {
+            ScheduledExecutorService scheduler = ThreadUtil.getTaskScheduler();
+            scheduler = scheduler == null ? getDefaultScheduler() : scheduler;
+            final Query timedQuery = query;
+            query.timer = scheduler.schedule(new Runnable() {
+                
+                @Override
+                public void run() {
+                    timedQuery.timeout();
+                }
+                
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+        
+        try {
+            query.pool = getExecutor();
+            query.future = query.pool.submit(query);
+        } catch (RejectedExecutionException e) {
+            query.finish(QueryUtil.<T> errorResult(e), false);
+        }
+        
+        return query;
+    }
+    
+    /**
+     * Returns the executor for running queries.
+     *
+     * @return The executor.
+     */
+    private ExecutorService getExecutor() {
+        if (executor != null) {
+            return executor;
+        }
+        
+        ExecutorService taskExecutor = ThreadUtil.getTaskExecutor();
+        return taskExecutor == null ? getDefaultExecutor() : taskExecutor;
+    }
+    
+}
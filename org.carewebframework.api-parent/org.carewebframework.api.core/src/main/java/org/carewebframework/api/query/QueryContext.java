@@ -9,6 +9,7 @@
  */
 package org.carewebframework.api.query;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -63,4 +64,13 @@ public class QueryContext implements IQueryContext {
         return params.get(name);
     }
     
+    /**
+     * Returns all parameters of this query context.
+     * 
+     * @return Unmodifiable view of the parameters.
+     */
+    public Map<String, Object> getParams() {
+        return Collections.unmodifiableMap(params);
+    }
+    
 }
@@ -10,13 +10,24 @@
 package org.carewebframework.api.query;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * Exposes a set of query filters as a single filter whose methods are invoked on each of the
  * members.
+ * <p>
+ * When the same result list is filtered repeatedly, as happens when a user adjusts filter settings
+ * over a cached query result, the caller may supply a version for the list to
+ * {@link #filter(List, long)}. The results rejected by each member filter are then remembered for
+ * that version, and only those filters that have signaled a change since the last call are
+ * reapplied. For this to work, member filters must notify their listeners whenever their criteria
+ * change, and the caller must change the version whenever the list is replaced or modified
+ * (including being sorted).
  *
  * @param <T> Class of query result.
  */
@@ -24,6 +35,12 @@ public class QueryFilterSet<T> extends AbstractQueryFilter<T> implements IQueryF
     
     private final Set<IQueryFilter<T>> filters = new HashSet<>();
     
+    private final Map<IQueryFilter<T>, BitSet> rejected = new HashMap<>();
+    
+    private long lastVersion;
+    
+    private int lastSize = -1;
+    
     /**
      * Add a data filter.
      * 
@@ -43,6 +60,11 @@ public class QueryFilterSet<T> extends AbstractQueryFilter<T> implements IQueryF
      */
     public boolean remove(IQueryFilter<T> filter) {
         filter.removeListener(this);
+        
+        synchronized (rejected) {
+            rejected.remove(filter);
+        }
+        
         return filters.remove(filter);
     }
     
@@ -73,6 +95,7 @@ public class QueryFilterSet<T> extends AbstractQueryFilter<T> implements IQueryF
      */
     @Override
     public boolean updateContext(IQueryContext context) {
+        invalidate();
         boolean result = false;
         
         for (IQueryFilter<T> filter : filters) {
@@ -83,7 +106,8 @@ public class QueryFilterSet<T> extends AbstractQueryFilter<T> implements IQueryF
     }
     
     /**
-     * Filters a list of results based on the member filters.
+     * Filters a list of results based on the member filters. Each result is tested against the
+     * member filters only until one rejects it.
      * 
      * @param results Result list to filter.
      * @return The filtered list. Note that if no results are filtered, the original list is
@@ -105,8 +129,112 @@ public class QueryFilterSet<T> extends AbstractQueryFilter<T> implements IQueryF
         return results.size() == include.size() ? results : include;
     }
     
+    /**
+     * Filters a version of a list of results based on the member filters. If the version and size
+     * match those of the previous call, only those member filters that have changed since are
+     * reapplied.
+     * 
+     * @param results Result list to filter.
+     * @param version Version of the result list. This must change whenever the list is replaced or
+     *            modified.
+     * @return The filtered list. Note that if no results are filtered, the original list is
+     *         returned.
+     */
+    public List<T> filter(List<T> results, long version) {
+        if (filters.isEmpty() || results == null) {
+            return results;
+        }
+        
+        int size = results.size();
+        BitSet exclude = new BitSet(size);
+        
+        synchronized (rejected) {
+            if (version != lastVersion || size != lastSize) {
+                rejected.clear();
+                lastVersion = version;
+                lastSize = size;
+            }
+            
+            for (IQueryFilter<T> filter : filters) {
+                BitSet rejects = rejected.get(filter);
+                
+                if (rejects == null) {
+                    rejected.put(filter, rejects = apply(filter, results));
+                }
+                
+                exclude.or(rejects);
+            }
+        }
+        
+        return filter(results, exclude);
+    }
+    
+    /**
+     * Discards the results remembered for the last version filtered.
+     */
+    public void invalidate() {
+        synchronized (rejected) {
+            rejected.clear();
+            lastSize = -1;
+        }
+    }
+    
+    /**
+     * Returns the results not excluded.
+     * 
+     * @param results Result list to filter.
+     * @param exclude The positions of the results to exclude.
+     * @return The filtered list, or the original list if no results are excluded.
+     */
+    private List<T> filter(List<T> results, BitSet exclude) {
+        if (exclude.isEmpty()) {
+            return results;
+        }
+        
+        List<T> include = new ArrayList<>(results.size() - exclude.cardinality());
+        int i = 0;
+        
+        for (T result : results) {
+            if (!exclude.get(i++)) {
+                include.add(result);
+            }
+        }
+        
+        return include;
+    }
+    
+    /**
+     * Applies a single filter to a list of results.
+     * 
+     * @param filter The filter to apply.
+     * @param results Result list to filter.
+     * @return The positions of the results rejected by the filter.
+     */
+    private BitSet apply(IQueryFilter<T> filter, List<T> results) {
+        BitSet rejects = new BitSet(results.size());
+        int i = 0;
+        
+        for (T result : results) {
+            if (!filter.include(result)) {
+                rejects.set(i);
+            }
+            
+            i++;
+        }
+        
+        return rejects;
+    }
+    
     @Override
     public void onFilterChanged(IQueryFilter<T> filter) {
+        synchronized (rejected) {
+            if (filters.contains(filter)) {
+                rejected.remove(filter);
+            } else {
+                rejected.clear();
+            }
+        }
+        
         if (filter != this) {
             notifyListeners(filter);
         }
@@ -46,7 +46,7 @@ public class QueryUtil {
         
         @Override
         public Object getMetadata(String key) {
-            return metadata.get(key);
+            return metadata == null ? null : metadata.get(key);
         }
         
     }
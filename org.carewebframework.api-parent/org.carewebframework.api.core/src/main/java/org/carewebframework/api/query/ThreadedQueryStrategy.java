@@ -16,7 +16,10 @@ import org.carewebframework.api.thread.ThreadUtil;
  * Implements a fetch strategy based on a simple background thread.
  *
  * @param <T> Class of query result.
+ * @deprecated Use {@link PooledQueryStrategy}, which runs queries on a shared executor and
+ *             supports cancellation and timeouts.
  */
+@Deprecated
 public class ThreadedQueryStrategy<T> implements IAsyncQueryStrategy<T> {
     
     private class Query extends Thread implements IAbortable {
@@ -27,7 +30,7 @@ public class ThreadedQueryStrategy<T> implements IAsyncQueryStrategy<T> {
         
         private final IQueryCallback<T> callback;
         
-        private boolean abort;
+        private volatile boolean abort;
         
         private Query(IQueryService<T> service, IQueryContext context, IQueryCallback<T> callback) {
             this.service = service;
@@ -0,0 +1,68 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ContextItemsTest {
+    
+    @Test
+    public void testItems() throws Exception {
+        ContextItems contextItems = new ContextItems();
+        contextItems.addItems("Patient.Id.MRN=123\r\npatient.co.Name=Doe^John\n\nnovalue\r\nPatient.Id.Empty=\nPatientX.Id=9=9");
+        assertEquals("123", contextItems.getItem("PATIENT.ID.MRN"));
+        assertEquals("123", contextItems.getItem("patient.id", "mrn"));
+        assertEquals("", contextItems.getItem("Patient.Id.Empty"));
+        assertEquals("9=9", contextItems.getItem("patientx.id"));
+        assertNull(contextItems.getItem("novalue"));
+        assertEquals(4, contextItems.getItemNames().size());
+        assertTrue(contextItems.getItemNames().contains("patient.co.Name"));
+        
+        Map<String, String> suffixes = contextItems.getSuffixes("PATIENT");
+        assertEquals(3, suffixes.size());
+        assertEquals("123", suffixes.get("Id.MRN"));
+        assertEquals("Doe^John", suffixes.get("co.Name"));
+        assertEquals(2, contextItems.getSuffixes("patient.id.").size());
+        assertTrue(contextItems.containsSubject("PatientX"));
+        assertFalse(contextItems.containsSubject("Patient.Id.MRN"));
+        
+        contextItems.setItem("PATIENT.ID.MRN", "456");
+        assertTrue(contextItems.getItemNames().contains("Patient.Id.MRN"));
+        assertEquals("456", contextItems.getItem("patient.id.mrn"));
+        contextItems.removeSubject("patient");
+        assertFalse(contextItems.containsSubject("Patient"));
+        assertTrue(contextItems.containsSubject("PatientX"));
+        assertEquals(1, contextItems.getItemNames().size());
+    }
+    
+    @Test
+    public void testSuffixes() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        
+        for (int i = 0; i < 1000; i++) {
+            sb.append("Subject").append(i % 10).append(".Item.").append(i).append("=value").append(i).append("\r\n");
+        }
+        
+        ContextItems contextItems = new ContextItems();
+        contextItems.addItems(sb.toString());
+        Map<String, String> suffixes = contextItems.getSuffixes("SUBJECT1");
+        assertEquals(100, suffixes.size());
+        assertEquals("value991", suffixes.get("Item.991"));
+        assertTrue(contextItems.getSuffixes("Subject1.Item.99").isEmpty());
+    }
+    
+}
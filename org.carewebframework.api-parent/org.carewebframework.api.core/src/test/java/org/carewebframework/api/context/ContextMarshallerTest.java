@@ -0,0 +1,121 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.carewebframework.api.security.IDigitalSignature;
+
+import org.junit.Test;
+
+public class ContextMarshallerTest {
+    
+    private static final int ITEM_COUNT = 50;
+    
+    /**
+     * Signs content with its hash code.
+     */
+    private static class TestSigner implements IDigitalSignature {
+        
+        @Override
+        public String getKeyName() {
+            return "test";
+        }
+        
+        @Override
+        public String sign(String content) {
+            return Integer.toString(content.hashCode());
+        }
+        
+        @Override
+        public boolean verify(String base64Signature, String content, String timestamp, String keyName) {
+            return "test".equals(keyName) && timestamp != null && sign(content).equals(base64Signature);
+        }
+    }
+    
+    private final TestSigner signer = new TestSigner();
+    
+    private final ContextMarshaller marshaller;
+    
+    public ContextMarshallerTest() throws Exception {
+        marshaller = new ContextMarshaller(signer);
+    }
+    
+    private ContextItems createItems() {
+        ContextItems contextItems = new ContextItems();
+        
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            contextItems.setItem("Patient.Item." + i, "value" + i);
+        }
+        
+        return contextItems;
+    }
+    
+    @Test
+    public void testMarshaling() throws Exception {
+        ContextItems contextItems = createItems();
+        String marshaled = marshaller.marshal(contextItems);
+        StringBuilder sb = new StringBuilder();
+        marshaller.marshal(contextItems, sb);
+        assertEquals(marshaled.length(), contextItems.getSerializedLength());
+        assertEquals(ITEM_COUNT + 2, marshaller.unmarshal(sb.toString(), null).getItemNames().size());
+        ContextItems unmarshaled = marshaller.unmarshal(marshaled, marshaller.sign(marshaled));
+        assertEquals(contextItems.toString(), unmarshaled.toString());
+        assertEquals("test", unmarshaled.getItem("signature.key"));
+        
+        try {
+            marshaller.unmarshal(marshaled, "bad");
+            fail("Expected exception.");
+        } catch (MarshalException e) {}
+    }
+    
+    @Test
+    public void testConcurrentMarshaling() throws Exception {
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<>();
+        
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread() {
+                
+                @Override
+                public void run() {
+                    try {
+                        ContextItems contextItems = createItems();
+                        
+                        for (int j = 0; j < 1000; j++) {
+                            String marshaled = marshaller.marshal(contextItems);
+                            String timestamp = marshaller.unmarshal(marshaled, marshaller.sign(marshaled)).getItem(
+                                ContextMarshaller.PROPNAME_TIME);
+                            assertTrue(timestamp, timestamp.matches("\\d{14}\\S+"));
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            };
+            
+            threads.add(thread);
+            thread.start();
+        }
+        
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertTrue(errors.toString(), errors.isEmpty());
+    }
+    
+}
@@ -0,0 +1,180 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class ManagedContextTest {
+    
+    private static final int SUBSCRIBER_COUNT = 5;
+    
+    private static final long DELAY = 200;
+    
+    public interface ITestContextEvent extends IContextEvent {};
+    
+    private static class TestContext extends ManagedContext<String> {
+        
+        TestContext() {
+            super("test", ITestContextEvent.class);
+        }
+    }
+    
+    /**
+     * Responds to a survey after a delay.
+     */
+    private static class SlowSubscriber implements ITestContextEvent {
+        
+        final String response;
+        
+        int canceled;
+        
+        SlowSubscriber(String response) {
+            this.response = response;
+        }
+        
+        @Override
+        public String pending(boolean silent) {
+            try {
+                Thread.sleep(DELAY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            
+            return response;
+        }
+        
+        @Override
+        public void committed() {
+        }
+        
+        @Override
+        public void canceled() {
+            canceled++;
+        }
+    }
+    
+    /**
+     * Does not respond to a survey until released.
+     */
+    private static class HungSubscriber extends SlowSubscriber {
+        
+        final CountDownLatch release = new CountDownLatch(1);
+        
+        HungSubscriber() {
+            super(null);
+        }
+        
+        @Override
+        public String pending(boolean silent) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            
+            return null;
+        }
+    }
+    
+    @Test
+    public void testConcurrentSurvey() {
+        TestContext context = new TestContext();
+        
+        for (int i = 0; i < SUBSCRIBER_COUNT; i++) {
+            context.addSubscriber(new SlowSubscriber(null));
+        }
+        
+        assertEquals("", context.surveySubscribers(false));
+        context.setConcurrentSurvey(true);
+        assertEquals("", context.surveySubscribers(false));
+        assertEquals(1, context.getSurveyTimings().size());
+        SurveyTiming timing = context.getSurveyTimings().iterator().next();
+        assertEquals(SlowSubscriber.class.getName(), timing.getSubscriber());
+        assertEquals(SUBSCRIBER_COUNT * 2, timing.getCount());
+        assertTrue(timing.getMaxTime() >= DELAY);
+    }
+    
+    @Test
+    public void testConcurrentSurveyResponses() {
+        TestContext context = new TestContext();
+        SlowSubscriber subscriber1 = new SlowSubscriber(null);
+        SlowSubscriber subscriber2 = new SlowSubscriber("no");
+        SlowSubscriber subscriber3 = new SlowSubscriber("never");
+        context.addSubscriber(subscriber1);
+        context.addSubscriber(subscriber2);
+        context.addSubscriber(subscriber3);
+        assertEquals("no", context.surveySubscribers(false));
+        context.notifySubscribers(false, false);
+        assertEquals(1, subscriber1.canceled);
+        assertEquals(1, subscriber2.canceled);
+        assertEquals(0, subscriber3.canceled);
+        context.setConcurrentSurvey(true);
+        assertEquals("no", context.surveySubscribers(false));
+        context.notifySubscribers(false, false);
+        assertEquals(2, subscriber1.canceled);
+        assertEquals(2, subscriber2.canceled);
+        assertEquals(1, subscriber3.canceled);
+        assertEquals("no\r\nnever", context.surveySubscribers(true));
+        context.notifySubscribers(false, false);
+        assertEquals(2, subscriber3.canceled);
+    }
+    
+    @Test
+    public void testSurveyTimeout() {
+        TestContext context = new TestContext();
+        SlowSubscriber subscriber = new SlowSubscriber(null);
+        HungSubscriber hung = new HungSubscriber();
+        context.addSubscriber(subscriber);
+        context.addSubscriber(hung);
+        context.setConcurrentSurvey(true);
+        context.setSurveyTimeout(DELAY * 2);
+        String response = context.surveySubscribers(false);
+        hung.release.countDown();
+        assertTrue(response, response.contains(HungSubscriber.class.getName()));
+        context.notifySubscribers(false, false);
+        assertEquals(1, subscriber.canceled);
+        assertEquals(1, hung.canceled);
+        
+        for (SurveyTiming timing : context.getSurveyTimings()) {
+            assertEquals(timing.getSubscriber().equals(HungSubscriber.class.getName()) ? 1 : 0, timing.getTimeouts());
+        }
+    }
+    
+    @Test
+    public void testQueuedSurvey() {
+        TestContext context = new TestContext();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        
+        for (int i = 0; i < SUBSCRIBER_COUNT; i++) {
+            context.addSubscriber(new SlowSubscriber(null));
+        }
+        
+        context.setConcurrentSurvey(true);
+        context.setSurveyExecutor(executor);
+        context.setSurveyTimeout(DELAY * 2);
+        
+        try {
+            assertEquals("", context.surveySubscribers(false));
+            SurveyTiming timing = context.getSurveyTimings().iterator().next();
+            assertEquals(SUBSCRIBER_COUNT, timing.getCount());
+            assertEquals(0, timing.getTimeouts());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+}
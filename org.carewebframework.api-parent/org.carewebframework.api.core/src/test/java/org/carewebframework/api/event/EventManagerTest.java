@@ -0,0 +1,172 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.carewebframework.api.event.EventManager.OverflowPolicy;
+
+import org.junit.Test;
+
+public class EventManagerTest {
+    
+    /**
+     * Records received events, optionally blocking until released.
+     */
+    private static class Subscriber implements IGenericEvent<Object> {
+        
+        final List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        
+        final CountDownLatch release;
+        
+        final CountDownLatch started = new CountDownLatch(1);
+        
+        Subscriber(CountDownLatch release) {
+            this.release = release;
+        }
+        
+        @Override
+        public void eventCallback(String eventName, Object eventData) {
+            started.countDown();
+            
+            try {
+                if (release != null) {
+                    release.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            
+            received.add(eventData);
+        }
+        
+    }
+    
+    private EventManager createEventManager(int capacity, OverflowPolicy overflowPolicy) {
+        EventManager eventManager = new EventManager();
+        eventManager.setAsynchronous(true);
+        eventManager.setQueueCapacity(capacity);
+        eventManager.setOverflowPolicy(overflowPolicy);
+        return eventManager;
+    }
+    
+    private void awaitDelivery(EventManager eventManager, long count) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 5000;
+        
+        while (eventManager.getDispatchedCount() < count && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+    }
+    
+    @Test
+    public void testOrdering() throws Exception {
+        EventManager eventManager = createEventManager(100, OverflowPolicy.BLOCK);
+        Subscriber subscriber = new Subscriber(null);
+        eventManager.subscribe("TEST.ASYNC", subscriber);
+        List<Object> expected = new ArrayList<>();
+        
+        for (int i = 0; i < 1000; i++) {
+            eventManager.fireLocalEvent("TEST.ASYNC", i);
+            expected.add(i);
+        }
+        
+        awaitDelivery(eventManager, 1000);
+        assertEquals(expected, subscriber.received);
+        assertEquals(0, eventManager.getQueueDepth());
+        assertTrue(eventManager.getMaxDispatchLatency() >= eventManager.getAverageDispatchLatency());
+        eventManager.destroy();
+    }
+    
+    @Test
+    public void testOverflow() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        EventManager eventManager = createEventManager(2, OverflowPolicy.DROP_OLDEST);
+        Subscriber subscriber = new Subscriber(release);
+        eventManager.subscribe("TEST.ASYNC", subscriber);
+        eventManager.fireLocalEvent("TEST.ASYNC", 0);
+        assertTrue(subscriber.started.await(5, TimeUnit.SECONDS));
+        
+        for (int i = 1; i <= 4; i++) {
+            eventManager.fireLocalEvent("TEST.ASYNC", i);
+        }
+        
+        assertEquals(2, eventManager.getQueueDepth());
+        assertEquals(2, eventManager.getDroppedCount());
+        release.countDown();
+        awaitDelivery(eventManager, 3);
+        assertEquals(3, eventManager.getDispatchedCount());
+        assertEquals(0, subscriber.received.get(0));
+        assertEquals(3, subscriber.received.get(1));
+        assertEquals(4, subscriber.received.get(2));
+        eventManager.destroy();
+    }
+    
+    @Test
+    public void testOverflowFromSubscriber() throws Exception {
+        final EventManager eventManager = createEventManager(2, OverflowPolicy.BLOCK);
+        final List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        
+        eventManager.subscribe("TEST.ASYNC", new IGenericEvent<Object>() {
+            
+            @Override
+            public void eventCallback(String eventName, Object eventData) {
+                received.add(eventData);
+                
+                if ((Integer) eventData == 0) {
+                    for (int i = 1; i <= 4; i++) {
+                        eventManager.fireLocalEvent("TEST.ASYNC", i);
+                    }
+                }
+            }
+            
+        });
+        
+        eventManager.fireLocalEvent("TEST.ASYNC", 0);
+        awaitDelivery(eventManager, 3);
+        assertEquals(3, eventManager.getDispatchedCount());
+        assertEquals(2, eventManager.getDroppedCount());
+        assertEquals(0, received.get(0));
+        assertEquals(3, received.get(1));
+        assertEquals(4, received.get(2));
+        eventManager.destroy();
+    }
+    
+    @Test
+    public void testReject() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        EventManager eventManager = createEventManager(1, OverflowPolicy.REJECT);
+        Subscriber subscriber = new Subscriber(release);
+        eventManager.subscribe("TEST.ASYNC", subscriber);
+        eventManager.fireLocalEvent("TEST.ASYNC", 0);
+        assertTrue(subscriber.started.await(5, TimeUnit.SECONDS));
+        eventManager.fireLocalEvent("TEST.ASYNC", 1);
+        
+        try {
+            eventManager.fireLocalEvent("TEST.ASYNC", 2);
+            fail("Expected event to be rejected.");
+        } catch (RejectedExecutionException e) {
+            assertEquals(1, eventManager.getRejectedCount());
+        }
+        
+        release.countDown();
+        awaitDelivery(eventManager, 2);
+        assertEquals(2, subscriber.received.size());
+        eventManager.destroy();
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class EventSubscriptionsTest {
+    
+    private static class Subscriber implements IGenericEvent<Object> {
+        
+        private final AtomicInteger count = new AtomicInteger();
+        
+        @Override
+        public void eventCallback(String eventName, Object eventData) {
+            count.incrementAndGet();
+        }
+        
+    }
+    
+    @Test
+    public void testSubscriptions() {
+        EventSubscriptions<Object> subscriptions = new EventSubscriptions<>();
+        Subscriber subscriber1 = new Subscriber();
+        Subscriber subscriber2 = new Subscriber();
+        assertEquals(-1, subscriptions.removeSubscriber("TEST", subscriber1));
+        assertEquals(1, subscriptions.addSubscriber("TEST", subscriber1));
+        assertEquals(2, subscriptions.addSubscriber("TEST", subscriber2));
+        assertEquals(1, subscriptions.addSubscriber("TEST.CHILD", subscriber2));
+        assertTrue(subscriptions.hasSubscribers("TEST.CHILD.GRANDCHILD", false));
+        assertFalse(subscriptions.hasSubscribers("TEST.CHILD.GRANDCHILD", true));
+        subscriptions.invokeCallbacks("TEST.CHILD.GRANDCHILD", null);
+        assertEquals(1, subscriber1.count.get());
+        assertEquals(2, subscriber2.count.get());
+        Iterable<IGenericEvent<Object>> snapshot = subscriptions.getSubscribers("TEST");
+        assertEquals(1, subscriptions.removeSubscriber("TEST", subscriber1));
+        assertEquals(2, ((List<?>) snapshot).size());
+        assertEquals(0, subscriptions.removeSubscriber("TEST", subscriber2));
+        assertNull(subscriptions.getSubscribers("TEST"));
+        assertFalse(subscriptions.hasSubscribers("TEST"));
+        subscriptions.clear();
+        assertFalse(subscriptions.hasSubscribers("TEST.CHILD"));
+    }
+    
+    @Test
+    public void testHierarchy() {
+        EventSubscriptions<Object> subscriptions = new EventSubscriptions<>();
+        Subscriber root = new Subscriber();
+        Subscriber leaf = new Subscriber();
+        subscriptions.addSubscriber("AA", root);
+        subscriptions.invokeCallbacks("AA.BB.CC", null);
+        assertEquals(1, root.count.get());
+        subscriptions.addSubscriber("AA.BB.CC", leaf);
+        subscriptions.invokeCallbacks("AA.BB.CC", null);
+        subscriptions.invokeCallbacks("AA.BB", null);
+        assertEquals(3, root.count.get());
+        assertEquals(1, leaf.count.get());
+        subscriptions.removeSubscriber("AA", root);
+        subscriptions.invokeCallbacks("AA.BB.CC", null);
+        assertEquals(3, root.count.get());
+        assertEquals(2, leaf.count.get());
+        assertFalse(subscriptions.hasSubscribers("AA.BB", false));
+        assertTrue(subscriptions.hasSubscribers("AA.BB.CC.DD", false));
+    }
+    
+    @Test
+    public void testConcurrentModification() throws Exception {
+        final EventSubscriptions<Object> subscriptions = new EventSubscriptions<>();
+        final Subscriber subscriber = new Subscriber();
+        subscriptions.addSubscriber("TEST", subscriber);
+        Thread modifier = new Thread() {
+            
+            @Override
+            public void run() {
+                Subscriber other = new Subscriber();
+                
+                for (int i = 0; i < 1000; i++) {
+                    subscriptions.addSubscriber("TEST.EVENT", other);
+                    subscriptions.removeSubscriber("TEST.EVENT", other);
+                }
+            }
+        };
+        
+        modifier.start();
+        
+        for (int i = 0; i < 1000; i++) {
+            subscriptions.invokeCallbacks("TEST.EVENT", null);
+        }
+        
+        modifier.join();
+        assertEquals(1000, subscriber.count.get());
+        assertFalse(subscriptions.hasSubscribers("TEST.EVENT"));
+    }
+}
@@ -0,0 +1,274 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LogFileTailerTest {
+    
+    /**
+     * Write rate of the throughput test: 100 MB per minute.
+     */
+    private static final long BYTES_PER_SECOND = 100L * 1024 * 1024 / 60;
+    
+    private static final long WRITE_DURATION = 3000;
+    
+    private static final String PADDING = " héllo wörld, €100 ünïcode padding to make a typical log line length";
+    
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
+    /**
+     * Verifies that numbered lines arrive in sequence and counts batches.
+     */
+    private static class SequenceListener implements LogFileTailerBatchListener {
+        
+        volatile int received;
+        
+        volatile int batches;
+        
+        volatile String error;
+        
+        volatile boolean terminated;
+        
+        @Override
+        public void newFileLines(List<String> lines) {
+            batches++;
+            
+            for (String line : lines) {
+                String expected = createLine(received);
+                
+                if (error == null && !expected.equals(line)) {
+                    error = "Expected '" + expected + "' but received '" + line + "'";
+                }
+                
+                received++;
+            }
+        }
+        
+        @Override
+        public void newFileLine(String line) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public void tailerTerminated() {
+            terminated = true;
+        }
+    }
+    
+    /**
+     * Collects lines delivered one at a time.
+     */
+    private static class LineListener implements LogFileTailerListener {
+        
+        final List<String> lines = new ArrayList<>();
+        
+        volatile boolean terminated;
+        
+        @Override
+        public void newFileLine(String line) {
+            synchronized (lines) {
+                lines.add(line);
+            }
+        }
+        
+        @Override
+        public void tailerTerminated() {
+            terminated = true;
+        }
+        
+        List<String> getLines() {
+            synchronized (lines) {
+                return new ArrayList<>(lines);
+            }
+        }
+    }
+    
+    private static String createLine(int index) {
+        return String.format("%08d%s", index, PADDING);
+    }
+    
+    private Thread start(LogFileTailer tailer) throws InterruptedException {
+        Thread thread = new Thread(tailer, "tailer");
+        thread.start();
+        long timeout = System.currentTimeMillis() + 5000;
+        
+        while (!tailer.isTailing() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(5);
+        }
+        
+        assertTrue("Tailer did not start", tailer.isTailing());
+        return thread;
+    }
+    
+    private void stop(LogFileTailer tailer, Thread thread) throws InterruptedException {
+        tailer.stopTailing();
+        thread.join(5000);
+        assertFalse("Tailer did not stop", thread.isAlive());
+    }
+    
+    private void write(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    private void awaitLines(LineListener listener, List<String> expected) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000;
+        
+        while (listener.getLines().size() < expected.size() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        
+        assertEquals(expected, listener.getLines());
+    }
+    
+    @Test
+    public void testThroughputWithNotification() throws Exception {
+        testThroughput(false);
+    }
+    
+    @Test
+    public void testThroughputWithPolling() throws Exception {
+        testThroughput(true);
+    }
+    
+    /**
+     * Writes numbered lines, alternating LF and CRLF terminators, at 100 MB per minute and checks
+     * that every line is delivered intact and in order.
+     * 
+     * @param polling If true, use polling rather than file change notification.
+     * @throws Exception Unexpected exception.
+     */
+    private void testThroughput(boolean polling) throws Exception {
+        File file = folder.newFile("throughput.log");
+        LogFileTailer tailer = new LogFileTailer(file, polling ? 100 : 1000, false);
+        tailer.setCharset(StandardCharsets.UTF_8);
+        tailer.setPolling(polling);
+        SequenceListener listener = new SequenceListener();
+        tailer.addFileTailerListener(listener);
+        Thread thread = start(tailer);
+        int written = 0;
+        long bytesWritten = 0;
+        long start = System.currentTimeMillis();
+        
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            long elapsed;
+            
+            while ((elapsed = System.currentTimeMillis() - start) < WRITE_DURATION) {
+                StringBuilder sb = new StringBuilder();
+                
+                while (bytesWritten + sb.length() < BYTES_PER_SECOND * (elapsed + 10) / 1000) {
+                    sb.append(createLine(written)).append(written % 2 == 0 ? "\n" : "\r\n");
+                    written++;
+                }
+                
+                byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+                out.write(data);
+                out.flush();
+                bytesWritten += data.length;
+                Thread.sleep(10);
+            }
+        }
+        
+        long timeout = System.currentTimeMillis() + 10000;
+        
+        while (listener.received < written && listener.error == null && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        
+        stop(tailer, thread);
+        assertNull(listener.error, listener.error);
+        assertEquals(written, listener.received);
+        assertTrue(listener.batches < written);
+    }
+    
+    @Test
+    public void testRotationAndTruncation() throws Exception {
+        File file = folder.newFile("rotate.log");
+        File rotated = new File(file.getPath() + ".1");
+        List<String> expected = new ArrayList<>();
+        
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            write(out, "existing line\n");
+        }
+        
+        LogFileTailer tailer = new LogFileTailer(file, 20, true);
+        tailer.setPolling(true);
+        tailer.setBufferSize(16);
+        LineListener listener = new LineListener();
+        tailer.addFileTailerListener(listener);
+        Thread thread = start(tailer);
+        expected.add("existing line");
+        awaitLines(listener, expected);
+        
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            write(out, "a line longer than the read buffer\nincomplete ");
+            expected.add("a line longer than the read buffer");
+            awaitLines(listener, expected);
+            write(out, "line\n");
+            expected.add("incomplete line");
+            awaitLines(listener, expected);
+            assertTrue(file.renameTo(rotated));
+            write(out, "last line before rotation\n");
+            expected.add("last line before rotation");
+        }
+        
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            write(out, "first line after rotation\n");
+            expected.add("first line after rotation");
+            awaitLines(listener, expected);
+        }
+        
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+        }
+        
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            write(out, "truncated\n");
+            expected.add("truncated");
+            awaitLines(listener, expected);
+        }
+        
+        stop(tailer, thread);
+        assertFalse(listener.terminated);
+    }
+    
+    @Test
+    public void testMaxActiveInterval() throws Exception {
+        File file = folder.newFile("expire.log");
+        LogFileTailer tailer = new LogFileTailer(file, 20, false);
+        tailer.setMaxActiveInterval(100);
+        LineListener listener = new LineListener();
+        tailer.addFileTailerListener(listener);
+        Thread thread = start(tailer);
+        thread.join(5000);
+        assertFalse(tailer.isTailing());
+        assertTrue(listener.terminated);
+    }
+    
+}
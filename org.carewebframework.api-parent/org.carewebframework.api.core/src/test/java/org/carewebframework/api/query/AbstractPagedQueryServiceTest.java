@@ -0,0 +1,162 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.carewebframework.api.query.IQueryResult.CompletionStatus;
+import org.carewebframework.api.thread.IAbortable;
+
+import org.junit.Test;
+
+public class AbstractPagedQueryServiceTest {
+    
+    private static final int ROW_COUNT = 1000000;
+    
+    /**
+     * Synthetic service that generates the number of rows given by the "rows" parameter.
+     */
+    private static class TestService extends AbstractPagedQueryService<String> {
+        
+        TestService() {
+            super(new PooledQueryStrategy<String>());
+            setPageSize(500);
+        }
+        
+        @Override
+        public boolean hasRequired(IQueryContext context) {
+            return true;
+        }
+        
+        @Override
+        protected List<String> fetchPage(IQueryContext context, int offset, int limit) {
+            int end = Math.min(offset + limit, (Integer) context.getParam("rows"));
+            List<String> page = new ArrayList<>(Math.max(0, end - offset));
+            
+            for (int i = offset; i < end; i++) {
+                page.add("Row " + i);
+            }
+            
+            return page;
+        }
+        
+        @Override
+        protected long getTotalHint(IQueryContext context) {
+            return (Integer) context.getParam("rows");
+        }
+    }
+    
+    /**
+     * Records the number of rows received and the final result.
+     */
+    private static class Callback implements IQueryPageCallback<String> {
+        
+        final CountDownLatch done = new CountDownLatch(1);
+        
+        final AtomicLong rows = new AtomicLong();
+        
+        final AtomicLong totalHint = new AtomicLong(-2);
+        
+        volatile IQueryResult<String> result;
+        
+        @Override
+        public void onQueryStart(IAbortable thread) {
+        }
+        
+        @Override
+        public void onQueryPage(IAbortable thread, List<String> results, long totalHint) {
+            received(results);
+            this.totalHint.set(totalHint);
+        }
+        
+        @Override
+        public void onQueryFinish(IAbortable thread, IQueryResult<String> result) {
+            received(result.getResults());
+            this.result = result;
+            done.countDown();
+        }
+        
+        private void received(List<String> results) {
+            rows.addAndGet(results.size());
+        }
+        
+        void await() throws InterruptedException {
+            assertTrue(done.await(60, TimeUnit.SECONDS));
+        }
+    }
+    
+    private IQueryContext createContext(int rows) {
+        IQueryContext context = new QueryContext();
+        context.setParam("rows", rows);
+        return context;
+    }
+    
+    @Test
+    public void testPaging() throws Exception {
+        TestService service = new TestService();
+        assertEquals(1234, service.fetch(createContext(1234)).getResults().size());
+        assertEquals(1000, service.fetch(createContext(1000)).getResults().size());
+        
+        Callback callback = new Callback();
+        service.fetch(createContext(1234), callback);
+        callback.await();
+        assertEquals(1234, callback.rows.get());
+        assertEquals(1234, callback.totalHint.get());
+        assertEquals(1234, callback.result.getMetadata("count"));
+        assertEquals(CompletionStatus.COMPLETED, callback.result.getStatus());
+        
+        QueryFilterSet<String> filters = new QueryFilterSet<>();
+        filters.add(new AbstractQueryFilter<String>() {
+            
+            @Override
+            public boolean include(String result) {
+                return result.endsWith("0");
+            }
+            
+            @Override
+            public boolean updateContext(IQueryContext context) {
+                return false;
+            }
+            
+        });
+        
+        FilteredQueryService<String> filtered = new FilteredQueryService<>(service, filters);
+        callback = new Callback();
+        filtered.fetch(createContext(1234), callback);
+        callback.await();
+        assertEquals(124, callback.rows.get());
+        
+        callback = new Callback() {
+            
+            @Override
+            public void onQueryPage(IAbortable thread, List<String> results, long totalHint) {
+                super.onQueryPage(thread, results, totalHint);
+                
+                if (rows.get() >= 5000) {
+                    thread.abort();
+                }
+            }
+            
+        };
+        
+        service.fetch(createContext(ROW_COUNT), callback);
+        callback.await();
+        assertEquals(CompletionStatus.ABORTED, callback.result.getStatus());
+        assertTrue(callback.rows.get() < ROW_COUNT);
+    }
+    
+}
@@ -0,0 +1,247 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.carewebframework.api.query.IQueryResult.CompletionStatus;
+
+import org.junit.Test;
+
+public class CachingQueryServiceTest {
+    
+    private static final int THREAD_COUNT = 8;
+    
+    /**
+     * Backend service that counts fetches, optionally blocking until released.
+     */
+    private static class BackendService extends AbstractQueryService<String> {
+        
+        final AtomicInteger fetches = new AtomicInteger();
+        
+        volatile CountDownLatch release;
+        
+        BackendService() {
+            super(null);
+        }
+        
+        @Override
+        public boolean hasRequired(IQueryContext context) {
+            return true;
+        }
+        
+        @Override
+        public IQueryResult<String> fetch(IQueryContext context) {
+            int fetch = fetches.incrementAndGet();
+            
+            try {
+                if (release != null) {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            
+            if ("fail".equals(context.getParam("patient"))) {
+                throw new RuntimeException("Backend failure");
+            }
+            
+            if ("abort".equals(context.getParam("patient")) && fetch == 1) {
+                return QueryUtil.abortResult("Backend abort");
+            }
+            
+            return QueryUtil.packageResult(Collections.singletonList("docs for " + context.getParam("patient")));
+        }
+    }
+    
+    private QueryContext createContext(String patient) {
+        QueryContext context = new QueryContext();
+        context.setParam("patient", patient);
+        context.setParam("type", "documents");
+        context.setParam("unused", null);
+        return context;
+    }
+    
+    @Test
+    public void testSingleFlight() throws Exception {
+        final BackendService backend = new BackendService();
+        final CachingQueryService<String> service = new CachingQueryService<>(backend);
+        final List<IQueryResult<String>> results = Collections.synchronizedList(new ArrayList<IQueryResult<String>>());
+        final CountDownLatch started = new CountDownLatch(THREAD_COUNT);
+        List<Thread> threads = new ArrayList<>();
+        backend.release = new CountDownLatch(1);
+        
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            Thread thread = new Thread() {
+                
+                @Override
+                public void run() {
+                    started.countDown();
+                    results.add(service.fetch(createContext("123")));
+                }
+            };
+            
+            threads.add(thread);
+            thread.start();
+        }
+        
+        started.await();
+        
+        while (service.getMisses() + service.getCoalesced() < THREAD_COUNT) {
+            Thread.sleep(10);
+        }
+        
+        backend.release.countDown();
+        
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertEquals(1, backend.fetches.get());
+        assertEquals(1, service.getMisses());
+        assertEquals(THREAD_COUNT - 1, service.getCoalesced());
+        assertEquals(THREAD_COUNT, results.size());
+        
+        for (IQueryResult<String> result : results) {
+            assertSame(results.get(0), result);
+        }
+        
+        backend.release = null;
+        assertSame(results.get(0), service.fetch(createContext("123")));
+        assertEquals(1, service.getHits());
+        
+        try {
+            results.get(0).getResults().clear();
+            fail("Expected shared results to be unmodifiable.");
+        } catch (UnsupportedOperationException e) {
+            assertEquals(1, results.get(0).getResults().size());
+        }
+    }
+    
+    @Test
+    public void testAbortedLeader() throws Exception {
+        final BackendService backend = new BackendService();
+        final CachingQueryService<String> service = new CachingQueryService<>(backend);
+        final List<IQueryResult<String>> results = Collections.synchronizedList(new ArrayList<IQueryResult<String>>());
+        backend.release = new CountDownLatch(1);
+        
+        Thread leader = new Thread() {
+            
+            @Override
+            public void run() {
+                results.add(service.fetch(createContext("abort")));
+            }
+        };
+        
+        leader.start();
+        
+        while (backend.fetches.get() == 0) {
+            Thread.sleep(10);
+        }
+        
+        Thread waiter = new Thread() {
+            
+            @Override
+            public void run() {
+                results.add(service.fetch(createContext("abort")));
+            }
+        };
+        
+        waiter.start();
+        
+        while (service.getCoalesced() == 0) {
+            Thread.sleep(10);
+        }
+        
+        backend.release.countDown();
+        leader.join();
+        waiter.join();
+        assertEquals(2, backend.fetches.get());
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).getStatus() != results.get(1).getStatus());
+        
+        for (IQueryResult<String> result : results) {
+            assertTrue(result.getStatus() == CompletionStatus.ABORTED || result.getStatus() == CompletionStatus.COMPLETED);
+        }
+    }
+    
+    @Test
+    public void testCaching() throws Exception {
+        BackendService backend = new BackendService();
+        CachingQueryService<String> service = new CachingQueryService<>(backend);
+        service.setMaxSize(2);
+        service.fetch(createContext("1"));
+        service.fetch(createContext("2"));
+        service.fetch(createContext("1"));
+        service.fetch(createContext("3"));
+        assertEquals(2, service.getSize());
+        assertEquals(3, backend.fetches.get());
+        service.fetch(createContext("2"));
+        assertEquals(4, backend.fetches.get());
+        service.fetch(createContext("3"));
+        assertEquals(4, backend.fetches.get());
+        
+        service.invalidate(createContext("1"));
+        service.fetch(createContext("1"));
+        assertEquals(5, backend.fetches.get());
+        service.invalidate();
+        assertEquals(0, service.getSize());
+        
+        assertEquals(CompletionStatus.ERROR, service.fetch(createContext("fail")).getStatus());
+        service.fetch(createContext("fail"));
+        assertEquals(7, backend.fetches.get());
+        
+        service.setTimeToLive(100);
+        service.fetch(createContext("1"));
+        service.fetch(createContext("1"));
+        assertEquals(8, backend.fetches.get());
+        Thread.sleep(150);
+        service.fetch(createContext("1"));
+        assertEquals(9, backend.fetches.get());
+        
+        IQueryContext context = new IQueryContext() {
+            
+            @Override
+            public boolean setParam(String name, Object value) {
+                return false;
+            }
+            
+            @Override
+            public Object getParam(String name) {
+                return null;
+            }
+            
+            @Override
+            public boolean hasChanged() {
+                return false;
+            }
+            
+            @Override
+            public void reset() {
+            }
+            
+        };
+        
+        service.fetch(context);
+        service.fetch(context);
+        assertEquals(11, backend.fetches.get());
+    }
+    
+}
@@ -0,0 +1,178 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.carewebframework.api.query.IQueryResult.CompletionStatus;
+import org.carewebframework.api.thread.IAbortable;
+
+import org.junit.Test;
+
+public class PooledQueryStrategyTest {
+    
+    private static final int QUERY_COUNT = 1000;
+    
+    /**
+     * Query service that sleeps for the number of milliseconds given by the "delay" parameter.
+     */
+    private static class TestService extends AbstractQueryService<String> {
+        
+        final AtomicInteger interrupted = new AtomicInteger();
+        
+        final AtomicInteger running = new AtomicInteger();
+        
+        final AtomicInteger maxRunning = new AtomicInteger();
+        
+        TestService(IAsyncQueryStrategy<String> strategy) {
+            super(strategy);
+        }
+        
+        @Override
+        public boolean hasRequired(IQueryContext context) {
+            return true;
+        }
+        
+        @Override
+        public IQueryResult<String> fetch(IQueryContext context) {
+            int count = running.incrementAndGet();
+            
+            while (true) {
+                int max = maxRunning.get();
+                
+                if (count <= max || maxRunning.compareAndSet(max, count)) {
+                    break;
+                }
+            }
+            
+            try {
+                Thread.sleep((Long) context.getParam("delay"));
+                return QueryUtil.packageResult(Collections.singletonList("done"));
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+                throw new RuntimeException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+    
+    /**
+     * Records the outcome of each query.
+     */
+    private static class Callback implements IQueryCallback<String> {
+        
+        final Map<IAbortable, CompletionStatus> results = new ConcurrentHashMap<>();
+        
+        final AtomicInteger duplicates = new AtomicInteger();
+        
+        final CountDownLatch done;
+        
+        Callback(int count) {
+            done = new CountDownLatch(count);
+        }
+        
+        @Override
+        public void onQueryStart(IAbortable thread) {
+        }
+        
+        @Override
+        public void onQueryFinish(IAbortable thread, IQueryResult<String> result) {
+            if (results.put(thread, result.getStatus()) != null) {
+                duplicates.incrementAndGet();
+            }
+            
+            done.countDown();
+        }
+        
+        int count(CompletionStatus status) {
+            return Collections.frequency(results.values(), status);
+        }
+    }
+    
+    private IQueryContext createContext(long delay) {
+        IQueryContext context = new QueryContext();
+        context.setParam("delay", delay);
+        return context;
+    }
+    
+    @Test
+    public void testAbort() throws Exception {
+        TestService service = new TestService(new PooledQueryStrategy<String>());
+        Callback callback = new Callback(1);
+        IAbortable query = service.fetch(createContext(10000), callback);
+        Thread.sleep(200);
+        query.abort();
+        query.abort();
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+        assertEquals(CompletionStatus.ABORTED, callback.results.get(query));
+        Thread.sleep(200);
+        assertEquals(1, service.interrupted.get());
+        assertEquals(0, callback.duplicates.get());
+    }
+    
+    @Test
+    public void testTimeout() throws Exception {
+        PooledQueryStrategy<String> strategy = new PooledQueryStrategy<>();
+        strategy.setTimeout(200);
+        TestService service = new TestService(strategy);
+        final Object[] exception = new Object[1];
+        Callback callback = new Callback(2) {
+            
+            @Override
+            public void onQueryFinish(IAbortable thread, IQueryResult<String> result) {
+                if (result.getStatus() == CompletionStatus.ERROR) {
+                    exception[0] = result.getMetadata("exception");
+                }
+                
+                super.onQueryFinish(thread, result);
+            }
+        };
+        
+        IAbortable slow = service.fetch(createContext(10000), callback);
+        IAbortable fast = service.fetch(createContext(10), callback);
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+        assertEquals(CompletionStatus.ERROR, callback.results.get(slow));
+        assertEquals(CompletionStatus.COMPLETED, callback.results.get(fast));
+        assertTrue(exception[0] instanceof TimeoutException);
+    }
+    
+    @Test
+    public void testOverlappingQueries() throws Exception {
+        PooledQueryStrategy<String> strategy = new PooledQueryStrategy<>();
+        strategy.setAbortSuperseded(true);
+        strategy.setTimeout(10000);
+        TestService service = new TestService(strategy);
+        Callback callback = new Callback(QUERY_COUNT);
+        int poolSize = Math.max(2, Runtime.getRuntime().availableProcessors());
+        IAbortable last = null;
+        
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            last = service.fetch(createContext(i % 10 == 0 ? 2 : 0), callback);
+        }
+        
+        assertTrue(callback.done.await(30, TimeUnit.SECONDS));
+        assertEquals(QUERY_COUNT, callback.results.size());
+        assertEquals(0, callback.duplicates.get());
+        assertEquals(0, callback.count(CompletionStatus.ERROR));
+        assertEquals(CompletionStatus.COMPLETED, callback.results.get(last));
+        assertTrue(service.maxRunning.get() <= poolSize);
+    }
+    
+}
@@ -0,0 +1,190 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.api.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.carewebframework.api.query.DateQueryFilter.DateType;
+import org.carewebframework.api.query.DateQueryFilter.IDateTypeExtractor;
+import org.carewebframework.common.DateRange;
+import org.carewebframework.common.DateUtil;
+
+import org.junit.Test;
+
+public class QueryFilterSetTest {
+    
+    private static final int ROW_COUNT = 10000;
+    
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    
+    private static final IDateTypeExtractor<Date> extractor = new IDateTypeExtractor<Date>() {
+        
+        @Override
+        public Date getDateByType(Date result, DateType dateType) {
+            return result;
+        }
+        
+    };
+    
+    /**
+     * Filter that includes results whose day of month is not a multiple of its divisor.
+     */
+    private static class DivisorFilter extends AbstractQueryFilter<Date> {
+        
+        private int divisor;
+        
+        DivisorFilter(int divisor) {
+            this.divisor = divisor;
+        }
+        
+        void setDivisor(int divisor) {
+            this.divisor = divisor;
+            notifyListeners();
+        }
+        
+        @Override
+        public boolean include(Date result) {
+            return result == null || (result.getTime() / DAY) % divisor != 0;
+        }
+        
+        @Override
+        public boolean updateContext(IQueryContext context) {
+            return false;
+        }
+    }
+    
+    private final Date now = new Date();
+    
+    private List<Date> createRows() {
+        Random random = new Random(1);
+        List<Date> rows = new ArrayList<>(ROW_COUNT);
+        
+        for (int i = 0; i < ROW_COUNT; i++) {
+            rows.add(i % 1000 == 0 ? null : new Date(now.getTime() - (long) (random.nextDouble() * 365 * DAY)));
+        }
+        
+        return rows;
+    }
+    
+    private DateRange createRange(int startDays, int endDays) {
+        return new DateRange(new Date(now.getTime() - startDays * DAY - 12345), new Date(now.getTime() - endDays * DAY
+                - 54321));
+    }
+    
+    /**
+     * Filters the way the filter set did before results were tracked per filter.
+     */
+    private List<Date> legacyFilter(List<Date> rows, DateRange dateRange, DivisorFilter... others) {
+        List<Date> include = new ArrayList<>();
+        
+        for (Date row : rows) {
+            boolean included = dateRange.inRange(DateUtil.stripTime(row), true, true);
+            
+            for (DivisorFilter other : others) {
+                included &= other.include(row);
+            }
+            
+            if (included) {
+                include.add(row);
+            }
+        }
+        
+        return include;
+    }
+    
+    @Test
+    public void testFilter() {
+        List<Date> rows = createRows();
+        QueryFilterSet<Date> filters = new QueryFilterSet<>();
+        DateQueryFilter<Date> dateFilter = new DateQueryFilter<>(extractor);
+        DivisorFilter divisorFilter = new DivisorFilter(3);
+        filters.add(dateFilter);
+        assertSame(rows, filters.filter(rows, 1));
+        filters.add(divisorFilter);
+        
+        for (int i = 0; i < 20; i++) {
+            DateRange dateRange = createRange(300 - i * 10, 100 - i * 5);
+            dateFilter.setDateRange(dateRange);
+            
+            if (i % 5 == 0) {
+                divisorFilter.setDivisor(i / 5 + 2);
+            }
+            
+            assertEquals(legacyFilter(rows, dateRange, divisorFilter), filters.filter(rows, 1));
+        }
+        
+        filters.remove(divisorFilter);
+        assertEquals(legacyFilter(rows, dateFilter.getDateRange()), filters.filter(rows, 1));
+        List<Date> copy = new ArrayList<>(rows);
+        copy.remove(0);
+        assertEquals(legacyFilter(copy, dateFilter.getDateRange()), filters.filter(copy, 2));
+        assertEquals(legacyFilter(copy, dateFilter.getDateRange()), filters.filter(copy));
+    }
+    
+    @Test
+    public void testVersion() {
+        List<Date> rows = createRows();
+        QueryFilterSet<Date> filters = new QueryFilterSet<>();
+        DateQueryFilter<Date> dateFilter = new DateQueryFilter<>(extractor);
+        dateFilter.setDateRange(createRange(300, 100));
+        filters.add(dateFilter);
+        filters.add(new DivisorFilter(3));
+        filters.filter(rows, 1);
+        Collections.reverse(rows);
+        assertEquals(legacyFilter(rows, dateFilter.getDateRange(), new DivisorFilter(3)), filters.filter(rows, 2));
+        Collections.reverse(rows);
+        filters.updateContext(new QueryContext());
+        assertEquals(legacyFilter(rows, dateFilter.getDateRange(), new DivisorFilter(3)), filters.filter(rows, 2));
+    }
+    
+    @Test
+    public void testRefilter() {
+        final List<Date> rows = createRows();
+        QueryFilterSet<Date> filters = new QueryFilterSet<>();
+        DateQueryFilter<Date> dateFilter = new DateQueryFilter<>(extractor);
+        DivisorFilter divisorFilter = new DivisorFilter(3);
+        dateFilter.setDateRange(createRange(300, 100));
+        filters.add(dateFilter);
+        filters.add(divisorFilter);
+        FilteredQueryService<Date> service = new FilteredQueryService<>(new AbstractQueryService<Date>(null) {
+            
+            @Override
+            public boolean hasRequired(IQueryContext context) {
+                return true;
+            }
+            
+            @Override
+            public IQueryResult<Date> fetch(IQueryContext context) {
+                return QueryUtil.packageResult(rows);
+            }
+            
+        }, filters);
+        
+        IQueryResult<Date> result = service.fetch(new QueryContext());
+        assertEquals(legacyFilter(rows, dateFilter.getDateRange(), divisorFilter), result.getResults());
+        @SuppressWarnings("unchecked")
+        IQueryResult<Date> unfiltered = (IQueryResult<Date>) result.getMetadata("unfiltered");
+        divisorFilter.setDivisor(4);
+        result = service.refilter(unfiltered);
+        assertEquals(legacyFilter(rows, dateFilter.getDateRange(), divisorFilter), result.getResults());
+        dateFilter.setDateRange(createRange(200, 50));
+        result = service.refilter(unfiltered);
+        assertEquals(legacyFilter(rows, dateFilter.getDateRange(), divisorFilter), result.getResults());
+        assertEquals(legacyFilter(rows, dateFilter.getDateRange(), divisorFilter), filters.filter(rows));
+    }
+    
+}
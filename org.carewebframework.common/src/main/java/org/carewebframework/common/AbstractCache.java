@@ -9,74 +9,185 @@
  */
 package org.carewebframework.common;
 
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 /**
  * Abstract class for managing globally cached data. Subclasses must implement the fetch logic for
  * retrieving the data object into the cache.
+ * <p>
+ * By default, the cache is unbounded and entries never expire. Subclasses may limit the number of
+ * entries, or their total weight (see {@link #weigh}), in which case entries are evicted in
+ * approximately least recently used order: entries are considered for eviction in the order they
+ * were loaded, but an entry accessed since it was last considered is given a second chance. Entries
+ * may also expire a fixed time after they are loaded or last accessed, or be reloaded in the
+ * background a fixed time after they are loaded, the existing value being returned in the
+ * meantime.
+ * <p>
+ * When an entry is being loaded, other requests for the same key wait for the load to complete
+ * rather than loading the entry again. Requests for other keys are not blocked, and requests for
+ * cached entries acquire no lock.
+ * <p>
+ * Settings and statistics are exposed through {@link ICacheMXBean}, so a cache declared as a bean
+ * in a Spring context with an MBean exporter is registered with JMX for the lifetime of that
+ * context.
  * 
  * @param <KEY> The class of the indexing key.
  * @param <VALUE> The class of the cached item.
  */
-public abstract class AbstractCache<KEY, VALUE> implements Iterable<VALUE> {
+public abstract class AbstractCache<KEY, VALUE> implements Iterable<VALUE>, ICacheMXBean {
+    
+    private static final Log log = LogFactory.getLog(AbstractCache.class);
     
-    private static class CachedObject<VALUE> {
+    private static Executor defaultRefreshExecutor;
+    
+    private class CachedObject {
+        
+        private final KEY key;
+        
+        private volatile VALUE object;
+        
+        private volatile RuntimeException exception;
+        
+        private volatile ReentrantLock lock = new ReentrantLock();
+        
+        private final AtomicBoolean refreshing = new AtomicBoolean();
         
-        private VALUE object;
+        private volatile long written;
         
-        private RuntimeException exception;
+        private volatile long accessed;
         
-        private ReentrantLock lock = new ReentrantLock();
+        private volatile boolean referenced;
         
-        private CachedObject() {
+        private long weight;
+        
+        private CachedObject(KEY key) {
+            this.key = key;
             lock.lock();
         }
         
         void setObject(VALUE object) {
             this.object = object;
+            this.exception = null;
+            written = accessed = System.currentTimeMillis();
             removeLock();
         }
         
         void setException(RuntimeException exception) {
             this.exception = exception;
+            written = accessed = System.currentTimeMillis();
             removeLock();
         }
         
         VALUE getObject() {
+            ReentrantLock lock = this.lock;
+            
+            if (lock != null) {
+                lock.lock();
+                lock.unlock();
+            }
+            
             if (exception != null) {
                 throw exception;
             }
             
-            lock();
-            unlock();
             return object;
         }
         
-        private void removeLock() {
-            ReentrantLock lock = this.lock;
-            this.lock = null;
-            lock.unlock();
-        }
-        
-        private void lock() {
-            if (lock != null) {
-                lock.lock();
-            }
+        boolean isLoaded() {
+            return lock == null;
         }
         
-        private void unlock() {
+        private void removeLock() {
+            ReentrantLock lock = this.lock;
+            
             if (lock != null) {
+                this.lock = null;
                 lock.unlock();
             }
         }
     }
     
-    private final Map<KEY, CachedObject<VALUE>> map = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<KEY, CachedObject> map = new ConcurrentHashMap<>();
+    
+    private final Queue<CachedObject> evictionQueue = new ConcurrentLinkedQueue<>();
+    
+    private final Object evictionLock = new Object();
+    
+    private final AtomicLong hitCount = new AtomicLong();
+    
+    private final AtomicLong missCount = new AtomicLong();
+    
+    private final AtomicLong loadCount = new AtomicLong();
+    
+    private final AtomicLong loadFailureCount = new AtomicLong();
+    
+    private final AtomicLong loadTime = new AtomicLong();
+    
+    private final AtomicLong evictionCount = new AtomicLong();
+    
+    private final AtomicLong expirationCount = new AtomicLong();
+    
+    private long weight;
+    
+    private int staleCount;
+    
+    private volatile int maxSize = Integer.MAX_VALUE;
+    
+    private volatile long maxWeight = Long.MAX_VALUE;
+    
+    private volatile long expireAfterWrite;
+    
+    private volatile long expireAfterAccess;
+    
+    private volatile long refreshAfterWrite;
+    
+    private volatile Executor refreshExecutor;
+    
+    /**
+     * Returns the executor used for background reloads when none has been specified, creating it if
+     * necessary.
+     * 
+     * @return The default refresh executor.
+     */
+    private static synchronized Executor getDefaultRefreshExecutor() {
+        if (defaultRefreshExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        
+                        private final AtomicInteger count = new AtomicInteger();
+                        
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "cacheRefresh-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                        
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            defaultRefreshExecutor = executor;
+        }
+        
+        return defaultRefreshExecutor;
+    }
     
     /**
      * Logic to retrieve the data item from its primary store based on the provided key. The
@@ -88,6 +199,18 @@ public abstract class AbstractCache<KEY, VALUE> implements Iterable<VALUE> {
      */
     protected abstract VALUE fetch(KEY key);
     
+    /**
+     * Returns the weight of an entry, used to enforce the maximum weight. By default, every entry
+     * has a weight of 1. Override this to weigh entries by, for example, their approximate size.
+     * 
+     * @param key The key.
+     * @param value The value (may be null).
+     * @return The weight of the entry.
+     */
+    protected long weigh(KEY key, VALUE value) {
+        return 1;
+    }
+    
     /**
      * Get value for specified key. If not in cache, will call subclass's fetch method and load into
      * cache.
@@ -96,7 +219,34 @@ public abstract class AbstractCache<KEY, VALUE> implements Iterable<VALUE> {
      * @return The associated value.
      */
     public VALUE get(KEY key) {
-        return isCached(key) ? map.get(key).getObject() : internalGet(key);
+        long now = System.currentTimeMillis();
+        CachedObject cachedObject = getEntry(key, now);
+        
+        if (cachedObject == null) {
+            CachedObject newObject = new CachedObject(key);
+            cachedObject = map.putIfAbsent(key, newObject);
+            
+            if (cachedObject == null) {
+                cachedObject = newObject;
+                evictionQueue.add(cachedObject);
+                missCount.incrementAndGet();
+                load(key, cachedObject);
+                return cachedObject.getObject();
+            }
+        }
+        
+        hitCount.incrementAndGet();
+        cachedObject.accessed = now;
+        
+        if (!cachedObject.referenced) {
+            cachedObject.referenced = true;
+        }
+        
+        if (refreshAfterWrite > 0 && cachedObject.isLoaded() && now - cachedObject.written >= refreshAfterWrite) {
+            reload(key, cachedObject);
+        }
+        
+        return cachedObject.getObject();
     }
     
     /**
@@ -106,65 +256,256 @@ public abstract class AbstractCache<KEY, VALUE> implements Iterable<VALUE> {
      * @return True if associated item has been cached.
      */
     public boolean isCached(KEY key) {
-        return map.containsKey(key);
+        return getEntry(key, System.currentTimeMillis()) != null;
     }
     
     /**
-     * Internal, thread-safe method for loading result into cache.
+     * Returns the entry for a key, removing it if it has expired.
      * 
      * @param key The key.
-     * @return The associated value.
+     * @param now The current time.
+     * @return The entry, or null if none or expired.
      */
-    private VALUE internalGet(KEY key) {
-        CachedObject<VALUE> cachedObject;
-        boolean needsFetch;
+    private CachedObject getEntry(KEY key, long now) {
+        CachedObject cachedObject = map.get(key);
         
-        synchronized (map) {
-            needsFetch = !map.containsKey(key);
+        if (cachedObject != null && isExpired(cachedObject, now)) {
+            synchronized (evictionLock) {
+                if (remove(cachedObject)) {
+                    expirationCount.incrementAndGet();
+                    
+                    if (++staleCount > map.size()) {
+                        purgeEvictionQueue();
+                    }
+                }
+            }
             
-            if (needsFetch) {
-                cachedObject = new CachedObject<VALUE>();
-                map.put(key, cachedObject);
-            } else {
-                cachedObject = map.get(key);
+            return null;
+        }
+        
+        return cachedObject;
+    }
+    
+    /**
+     * Removes entries that are no longer cached from the eviction queue. Must be called while
+     * holding the eviction lock.
+     */
+    private void purgeEvictionQueue() {
+        Iterator<CachedObject> iterator = evictionQueue.iterator();
+        
+        while (iterator.hasNext()) {
+            CachedObject cachedObject = iterator.next();
+            
+            if (map.get(cachedObject.key) != cachedObject) {
+                iterator.remove();
             }
         }
         
-        if (needsFetch) {
-            try {
-                cachedObject.setObject(fetch(key));
-            } catch (Throwable e) {
-                RuntimeException e2 = MiscUtil.toUnchecked(e);
-                cachedObject.setException(e2);
-                throw e2;
+        staleCount = 0;
+    }
+    
+    /**
+     * Removes an entry if it is still cached, adjusting the total weight. Must be called while
+     * holding the eviction lock.
+     * 
+     * @param cachedObject The entry to remove.
+     * @return True if the entry was removed.
+     */
+    private boolean remove(CachedObject cachedObject) {
+        if (map.remove(cachedObject.key, cachedObject)) {
+            weight -= cachedObject.weight;
+            return true;
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Returns true if a loaded entry has expired.
+     * 
+     * @param cachedObject The entry.
+     * @param now The current time.
+     * @return True if the entry has expired.
+     */
+    private boolean isExpired(CachedObject cachedObject, long now) {
+        return cachedObject.isLoaded()
+                && ((expireAfterWrite > 0 && now - cachedObject.written >= expireAfterWrite) || (expireAfterAccess > 0 && now
+                        - cachedObject.accessed >= expireAfterAccess));
+    }
+    
+    /**
+     * Loads an entry, releasing any requests waiting for it.
+     * 
+     * @param key The key.
+     * @param cachedObject The entry to load.
+     */
+    private void load(KEY key, CachedObject cachedObject) {
+        long begin = System.nanoTime();
+        
+        try {
+            VALUE value = fetch(key);
+            recordLoad(begin, true);
+            updateWeight(key, cachedObject, weigh(key, value));
+            cachedObject.setObject(value);
+        } catch (Throwable e) {
+            recordLoad(begin, false);
+            RuntimeException e2 = MiscUtil.toUnchecked(e);
+            cachedObject.setException(e2);
+            throw e2;
+        }
+    }
+    
+    /**
+     * Reloads an entry in the background unless a reload is already in progress. The existing
+     * value remains available until the reload completes. If the reload fails, the existing value
+     * is kept.
+     * 
+     * @param key The key.
+     * @param cachedObject The entry to reload.
+     */
+    private void reload(final KEY key, final CachedObject cachedObject) {
+        if (!cachedObject.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        
+        Runnable task = new Runnable() {
+            
+            @Override
+            public void run() {
+                doReload(key, cachedObject);
             }
+            
+        };
+        
+        try {
+            Executor executor = refreshExecutor;
+            (executor == null ? getDefaultRefreshExecutor() : executor).execute(task);
+        } catch (RejectedExecutionException e) {
+            cachedObject.refreshing.set(false);
+            log.warn("Unable to schedule reload of cache entry for key [" + key + "].", e);
         }
+    }
+    
+    /**
+     * Re-fetches an entry that has been marked as refreshing. If the fetch fails, the existing
+     * value is retained.
+     * 
+     * @param key The key.
+     * @param cachedObject The cached entry.
+     */
+    private void doReload(KEY key, CachedObject cachedObject) {
+        long begin = System.nanoTime();
         
-        return cachedObject.getObject();
+        try {
+            VALUE value = fetch(key);
+            recordLoad(begin, true);
+            updateWeight(key, cachedObject, weigh(key, value));
+            cachedObject.setObject(value);
+        } catch (Throwable e) {
+            recordLoad(begin, false);
+            log.warn("Error reloading cache entry for key [" + key + "], retaining existing value.", e);
+        } finally {
+            cachedObject.refreshing.set(false);
+        }
     }
     
     /**
-     * Refresh the cache. Any existing entries in the cache will be re-fetched after it is cleared.
+     * Updates the load statistics.
+     * 
+     * @param begin The time the load began, in nanoseconds.
+     * @param success True if the load succeeded.
      */
-    public void refresh() {
-        synchronized (map) {
-            Set<KEY> contents = new HashSet<>(map.keySet());
-            map.clear();
+    private void recordLoad(long begin, boolean success) {
+        loadTime.addAndGet(System.nanoTime() - begin);
+        loadCount.incrementAndGet();
+        
+        if (!success) {
+            loadFailureCount.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Records the weight of a newly loaded value and evicts entries as needed to enforce the size
+     * and weight limits. Has no effect if the entry is no longer cached.
+     * 
+     * @param key The key.
+     * @param cachedObject The entry.
+     * @param newWeight The weight of the new value.
+     */
+    private void updateWeight(KEY key, CachedObject cachedObject, long newWeight) {
+        synchronized (evictionLock) {
+            if (map.get(key) == cachedObject) {
+                weight += newWeight - cachedObject.weight;
+                cachedObject.weight = newWeight;
+            }
+            
+            evict();
+        }
+    }
+    
+    /**
+     * Evicts entries until the size and weight limits are satisfied. Entries are taken in the
+     * order they were loaded, but an entry that has been accessed since it was last considered is
+     * passed over once and returned to the end of the queue. Must be called while holding the
+     * eviction lock.
+     */
+    private void evict() {
+        CachedObject cachedObject;
+        
+        while ((map.size() > maxSize || weight > maxWeight) && (cachedObject = evictionQueue.poll()) != null) {
+            if (map.get(cachedObject.key) != cachedObject) {
+                staleCount = Math.max(0, staleCount - 1); // Already removed.
+                continue;
+            }
             
-            for (KEY key : contents) {
-                internalGet(key);
+            if (cachedObject.referenced) {
+                cachedObject.referenced = false;
+                evictionQueue.add(cachedObject);
+            } else if (remove(cachedObject)) {
+                evictionCount.incrementAndGet();
             }
         }
     }
     
+    /**
+     * Refresh the cache. Any existing entries in the cache are re-fetched on the caller's thread
+     * before this method returns. Other callers receive an entry's existing value until it has
+     * been re-fetched. If re-fetching an entry fails, its
+     * existing value is retained. An entry already being reloaded in the background is not
+     * re-fetched again.
+     */
+    @Override
+    public void refresh() {
+        for (CachedObject cachedObject : new ArrayList<>(map.values())) {
+            if (cachedObject.isLoaded() && cachedObject.refreshing.compareAndSet(false, true)) {
+                doReload(cachedObject.key, cachedObject);
+            }
+        }
+    }
+    
+    /**
+     * Removes all entries. Requests waiting for an entry to be loaded are unaffected.
+     */
+    @Override
+    public void clear() {
+        synchronized (evictionLock) {
+            evictionQueue.clear();
+            map.clear();
+            weight = 0;
+            staleCount = 0;
+        }
+    }
+    
     /**
      * Iterate over value set.
      */
     @Override
     public Iterator<VALUE> iterator() {
+        final List<CachedObject> values = new ArrayList<>(map.values());
+        
         return new Iterator<VALUE>() {
             
-            Iterator<CachedObject<VALUE>> iterator = map.values().iterator();
+            Iterator<CachedObject> iterator = values.iterator();
             
             @Override
             public boolean hasNext() {
@@ -193,4 +534,138 @@ public abstract class AbstractCache<KEY, VALUE> implements Iterable<VALUE> {
         return map.size();
     }
     
+    /**
+     * Sets the executor used to reload entries in the background. If not set, a pool shared by all
+     * caches is used.
+     * 
+     * @param refreshExecutor The refresh executor.
+     */
+    public void setRefreshExecutor(Executor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+    }
+    
+    @Override
+    public int getSize() {
+        return size();
+    }
+    
+    @Override
+    public long getWeight() {
+        synchronized (evictionLock) {
+            return weight;
+        }
+    }
+    
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    @Override
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        
+        synchronized (evictionLock) {
+            evict();
+        }
+    }
+    
+    @Override
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+    
+    @Override
+    public void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+        
+        synchronized (evictionLock) {
+            evict();
+        }
+    }
+    
+    @Override
+    public long getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+    
+    @Override
+    public void setExpireAfterWrite(long expireAfterWrite) {
+        this.expireAfterWrite = expireAfterWrite;
+    }
+    
+    @Override
+    public long getExpireAfterAccess() {
+        return expireAfterAccess;
+    }
+    
+    @Override
+    public void setExpireAfterAccess(long expireAfterAccess) {
+        this.expireAfterAccess = expireAfterAccess;
+    }
+    
+    @Override
+    public long getRefreshAfterWrite() {
+        return refreshAfterWrite;
+    }
+    
+    @Override
+    public void setRefreshAfterWrite(long refreshAfterWrite) {
+        this.refreshAfterWrite = refreshAfterWrite;
+    }
+    
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+    
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+    
+    @Override
+    public double getHitRatio() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+    
+    @Override
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+    
+    @Override
+    public long getLoadFailureCount() {
+        return loadFailureCount.get();
+    }
+    
+    @Override
+    public double getAverageLoadTime() {
+        long loads = loadCount.get();
+        return loads == 0 ? 0 : loadTime.get() / 1000000.0 / loads;
+    }
+    
+    @Override
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+    
+    @Override
+    public long getExpirationCount() {
+        return expirationCount.get();
+    }
+    
+    @Override
+    public void resetStatistics() {
+        hitCount.set(0);
+        missCount.set(0);
+        loadCount.set(0);
+        loadFailureCount.set(0);
+        loadTime.set(0);
+        evictionCount.set(0);
+        expirationCount.set(0);
+    }
+    
 }
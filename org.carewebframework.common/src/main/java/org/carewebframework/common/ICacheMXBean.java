@@ -0,0 +1,176 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.common;
+
+/**
+ * Management interface for a cache, exposing its settings and statistics as an <a
+ * href="http://docs.oracle.com/javase/tutorial/jmx/mbeans/mxbeans.html">MX Bean</a>.
+ */
+public interface ICacheMXBean {
+    
+    /**
+     * Returns the number of entries.
+     * 
+     * @return Number of entries.
+     */
+    int getSize();
+    
+    /**
+     * Returns the total weight of all entries.
+     * 
+     * @return Total weight.
+     */
+    long getWeight();
+    
+    /**
+     * Returns the maximum number of entries.
+     * 
+     * @return Maximum number of entries.
+     */
+    int getMaxSize();
+    
+    /**
+     * Sets the maximum number of entries. When exceeded, the least recently used entries are
+     * evicted.
+     * 
+     * @param maxSize Maximum number of entries.
+     */
+    void setMaxSize(int maxSize);
+    
+    /**
+     * Returns the maximum total weight of all entries.
+     * 
+     * @return Maximum total weight.
+     */
+    long getMaxWeight();
+    
+    /**
+     * Sets the maximum total weight of all entries. When exceeded, the least recently used entries
+     * are evicted.
+     * 
+     * @param maxWeight Maximum total weight.
+     */
+    void setMaxWeight(long maxWeight);
+    
+    /**
+     * Returns the time after which an entry expires once loaded.
+     * 
+     * @return Time in milliseconds (0 means never).
+     */
+    long getExpireAfterWrite();
+    
+    /**
+     * Sets the time after which an entry expires once loaded.
+     * 
+     * @param expireAfterWrite Time in milliseconds (0 means never).
+     */
+    void setExpireAfterWrite(long expireAfterWrite);
+    
+    /**
+     * Returns the time after which an entry expires once last accessed.
+     * 
+     * @return Time in milliseconds (0 means never).
+     */
+    long getExpireAfterAccess();
+    
+    /**
+     * Sets the time after which an entry expires once last accessed.
+     * 
+     * @param expireAfterAccess Time in milliseconds (0 means never).
+     */
+    void setExpireAfterAccess(long expireAfterAccess);
+    
+    /**
+     * Returns the time after which an accessed entry is reloaded in the background.
+     * 
+     * @return Time in milliseconds (0 means never).
+     */
+    long getRefreshAfterWrite();
+    
+    /**
+     * Sets the time after which an accessed entry is reloaded in the background. The existing
+     * value continues to be returned until the reload completes.
+     * 
+     * @param refreshAfterWrite Time in milliseconds (0 means never).
+     */
+    void setRefreshAfterWrite(long refreshAfterWrite);
+    
+    /**
+     * Returns the number of requests satisfied by a cached entry.
+     * 
+     * @return The hit count.
+     */
+    long getHitCount();
+    
+    /**
+     * Returns the number of requests that required an entry to be loaded.
+     * 
+     * @return The miss count.
+     */
+    long getMissCount();
+    
+    /**
+     * Returns the fraction of requests satisfied by a cached entry.
+     * 
+     * @return The hit ratio, between 0 and 1.
+     */
+    double getHitRatio();
+    
+    /**
+     * Returns the number of loads, including background reloads.
+     * 
+     * @return The load count.
+     */
+    long getLoadCount();
+    
+    /**
+     * Returns the number of loads that failed.
+     * 
+     * @return The load failure count.
+     */
+    long getLoadFailureCount();
+    
+    /**
+     * Returns the average time taken by a load.
+     * 
+     * @return Average load time in milliseconds.
+     */
+    double getAverageLoadTime();
+    
+    /**
+     * Returns the number of entries evicted to enforce the size or weight limits.
+     * 
+     * @return The eviction count.
+     */
+    long getEvictionCount();
+    
+    /**
+     * Returns the number of entries removed because they expired.
+     * 
+     * @return The expiration count.
+     */
+    long getExpirationCount();
+    
+    /**
+     * Reloads all entries in the background.
+     */
+    void refresh();
+    
+    /**
+     * Removes all entries.
+     */
+    void clear();
+    
+    /**
+     * Resets all statistics to zero.
+     */
+    void resetStatistics();
+    
+}
@@ -9,10 +9,12 @@
  */
 package org.carewebframework.common;
 
+import java.lang.reflect.Constructor;
 import java.util.Map;
 
 /**
- * Factory for creating stopwatch instances.
+ * Factory for creating stopwatch instances. Instances are obtained from a registered provider,
+ * which may return a shared, inactive stopwatch when timing is disabled.
  */
 public class StopWatchFactory {
     
@@ -37,24 +39,83 @@ public class StopWatchFactory {
         void stop();
     }
     
-    private static StopWatchFactory factory;
+    /**
+     * Supplies stopwatch instances to the factory.
+     */
+    public interface IStopWatchProvider {
+        
+        /**
+         * Returns an uninitialized stopwatch instance.
+         * 
+         * @return An uninitialized stopwatch instance.
+         */
+        IStopWatch create();
+    }
     
-    private final Class<? extends IStopWatch> clazz;
+    /**
+     * Provider that creates a new instance of a stopwatch class for each request, using a
+     * constructor that is looked up once.
+     */
+    private static class ClassProvider implements IStopWatchProvider {
+        
+        private final Constructor<? extends IStopWatch> ctor;
+        
+        ClassProvider(Class<? extends IStopWatch> clazz) {
+            try {
+                ctor = clazz.getConstructor();
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Stopwatch class must have a public default constructor.", e);
+            }
+        }
+        
+        @Override
+        public IStopWatch create() {
+            try {
+                return ctor.newInstance();
+            } catch (Exception e) {
+                throw new RuntimeException("Could not create stopwatch instance.", e);
+            }
+        }
+    }
     
+    private static volatile StopWatchFactory factory;
+    
+    private final IStopWatchProvider provider;
+    
+    /**
+     * Registers a factory that creates instances of the specified stopwatch class.
+     * 
+     * @param clazz The stopwatch class. Must have a public default constructor.
+     * @return The registered factory.
+     */
     public static StopWatchFactory createFactory(Class<? extends IStopWatch> clazz) {
         if (clazz == null) {
             throw new IllegalArgumentException("Stopwatch class must not be null.");
         }
         
+        return createFactory(new ClassProvider(clazz));
+    }
+    
+    /**
+     * Registers a factory that obtains stopwatch instances from the specified provider.
+     * 
+     * @param provider The stopwatch provider.
+     * @return The registered factory.
+     */
+    public static synchronized StopWatchFactory createFactory(IStopWatchProvider provider) {
+        if (provider == null) {
+            throw new IllegalArgumentException("Stopwatch provider must not be null.");
+        }
+        
         if (factory != null) {
             throw new IllegalStateException("Stopwatch factory already registered.");
         }
         
-        return factory = new StopWatchFactory(clazz);
+        return factory = new StopWatchFactory(provider);
     }
     
-    private StopWatchFactory(Class<? extends IStopWatch> clazz) {
-        this.clazz = clazz;
+    private StopWatchFactory(IStopWatchProvider provider) {
+        this.provider = provider;
     }
     
     /**
@@ -73,15 +134,13 @@ public class StopWatchFactory {
      *         initialized.
      */
     public static IStopWatch create() {
+        StopWatchFactory factory = StopWatchFactory.factory;
+        
         if (factory == null) {
             throw new IllegalStateException("No stopwatch factory registered.");
         }
         
-        try {
-            return factory.clazz.newInstance();
-        } catch (Exception e) {
-            throw new RuntimeException("Could not create stopwatch instance.", e);
-        }
+        return factory.provider.create();
     }
     
     /**
@@ -0,0 +1,201 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class AbstractCacheTest {
+    
+    /**
+     * Cache whose values are the key followed by the number of times it has been fetched. Fetches
+     * can be made to block, and keys starting with "bad" fail.
+     */
+    private static class TestCache extends AbstractCache<String, String> {
+        
+        final AtomicInteger fetches = new AtomicInteger();
+        
+        volatile CountDownLatch release;
+        
+        @Override
+        protected String fetch(String key) {
+            int count = fetches.incrementAndGet();
+            
+            try {
+                if (release != null) {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            
+            if (key.startsWith("bad")) {
+                throw new IllegalArgumentException(key);
+            }
+            
+            return key + count;
+        }
+        
+        @Override
+        protected long weigh(String key, String value) {
+            return value.length();
+        }
+    }
+    
+    @Test
+    public void testConcurrentLoad() throws Exception {
+        final TestCache cache = new TestCache();
+        final List<Object> results = Collections.synchronizedList(new ArrayList<Object>());
+        List<Thread> threads = new ArrayList<>();
+        cache.release = new CountDownLatch(1);
+        
+        for (int i = 0; i < 8; i++) {
+            final String key = i % 2 == 0 ? "key" : "bad";
+            Thread thread = new Thread() {
+                
+                @Override
+                public void run() {
+                    try {
+                        results.add(cache.get(key));
+                    } catch (IllegalArgumentException e) {
+                        results.add(e);
+                    }
+                }
+            };
+            
+            threads.add(thread);
+            thread.start();
+        }
+        
+        while (cache.getHitCount() + cache.getMissCount() < 8) {
+            Thread.sleep(10);
+        }
+        
+        cache.release.countDown();
+        
+        for (Thread thread : threads) {
+            thread.join(5000);
+            assertFalse(thread.isAlive());
+        }
+        
+        assertEquals(2, cache.fetches.get());
+        assertEquals(8, results.size());
+        
+        for (Object result : results) {
+            assertTrue(result instanceof IllegalArgumentException || ((String) result).startsWith("key"));
+        }
+        
+        assertEquals(1, cache.getLoadFailureCount());
+    }
+    
+    @Test
+    public void testEviction() throws Exception {
+        TestCache cache = new TestCache();
+        cache.setMaxSize(2);
+        assertEquals("a1", cache.get("a"));
+        assertEquals("b2", cache.get("b"));
+        assertEquals("a1", cache.get("a"));
+        assertEquals("c3", cache.get("c"));
+        assertTrue(cache.isCached("a"));
+        assertFalse(cache.isCached("b"));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(4, cache.getWeight());
+        
+        cache.setMaxWeight(3);
+        assertEquals(1, cache.size());
+        assertEquals("long4", cache.get("long"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+        
+        cache.clear();
+        cache.setMaxSize(Integer.MAX_VALUE);
+        cache.setMaxWeight(Long.MAX_VALUE);
+        cache.setExpireAfterWrite(100);
+        assertEquals("a5", cache.get("a"));
+        assertEquals("a5", cache.get("a"));
+        Thread.sleep(150);
+        assertEquals("a6", cache.get("a"));
+        assertEquals(1, cache.getExpirationCount());
+        
+        cache.setExpireAfterWrite(0);
+        cache.setExpireAfterAccess(100);
+        
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(50);
+            assertEquals("a6", cache.get("a"));
+        }
+        
+        Thread.sleep(150);
+        assertFalse(cache.isCached("a"));
+    }
+    
+    @Test
+    public void testRefresh() throws Exception {
+        TestCache cache = new TestCache();
+        cache.setRefreshAfterWrite(100);
+        assertEquals("a1", cache.get("a"));
+        Thread.sleep(150);
+        cache.release = new CountDownLatch(1);
+        assertEquals("a1", cache.get("a"));
+        assertEquals("a1", cache.get("a"));
+        cache.release.countDown();
+        
+        while (cache.getLoadCount() < 2) {
+            Thread.sleep(10);
+        }
+        
+        Thread.sleep(50);
+        assertEquals("a2", cache.get("a"));
+        assertEquals(2, cache.fetches.get());
+        
+        cache.setRefreshAfterWrite(0);
+        cache.release = null;
+        cache.refresh();
+        assertEquals(3, cache.getLoadCount());
+        assertEquals("a3", cache.get("a"));
+        
+        try {
+            cache.get("bad");
+            fail("Expected exception.");
+        } catch (IllegalArgumentException e) {}
+    }
+    
+    @Test
+    public void testMBean() throws Exception {
+        TestCache cache = new TestCache();
+        cache.get("a");
+        cache.get("a");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName("org.carewebframework:type=Cache,name=test");
+        server.registerMBean(cache, objectName);
+        assertEquals(1L, server.getAttribute(objectName, "HitCount"));
+        assertEquals(1L, server.getAttribute(objectName, "MissCount"));
+        assertEquals(0.5, server.getAttribute(objectName, "HitRatio"));
+        server.invoke(objectName, "resetStatistics", null, null);
+        assertEquals(0L, cache.getHitCount());
+        server.unregisterMBean(objectName);
+    }
+    
+}
@@ -0,0 +1,180 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Exports performance metrics by appending them to a CSV file. When the file exceeds the maximum
+ * size, it is rolled over to a numbered backup (<code>name.1</code>, <code>name.2</code>, ...),
+ * retaining at most the configured number of backups. Each row holds the statistics for one key
+ * and phase; rows with no activity are omitted. Export is disabled if no directory is set.
+ */
+public class CsvMetricsExporter implements IMetricsExporter {
+    
+    /**
+     * Column headings.
+     */
+    public static final String HEADER = "timestamp,key,phase,window,count,mean,p50,p90,p99,p999,max";
+    
+    private String directory;
+    
+    private String fileName = "performance-metrics.csv";
+    
+    private long maxFileSize = 10 * 1024 * 1024;
+    
+    private int maxBackups = 5;
+    
+    @Override
+    public synchronized void export(long timestamp, List<LatencySummary> summaries) throws IOException {
+        File file = getFile();
+        
+        if (file == null) {
+            return;
+        }
+        
+        file.getParentFile().mkdirs();
+        
+        if (file.length() >= maxFileSize) {
+            roll(file);
+        }
+        
+        boolean newFile = file.length() == 0;
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        String time = dateFormat.format(new Date(timestamp));
+        
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true),
+                StandardCharsets.UTF_8))) {
+            if (newFile) {
+                writer.write(HEADER);
+                writer.write('\n');
+            }
+            
+            for (LatencySummary summary : summaries) {
+                if (summary.getCount() > 0) {
+                    writer.write(time);
+                    writer.write(',');
+                    writer.write(escape(summary.getEventType()));
+                    writer.write(',');
+                    writer.write(escape(summary.getPhase()));
+                    writer.write(String.format(Locale.US, ",%d,%d,%.1f,%d,%d,%d,%d,%d\n", summary.getWindowMinutes(),
+                        summary.getCount(), summary.getMean(), summary.getP50(), summary.getP90(), summary.getP99(),
+                        summary.getP999(), summary.getMax()));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Rolls the file over to the first backup, shifting existing backups and discarding the
+     * oldest.
+     * 
+     * @param file The current file.
+     * @throws IOException If the file cannot be renamed.
+     */
+    private void roll(File file) throws IOException {
+        File oldest = getBackup(file, maxBackups);
+        
+        if (oldest.exists() && !oldest.delete()) {
+            throw new IOException("Cannot delete " + oldest);
+        }
+        
+        for (int i = maxBackups - 1; i > 0; i--) {
+            File backup = getBackup(file, i);
+            
+            if (backup.exists() && !backup.renameTo(getBackup(file, i + 1))) {
+                throw new IOException("Cannot rename " + backup);
+            }
+        }
+        
+        if (maxBackups <= 0 ? !file.delete() : !file.renameTo(getBackup(file, 1))) {
+            throw new IOException("Cannot roll over " + file);
+        }
+    }
+    
+    private File getBackup(File file, int index) {
+        return new File(file.getPath() + "." + index);
+    }
+    
+    /**
+     * Quotes a value if it contains characters that are special to CSV.
+     * 
+     * @param value The value.
+     * @return The escaped value.
+     */
+    private String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        
+        return StringUtils.containsAny(value, ",\"\r\n") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+    
+    /**
+     * Returns the file to which metrics are written.
+     * 
+     * @return The file, or null if no directory is set.
+     */
+    public File getFile() {
+        return StringUtils.isEmpty(directory) ? null : new File(directory, fileName);
+    }
+    
+    public String getDirectory() {
+        return directory;
+    }
+    
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+    
+    public String getFileName() {
+        return fileName;
+    }
+    
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+    
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+    
+    public void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+    
+    public int getMaxBackups() {
+        return maxBackups;
+    }
+    
+    public void setMaxBackups(int maxBackups) {
+        this.maxBackups = maxBackups;
+    }
+    
+    @Override
+    public String toString() {
+        return "CSV metrics exporter [" + getFile() + "]";
+    }
+    
+}
@@ -25,6 +25,8 @@ public class EventInfo implements Serializable {
     
     private final String eventName;
     
+    private final String key;
+    
     private final String tag;
     
     private long start;
@@ -52,7 +54,21 @@ public class EventInfo implements Serializable {
      * @param requestId request id.
      */
     public EventInfo(Event event, String tag, String desktopId, String requestId) {
+        this(event, tag, desktopId, requestId, null);
+    }
+    
+    /**
+     * Create an EventInfo instance for the specified event, tag and normalized event key.
+     * 
+     * @param event The event to be timed.
+     * @param tag tag.
+     * @param desktopId desktop id.
+     * @param requestId request id.
+     * @param key The normalized event key (see {@link EventStatistics}).
+     */
+    public EventInfo(Event event, String tag, String desktopId, String requestId, String key) {
         this.eventName = event.getName();
+        this.key = key;
         this.tag = tag == null ? eventName : tag;
         this.desktopId = desktopId;
         this.requestId = requestId;
@@ -83,6 +99,24 @@ public class EventInfo implements Serializable {
         return elapsed;
     }
     
+    /**
+     * Returns true if the tracked event has completed.
+     * 
+     * @return True if the tracked event has completed.
+     */
+    public boolean isEnded() {
+        return elapsed >= 0;
+    }
+    
+    /**
+     * Returns the normalized event key.
+     * 
+     * @return The normalized event key (may be null).
+     */
+    public String getKey() {
+        return key;
+    }
+    
     /**
      * Returns the event name.
      * 
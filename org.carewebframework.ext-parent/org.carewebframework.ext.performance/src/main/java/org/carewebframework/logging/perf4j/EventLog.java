@@ -10,22 +10,30 @@
 package org.carewebframework.logging.perf4j;
 
 import java.io.Serializable;
-import java.util.LinkedHashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.logging.Log;
 
+import org.zkoss.zk.ui.Component;
 import org.zkoss.zk.ui.event.Event;
 
 /**
- * Map of logged events for a single request. Since using the Event as a key causes memory leaks
- * (see https://tools.carewebframework.org/jira/browse/CWI-1235), we internally use the event's
- * toString() method as a key.
+ * Log of events for a single request. Since holding references to events causes memory leaks (see
+ * https://tools.carewebframework.org/jira/browse/CWI-1235), an event is matched to its event info by
+ * event name and target uuid rather than by the event itself. The number of events logged per
+ * request is limited; events beyond the limit are ignored.
  */
 public class EventLog implements Serializable {
     
     private static final long serialVersionUID = 1L;
     
+    private static final int MAX_EVENTS = 500;
+    
     private final String tag;
     
     private final Log log;
@@ -36,7 +44,13 @@ public class EventLog implements Serializable {
     
     private EventInfo maxElapsedEventInfo;
     
-    private final Map<String, EventInfo> events = new LinkedHashMap<>();
+    private final List<EventInfo> events = new ArrayList<>();
+    
+    /**
+     * Event infos that have not yet completed, indexed by event name and target uuid. The most
+     * recent is at the head of each queue.
+     */
+    private final Map<String, Deque<EventInfo>> pending = new HashMap<>();
     
     /**
      * Create an event log for the specified tag and logger.
@@ -91,39 +105,73 @@ public class EventLog implements Serializable {
     }
     
     /**
-     * Returns the event info for the given key.
+     * Returns the most recent event info for the given event that has not yet completed.
      * 
      * @param event event.
-     * @return the event info for the given key.
+     * @return the event info for the given event, or null if none (e.g., if the event was not
+     *         logged because the limit was reached).
      */
     public EventInfo get(Event event) {
-        return events.get(event.toString());
+        Deque<EventInfo> eventInfos = pending.get(getKey(event));
+        
+        if (eventInfos == null) {
+            return null;
+        }
+        
+        while (!eventInfos.isEmpty() && eventInfos.peek().isEnded()) {
+            eventInfos.pop();
+        }
+        
+        return eventInfos.peek();
     }
     
     /**
-     * Maps an event to the corresponding event info.
+     * Maps an event to the corresponding event info. If the limit has been reached, the event is
+     * not logged.
      * 
-     * @param key key with which the specified value is to be associated
-     * @param value value to be associated with the specified key
-     * @return the previous value associated with <tt>key</tt>, or <tt>null</tt> if there was no
-     *         mapping for <tt>key</tt>. (A <tt>null</tt> return can also indicate that the map
-     *         previously associated <tt>null</tt> with <tt>key</tt>.)
+     * @param key the event being logged
+     * @param value the event info for the event
+     * @return the most recent event info for the same event that has not yet completed, or
+     *         <tt>null</tt> if there was none.
      */
     public EventInfo put(Event key, EventInfo value) {
-        EventInfo ei = events.put(key.toString(), value);
+        EventInfo ei = get(key);
+        if (events.size() < MAX_EVENTS) {
+            events.add(value);
+            String eventKey = getKey(key);
+            Deque<EventInfo> eventInfos = pending.get(eventKey);
+            
+            if (eventInfos == null) {
+                eventInfos = new ArrayDeque<>();
+                pending.put(eventKey, eventInfos);
+            }
+            
+            eventInfos.push(value);
+        }
         if (maxElapsedEventInfo == null || maxElapsedEventInfo.getElapsed() < value.getElapsed()) {
             maxElapsedEventInfo = value;
         }
         return ei;
     }
     
+    /**
+     * Returns the key under which event infos for an event are indexed.
+     * 
+     * @param event The event.
+     * @return The event name and target uuid.
+     */
+    private String getKey(Event event) {
+        Component target = event.getTarget();
+        return event.getName() + (target == null ? "" : "@" + target.getUuid());
+    }
+    
     /**
      * Log all events.
      * 
      * @param pd The performance data instance whose events are being logged.
      */
     public void log(PerformanceData pd) {
-        for (EventInfo eventInfo : events.values()) {
+        for (EventInfo eventInfo : events) {
             eventInfo.prepare(pd);
             log.debug(eventInfo);
         }
@@ -0,0 +1,243 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.zkoss.zk.ui.Component;
+import org.zkoss.zk.ui.event.Event;
+
+/**
+ * Rolling latency histograms of event processing time, keyed by a normalized event key of the form
+ * <code>eventName.componentType</code> (for example, <code>onClick.button</code>). Keys do not
+ * depend on component instances, so they are comparable between sessions and releases. The number
+ * of distinct keys is bounded; once the limit is reached, further events are counted under
+ * {@link #OTHER_EVENT_KEY}. Once a key has been assigned, obtaining it again allocates nothing.
+ */
+public class EventStatistics {
+    
+    /**
+     * Key under which events exceeding the key limit are counted.
+     */
+    public static final String OTHER_EVENT_KEY = "other";
+    
+    /**
+     * Phase name reported in latency summaries of event processing time.
+     */
+    public static final String EVENT_PHASE = "EVENT";
+    
+    private static final String NO_TARGET = "none";
+    
+    private static final int MAX_KEY_PART_LENGTH = 48;
+    
+    private final ConcurrentMap<String, ConcurrentMap<String, String>> keys = new ConcurrentHashMap<>();
+    
+    private final ConcurrentMap<String, RollingLatencyHistogram> histograms = new ConcurrentHashMap<>();
+    
+    private final AtomicInteger keyCount = new AtomicInteger();
+    
+    private volatile int keyLimit = 200;
+    
+    /**
+     * Returns the normalized key for an event.
+     * 
+     * @param event The event.
+     * @return The event key.
+     */
+    public String getKey(Event event) {
+        return getKey(event.getName(), getComponentType(event.getTarget()));
+    }
+    
+    /**
+     * Returns the normalized key for an event name and component type.
+     * 
+     * @param eventName The event name.
+     * @param componentType The component type.
+     * @return The event key.
+     */
+    public String getKey(String eventName, String componentType) {
+        ConcurrentMap<String, String> types = keys.get(eventName);
+        String key = types == null ? null : types.get(componentType);
+        
+        if (key != null) {
+            return key;
+        }
+        
+        if (keyCount.get() >= keyLimit) {
+            return OTHER_EVENT_KEY;
+        }
+        
+        if (types == null) {
+            types = new ConcurrentHashMap<>();
+            ConcurrentMap<String, String> previous = keys.putIfAbsent(eventName, types);
+            types = previous == null ? types : previous;
+        }
+        
+        key = normalize(eventName) + "." + normalize(componentType);
+        String previous = types.putIfAbsent(componentType, key);
+        
+        if (previous != null) {
+            return previous;
+        }
+        
+        keyCount.incrementAndGet();
+        return key;
+    }
+    
+    /**
+     * Returns the type of a component: the name of its component definition if available,
+     * otherwise its class name.
+     * 
+     * @param component The component (may be null).
+     * @return The component type.
+     */
+    private String getComponentType(Component component) {
+        if (component == null) {
+            return NO_TARGET;
+        }
+        
+        try {
+            String name = component.getDefinition().getName();
+            
+            if (name != null) {
+                return name;
+            }
+        } catch (Exception e) {
+            // Fall through to class name.
+        }
+        
+        return component.getClass().getSimpleName();
+    }
+    
+    /**
+     * Restricts a key part to letters, digits, underscores and hyphens and limits its length.
+     * 
+     * @param value Value to normalize.
+     * @return The normalized value.
+     */
+    private String normalize(String value) {
+        if (value == null || value.isEmpty()) {
+            return NO_TARGET;
+        }
+        
+        int length = Math.min(value.length(), MAX_KEY_PART_LENGTH);
+        StringBuilder sb = new StringBuilder(length);
+        
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            sb.append(Character.isLetterOrDigit(c) || c == '_' || c == '-' ? c : '_');
+        }
+        
+        return sb.toString();
+    }
+    
+    /**
+     * Records the processing time of an event.
+     * 
+     * @param key The event key, as returned by {@link #getKey}.
+     * @param elapsed The processing time in milliseconds.
+     */
+    public void record(String key, long elapsed) {
+        RollingLatencyHistogram histogram = histograms.get(key);
+        
+        if (histogram == null) {
+            histogram = new RollingLatencyHistogram();
+            RollingLatencyHistogram previous = histograms.putIfAbsent(key, histogram);
+            histogram = previous == null ? histogram : previous;
+        }
+        
+        histogram.record(elapsed, System.currentTimeMillis());
+    }
+    
+    /**
+     * Returns the keys of events for which statistics have been recorded.
+     * 
+     * @return Sorted list of event keys.
+     */
+    public List<String> getKeys() {
+        List<String> result = new ArrayList<>(histograms.keySet());
+        Collections.sort(result);
+        return result;
+    }
+    
+    /**
+     * Returns statistics for every event key over a rolling window.
+     * 
+     * @param windowMinutes The rolling window in minutes.
+     * @return List of latency summaries.
+     */
+    public List<LatencySummary> getSummaries(int windowMinutes) {
+        long now = System.currentTimeMillis();
+        return getSummaries(windowMinutes, now, now);
+    }
+    
+    /**
+     * Returns statistics for every event key over the whole minutes preceding the current one.
+     * 
+     * @param windowMinutes The number of whole minutes.
+     * @param now The current time in milliseconds.
+     * @return List of latency summaries.
+     */
+    public List<LatencySummary> getCompletedSummaries(int windowMinutes, long now) {
+        long end = RollingLatencyHistogram.getMinuteStart(now);
+        return getSummaries(windowMinutes, end - 1, end);
+    }
+    
+    /**
+     * Returns statistics for every event key over a window.
+     * 
+     * @param windowMinutes The window length in minutes.
+     * @param time The time, in milliseconds, whose minute is the last of the window.
+     * @param end The end of the period covered by the window, in milliseconds.
+     * @return List of latency summaries.
+     */
+    private List<LatencySummary> getSummaries(int windowMinutes, long time, long end) {
+        List<LatencySummary> summaries = new ArrayList<>();
+        long windowStart = RollingLatencyHistogram.getWindowStart(windowMinutes, time);
+        
+        for (String key : getKeys()) {
+            summaries.add(new LatencySummary(key, EVENT_PHASE, windowMinutes, windowStart, end, histograms.get(key)
+                    .getSnapshot(windowMinutes, time)));
+        }
+        
+        return summaries;
+    }
+    
+    /**
+     * Returns the maximum number of distinct event keys.
+     * 
+     * @return The key limit.
+     */
+    public int getKeyLimit() {
+        return keyLimit;
+    }
+    
+    /**
+     * Sets the maximum number of distinct event keys.
+     * 
+     * @param keyLimit The key limit.
+     */
+    public void setKeyLimit(int keyLimit) {
+        this.keyLimit = keyLimit;
+    }
+    
+    /**
+     * Removes all statistics. Assigned keys are retained.
+     */
+    public void clear() {
+        histograms.clear();
+    }
+    
+}
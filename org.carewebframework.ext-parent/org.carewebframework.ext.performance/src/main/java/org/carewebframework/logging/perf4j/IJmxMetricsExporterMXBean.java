@@ -0,0 +1,49 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+import java.util.List;
+
+/**
+ * This interface exposes the most recently exported performance metrics as a JMX MX Bean.
+ */
+public interface IJmxMetricsExporterMXBean {
+    
+    /**
+     * Returns the time of the most recent export.
+     * 
+     * @return The time of the most recent export in milliseconds, or 0 if none.
+     */
+    public abstract long getLastExportTime();
+    
+    /**
+     * Returns the keys included in the most recent export.
+     * 
+     * @return Sorted list of request and event keys.
+     */
+    public abstract List<String> getKeys();
+    
+    /**
+     * Returns all latency summaries from the most recent export.
+     * 
+     * @return List of latency summaries.
+     */
+    public abstract List<LatencySummary> getSummaries();
+    
+    /**
+     * Returns the latency summary for a key and phase from the most recent export.
+     * 
+     * @param key The request or event key.
+     * @param phase The phase.
+     * @return The latency summary, or null if not found.
+     */
+    public abstract LatencySummary getSummary(String key, String phase);
+    
+}
@@ -0,0 +1,31 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+import java.util.List;
+
+/**
+ * Interface implemented by destinations for performance metrics. Exporters are registered with
+ * {@link PerformanceMetrics}, which periodically passes each of them a snapshot of the request and
+ * event latency statistics.
+ */
+public interface IMetricsExporter {
+    
+    /**
+     * Exports a snapshot of performance metrics.
+     * 
+     * @param timestamp Time of the snapshot in milliseconds.
+     * @param summaries Latency summaries for requests (keyed by command) and events (keyed by
+     *            normalized event key).
+     * @throws Exception Any exception.
+     */
+    void export(long timestamp, List<LatencySummary> summaries) throws Exception;
+    
+}
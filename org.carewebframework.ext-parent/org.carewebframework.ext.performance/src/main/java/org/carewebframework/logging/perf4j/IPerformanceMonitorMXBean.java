@@ -88,6 +88,33 @@ public interface IPerformanceMonitorMXBean {
      */
     public abstract void setExpirationTimeMinutes(long expirationTimeMinutes);
     
+    /**
+     * Returns the number of requests currently being tracked.
+     * 
+     * @return the number of requests currently being tracked.
+     */
+    public abstract int getTrackedRequestCount();
+    
+    /**
+     * Returns the number of requests whose performance data was discarded because the performance
+     * data limit was reached.
+     * 
+     * @return the number of evicted requests.
+     */
+    public abstract long getEvictedRequestCount();
+    
+    /**
+     * Returns the number of requests whose performance data was removed after the expiration time.
+     * 
+     * @return the number of expired requests.
+     */
+    public abstract long getExpiredRequestCount();
+    
+    /**
+     * Resets the evicted and expired request counts.
+     */
+    public abstract void resetRequestCounts();
+    
     /**
      * Returns all the performance data.
      * 
@@ -116,4 +143,48 @@ public interface IPerformanceMonitorMXBean {
      * Stops the expiration timer.
      */
     public abstract void stopExpirationTimer();
+    
+    /**
+     * Returns the event types for which latency statistics have been gathered.
+     * 
+     * @return the event types for which latency statistics have been gathered.
+     */
+    public abstract List<String> getLatencyEventTypes();
+    
+    /**
+     * Returns latency statistics for every event type, request phase and rolling window.
+     * 
+     * @return latency statistics for every event type, request phase and rolling window.
+     */
+    public abstract List<LatencySummary> getLatencySummaries();
+    
+    /**
+     * Returns latency statistics for an event type, request phase and rolling window.
+     * 
+     * @param eventType The event type.
+     * @param phase The request phase (CLIENT_TO_SERVER, SERVER, SERVER_TO_CLIENT or TOTAL).
+     * @param windowMinutes The rolling window in minutes (1 - 15).
+     * @return latency statistics, or null if none have been gathered for the event type.
+     */
+    public abstract LatencySummary getLatencySummary(String eventType, String phase, int windowMinutes);
+    
+    /**
+     * Returns the maximum number of event types for which separate latency statistics are kept.
+     * 
+     * @return the maximum number of event types.
+     */
+    public abstract int getLatencyEventTypeLimit();
+    
+    /**
+     * Sets the maximum number of event types for which separate latency statistics are kept.
+     * Statistics for additional event types are combined.
+     * 
+     * @param latencyEventTypeLimit the maximum number of event types.
+     */
+    public abstract void setLatencyEventTypeLimit(int latencyEventTypeLimit);
+    
+    /**
+     * Clears the latency statistics.
+     */
+    public abstract void clearLatencyStatistics();
 }
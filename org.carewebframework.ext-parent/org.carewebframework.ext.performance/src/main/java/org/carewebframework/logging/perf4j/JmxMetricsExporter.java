@@ -0,0 +1,72 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Exports performance metrics as a JMX MX Bean holding the most recent snapshot, so that they can
+ * be scraped without any computation at request time. When declared in the root Spring context,
+ * the bean is registered by the framework's MBean exporter.
+ */
+public class JmxMetricsExporter implements IMetricsExporter, IJmxMetricsExporterMXBean {
+    
+    private volatile List<LatencySummary> summaries = Collections.emptyList();
+    
+    private volatile long lastExportTime;
+    
+    @Override
+    public void export(long timestamp, List<LatencySummary> summaries) {
+        this.summaries = Collections.unmodifiableList(new ArrayList<>(summaries));
+        this.lastExportTime = timestamp;
+    }
+    
+    @Override
+    public long getLastExportTime() {
+        return lastExportTime;
+    }
+    
+    @Override
+    public List<String> getKeys() {
+        Set<String> keys = new TreeSet<>();
+        
+        for (LatencySummary summary : summaries) {
+            keys.add(summary.getEventType());
+        }
+        
+        return new ArrayList<>(keys);
+    }
+    
+    @Override
+    public List<LatencySummary> getSummaries() {
+        return summaries;
+    }
+    
+    @Override
+    public LatencySummary getSummary(String key, String phase) {
+        for (LatencySummary summary : summaries) {
+            if (summary.getEventType().equals(key) && summary.getPhase().equalsIgnoreCase(phase)) {
+                return summary;
+            }
+        }
+        
+        return null;
+    }
+    
+    @Override
+    public String toString() {
+        return "JMX metrics exporter";
+    }
+    
+}
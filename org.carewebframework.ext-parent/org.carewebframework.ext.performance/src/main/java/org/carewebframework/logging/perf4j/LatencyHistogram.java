@@ -0,0 +1,161 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-memory histogram of latencies in milliseconds. Values below 32 are counted exactly. Larger
+ * values are counted in buckets whose width doubles every 16 buckets, limiting the error of a
+ * reported percentile to about 6%. Values above {@link #MAX_VALUE} (about 70 minutes) are counted
+ * as MAX_VALUE. This class is not thread-safe.
+ */
+public class LatencyHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 4;
+    
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    
+    private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;
+    
+    /**
+     * Largest value that is counted accurately.
+     */
+    public static final long MAX_VALUE = (1L << 22) - 1;
+    
+    private static final int BUCKET_COUNT = getBucket(MAX_VALUE) + 1;
+    
+    private final int[] counts = new int[BUCKET_COUNT];
+    
+    private long count;
+    
+    private long sum;
+    
+    private long max;
+    
+    /**
+     * Returns the index of the bucket that counts the specified value.
+     * 
+     * @param value The value (between 0 and MAX_VALUE).
+     * @return The bucket index.
+     */
+    private static int getBucket(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >> shift) - SUB_BUCKETS;
+    }
+    
+    /**
+     * Returns the largest value counted by the specified bucket.
+     * 
+     * @param bucket The bucket index.
+     * @return The largest value counted by the bucket.
+     */
+    private static long getBucketLimit(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        
+        int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+    
+    /**
+     * Records a latency. Negative values (which can arise from clock skew) are recorded as zero.
+     * 
+     * @param value The latency in milliseconds.
+     */
+    public void record(long value) {
+        value = value < 0 ? 0 : value > MAX_VALUE ? MAX_VALUE : value;
+        counts[getBucket(value)]++;
+        count++;
+        sum += value;
+        max = value > max ? value : max;
+    }
+    
+    /**
+     * Adds the contents of another histogram to this one.
+     * 
+     * @param histogram The histogram to add.
+     */
+    public void add(LatencyHistogram histogram) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += histogram.counts[i];
+        }
+        
+        count += histogram.count;
+        sum += histogram.sum;
+        max = histogram.max > max ? histogram.max : max;
+    }
+    
+    /**
+     * Removes all recorded values.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+    
+    /**
+     * Returns the number of recorded values.
+     * 
+     * @return The number of recorded values.
+     */
+    public long getCount() {
+        return count;
+    }
+    
+    /**
+     * Returns the largest recorded value.
+     * 
+     * @return The largest recorded value, or 0 if none were recorded.
+     */
+    public long getMax() {
+        return max;
+    }
+    
+    /**
+     * Returns the mean of the recorded values.
+     * 
+     * @return The mean, or 0 if no values were recorded.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+    
+    /**
+     * Returns the value at or below which the specified percentage of recorded values fall.
+     * 
+     * @param percentile The percentile (0 - 100).
+     * @return The value at the percentile, or 0 if no values were recorded.
+     */
+    public long getPercentile(double percentile) {
+        long target = (long) Math.ceil(percentile / 100.0 * count);
+        target = target < 1 ? 1 : target;
+        long cumulative = 0;
+        
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts[i];
+            
+            if (cumulative >= target) {
+                return Math.min(getBucketLimit(i), max);
+            }
+        }
+        
+        return max;
+    }
+    
+}
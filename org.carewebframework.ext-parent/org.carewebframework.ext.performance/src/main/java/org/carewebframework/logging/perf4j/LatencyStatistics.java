@@ -0,0 +1,207 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Rolling latency histograms for each request phase, keyed by event type. Memory use is bounded:
+ * once the event type limit is reached, statistics for further event types are combined under
+ * {@link #OTHER_EVENT_TYPE}.
+ */
+public class LatencyStatistics {
+    
+    /**
+     * Event type under which statistics for event types exceeding the limit are combined.
+     */
+    public static final String OTHER_EVENT_TYPE = "other";
+    
+    /**
+     * Event type used when a request has no command.
+     */
+    public static final String UNKNOWN_EVENT_TYPE = "unknown";
+    
+    /**
+     * The rolling windows, in minutes, for which statistics are reported.
+     */
+    private static final int[] WINDOWS = { 1, 5, 15 };
+    
+    private final ConcurrentMap<String, Map<RequestPhase, RollingLatencyHistogram>> histograms = new ConcurrentHashMap<>();
+    
+    private volatile int eventTypeLimit = 50;
+    
+    /**
+     * Records the latencies of each phase of a completed request.
+     * 
+     * @param pd Performance data for the completed request.
+     */
+    public void record(PerformanceData pd) {
+        Map<RequestPhase, RollingLatencyHistogram> phases = getHistograms(pd.getCommand());
+        long now = System.currentTimeMillis();
+        
+        for (RequestPhase phase : RequestPhase.values()) {
+            phases.get(phase).record(pd.getElapsedTime(phase), now);
+        }
+    }
+    
+    /**
+     * Returns the histograms for an event type, creating them if necessary.
+     * 
+     * @param eventType The event type.
+     * @return The histograms for the event type, indexed by request phase.
+     */
+    private Map<RequestPhase, RollingLatencyHistogram> getHistograms(String eventType) {
+        eventType = eventType == null ? UNKNOWN_EVENT_TYPE : eventType;
+        Map<RequestPhase, RollingLatencyHistogram> phases = histograms.get(eventType);
+        
+        if (phases == null) {
+            if (histograms.size() >= eventTypeLimit) {
+                eventType = OTHER_EVENT_TYPE;
+                phases = histograms.get(eventType);
+            }
+            
+            if (phases == null) {
+                phases = new EnumMap<>(RequestPhase.class);
+                
+                for (RequestPhase phase : RequestPhase.values()) {
+                    phases.put(phase, new RollingLatencyHistogram());
+                }
+                
+                Map<RequestPhase, RollingLatencyHistogram> previous = histograms.putIfAbsent(eventType, phases);
+                phases = previous == null ? phases : previous;
+            }
+        }
+        
+        return phases;
+    }
+    
+    /**
+     * Returns the event types for which statistics have been gathered.
+     * 
+     * @return Sorted list of event types.
+     */
+    public List<String> getEventTypes() {
+        List<String> eventTypes = new ArrayList<>(histograms.keySet());
+        Collections.sort(eventTypes);
+        return eventTypes;
+    }
+    
+    /**
+     * Returns statistics for every event type, request phase and rolling window.
+     * 
+     * @return List of latency summaries.
+     */
+    public List<LatencySummary> getSummaries() {
+        long now = System.currentTimeMillis();
+        return getSummaries(WINDOWS, now, now);
+    }
+    
+    /**
+     * Returns statistics for every event type and request phase over a single rolling window.
+     * 
+     * @param windowMinutes The rolling window in minutes.
+     * @return List of latency summaries.
+     */
+    public List<LatencySummary> getSummaries(int windowMinutes) {
+        long now = System.currentTimeMillis();
+        return getSummaries(new int[] { windowMinutes }, now, now);
+    }
+    
+    /**
+     * Returns statistics for every event type and request phase over the whole minutes preceding
+     * the current one.
+     * 
+     * @param windowMinutes The number of whole minutes.
+     * @param now The current time in milliseconds.
+     * @return List of latency summaries.
+     */
+    public List<LatencySummary> getCompletedSummaries(int windowMinutes, long now) {
+        long end = RollingLatencyHistogram.getMinuteStart(now);
+        return getSummaries(new int[] { windowMinutes }, end - 1, end);
+    }
+    
+    /**
+     * Returns statistics for every event type and request phase over the specified windows.
+     * 
+     * @param windows The window lengths in minutes.
+     * @param time The time, in milliseconds, whose minute is the last of each window.
+     * @param end The end of the period covered by each window, in milliseconds.
+     * @return List of latency summaries.
+     */
+    private List<LatencySummary> getSummaries(int[] windows, long time, long end) {
+        List<LatencySummary> summaries = new ArrayList<>();
+        
+        for (String eventType : getEventTypes()) {
+            Map<RequestPhase, RollingLatencyHistogram> phases = histograms.get(eventType);
+            
+            for (RequestPhase phase : RequestPhase.values()) {
+                for (int window : windows) {
+                    summaries.add(new LatencySummary(eventType, phase, window, RollingLatencyHistogram.getWindowStart(
+                        window, time), end, phases.get(phase).getSnapshot(window, time)));
+                }
+            }
+        }
+        
+        return summaries;
+    }
+    
+    /**
+     * Returns statistics for an event type, request phase and rolling window.
+     * 
+     * @param eventType The event type.
+     * @param phase The request phase.
+     * @param windowMinutes The rolling window in minutes.
+     * @return The latency summary, or null if no statistics exist for the event type.
+     */
+    public LatencySummary getSummary(String eventType, RequestPhase phase, int windowMinutes) {
+        if (windowMinutes < 1 || windowMinutes > RollingLatencyHistogram.MAX_WINDOW_MINUTES) {
+            throw new IllegalArgumentException("Window must be between 1 and "
+                    + RollingLatencyHistogram.MAX_WINDOW_MINUTES + " minutes.");
+        }
+        
+        Map<RequestPhase, RollingLatencyHistogram> phases = histograms.get(eventType);
+        long now = System.currentTimeMillis();
+        return phases == null ? null : new LatencySummary(eventType, phase, windowMinutes,
+                RollingLatencyHistogram.getWindowStart(windowMinutes, now), now, phases.get(phase).getSnapshot(
+                    windowMinutes, now));
+    }
+    
+    /**
+     * Returns the maximum number of event types for which separate statistics are kept.
+     * 
+     * @return The event type limit.
+     */
+    public int getEventTypeLimit() {
+        return eventTypeLimit;
+    }
+    
+    /**
+     * Sets the maximum number of event types for which separate statistics are kept.
+     * 
+     * @param eventTypeLimit The event type limit.
+     */
+    public void setEventTypeLimit(int eventTypeLimit) {
+        this.eventTypeLimit = eventTypeLimit;
+    }
+    
+    /**
+     * Removes all statistics.
+     */
+    public void clear() {
+        histograms.clear();
+    }
+    
+}
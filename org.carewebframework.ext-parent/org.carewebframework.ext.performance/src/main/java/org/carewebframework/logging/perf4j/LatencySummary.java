@@ -0,0 +1,152 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+import java.io.Serializable;
+
+/**
+ * Latency statistics for one phase of one event type over a rolling window. Exposed through JMX as
+ * CompositeData.
+ */
+public class LatencySummary implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final String eventType;
+    
+    private final String phase;
+    
+    private final int windowMinutes;
+    
+    private final long windowStart;
+    
+    private final long windowEnd;
+    
+    private final long count;
+    
+    private final double mean;
+    
+    private final long p50;
+    
+    private final long p90;
+    
+    private final long p99;
+    
+    private final long p999;
+    
+    private final long max;
+    
+    /**
+     * Creates a summary from a histogram.
+     * 
+     * @param eventType The event type.
+     * @param phase The request phase.
+     * @param windowMinutes The window length in minutes.
+     * @param windowStart The start of the period covered by the window, in milliseconds.
+     * @param windowEnd The end of the period covered by the window, in milliseconds.
+     * @param histogram The histogram of latencies recorded within the window.
+     */
+    public LatencySummary(String eventType, RequestPhase phase, int windowMinutes, long windowStart, long windowEnd,
+        LatencyHistogram histogram) {
+        this(eventType, phase.name(), windowMinutes, windowStart, windowEnd, histogram);
+    }
+    
+    /**
+     * Creates a summary from a histogram.
+     * 
+     * @param eventType The event type.
+     * @param phase The name of the phase being timed.
+     * @param windowMinutes The window length in minutes.
+     * @param windowStart The start of the period covered by the window, in milliseconds.
+     * @param windowEnd The end of the period covered by the window, in milliseconds.
+     * @param histogram The histogram of latencies recorded within the window.
+     */
+    public LatencySummary(String eventType, String phase, int windowMinutes, long windowStart, long windowEnd,
+        LatencyHistogram histogram) {
+        this.eventType = eventType;
+        this.phase = phase;
+        this.windowMinutes = windowMinutes;
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+        this.count = histogram.getCount();
+        this.mean = histogram.getMean();
+        this.p50 = histogram.getPercentile(50);
+        this.p90 = histogram.getPercentile(90);
+        this.p99 = histogram.getPercentile(99);
+        this.p999 = histogram.getPercentile(99.9);
+        this.max = histogram.getMax();
+    }
+    
+    public String getEventType() {
+        return eventType;
+    }
+    
+    public String getPhase() {
+        return phase;
+    }
+    
+    public int getWindowMinutes() {
+        return windowMinutes;
+    }
+    
+    /**
+     * Returns the start of the period actually covered by the window. Because windows consist of
+     * whole calendar minutes, this may be up to a minute later than the window length implies.
+     * 
+     * @return The start of the window in milliseconds.
+     */
+    public long getWindowStart() {
+        return windowStart;
+    }
+    
+    /**
+     * Returns the end of the period actually covered by the window.
+     * 
+     * @return The end of the window in milliseconds.
+     */
+    public long getWindowEnd() {
+        return windowEnd;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public double getMean() {
+        return mean;
+    }
+    
+    public long getP50() {
+        return p50;
+    }
+    
+    public long getP90() {
+        return p90;
+    }
+    
+    public long getP99() {
+        return p99;
+    }
+    
+    public long getP999() {
+        return p999;
+    }
+    
+    public long getMax() {
+        return max;
+    }
+    
+    @Override
+    public String toString() {
+        return eventType + "." + phase + "[" + windowMinutes + "m, " + (windowEnd - windowStart) / 1000 + "s] count="
+                + count + " p50=" + p50 + " p90=" + p90 + " p99=" + p99 + " p999=" + p999 + " max=" + max;
+    }
+    
+}
@@ -200,6 +200,31 @@ public class PerformanceData implements Serializable, Comparable<PerformanceData
         }
     }
     
+    /**
+     * Returns the elapsed time for the specified request phase.
+     * 
+     * @param phase The request phase of interest.
+     * @return the elapsed time for the specified request phase.
+     */
+    public long getElapsedTime(RequestPhase phase) {
+        switch (phase) {
+            case CLIENT_TO_SERVER:
+                return time[1] - time[0];
+                
+            case SERVER:
+                return time[2] - time[1];
+                
+            case SERVER_TO_CLIENT:
+                return time[3] - time[2];
+                
+            case TOTAL:
+                return time[4] - time[0];
+                
+            default:
+                return 0;
+        }
+    }
+    
     /**
      * Returns the server elapsed time.
      * 
@@ -66,7 +66,8 @@ public class PerformanceEventInterceptor implements EventInterceptor {
         EventLog eventLog = getEventLog(event);
         
         if (eventLog != null) {
-            EventInfo ei = new EventInfo(event, eventLog.getTag(), eventLog.getDesktopId(), eventLog.getRequestId());
+            String key = PerformanceMetrics.getInstance().getEventStatistics().getKey(event);
+            EventInfo ei = new EventInfo(event, eventLog.getTag(), eventLog.getDesktopId(), eventLog.getRequestId(), key);
             eventLog.put(event, ei);
         }
         
@@ -84,6 +85,10 @@ public class PerformanceEventInterceptor implements EventInterceptor {
             EventInfo ei = eventLog.get(event);
             if (ei != null) {
                 ei.end();
+                
+                if (ei.getKey() != null) {
+                    PerformanceMetrics.getInstance().getEventStatistics().record(ei.getKey(), ei.getElapsed());
+                }
             }
         }
     }
@@ -0,0 +1,203 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Holds the request and event latency statistics gathered by the performance monitor and event
+ * interceptor, and periodically exports them to the registered exporters.
+ */
+public class PerformanceMetrics {
+    
+    private static final Log log = LogFactory.getLog(PerformanceMetrics.class);
+    
+    private static final PerformanceMetrics instance = new PerformanceMetrics();
+    
+    private final LatencyStatistics requestStatistics = new LatencyStatistics();
+    
+    private final EventStatistics eventStatistics = new EventStatistics();
+    
+    private final List<IMetricsExporter> exporters = new CopyOnWriteArrayList<>();
+    
+    private ScheduledExecutorService scheduler;
+    
+    private ScheduledFuture<?> exportFuture;
+    
+    private long exportInterval = 60;
+    
+    private long lastExportEnd = -1;
+    
+    /**
+     * Returns the singleton instance.
+     * 
+     * @return The singleton instance.
+     */
+    public static PerformanceMetrics getInstance() {
+        return instance;
+    }
+    
+    /**
+     * Enforce singleton.
+     */
+    private PerformanceMetrics() {
+        super();
+    }
+    
+    /**
+     * Starts periodic export if a scheduler and exporters have been configured.
+     */
+    public synchronized void init() {
+        if (exportFuture == null && scheduler != null && exportInterval > 0 && !exporters.isEmpty()) {
+            exportFuture = scheduler.scheduleAtFixedRate(new Runnable() {
+                
+                @Override
+                public void run() {
+                    exportMetrics();
+                }
+                
+            }, exportInterval, exportInterval, TimeUnit.SECONDS);
+        }
+    }
+    
+    /**
+     * Stops periodic export.
+     */
+    public synchronized void destroy() {
+        if (exportFuture != null) {
+            exportFuture.cancel(false);
+            exportFuture = null;
+        }
+    }
+    
+    /**
+     * Exports statistics for the whole minutes completed since the previous export to each
+     * registered exporter, so that consecutive exports tile time without gaps or overlap. The first
+     * export covers only the preceding minute, and no export covers more than
+     * {@link RollingLatencyHistogram#MAX_WINDOW_MINUTES} minutes. Nothing is exported if no minute
+     * has completed since the previous export. A failing exporter does not prevent export to the
+     * others.
+     */
+    public void exportMetrics() {
+        exportMetrics(System.currentTimeMillis());
+    }
+    
+    /**
+     * Exports statistics for the whole minutes completed since the previous export.
+     * 
+     * @param now The current time in milliseconds.
+     */
+    /*package*/void exportMetrics(long now) {
+        if (exporters.isEmpty()) {
+            return;
+        }
+        
+        long end = RollingLatencyHistogram.getMinuteStart(now);
+        int windowMinutes;
+        
+        synchronized (this) {
+            windowMinutes = lastExportEnd < 0 ? 1 : (int) Math.min(TimeUnit.MILLISECONDS.toMinutes(end
+                    - lastExportEnd), RollingLatencyHistogram.MAX_WINDOW_MINUTES);
+            
+            if (windowMinutes <= 0) {
+                return;
+            }
+            
+            lastExportEnd = end;
+        }
+        
+        List<LatencySummary> summaries = getCompletedSummaries(windowMinutes, now);
+        
+        for (IMetricsExporter exporter : exporters) {
+            try {
+                exporter.export(end, summaries);
+            } catch (Exception e) {
+                log.error("Error exporting performance metrics to " + exporter, e);
+            }
+        }
+    }
+    
+    /**
+     * Returns request and event statistics over a rolling window.
+     * 
+     * @param windowMinutes The rolling window in minutes.
+     * @return List of latency summaries.
+     */
+    public List<LatencySummary> getSummaries(int windowMinutes) {
+        List<LatencySummary> summaries = requestStatistics.getSummaries(windowMinutes);
+        summaries.addAll(eventStatistics.getSummaries(windowMinutes));
+        return summaries;
+    }
+    
+    /**
+     * Returns request and event statistics over the whole minutes preceding the current one.
+     * 
+     * @param windowMinutes The number of whole minutes.
+     * @param now The current time in milliseconds.
+     * @return List of latency summaries.
+     */
+    public List<LatencySummary> getCompletedSummaries(int windowMinutes, long now) {
+        List<LatencySummary> summaries = requestStatistics.getCompletedSummaries(windowMinutes, now);
+        summaries.addAll(eventStatistics.getCompletedSummaries(windowMinutes, now));
+        return summaries;
+    }
+    
+    public LatencyStatistics getRequestStatistics() {
+        return requestStatistics;
+    }
+    
+    public EventStatistics getEventStatistics() {
+        return eventStatistics;
+    }
+    
+    public List<IMetricsExporter> getExporters() {
+        return exporters;
+    }
+    
+    public void setExporters(List<IMetricsExporter> exporters) {
+        this.exporters.clear();
+        this.exporters.addAll(exporters);
+    }
+    
+    public void setScheduler(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+    
+    /**
+     * Returns the interval between exports in seconds.
+     * 
+     * @return The export interval in seconds.
+     */
+    public long getExportInterval() {
+        return exportInterval;
+    }
+    
+    /**
+     * Sets the interval between exports in seconds. A value of zero or less disables periodic
+     * export.
+     * 
+     * @param exportInterval The export interval in seconds.
+     */
+    public void setExportInterval(long exportInterval) {
+        this.exportInterval = exportInterval;
+    }
+    
+    public void setEventKeyLimit(int eventKeyLimit) {
+        eventStatistics.setKeyLimit(eventKeyLimit);
+    }
+    
+}
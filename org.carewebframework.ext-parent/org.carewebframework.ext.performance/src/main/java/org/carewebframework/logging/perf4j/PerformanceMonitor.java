@@ -9,13 +9,9 @@
  */
 package org.carewebframework.logging.perf4j;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.TimerTask;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -56,10 +52,8 @@ public class PerformanceMonitor implements PerformanceMeter, IPerformanceMonitor
     
     protected static final int MAX_PERFORMANCE_DATA_LIMIT = 1000;
     
-    /** The limit must be defined before the map for the constructor to work properly. */
-    private int performanceDataLimit = MAX_PERFORMANCE_DATA_LIMIT;
-    
-    private final Map<String, PerformanceData> performanceDataMap = new LRUMap<>();
+    private final RequestTracker<PerformanceData> requestTracker = new RequestTracker<>(
+            MAX_PERFORMANCE_DATA_LIMIT, TimeUnit.MINUTES.toMillis(20), TimeUnit.MINUTES.toMillis(1));
     
     private boolean logRequestPerformance = true;
     
@@ -69,12 +63,12 @@ public class PerformanceMonitor implements PerformanceMeter, IPerformanceMonitor
     
     private final MBeanExporter mbeanExporter;
     
-    private long expirationTimeMs = TimeUnit.MINUTES.toMillis(20);
-    
     private final ScheduledExecutorService scheduledExecutorService;
     
     private ScheduledFuture<?> expirationTimerTaskFuture;
     
+    private final LatencyStatistics latencyStatistics = PerformanceMetrics.getInstance().getRequestStatistics();
+    
     /**
      * Constructs a PerformanceMonitor.
      * 
@@ -209,18 +203,20 @@ public class PerformanceMonitor implements PerformanceMeter, IPerformanceMonitor
      */
     @Override
     public int getPerformanceDataLimit() {
-        return this.performanceDataLimit;
+        return this.requestTracker.getLimit();
     }
     
     /**
-     * Sets the performance data limit as long as it doesn't exceed the MAX_PERFORMANCE_DATA_LIMIT.
+     * Sets the performance data limit as long as it is positive and doesn't exceed the
+     * MAX_PERFORMANCE_DATA_LIMIT. When the limit is reached, the performance data of a completed
+     * request, or if there is none the oldest request, is discarded to make room for a new request.
      * 
      * @param performanceDataLimit performance data limit.
      */
     @Override
     public void setPerformanceDataLimit(int performanceDataLimit) {
-        if (performanceDataLimit <= MAX_PERFORMANCE_DATA_LIMIT) {
-            this.performanceDataLimit = performanceDataLimit;
+        if (performanceDataLimit > 0 && performanceDataLimit <= MAX_PERFORMANCE_DATA_LIMIT) {
+            this.requestTracker.setLimit(performanceDataLimit);
         }
     }
     
@@ -231,7 +227,7 @@ public class PerformanceMonitor implements PerformanceMeter, IPerformanceMonitor
      */
     @Override
     public long getExpirationTimeMinutes() {
-        return TimeUnit.MILLISECONDS.toMinutes(this.expirationTimeMs);
+        return TimeUnit.MILLISECONDS.toMinutes(this.requestTracker.getExpirationMs());
     }
     
     /**
@@ -241,7 +237,46 @@ public class PerformanceMonitor implements PerformanceMeter, IPerformanceMonitor
      */
     @Override
     public void setExpirationTimeMinutes(long expirationTimeMinutes) {
-        this.expirationTimeMs = TimeUnit.MINUTES.toMillis(expirationTimeMinutes);
+        this.requestTracker.setExpirationMs(TimeUnit.MINUTES.toMillis(expirationTimeMinutes));
+    }
+    
+    /**
+     * Returns the number of requests currently being tracked.
+     * 
+     * @return the number of requests currently being tracked.
+     */
+    @Override
+    public int getTrackedRequestCount() {
+        return this.requestTracker.size();
+    }
+    
+    /**
+     * Returns the number of requests whose performance data was discarded because the performance
+     * data limit was reached.
+     * 
+     * @return the number of evicted requests.
+     */
+    @Override
+    public long getEvictedRequestCount() {
+        return this.requestTracker.getEvictedCount();
+    }
+    
+    /**
+     * Returns the number of requests whose performance data was removed after the expiration time.
+     * 
+     * @return the number of expired requests.
+     */
+    @Override
+    public long getExpiredRequestCount() {
+        return this.requestTracker.getExpiredCount();
+    }
+    
+    /**
+     * Resets the evicted and expired request counts.
+     */
+    @Override
+    public void resetRequestCounts() {
+        this.requestTracker.resetCounts();
     }
     
     /**
@@ -251,7 +286,7 @@ public class PerformanceMonitor implements PerformanceMeter, IPerformanceMonitor
      */
     @Override
     public List<PerformanceData> getAllPerformanceData() {
-        List<PerformanceData> pds = new ArrayList<>(this.performanceDataMap.values());
+        List<PerformanceData> pds = this.requestTracker.values();
         Collections.sort(pds);
         return pds;
     }
@@ -263,10 +298,10 @@ public class PerformanceMonitor implements PerformanceMeter, IPerformanceMonitor
      */
     @Override
     public List<PerformanceData> getCompletedPerformanceData() {
-        List<PerformanceData> pds = new ArrayList<>(this.performanceDataMap.size());
-        for (PerformanceData pd : this.performanceDataMap.values()) {
-            if (pd.isComplete()) {
-                pds.add(pd);
+        List<PerformanceData> pds = this.requestTracker.values();
+        for (Iterator<PerformanceData> iter = pds.iterator(); iter.hasNext();) {
+            if (!iter.next().isComplete()) {
+                iter.remove();
             }
         }
         Collections.sort(pds);
@@ -278,7 +313,68 @@ public class PerformanceMonitor implements PerformanceMeter, IPerformanceMonitor
      */
     @Override
     public void clearPerformanceData() {
-        this.performanceDataMap.clear();
+        this.requestTracker.clear();
+    }
+    
+    /**
+     * Returns the event types for which latency statistics have been gathered.
+     * 
+     * @return the event types for which latency statistics have been gathered.
+     */
+    @Override
+    public List<String> getLatencyEventTypes() {
+        return this.latencyStatistics.getEventTypes();
+    }
+    
+    /**
+     * Returns latency statistics for every event type, request phase and rolling window.
+     * 
+     * @return latency statistics for every event type, request phase and rolling window.
+     */
+    @Override
+    public List<LatencySummary> getLatencySummaries() {
+        return this.latencyStatistics.getSummaries();
+    }
+    
+    /**
+     * Returns latency statistics for an event type, request phase and rolling window.
+     * 
+     * @param eventType The event type.
+     * @param phase The request phase.
+     * @param windowMinutes The rolling window in minutes.
+     * @return latency statistics, or null if none have been gathered for the event type.
+     */
+    @Override
+    public LatencySummary getLatencySummary(String eventType, String phase, int windowMinutes) {
+        return this.latencyStatistics.getSummary(eventType, RequestPhase.valueOf(phase.toUpperCase()), windowMinutes);
+    }
+    
+    /**
+     * Returns the maximum number of event types for which separate latency statistics are kept.
+     * 
+     * @return the maximum number of event types.
+     */
+    @Override
+    public int getLatencyEventTypeLimit() {
+        return this.latencyStatistics.getEventTypeLimit();
+    }
+    
+    /**
+     * Sets the maximum number of event types for which separate latency statistics are kept.
+     * 
+     * @param latencyEventTypeLimit the maximum number of event types.
+     */
+    @Override
+    public void setLatencyEventTypeLimit(int latencyEventTypeLimit) {
+        this.latencyStatistics.setEventTypeLimit(latencyEventTypeLimit);
+    }
+    
+    /**
+     * Clears the latency statistics.
+     */
+    @Override
+    public void clearLatencyStatistics() {
+        this.latencyStatistics.clear();
     }
     
     /**
@@ -343,13 +439,21 @@ public class PerformanceMonitor implements PerformanceMeter, IPerformanceMonitor
         if ("dummy".equals(command)) {
             return;
         }
-        PerformanceData pd = this.performanceDataMap.get(requestId);
+        PerformanceData pd = this.requestTracker.get(requestId);
         if (pd == null) {
-            pd = new PerformanceData(desktop);
-            pd.setCommand(command);
-            pd.setRequestId(requestId);
-            this.performanceDataMap.put(requestId, pd);
-            desktop.setAttribute(PerformanceData.ATTR_PERF_DATA, pd);
+            PerformanceData newPd = new PerformanceData(desktop);
+            newPd.setCommand(command);
+            newPd.setRequestId(requestId);
+            pd = this.requestTracker.track(requestId, newPd, System.currentTimeMillis());
+            if (pd == null) {
+                if (log.isTraceEnabled()) {
+                    log.trace("Performance data limit reached, dropping request id: " + requestId);
+                }
+                return;
+            }
+            if (pd == newPd) {
+                desktop.setAttribute(PerformanceData.ATTR_PERF_DATA, pd);
+            }
         }
         if (pd.isLogRequestPerformance() != this.logRequestPerformance) {
             pd.setLogRequestPerformance(this.logRequestPerformance);
@@ -360,9 +464,14 @@ public class PerformanceMonitor implements PerformanceMeter, IPerformanceMonitor
         pd.setTime(index, time);
         // The request is complete at the client, so log the time
         if (index == 4) {
+            if (pd.isComplete()) {
+                this.latencyStatistics.record(pd);
+            }
             boolean exceededThreshold = pd.logStatistics();
             if (this.removePerformanceData || !exceededThreshold) {
-                this.performanceDataMap.remove(requestId);
+                this.requestTracker.remove(requestId);
+            } else {
+                this.requestTracker.complete(requestId);
             }
         }
     }
@@ -415,72 +524,22 @@ public class PerformanceMonitor implements PerformanceMeter, IPerformanceMonitor
     }
     
     /**
-     * Least-recently used map implementation that limits the total entries in the map. WARNING:
-     * This class is not thread-safe which should be fine because each request will be unique per
-     * thread. However, setting the initial size to the performanceDataLimit and not allowing that
-     * limit to be set above MAX_PERFORMANCE_DATA_LIMIT should prevent the race condition described
-     * in: <a
-     * href="https://tools.regenstrief.org/jira/browse/CWI-1459">https://tools.regenstrief.org
-     * /jira/browse/CWI-1459</a>.
-     * 
-     * @param <K> Key class.
-     * @param <V> Value class.
-     */
-    private class LRUMap<K, V> extends LinkedHashMap<K, V> {
-        
-        private static final long serialVersionUID = 1L;
-        
-        public LRUMap() {
-            super(PerformanceMonitor.this.performanceDataLimit, 0.75f, true);
-        }
-        
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-            boolean b = !PerformanceMonitor.this.removePerformanceData
-                    && (PerformanceMonitor.this.performanceDataLimit > 0)
-                    && (PerformanceMonitor.this.performanceDataLimit < size());
-            if (b && log.isTraceEnabled()) {
-                log.trace("Evicting eldest entry: " + eldest.getKey());
-            }
-            return b;
-        }
-    }
-    
-    /**
-     * TimerTask that expires entries in the LRUMap that are older than
-     * <code>expirationTimeMs</code>.
+     * Task that expires performance data that has been tracked longer than the expiration time.
+     * Only entries that have expired are visited.
      */
-    private class ExpirationTimerTask extends TimerTask {
+    private class ExpirationTimerTask implements Runnable {
         
-        /**
-         * Expires any entries in the LRUMap that are older than <code>expirationTimeMs</code>.
-         */
         @Override
         public void run() {
             try {
-                for (Iterator<PerformanceData> iter = PerformanceMonitor.this.performanceDataMap.values().iterator(); iter
-                        .hasNext();) {
-                    PerformanceData pd = iter.next();
-                    if (isExpired(pd)) {
-                        log.warn(String.format(
-                            "Removing PerformanceData for request id %s after %d milliseconds of inactivity",
-                            pd.getRequestId(), PerformanceMonitor.this.expirationTimeMs));
-                        iter.remove();
-                    }
+                for (PerformanceData pd : PerformanceMonitor.this.requestTracker.expire(System.currentTimeMillis())) {
+                    log.warn(String.format(
+                        "Removing PerformanceData for request id %s after %d milliseconds of inactivity",
+                        pd.getRequestId(), PerformanceMonitor.this.requestTracker.getExpirationMs()));
                 }
             } catch (Exception e) {
                 log.error(e.getMessage(), e);
             }
         }
-        
-        /**
-         * Determines if a performance data entry is expired.
-         * 
-         * @param pd performance data.
-         * @return true if expired, false otherwise.
-         */
-        private boolean isExpired(PerformanceData pd) {
-            return pd.getStartTime(RequestTime.TOTAL) < (System.currentTimeMillis() - PerformanceMonitor.this.expirationTimeMs);
-        }
     }
 }
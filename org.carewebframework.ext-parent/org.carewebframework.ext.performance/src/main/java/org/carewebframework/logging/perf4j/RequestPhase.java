@@ -0,0 +1,28 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+/**
+ * Enum to specify a phase of request processing for which latency statistics are gathered. Values
+ * are interpreted as follows:
+ * <UL>
+ * <LI>CLIENT_TO_SERVER - From the start of the request at the client to the start of processing at
+ * the server.</LI>
+ * <LI>SERVER - Time spent by the server processing a request.</LI>
+ * <LI>SERVER_TO_CLIENT - From the completion of processing at the server to the receipt of the
+ * response at the client.</LI>
+ * <LI>TOTAL - Overall time spent servicing a request.</LI>
+ * </UL>
+ * Because client and server times come from different clocks, the CLIENT_TO_SERVER and
+ * SERVER_TO_CLIENT phases include any clock skew between the two.
+ */
+public enum RequestPhase {
+    CLIENT_TO_SERVER, SERVER, SERVER_TO_CLIENT, TOTAL;
+}
@@ -0,0 +1,369 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe, bounded registry of in-flight requests. Entries are inserted and removed without
+ * locking. Each entry is also filed under the tick (a fixed interval of time) in which it was
+ * tracked, so expiring old entries only visits the ticks that have expired rather than sweeping
+ * every entry. Expiry is performed at most once per tick as part of tracking a new request, and
+ * may also be invoked directly.
+ * <p>
+ * A request that has finished but whose value is retained for later inspection may be marked as
+ * completed (see {@link #complete}). When the limit is reached, an entry is evicted to make room
+ * for a new request: the earliest completed request if there is one, otherwise the oldest live
+ * request.
+ * 
+ * @param <V> Class of tracked value.
+ */
+public class RequestTracker<V> {
+    
+    private static class Entry<V> {
+        
+        final V value;
+        
+        final long tick;
+        
+        volatile boolean completed;
+        
+        Entry(V value, long tick) {
+            this.value = value;
+            this.tick = tick;
+        }
+    }
+    
+    private final ConcurrentMap<String, Entry<V>> entries = new ConcurrentHashMap<>();
+    
+    private final ConcurrentSkipListMap<Long, Set<String>> ticks = new ConcurrentSkipListMap<>();
+    
+    private final Queue<String> completed = new ConcurrentLinkedQueue<>();
+    
+    private final AtomicInteger size = new AtomicInteger();
+    
+    private final AtomicLong evictedCount = new AtomicLong();
+    
+    private final AtomicLong expiredCount = new AtomicLong();
+    
+    private final AtomicLong lastExpiryTick = new AtomicLong();
+    
+    private final long tickMs;
+    
+    private volatile int limit;
+    
+    private volatile long expirationMs;
+    
+    /**
+     * Creates a request tracker.
+     * 
+     * @param limit Maximum number of tracked requests.
+     * @param expirationMs Time in milliseconds after which a tracked request expires.
+     * @param tickMs Granularity of expiry in milliseconds.
+     */
+    public RequestTracker(int limit, long expirationMs, long tickMs) {
+        this.limit = limit;
+        this.expirationMs = expirationMs;
+        this.tickMs = tickMs;
+    }
+    
+    /**
+     * Returns the value tracked under the specified key.
+     * 
+     * @param key The request key.
+     * @return The tracked value, or null if none.
+     */
+    public V get(String key) {
+        Entry<V> entry = entries.get(key);
+        return entry == null ? null : entry.value;
+    }
+    
+    /**
+     * Tracks a value under the specified key if no value is already tracked under it.
+     * 
+     * @param key The request key.
+     * @param value The value to track.
+     * @param now The current time in milliseconds.
+     * @return The value tracked under the key: the existing value if there was one, otherwise the
+     *         new value (or null if the limit does not permit any requests to be tracked).
+     */
+    public V track(String key, V value, long now) {
+        expireIfDue(now);
+        Entry<V> entry = entries.get(key);
+        
+        if (entry != null) {
+            return entry.value;
+        }
+        
+        while (!reserve()) {
+            if (!evict()) {
+                return null;
+            }
+        }
+        
+        entry = new Entry<>(value, now / tickMs);
+        Entry<V> previous = entries.putIfAbsent(key, entry);
+        
+        if (previous != null) {
+            size.decrementAndGet();
+            return previous.value;
+        }
+        
+        getTick(entry.tick).add(key);
+        return value;
+    }
+    
+    /**
+     * Stops tracking the specified request.
+     * 
+     * @param key The request key.
+     * @return The value that was tracked, or null if none.
+     */
+    public V remove(String key) {
+        Entry<V> entry = entries.remove(key);
+        
+        if (entry == null) {
+            return null;
+        }
+        
+        size.decrementAndGet();
+        Set<String> keys = ticks.get(entry.tick);
+        
+        if (keys != null) {
+            keys.remove(key);
+        }
+        
+        if (entry.completed) {
+            completed.remove(key);
+        }
+        
+        return entry.value;
+    }
+    
+    /**
+     * Marks the specified request as completed. Its value continues to be tracked until it expires
+     * or is removed, but it is the first to be evicted should the limit be reached.
+     * 
+     * @param key The request key.
+     */
+    public void complete(String key) {
+        Entry<V> entry = entries.get(key);
+        
+        if (entry != null && !entry.completed) {
+            entry.completed = true;
+            completed.add(key);
+        }
+    }
+    
+    /**
+     * Evicts the earliest completed request or, if there is none, the oldest live request.
+     * 
+     * @return False if there was nothing to evict.
+     */
+    private boolean evict() {
+        String key;
+        
+        while ((key = completed.peek()) != null) {
+            Entry<V> entry = entries.get(key);
+            
+            if (entry != null && entry.completed && remove(key) != null) {
+                evictedCount.incrementAndGet();
+                return true;
+            }
+            
+            completed.remove(key);
+        }
+        
+        for (Set<String> keys : ticks.values()) {
+            for (String oldest : keys) {
+                if (remove(oldest) != null) {
+                    evictedCount.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Removes all requests that have been tracked longer than the expiration time.
+     * 
+     * @param now The current time in milliseconds.
+     * @return The values of the expired requests.
+     */
+    public List<V> expire(long now) {
+        long cutoff = (now - expirationMs) / tickMs;
+        List<V> expired = null;
+        Map.Entry<Long, Set<String>> tick;
+        
+        while ((tick = ticks.firstEntry()) != null && tick.getKey() < cutoff) {
+            if (!ticks.remove(tick.getKey(), tick.getValue())) {
+                continue;
+            }
+            
+            for (String key : tick.getValue()) {
+                Entry<V> entry = entries.get(key);
+                
+                if (entry != null && entry.tick == tick.getKey() && entries.remove(key, entry)) {
+                    size.decrementAndGet();
+                    expiredCount.incrementAndGet();
+                    
+                    if (entry.completed) {
+                        completed.remove(key);
+                    }
+                    
+                    expired = expired == null ? new ArrayList<V>() : expired;
+                    expired.add(entry.value);
+                }
+            }
+        }
+        
+        return expired == null ? Collections.<V> emptyList() : expired;
+    }
+    
+    /**
+     * Expires old requests if this has not already been done during the current tick.
+     * 
+     * @param now The current time in milliseconds.
+     */
+    private void expireIfDue(long now) {
+        long tick = now / tickMs;
+        long last = lastExpiryTick.get();
+        
+        if (tick != last && lastExpiryTick.compareAndSet(last, tick)) {
+            expire(now);
+        }
+    }
+    
+    /**
+     * Reserves room for a new entry.
+     * 
+     * @return False if the limit has been reached.
+     */
+    private boolean reserve() {
+        while (true) {
+            int current = size.get();
+            
+            if (current >= limit) {
+                return false;
+            }
+            
+            if (size.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Returns the set of keys tracked during the specified tick, creating it if necessary.
+     * 
+     * @param tick The tick.
+     * @return The set of keys.
+     */
+    private Set<String> getTick(long tick) {
+        Set<String> keys = ticks.get(tick);
+        
+        if (keys == null) {
+            keys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            Set<String> previous = ticks.putIfAbsent(tick, keys);
+            keys = previous == null ? keys : previous;
+        }
+        
+        return keys;
+    }
+    
+    /**
+     * Returns the tracked values.
+     * 
+     * @return List of tracked values.
+     */
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size.get());
+        
+        for (Entry<V> entry : entries.values()) {
+            values.add(entry.value);
+        }
+        
+        return values;
+    }
+    
+    /**
+     * Stops tracking all requests.
+     */
+    public void clear() {
+        for (String key : entries.keySet()) {
+            remove(key);
+        }
+    }
+    
+    /**
+     * Returns the number of tracked requests.
+     * 
+     * @return The number of tracked requests.
+     */
+    public int size() {
+        return size.get();
+    }
+    
+    /**
+     * Returns the number of requests that were evicted to make room for new requests.
+     * 
+     * @return The number of evicted requests.
+     */
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+    
+    /**
+     * Returns the number of requests that were removed because they expired.
+     * 
+     * @return The number of expired requests.
+     */
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+    
+    /**
+     * Resets the evicted and expired request counts.
+     */
+    public void resetCounts() {
+        evictedCount.set(0);
+        expiredCount.set(0);
+    }
+    
+    public int getLimit() {
+        return limit;
+    }
+    
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+    
+    public long getExpirationMs() {
+        return expirationMs;
+    }
+    
+    public void setExpirationMs(long expirationMs) {
+        this.expirationMs = expirationMs;
+    }
+    
+}
@@ -0,0 +1,110 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histogram over a rolling window of up to {@link #MAX_WINDOW_MINUTES} minutes. Values are
+ * recorded in a ring of histograms, one per calendar minute, which are allocated when first needed
+ * and reused as the window advances. This class is thread-safe.
+ * <p>
+ * Windows consist of whole calendar-minute buckets: a window of N minutes comprises the current,
+ * partial minute and the N - 1 minutes preceding it, and so covers more than N - 1 but at most N
+ * minutes. Use {@link #getWindowStart} to determine the period actually covered. A window of whole
+ * minutes only, as needed for periodic export, is obtained by passing the last millisecond of the
+ * preceding minute as the current time.
+ */
+public class RollingLatencyHistogram {
+    
+    /**
+     * The longest window, in minutes, for which statistics are available.
+     */
+    public static final int MAX_WINDOW_MINUTES = 15;
+    
+    private static final long SLOT_MS = TimeUnit.MINUTES.toMillis(1);
+    
+    /**
+     * One more slot than the longest window, so that a window of whole minutes preceding the
+     * current one is available.
+     */
+    private static final int SLOT_COUNT = MAX_WINDOW_MINUTES + 1;
+    
+    private final LatencyHistogram[] slots = new LatencyHistogram[SLOT_COUNT];
+    
+    private final long[] slotMinutes = new long[SLOT_COUNT];
+    
+    /**
+     * Records a latency.
+     * 
+     * @param value The latency in milliseconds.
+     * @param now The current time in milliseconds.
+     */
+    public synchronized void record(long value, long now) {
+        long minute = now / SLOT_MS;
+        int i = (int) (minute % SLOT_COUNT);
+        LatencyHistogram slot = slots[i];
+        
+        if (slot == null) {
+            slot = slots[i] = new LatencyHistogram();
+        } else if (slotMinutes[i] != minute) {
+            slot.reset();
+        }
+        
+        slotMinutes[i] = minute;
+        slot.record(value);
+    }
+    
+    /**
+     * Returns the start of the calendar minute containing the specified time.
+     * 
+     * @param time The time in milliseconds.
+     * @return The start of the minute in milliseconds.
+     */
+    public static long getMinuteStart(long time) {
+        return time / SLOT_MS * SLOT_MS;
+    }
+    
+    /**
+     * Returns the start of the period covered by a window, which is the start of its earliest
+     * calendar minute.
+     * 
+     * @param windowMinutes The window length in minutes.
+     * @param now The current time in milliseconds.
+     * @return The start of the window in milliseconds.
+     */
+    public static long getWindowStart(int windowMinutes, long now) {
+        return (now / SLOT_MS - windowMinutes + 1) * SLOT_MS;
+    }
+    
+    /**
+     * Returns a histogram of the values recorded during the current, partial minute and the
+     * preceding whole minutes of the window.
+     * 
+     * @param windowMinutes The window length in minutes (1 - MAX_WINDOW_MINUTES).
+     * @param now The current time in milliseconds.
+     * @return A histogram of the values recorded within the window.
+     */
+    public synchronized LatencyHistogram getSnapshot(int windowMinutes, long now) {
+        long minute = now / SLOT_MS;
+        LatencyHistogram snapshot = new LatencyHistogram();
+        
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            long age = minute - slotMinutes[i];
+            
+            if (slots[i] != null && age >= 0 && age < windowMinutes) {
+                snapshot.add(slots[i]);
+            }
+        }
+        
+        return snapshot;
+    }
+    
+}
@@ -11,37 +11,78 @@ package org.carewebframework.logging.perf4j;
 
 import java.util.Map;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import org.carewebframework.common.StopWatchFactory.IStopWatch;
 
 /**
- * Wrapper class for perf4j implementation of StopWatch.
+ * Stopwatch that logs in perf4j format to the perf4j timing logger. Timing is captured directly
+ * rather than through a perf4j stopwatch, which is only created when a result is actually
+ * logged.
  */
 public class StopWatch implements IStopWatch {
     
-    private org.perf4j.StopWatch sw;
+    private static final Log log = LogFactory.getLog(org.perf4j.StopWatch.DEFAULT_LOGGER_NAME);
+    
+    private final StopWatchProvider provider;
+    
+    private String tag;
     
     private Map<String, Object> data;
     
+    private long startTime;
+    
+    private long startNanos;
+    
+    private long elapsedTime;
+    
+    /**
+     * Returns true if the perf4j timing logger is enabled.
+     * 
+     * @return True if timing results will be logged.
+     */
+    static boolean isEnabled() {
+        return log.isInfoEnabled();
+    }
+    
+    public StopWatch() {
+        this(null);
+    }
+    
+    /**
+     * Creates a stopwatch that uses the time threshold of the specified provider.
+     * 
+     * @param provider The owning provider (may be null).
+     */
+    StopWatch(StopWatchProvider provider) {
+        this.provider = provider;
+    }
+    
     @Override
     public void init(String tag, Map<String, Object> data) {
-        sw = new org.perf4j.commonslog.CommonsLogStopWatch(tag);
+        this.tag = tag;
         this.data = data;
     }
     
     @Override
     public void start() {
-        sw.start();
+        startTime = System.currentTimeMillis();
+        startNanos = System.nanoTime();
     }
     
     @Override
     public void stop() {
-        sw.setMessage(data == null ? null : data.toString());
-        sw.stop();
+        elapsedTime = (System.nanoTime() - startNanos) / 1000000;
+        long threshold = provider == null ? 0 : provider.getTimeThreshold();
+        
+        if (elapsedTime >= threshold && log.isInfoEnabled()) {
+            log.info(toString());
+        }
     }
     
     @Override
     public String toString() {
-        sw.setMessage(data == null ? null : data.toString());
-        return sw.toString();
+        return new org.perf4j.StopWatch(startTime, elapsedTime, tag, data == null ? null : data.toString()).toString();
     }
 }
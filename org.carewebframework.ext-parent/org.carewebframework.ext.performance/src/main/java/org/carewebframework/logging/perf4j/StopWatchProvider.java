@@ -0,0 +1,70 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+import java.util.Map;
+
+import org.carewebframework.common.StopWatchFactory.IStopWatch;
+import org.carewebframework.common.StopWatchFactory.IStopWatchProvider;
+
+/**
+ * Supplies perf4j stopwatches to the stopwatch factory. When the perf4j timing logger is disabled,
+ * a shared inactive stopwatch is returned so that timing costs no allocation.
+ */
+public class StopWatchProvider implements IStopWatchProvider {
+    
+    /**
+     * Stopwatch returned when timing is disabled.
+     */
+    private static final IStopWatch DISABLED = new IStopWatch() {
+        
+        @Override
+        public void init(String tag, Map<String, Object> data) {
+        }
+        
+        @Override
+        public void start() {
+        }
+        
+        @Override
+        public void stop() {
+        }
+        
+    };
+    
+    private long timeThreshold;
+    
+    @Override
+    public IStopWatch create() {
+        if (!StopWatch.isEnabled()) {
+            return DISABLED;
+        }
+        
+        return new StopWatch(this);
+    }
+    
+    /**
+     * Returns the minimum elapsed time, in milliseconds, for a result to be logged.
+     * 
+     * @return The time threshold.
+     */
+    public long getTimeThreshold() {
+        return timeThreshold;
+    }
+    
+    /**
+     * Sets the minimum elapsed time, in milliseconds, for a result to be logged.
+     * 
+     * @param timeThreshold The time threshold.
+     */
+    public void setTimeThreshold(long timeThreshold) {
+        this.timeThreshold = timeThreshold;
+    }
+}
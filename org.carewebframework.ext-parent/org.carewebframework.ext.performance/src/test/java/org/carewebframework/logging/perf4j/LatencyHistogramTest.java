@@ -0,0 +1,198 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+import org.zkoss.zk.ui.Desktop;
+import org.zkoss.zk.ui.Execution;
+
+public class LatencyHistogramTest {
+    
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99));
+        
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+        
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000, histogram.getMax());
+        assertEquals(5000.5, histogram.getMean(), 0.001);
+        assertAccurate(5000, histogram.getPercentile(50));
+        assertAccurate(9000, histogram.getPercentile(90));
+        assertAccurate(9900, histogram.getPercentile(99));
+        assertEquals(10000, histogram.getPercentile(100));
+        histogram.reset();
+        Random random = new Random(1);
+        long[] values = new long[100000];
+        
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) (Math.exp(random.nextGaussian() * 2 + 5));
+            histogram.record(values[i]);
+        }
+        
+        Arrays.sort(values);
+        assertAccurate(values[49999], histogram.getPercentile(50));
+        assertAccurate(values[98999], histogram.getPercentile(99));
+        assertAccurate(values[99899], histogram.getPercentile(99.9));
+        histogram.reset();
+        histogram.record(-5);
+        histogram.record(7);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.getPercentile(1));
+        assertEquals(7, histogram.getPercentile(50));
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMax());
+    }
+    
+    private void assertAccurate(long expected, long actual) {
+        assertTrue("Expected " + expected + " but was " + actual, actual >= expected && actual <= expected * 1.07);
+    }
+    
+    @Test
+    public void testRollingWindows() {
+        RollingLatencyHistogram histogram = new RollingLatencyHistogram();
+        long start = 1000 * MINUTE;
+        
+        for (int i = 0; i < 20; i++) {
+            histogram.record(i + 1, start + i * MINUTE);
+        }
+        
+        long now = start + 19 * MINUTE;
+        assertEquals(1, histogram.getSnapshot(1, now).getCount());
+        assertEquals(20, histogram.getSnapshot(1, now).getMax());
+        assertEquals(5, histogram.getSnapshot(5, now).getCount());
+        assertEquals(16, histogram.getSnapshot(5, now).getPercentile(0));
+        assertEquals(15, histogram.getSnapshot(15, now).getCount());
+        assertEquals(0, histogram.getSnapshot(1, now + MINUTE).getCount());
+        assertEquals(4, histogram.getSnapshot(5, now + MINUTE).getCount());
+        assertEquals(0, histogram.getSnapshot(15, now + 15 * MINUTE).getCount());
+        assertEquals(now - 4 * MINUTE, RollingLatencyHistogram.getWindowStart(5, now + MINUTE / 2));
+        histogram.record(21, now + MINUTE);
+        long end = RollingLatencyHistogram.getMinuteStart(now + MINUTE + MINUTE / 2);
+        assertEquals(now + MINUTE, end);
+        assertEquals(15, histogram.getSnapshot(15, end - 1).getCount());
+        assertEquals(20, histogram.getSnapshot(15, end - 1).getMax());
+    }
+    
+    @Test
+    public void testMonitor() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.carewebframework.test:type=PerformanceMonitor");
+        
+        try {
+            PerformanceMonitor monitor = new PerformanceMonitor(null, scheduler);
+            monitor.setLatencyEventTypeLimit(2);
+            simulateRequest(monitor, "req1", "onClick", 10, 30, 5, 60);
+            simulateRequest(monitor, "req2", "onClick", 20, 80, 5, 120);
+            simulateRequest(monitor, "req3", "onChange", 1, 2, 3, 10);
+            simulateRequest(monitor, "req4", "onSelect", 1, 2, 3, 10);
+            assertEquals(3, monitor.getLatencyEventTypes().size());
+            assertTrue(monitor.getLatencyEventTypes().contains(LatencyStatistics.OTHER_EVENT_TYPE));
+            assertEquals(3 * 4 * 3, monitor.getLatencySummaries().size());
+            LatencySummary summary = monitor.getLatencySummary("onClick", "server", 5);
+            assertEquals(2, summary.getCount());
+            assertEquals(80, summary.getMax());
+            assertEquals(30, summary.getP50());
+            assertTrue(summary.getWindowEnd() - summary.getWindowStart() <= 5 * 60000);
+            assertTrue(summary.getWindowEnd() - summary.getWindowStart() >= 4 * 60000);
+            assertEquals(20, monitor.getLatencySummary("onClick", "client_to_server", 5).getMax());
+            assertEquals(5, monitor.getLatencySummary("onClick", "server_to_client", 15).getP99());
+            assertEquals(120, monitor.getLatencySummary("onClick", "total", 15).getMax());
+            assertNull(monitor.getLatencySummary("onSelect", "total", 15));
+            server.registerMBean(monitor, name);
+            CompositeData data = (CompositeData) server.invoke(name, "getLatencySummary", new Object[] { "onClick",
+                    "TOTAL", 5 }, new String[] { String.class.getName(), String.class.getName(), int.class.getName() });
+            assertEquals(2L, data.get("count"));
+            assertEquals(120L, data.get("max"));
+            CompositeData[] all = (CompositeData[]) server.getAttribute(name, "LatencySummaries");
+            assertEquals(36, all.length);
+            monitor.clearLatencyStatistics();
+            assertEquals(0, monitor.getLatencyEventTypes().size());
+        } finally {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            
+            scheduler.shutdownNow();
+        }
+    }
+    
+    /**
+     * Simulates the notifications the monitor receives for a single request.
+     */
+    private void simulateRequest(PerformanceMonitor monitor, String requestId, String command, long toServer,
+                                 long server, long toClient, long total) {
+        Execution exec = createExecution(command);
+        long start = System.currentTimeMillis();
+        monitor.requestStartAtClient(requestId, exec, start);
+        monitor.requestStartAtServer(requestId, exec, start + toServer);
+        monitor.requestCompleteAtServer(requestId, exec, start + toServer + server);
+        monitor.requestReceiveAtClient(requestId, exec, start + toServer + server + toClient);
+        monitor.requestCompleteAtClient(requestId, exec, start + total);
+    }
+    
+    private Execution createExecution(final String command) {
+        final Desktop desktop = (Desktop) createProxy(Desktop.class, null);
+        return (Execution) createProxy(Execution.class, new InvocationHandler() {
+            
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "getDesktop":
+                        return desktop;
+                    
+                    case "getParameter":
+                        return "cmd_0".equals(args[0]) ? command : null;
+                    
+                    default:
+                        return null;
+                }
+            }
+            
+        });
+    }
+    
+    private Object createProxy(Class<?> clazz, InvocationHandler handler) {
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { clazz },
+            handler != null ? handler : new InvocationHandler() {
+                
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    return method.getName().equals("getId") ? "desktop" : null;
+                }
+                
+            });
+    }
+    
+}
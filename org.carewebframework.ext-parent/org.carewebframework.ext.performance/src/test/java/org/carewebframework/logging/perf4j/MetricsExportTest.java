@@ -0,0 +1,235 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.zkoss.zk.ui.Component;
+import org.zkoss.zk.ui.event.Event;
+import org.zkoss.zk.ui.metainfo.ComponentDefinition;
+
+public class MetricsExportTest {
+    
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
+    private Component createComponent(final String type, final String uuid) {
+        final ComponentDefinition definition = (ComponentDefinition) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { ComponentDefinition.class }, new InvocationHandler() {
+                
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    return method.getName().equals("getName") ? type : null;
+                }
+                
+            });
+        
+        return (Component) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Component.class },
+            new InvocationHandler() {
+                
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "getDefinition":
+                            return definition;
+                        
+                        case "getUuid":
+                            return uuid;
+                        
+                        case "toString":
+                            return "<" + type + " " + uuid + ">";
+                        
+                        default:
+                            return null;
+                    }
+                }
+                
+            });
+    }
+    
+    private List<LatencySummary> createSummaries(int count) {
+        List<LatencySummary> summaries = new ArrayList<>();
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10);
+        histogram.record(20);
+        
+        for (int i = 0; i < count; i++) {
+            summaries.add(new LatencySummary("onClick.button" + i, RequestPhase.TOTAL, 1, 0, 60000, histogram));
+        }
+        
+        summaries.add(new LatencySummary("quoted,\"key\"", EventStatistics.EVENT_PHASE, 1, 0, 60000, histogram));
+        summaries.add(new LatencySummary("idle", EventStatistics.EVENT_PHASE, 1, 0, 60000, new LatencyHistogram()));
+        return summaries;
+    }
+    
+    @Test
+    public void testEventKeys() {
+        EventStatistics stats = new EventStatistics();
+        stats.setKeyLimit(3);
+        Event click1 = new Event("onClick", createComponent("button", "a1"));
+        Event click2 = new Event("onClick", createComponent("button", "b2"));
+        String key = stats.getKey(click1);
+        assertEquals("onClick.button", key);
+        assertSame(key, stats.getKey(click2));
+        assertEquals("onChange.my_widget", stats.getKey(new Event("onChange", createComponent("my widget", "c3"))));
+        assertEquals("onEcho.none", stats.getKey(new Event("onEcho")));
+        assertEquals(EventStatistics.OTHER_EVENT_KEY, stats.getKey(new Event("onSelect", createComponent("listbox", "d4"))));
+        assertEquals("onClick.button", stats.getKey(click1));
+        stats.record(key, 5);
+        stats.record(key, 15);
+        List<LatencySummary> summaries = stats.getSummaries(1);
+        assertEquals(1, summaries.size());
+        assertEquals(2, summaries.get(0).getCount());
+        assertEquals(15, summaries.get(0).getMax());
+    }
+    
+    @Test
+    public void testEventLog() {
+        EventLog eventLog = new EventLog("tag", null, "dt", "req");
+        Event click1 = new Event("onClick", createComponent("button", "a1"));
+        Event click2 = new Event("onClick", createComponent("button", "b2"));
+        EventInfo ei1 = new EventInfo(click1, "tag", "dt", "req", "onClick.button");
+        EventInfo ei2 = new EventInfo(click2, "tag", "dt", "req", "onClick.button");
+        assertNull(eventLog.put(click1, ei1));
+        eventLog.put(click2, ei2);
+        assertSame(ei1, eventLog.get(click1));
+        assertSame(ei2, eventLog.get(click2));
+        ei1.end();
+        EventInfo ei3 = new EventInfo(click1, "tag", "dt", "req", "onClick.button");
+        assertNull(eventLog.put(click1, ei3));
+        assertSame(ei3, eventLog.get(click1));
+        assertEquals("onClick.button", ei3.getKey());
+        ei3.end();
+        assertNull(eventLog.get(click1));
+        assertNull(eventLog.get(new Event("onClick", createComponent("button", "c3"))));
+        
+        for (int i = 0; i < 500; i++) {
+            eventLog.put(click2, new EventInfo(click2, "tag", "dt", "req", "onClick.button"));
+        }
+        
+        // Events beyond the limit are not logged.
+        Event click4 = new Event("onClick", createComponent("button", "d4"));
+        eventLog.put(click4, new EventInfo(click4, "tag", "dt", "req", "onClick.button"));
+        assertNull(eventLog.get(click4));
+    }
+    
+    @Test
+    public void testCsvExporter() throws Exception {
+        CsvMetricsExporter exporter = new CsvMetricsExporter();
+        exporter.export(0, createSummaries(1));
+        assertNull(exporter.getFile());
+        exporter.setDirectory(new File(folder.getRoot(), "metrics").getPath());
+        exporter.export(0, createSummaries(1));
+        List<String> lines = Files.readAllLines(exporter.getFile().toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertEquals(CsvMetricsExporter.HEADER, lines.get(0));
+        assertEquals("1970-01-01T00:00:00Z,onClick.button0,TOTAL,1,2,15.0,10,20,20,20,20", lines.get(1));
+        assertEquals("1970-01-01T00:00:00Z,\"quoted,\"\"key\"\"\",EVENT,1,2,15.0,10,20,20,20,20", lines.get(2));
+        exporter.setMaxFileSize(1000);
+        exporter.setMaxBackups(2);
+        
+        for (int i = 0; i < 10; i++) {
+            exporter.export(60000L * i, createSummaries(10));
+        }
+        
+        File file = exporter.getFile();
+        assertTrue(new File(file.getPath() + ".1").exists());
+        assertTrue(new File(file.getPath() + ".2").exists());
+        assertFalse(new File(file.getPath() + ".3").exists());
+        lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(CsvMetricsExporter.HEADER, lines.get(0));
+        assertTrue(lines.get(lines.size() - 1).startsWith("1970-01-01T00:09:00Z,"));
+    }
+    
+    @Test
+    public void testJmxExporter() throws Exception {
+        JmxMetricsExporter exporter = new JmxMetricsExporter();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.carewebframework.test:type=JmxMetricsExporter");
+        server.registerMBean(exporter, name);
+        
+        try {
+            exporter.export(1234, createSummaries(2));
+            assertEquals(1234L, server.getAttribute(name, "LastExportTime"));
+            assertEquals(4, ((CompositeData[]) server.getAttribute(name, "Summaries")).length);
+            String[] keys = (String[]) server.getAttribute(name, "Keys");
+            assertEquals("idle", keys[0]);
+            CompositeData data = (CompositeData) server.invoke(name, "getSummary", new Object[] { "onClick.button1",
+                    "total" }, new String[] { String.class.getName(), String.class.getName() });
+            assertEquals(20L, data.get("max"));
+            assertNull(exporter.getSummary("onClick.button1", "SERVER"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+    
+    @Test
+    public void testExportMetrics() throws Exception {
+        PerformanceMetrics metrics = PerformanceMetrics.getInstance();
+        CsvMetricsExporter csvExporter = new CsvMetricsExporter();
+        csvExporter.setDirectory(folder.getRoot().getPath());
+        JmxMetricsExporter jmxExporter = new JmxMetricsExporter();
+        IMetricsExporter failingExporter = new IMetricsExporter() {
+            
+            @Override
+            public void export(long timestamp, List<LatencySummary> summaries) throws Exception {
+                throw new Exception("Expected failure.");
+            }
+            
+        };
+        
+        try {
+            metrics.setExporters(Collections.<IMetricsExporter> emptyList());
+            metrics.exportMetrics();
+            metrics.setExporters(Arrays.asList(failingExporter, csvExporter, jmxExporter));
+            EventStatistics stats = metrics.getEventStatistics();
+            String key = stats.getKey(new Event("onTest", createComponent("testbox", "t1")));
+            stats.record(key, 42);
+            long next = System.currentTimeMillis() + 60000;
+            metrics.exportMetrics(next);
+            assertNotNull(jmxExporter.getSummary(key, EventStatistics.EVENT_PHASE));
+            long exportTime = jmxExporter.getLastExportTime();
+            assertEquals(RollingLatencyHistogram.getMinuteStart(next), exportTime);
+            metrics.exportMetrics(next);
+            assertEquals(exportTime, jmxExporter.getLastExportTime());
+            String csv = new String(Files.readAllBytes(csvExporter.getFile().toPath()), StandardCharsets.UTF_8);
+            assertTrue(csv, csv.contains(",onTest.testbox,EVENT,1,1,42.0,42,42,42,42,42\n"));
+        } finally {
+            metrics.setExporters(Collections.<IMetricsExporter> emptyList());
+            metrics.getEventStatistics().clear();
+        }
+    }
+    
+}
@@ -0,0 +1,132 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class RequestTrackerTest {
+    
+    private static final int THREADS = 8;
+    
+    private static final int REQUESTS_PER_THREAD = 50000;
+    
+    private static final int LIMIT = 1000;
+    
+    @Test
+    public void testTracking() {
+        RequestTracker<String> tracker = new RequestTracker<>(2, 1000, 100);
+        assertSame("a", tracker.track("1", "a", 0));
+        assertSame("a", tracker.track("1", "b", 0));
+        assertSame("c", tracker.track("2", "c", 50));
+        tracker.complete("1");
+        // A completed request is evicted first to make room.
+        assertSame("d", tracker.track("3", "d", 150));
+        assertNull(tracker.get("1"));
+        assertEquals(1, tracker.getEvictedCount());
+        assertEquals(2, tracker.size());
+        // Otherwise, the oldest live request is evicted.
+        assertSame("e", tracker.track("4", "e", 160));
+        assertNull(tracker.get("2"));
+        assertEquals(2, tracker.getEvictedCount());
+        assertEquals("d", tracker.remove("3"));
+        assertNull(tracker.remove("3"));
+        assertEquals(0, tracker.expire(1199).size());
+        List<String> expired = tracker.expire(1200);
+        assertEquals(1, expired.size());
+        assertEquals("e", expired.get(0));
+        assertEquals(0, tracker.size());
+        assertEquals(1, tracker.getExpiredCount());
+        // Tracking after a tick boundary expires old entries without an explicit call.
+        assertSame("f", tracker.track("5", "f", 1250));
+        tracker.complete("5");
+        assertSame("g", tracker.track("6", "g", 2400));
+        assertNull(tracker.get("5"));
+        assertEquals(2, tracker.getExpiredCount());
+        tracker.clear();
+        assertEquals(0, tracker.size());
+        assertEquals(0, tracker.values().size());
+    }
+    
+    /**
+     * Many threads track and complete requests concurrently. Some requests are abandoned and must
+     * later expire or be evicted. Every request must be tracked, the tracker must never exceed its
+     * limit, and its size must remain consistent with its contents.
+     */
+    @Test
+    public void testStress() throws Exception {
+        final RequestTracker<Object> tracker = new RequestTracker<>(LIMIT, 2000, 50);
+        final AtomicLong clock = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Long>> futures = new ArrayList<>();
+        
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            
+            futures.add(executor.submit(new Callable<Long>() {
+                
+                @Override
+                public Long call() throws Exception {
+                    start.await();
+                    long removed = 0;
+                    
+                    for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                        String key = thread + ":" + i;
+                        Object value = new Object();
+                        long now = clock.incrementAndGet() / 100;
+                        assertSame(value, tracker.track(key, value, now));
+                        assertTrue(tracker.size() <= LIMIT);
+                        
+                        if (i % 200 == 0) {
+                            tracker.complete(key);
+                        } else if (i % 100 != 0) {
+                            Object previous = tracker.remove(key);
+                            assertTrue(previous == null || previous == value);
+                            removed += previous == null ? 0 : 1;
+                        }
+                    }
+                    
+                    return removed;
+                }
+                
+            }));
+        }
+        
+        start.countDown();
+        long removed = 0;
+        
+        for (Future<Long> future : futures) {
+            removed += future.get(60, TimeUnit.SECONDS);
+        }
+        
+        executor.shutdown();
+        assertEquals(tracker.values().size(), tracker.size());
+        tracker.expire(Long.MAX_VALUE / 2);
+        assertEquals(0, tracker.size());
+        assertEquals(0, tracker.values().size());
+        assertEquals(THREADS * REQUESTS_PER_THREAD, removed + tracker.getExpiredCount() + tracker.getEvictedCount());
+    }
+    
+}
@@ -0,0 +1,80 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.logging.perf4j;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.logging.impl.Jdk14Logger;
+
+import org.carewebframework.common.StopWatchFactory.IStopWatch;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StopWatchTest {
+    
+    private final Logger timingLogger = Logger.getLogger(org.perf4j.StopWatch.DEFAULT_LOGGER_NAME);
+    
+    private final Map<String, Object> data = new HashMap<>();
+    
+    @Before
+    public void before() {
+        Assume.assumeTrue(LogFactory.getLog(org.perf4j.StopWatch.DEFAULT_LOGGER_NAME) instanceof Jdk14Logger);
+        data.put("task", "test");
+    }
+    
+    @After
+    public void after() {
+        timingLogger.setLevel(null);
+    }
+    
+    @Test
+    public void testProvider() {
+        timingLogger.setLevel(Level.INFO);
+        StopWatchProvider provider = new StopWatchProvider();
+        provider.setTimeThreshold(Long.MAX_VALUE);
+        IStopWatch sw1 = provider.create();
+        assertTrue(sw1 instanceof StopWatch);
+        sw1.init("test", data);
+        sw1.start();
+        sw1.stop();
+        assertTrue(sw1.toString().contains("tag[test]"));
+        assertNotSame(sw1, provider.create());
+    }
+    
+    @Test
+    public void testDisabled() {
+        timingLogger.setLevel(Level.OFF);
+        StopWatchProvider provider = new StopWatchProvider();
+        IStopWatch sw = provider.create();
+        assertFalse(sw instanceof StopWatch);
+        assertSame(sw, provider.create());
+    }
+    
+    @Test
+    public void testFormat() {
+        StopWatch sw = new StopWatch();
+        sw.init("test", data);
+        sw.start();
+        sw.stop();
+        assertTrue(sw.toString(), sw.toString().matches("^start\\[\\d+\\] time\\[\\d+\\] tag\\[test\\] message\\[\\{task=test\\}\\]$"));
+    }
+}
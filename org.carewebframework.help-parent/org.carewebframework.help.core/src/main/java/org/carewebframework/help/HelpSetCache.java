@@ -23,10 +23,12 @@ public class HelpSetCache extends AbstractCache<HelpModule, IHelpSet> {
     }
     
     /**
-     * Enforce singleton instance.
+     * Enforce singleton instance. The least recently used help sets are discarded when there are
+     * more than 100.
      */
     private HelpSetCache() {
         super();
+        setMaxSize(100);
     }
     
     @Override
@@ -0,0 +1,116 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.jms.activemq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+
+import javax.jms.Connection;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.Topic;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+
+import org.carewebframework.api.test.TestPacket;
+import org.carewebframework.jms.JMSUtil;
+import org.carewebframework.jms.serializer.BinaryMessageSerializer;
+import org.carewebframework.jms.serializer.IMessageSerializer;
+import org.carewebframework.jms.serializer.JavaMessageSerializer;
+import org.carewebframework.jms.serializer.MessageSerializerRegistry;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Verifies round trip of event data through each message serializer using an embedded,
+ * non-persistent broker.
+ */
+public class MessageSerializerTest {
+    
+    private static Connection connection;
+    
+    private static Session session;
+    
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        ActiveMQConnectionFactory factory = new ActiveMQConnectionFactory(
+                "vm://serializerTest?broker.persistent=false&broker.useJmx=false");
+        connection = factory.createConnection();
+        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        connection.start();
+    }
+    
+    @AfterClass
+    public static void afterClass() throws Exception {
+        connection.close();
+    }
+    
+    @Test
+    public void testRoundTrip() throws Exception {
+        ArrayList<Object> data = new ArrayList<>();
+        data.add(new TestPacket(1, "TEST.EVENT", true, true));
+        data.add("text");
+        data.add(123L);
+        data.add(null);
+        
+        for (String name : new String[] { JavaMessageSerializer.NAME, BinaryMessageSerializer.NAME }) {
+            assertEquals(data, roundTrip(name, data));
+        }
+        
+        TestPacket packet = new TestPacket(2, "TEST.EVENT", true, true);
+        
+        for (IMessageSerializer serializer : MessageSerializerRegistry.getInstance()) {
+            assertEquals(packet.toString(), roundTrip(serializer.getName(), packet).toString());
+        }
+    }
+    
+    @Test
+    public void testPayloadSize() throws Exception {
+        TestPacket packet = new TestPacket(1, "TEST.EVENT", true, true);
+        BinaryMessageSerializer binary = (BinaryMessageSerializer) MessageSerializerRegistry.getInstance()
+                .get(BinaryMessageSerializer.NAME);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(packet);
+        }
+        
+        assertTrue(binary.serialize(packet).length < bytes.size());
+    }
+    
+    private Object roundTrip(String serializerName, Serializable data) throws Exception {
+        IMessageSerializer serializer = MessageSerializerRegistry.getInstance().get(serializerName);
+        Topic topic = session.createTopic("ROUNDTRIP");
+        MessageConsumer consumer = session.createConsumer(topic);
+        MessageProducer producer = session.createProducer(topic);
+        
+        try {
+            producer.send(JMSUtil.createMessage(session, serializer, "ROUNDTRIP", data, "sender", null));
+            Message message = consumer.receive(5000);
+            assertNotNull("Timed out waiting for message.", message);
+            assertEquals(serializerName, message.getStringProperty(JMSUtil.EVENT_SERIALIZER_PROPERTY));
+            return serializer.getData(message);
+        } finally {
+            producer.close();
+            consumer.close();
+        }
+    }
+    
+}
@@ -0,0 +1,117 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.jms.activemq;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.jms.ConnectionFactory;
+
+import org.carewebframework.api.event.EventManager;
+import org.carewebframework.api.event.IGenericEvent;
+import org.carewebframework.api.test.CommonTest;
+import org.carewebframework.jms.GlobalEventDispatcher;
+
+import org.springframework.jms.core.JmsTemplate;
+
+import org.junit.Test;
+
+/**
+ * Tests event routing by topic subscribers and delivery of batched events against the embedded
+ * broker.
+ */
+public class PublishingTest extends CommonTest {
+    
+    /**
+     * Records the names of received events.
+     */
+    private static class Subscriber implements IGenericEvent<Object> {
+        
+        final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+        
+        @Override
+        public void eventCallback(String eventName, Object eventData) {
+            received.add(eventName);
+        }
+        
+        void await(int count) throws InterruptedException {
+            long timeout = System.currentTimeMillis() + 30000;
+            
+            while (received.size() < count && System.currentTimeMillis() < timeout) {
+                Thread.sleep(10);
+            }
+        }
+    }
+    
+    private GlobalEventDispatcher createDispatcher(EventManager localEventManager, int batchWindow) {
+        GlobalEventDispatcher dispatcher = new GlobalEventDispatcher();
+        dispatcher.setFactory(appContext.getBean("jmsLocalConnectionFactory", ConnectionFactory.class));
+        dispatcher.setTopicTemplate(appContext.getBean("jmsTopicTemplate", JmsTemplate.class));
+        dispatcher.setLocalEventDispatcher(localEventManager);
+        dispatcher.setBatchWindow(batchWindow);
+        dispatcher.init();
+        return dispatcher;
+    }
+    
+    @Test
+    public void testRouting() throws Exception {
+        EventManager localEventManager = new EventManager();
+        GlobalEventDispatcher dispatcher = createDispatcher(localEventManager, 0);
+        Subscriber subscriber = new Subscriber();
+        
+        try {
+            localEventManager.subscribe("ROUTE.A", subscriber);
+            localEventManager.subscribe("ROUTE.C", subscriber);
+            localEventManager.unsubscribe("ROUTE.C", subscriber);
+            
+            for (String eventName : new String[] { "ROUTE.B", "ROUTE.A", "ROUTE.C", "ROUTEX", "ROUTE.A.X" }) {
+                dispatcher.fireRemoteEvent(eventName, eventName, null);
+            }
+            
+            subscriber.await(2);
+            Thread.sleep(500);
+            assertEquals(Arrays.asList("ROUTE.A", "ROUTE.A.X"), subscriber.received);
+        } finally {
+            localEventManager.unsubscribe("ROUTE.A", subscriber);
+            dispatcher.destroy();
+        }
+    }
+    
+    @Test
+    public void testBatching() throws Exception {
+        EventManager receiverEventManager = new EventManager();
+        GlobalEventDispatcher receiver = createDispatcher(receiverEventManager, 0);
+        GlobalEventDispatcher publisher = createDispatcher(new EventManager(), 20);
+        Subscriber subscriber = new Subscriber();
+        List<String> expected = new ArrayList<>();
+        
+        try {
+            receiverEventManager.subscribe("BATCH", subscriber);
+            
+            for (int i = 0; i < 250; i++) {
+                String eventName = "BATCH.EVENT" + i;
+                expected.add(eventName);
+                publisher.fireRemoteEvent(eventName, i, null);
+            }
+            
+            subscriber.await(expected.size());
+            assertEquals(expected, subscriber.received);
+        } finally {
+            receiverEventManager.unsubscribe("BATCH", subscriber);
+            publisher.destroy();
+            receiver.destroy();
+        }
+    }
+    
+}
@@ -10,15 +10,25 @@
 package org.carewebframework.jms;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.ExceptionListener;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageListener;
+import javax.jms.MessageProducer;
 import javax.jms.ObjectMessage;
 import javax.jms.Session;
 import javax.jms.TextMessage;
@@ -30,9 +40,15 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.carewebframework.api.event.AbstractGlobalEventDispatcher;
+import org.carewebframework.api.event.EventUtil;
+import org.carewebframework.api.thread.ThreadUtil;
+import org.carewebframework.jms.serializer.IMessageSerializer;
+import org.carewebframework.jms.serializer.JavaMessageSerializer;
+import org.carewebframework.jms.serializer.MessageSerializerRegistry;
 
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.jms.core.MessageCreator;
+import org.springframework.jms.support.JmsUtils;
 
 /**
  * This class is responsible for communicating with the global messaging server (in this case, a JMS
@@ -60,21 +76,65 @@ import org.springframework.jms.core.MessageCreator;
  * <p>
  * TODO Transactional Support.
  */
-public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher implements MessageListener {
+public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher implements MessageListener, ExceptionListener {
     
     private static final Log log = LogFactory.getLog(GlobalEventDispatcher.class);
     
-    private final Map<String, TopicSubscriber> subscribers = Collections
-            .synchronizedMap(new HashMap<String, TopicSubscriber>());
-            
+    /**
+     * An event awaiting publication in the next batch.
+     */
+    private static class PendingEvent {
+        
+        final String eventName;
+        
+        final Serializable eventData;
+        
+        final String recipients;
+        
+        PendingEvent(String eventName, Serializable eventData, String recipients) {
+            this.eventName = eventName;
+            this.eventData = eventData;
+            this.recipients = recipients;
+        }
+    }
+    
+    private final Set<String> subscribedEvents = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    
+    private final Map<String, TopicSubscriber> subscribers = new HashMap<>();
+    
+    private final Map<String, Session> subscriberSessions = new HashMap<>();
+    
+    private final List<PendingEvent> pendingEvents = new ArrayList<>();
+    
+    private final Runnable flushTask = new Runnable() {
+        
+        @Override
+        public void run() {
+            try {
+                flush();
+            } catch (Throwable e) {
+                log.error("Error publishing event batch.", e);
+            }
+        }
+        
+    };
+    
+    private boolean flushScheduled;
+    
     private ConnectionFactory factory;
     
     private Connection connection;
     
-    private TopicSession session;
+    private final Object publishLock = new Object();
     
     private JmsTemplate topicTemplate; //default "not transacted" and "auto-acknowledge"
     
+    private IMessageSerializer serializer = MessageSerializerRegistry.getInstance().get(JavaMessageSerializer.NAME);
+    
+    private int batchWindow;
+    
+    private int batchSize = 100;
+    
     /**
      * Create the global event dispatcher.
      */
@@ -107,7 +167,7 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
         
         try {
             this.connection = this.factory.createConnection();
-            this.session = (TopicSession) this.connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            setExceptionListener(this.connection);
             this.connection.start();
             updateConnectionStatus(true);
             assertSubscriptions();
@@ -129,13 +189,7 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
             updateConnectionStatus(false);
         }
         
-        if (this.session != null) {
-            try {
-                this.session.close();
-            } catch (Exception e) {
-                log.error("Error closing JMS topic session.", e);
-            }
-        }
+        closeSubscriberSessions();
         
         if (this.connection != null) {
             try {
@@ -146,10 +200,43 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
             }
         }
         
-        this.session = null;
         this.connection = null;
     }
     
+    /**
+     * Registers this dispatcher to be notified of connection failures. A shared connection that
+     * does not support additional exception listeners is not monitored.
+     * 
+     * @param connection The connection.
+     */
+    private void setExceptionListener(Connection connection) {
+        try {
+            connection.setExceptionListener(this);
+        } catch (JMSException e) {
+            log.debug("Unable to monitor JMS connection: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Called when the connection fails. The failed connection is closed and its subscribers are
+     * discarded, and a new connection is established and subscriptions reasserted. If reconnection
+     * fails, it is retried on the next subscription request.
+     * 
+     * @param exception The exception reported by the connection.
+     */
+    @Override
+    public void onException(JMSException exception) {
+        log.error("JMS connection failure: " + exception.getMessage());
+        
+        synchronized (this.subscribers) {
+            closeSubscriberSessions();
+            JmsUtils.closeConnection(this.connection);
+            this.connection = null;
+            updateConnectionStatus(false);
+            connect();
+        }
+    }
+    
     @Override
     protected void updateConnectionStatus(boolean connected) {
         publisherInfo.setNodeId(getNodeId());
@@ -171,11 +258,12 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
     }
     
     /**
-     * Cleanup this instance.
+     * Cleanup this instance. Any events awaiting batch publication are sent first.
      */
     @Override
     public void destroy() {
         super.destroy();
+        flush();
         removeSubscriptions();
         disconnect(true);
     }
@@ -193,12 +281,15 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
      * Reassert subscriptions.
      */
     private void assertSubscriptions() {
-        for (String eventName : this.subscribers.keySet()) {
-            try {
-                this.subscribers.put(eventName, null);
-                doHostSubscribe(eventName);
-            } catch (Throwable e) {
-                break;
+        synchronized (this.subscribers) {
+            closeSubscriberSessions();
+            
+            for (String eventName : this.subscribedEvents) {
+                try {
+                    doHostSubscribe(eventName);
+                } catch (Throwable e) {
+                    break;
+                }
             }
         }
     }
@@ -207,15 +298,41 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
      * Remove all remote subscriptions.
      */
     private void removeSubscriptions() {
-        for (TopicSubscriber subscriber : this.subscribers.values()) {
-            try {
+        synchronized (this.subscribers) {
+            closeSubscriberSessions();
+            this.subscribedEvents.clear();
+        }
+    }
+    
+    /**
+     * Closes all topic subscribers and their sessions.
+     */
+    private void closeSubscriberSessions() {
+        synchronized (this.subscribers) {
+            for (String topicName : new ArrayList<>(this.subscribers.keySet())) {
+                closeSubscriber(topicName);
+            }
+        }
+    }
+    
+    /**
+     * Closes the subscriber for a topic, together with its session.
+     * 
+     * @param topicName The topic name.
+     */
+    private void closeSubscriber(String topicName) {
+        TopicSubscriber subscriber = this.subscribers.remove(topicName);
+        Session session = this.subscriberSessions.remove(topicName);
+        
+        try {
+            if (subscriber != null) {
                 subscriber.close();
-            } catch (Throwable e) {
-                log.debug("Error closing subscriber", e);//is level appropriate - previously hidden exception -afranken
             }
+        } catch (Throwable e) {
+            log.debug("Error closing subscriber", e);//is level appropriate - previously hidden exception -afranken
         }
         
-        this.subscribers.clear();
+        JmsUtils.closeSession(session);
     }
     
     /**
@@ -232,8 +349,10 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
         }
         try {
             if (subscribe) {
+                this.subscribedEvents.add(eventName);
                 doHostSubscribe(eventName);
             } else {
+                this.subscribedEvents.remove(eventName);
                 doHostUnsubscribe(eventName);
             }
         } catch (JMSException e) {
@@ -247,58 +366,212 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
      * given name has subscribers. This is because the global event manager need only dispatch
      * events to the local event manager. The local event manager will then dispatch events to the
      * individual subscribers.
+     * <p>
+     * All subscribed events sharing a topic are served by a single topic subscriber whose selector
+     * considers only recipients. Event names are matched as messages are received, so subscribing
+     * to additional events within a topic requires no additional broker resources. Each topic
+     * subscriber has its own session, since a session with an asynchronous listener may not be
+     * used by another thread.
      * 
      * @param eventName Name of event.
      * @throws JMSException JMS exception.
      */
     private void doHostSubscribe(String eventName) throws JMSException {
+        String topicName = JMSUtil.getTopicName(eventName);
         
-        if (this.subscribers.get(eventName) != null) {
+        synchronized (this.subscribers) {
+            if (this.subscribers.containsKey(topicName) || !isConnected()) {
+                return;
+            }
+            
             if (log.isDebugEnabled()) {
-                log.debug(String.format("Already subscribed to Topic[%s]", eventName));
+                log.debug(String.format("Subscribing to Topic[%s]", topicName));
+            }
+            
+            String selector = JMSUtil.getRecipientSelector(getPublisherInfo());
+            TopicSession session = (TopicSession) this.connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            
+            try {
+                // This doesn't actually create a physical topic.  In ActiveMQ, a topic is created on-demand when someone with the
+                // authority to create topics submits something to a topic.  By default, everyone has the authority to create topics.  See
+                // http://markmail.org/message/us7v5ocnb65m4fdp#query:createtopic%20activemq%20jms+page:1+mid:tce6soq5g7rdkqnw+state:results --lrc
+                Topic topic = session.createTopic(topicName);
+                TopicSubscriber subscriber = session.createSubscriber(topic, selector, false);
+                this.subscribers.put(topicName, subscriber);
+                this.subscriberSessions.put(topicName, session);
+                subscriber.setMessageListener(this);
+            } catch (JMSException e) {
+                JmsUtils.closeSession(session);
+                throw e;
             }
-            return;
-        }
-        if (log.isDebugEnabled()) {
-            log.debug(String.format("Subscribing to Topic[%s]", eventName));
         }
-        String topicName = JMSUtil.getTopicName(eventName);
-        String selector = JMSUtil.getMessageSelector(eventName, getPublisherInfo());
-        
-        // This doesn't actually create a physical topic.  In ActiveMQ, a topic is created on-demand when someone with the
-        // authority to create topics submits something to a topic.  By default, everyone has the authority to create topics.  See
-        // http://markmail.org/message/us7v5ocnb65m4fdp#query:createtopic%20activemq%20jms+page:1+mid:tce6soq5g7rdkqnw+state:results --lrc
-        Topic topic = this.session.createTopic(topicName);
-        TopicSubscriber subscriber = this.session.createSubscriber(topic, selector, false);
-        this.subscribers.put(eventName, subscriber);
-        subscriber.setMessageListener(this);
     }
     
     /**
-     * Removes an event subscription with the global event manager.
+     * Removes an event subscription with the global event manager. The topic subscriber is closed
+     * when no subscribed events remain for its topic.
      * 
      * @param eventName Name of event
      * @throws JMSException JMS exception.
      */
     private void doHostUnsubscribe(String eventName) throws JMSException {
-        TopicSubscriber subscriber = this.subscribers.remove(eventName);
-        if (subscriber == null) {
-            return;
+        String topicName = JMSUtil.getTopicName(eventName);
+        
+        synchronized (this.subscribers) {
+            for (String subscribedEvent : this.subscribedEvents) {
+                if (JMSUtil.getTopicName(subscribedEvent).equals(topicName)) {
+                    return;
+                }
+            }
+            
+            if (this.subscribers.containsKey(topicName)) {
+                log.debug(String.format("Unsubscribing Subscriber[%s] for Topic [%s].", this.subscribers.get(topicName),
+                    topicName));
+                closeSubscriber(topicName);
+            }
         }
-        log.debug(String.format("Unsubscribing Subscriber[%s] for Topic [%s].", subscriber, eventName));
-        subscriber.close();
     }
     
     /**
+     * Returns true if the event or one of its ancestors is subscribed.
+     * 
+     * @param eventName Name of event.
+     * @return True if the event is subscribed.
+     */
+    private boolean isSubscribed(String eventName) {
+        for (String name = eventName; !name.isEmpty(); name = EventUtil.stripLevel(name)) {
+            if (this.subscribedEvents.contains(name)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Publishes an event. If batching is enabled, the event is queued and published with others
+     * fired within the batch window.
+     * 
      * @see org.carewebframework.api.event.IGlobalEventDispatcher#fireRemoteEvent(java.lang.String,
      *      java.io.Serializable, java.lang.String)
      */
     @Override
     public void fireRemoteEvent(String eventName, Serializable eventData, String recipients) {
+        if (this.batchWindow <= 0) {
+            try {
+                doFireRemoteEvent(eventName, eventData, recipients);
+            } catch (JMSException e) {
+                log.error("Error firing remote event.", e);
+            }
+            
+            return;
+        }
+        
+        boolean flushNow;
+        boolean schedule = false;
+        
+        synchronized (this.pendingEvents) {
+            this.pendingEvents.add(new PendingEvent(eventName, eventData, recipients));
+            flushNow = this.pendingEvents.size() >= this.batchSize;
+            
+            if (!flushNow && !this.flushScheduled) {
+                this.flushScheduled = schedule = true;
+            }
+        }
+        
+        if (flushNow) {
+            flush();
+        } else if (schedule) {
+            scheduleFlush();
+        }
+    }
+    
+    /**
+     * Schedules publication of the current batch at the end of the batch window. If no scheduler is
+     * available, the batch is published immediately.
+     */
+    private void scheduleFlush() {
+        ScheduledExecutorService scheduler = ThreadUtil.getTaskScheduler();
+        
         try {
-            doFireRemoteEvent(eventName, eventData, recipients);
-        } catch (JMSException e) {
-            log.error("Error firing remote event.", e);
+            if (scheduler != null) {
+                scheduler.schedule(this.flushTask, this.batchWindow, TimeUnit.MILLISECONDS);
+                return;
+            }
+        } catch (RejectedExecutionException e) {
+            log.warn("Task scheduler rejected event batch; publishing on caller's thread.");
+        }
+        
+        flush();
+    }
+    
+    /**
+     * Publishes all queued events within a single transaction, so that only the commit incurs a
+     * synchronous round trip to the messaging server. The transacted session is created on this
+     * dispatcher's connection, and messages are sent with the topic template's quality of service
+     * settings. Batches are published one at a time to preserve their order.
+     */
+    private void flush() {
+        List<PendingEvent> batch;
+        
+        synchronized (this.pendingEvents) {
+            this.flushScheduled = false;
+            
+            if (this.pendingEvents.isEmpty()) {
+                return;
+            }
+            
+            batch = new ArrayList<>(this.pendingEvents);
+            this.pendingEvents.clear();
+        }
+        
+        synchronized (this.publishLock) {
+            Session session = null;
+            
+            try {
+                if (!connect()) {
+                    throw new JMSException("Not connected to JMS server.");
+                }
+                
+                session = this.connection.createSession(true, Session.SESSION_TRANSACTED);
+                MessageProducer producer = session.createProducer(null);
+                
+                try {
+                    for (PendingEvent event : batch) {
+                        send(producer, session.createTopic(JMSUtil.getTopicName(event.eventName)), JMSUtil.createMessage(
+                            session, this.serializer, event.eventName, event.eventData, getEndpointId(), event.recipients));
+                    }
+                    
+                    session.commit();
+                } catch (JMSException e) {
+                    JmsUtils.rollbackIfNecessary(session);
+                    throw e;
+                } finally {
+                    JmsUtils.closeMessageProducer(producer);
+                }
+            } catch (Exception e) {
+                log.error("Error publishing batch of " + batch.size() + " remote event(s).", e);
+            } finally {
+                JmsUtils.closeSession(session);
+            }
+        }
+    }
+    
+    /**
+     * Sends a message, applying the topic template's quality of service settings if they are
+     * explicitly enabled.
+     * 
+     * @param producer The message producer.
+     * @param destination The destination.
+     * @param message The message.
+     * @throws JMSException JMS exception.
+     */
+    private void send(MessageProducer producer, Destination destination, Message message) throws JMSException {
+        if (this.topicTemplate.isExplicitQosEnabled()) {
+            producer.send(destination, message, this.topicTemplate.getDeliveryMode(), this.topicTemplate.getPriority(),
+                this.topicTemplate.getTimeToLive());
+        } else {
+            producer.send(destination, message);
         }
     }
     
@@ -317,14 +590,15 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
             
             @Override
             public Message createMessage(Session session) throws JMSException {
-                return JMSUtil.createObjectMessage(session, eventName, (Serializable) eventData, getEndpointId(),
+                return JMSUtil.createMessage(session, serializer, eventName, (Serializable) eventData, getEndpointId(),
                     recipients);
             }
         });
     }
     
     /**
-     * This is the callback for messages received from the JMS server.
+     * This is the callback for messages received from the JMS server. Messages for events that are
+     * not subscribed by this dispatcher are ignored.
      * 
      * @param message Message received from the JMS server.
      */
@@ -334,21 +608,43 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
             log.debug("Message received: " + message);
         }
         
+        try {
+            if (!isSubscribed(message.getJMSType())) {
+                return;
+            }
+        } catch (JMSException e) {
+            log.error("Error reading message type.", e);
+            return;
+        }
+        
         processMessage(message);
     }
     
     /**
      * Process a dequeued message by forwarding it to the local event manager for local delivery. If
-     * the message is a ping request, send the response.
+     * the message is a ping request, send the response. The message body is decoded by the
+     * serializer named in the message's {@value JMSUtil#EVENT_SERIALIZER_PROPERTY} property, if
+     * present.
      * 
      * @param message Message to process.
      */
     protected void processMessage(Message message) {
         try {
             String eventName = message.getJMSType();
+            String serializerName = message.getStringProperty(JMSUtil.EVENT_SERIALIZER_PROPERTY);
             Object eventData;
             
-            if (message instanceof ObjectMessage) {
+            if (serializerName != null) {
+                IMessageSerializer messageSerializer = MessageSerializerRegistry.getInstance().get(serializerName);
+                
+                if (messageSerializer == null) {
+                    log.warn(String.format("Ignoring message with unsupported serializer: serializer [%s], message [%s]",
+                        serializerName, message));
+                    return;
+                }
+                
+                eventData = messageSerializer.getData(message);
+            } else if (message instanceof ObjectMessage) {
                 eventData = ((ObjectMessage) message).getObject();
             } else if (message instanceof TextMessage) {
                 eventData = ((TextMessage) message).getText();
@@ -388,4 +684,50 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher impleme
         this.topicTemplate = topicTemplate;
     }
     
+    /**
+     * Sets the interval, in milliseconds, during which published events are gathered into a single
+     * transacted batch. If zero (the default), each event is published immediately.
+     * 
+     * @param batchWindow The batch window.
+     */
+    public void setBatchWindow(int batchWindow) {
+        this.batchWindow = batchWindow;
+    }
+    
+    /**
+     * Sets the maximum number of events in a batch. A batch reaching this size is published
+     * without waiting for the batch window to expire.
+     * 
+     * @param batchSize The maximum batch size.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize < 1 ? 1 : batchSize;
+    }
+    
+    /**
+     * Sets the serializer used to encode published events. Nodes that predate serializer
+     * negotiation can decode only the "java" serializer, so other serializers should be selected
+     * only once all nodes sharing the messaging server have been upgraded.
+     * 
+     * @param serializerName Name of a registered message serializer.
+     */
+    public void setSerializer(String serializerName) {
+        IMessageSerializer serializer = MessageSerializerRegistry.getInstance().get(serializerName);
+        
+        if (serializer == null) {
+            throw new IllegalArgumentException("Unknown message serializer: " + serializerName);
+        }
+        
+        this.serializer = serializer;
+    }
+    
+    /**
+     * Returns the serializer used to encode published events.
+     * 
+     * @return The message serializer.
+     */
+    public IMessageSerializer getSerializer() {
+        return serializer;
+    }
+    
 }
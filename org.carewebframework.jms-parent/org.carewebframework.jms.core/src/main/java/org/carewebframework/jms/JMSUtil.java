@@ -20,6 +20,7 @@ import org.apache.commons.lang.StringUtils;
 
 import org.carewebframework.api.event.IPublisherInfo;
 import org.carewebframework.api.spring.SpringUtil;
+import org.carewebframework.jms.serializer.IMessageSerializer;
 
 import org.springframework.jms.core.JmsTemplate;
 
@@ -44,6 +45,12 @@ public final class JMSUtil {
      */
     public static final String EVENT_SENDER_PROPERTY = "Sender";
     
+    /**
+     * Message property. Name of the serializer used to encode the message body. Absent on messages
+     * sent by nodes that predate serializer negotiation.
+     */
+    public static final String EVENT_SERIALIZER_PROPERTY = "Serializer";
+    
     private static final String JMS_TOPIC_TEMPLATE = "jmsTopicTemplate";
     
     private static final String JMS_QUEUE_TEMPLATE = "jmsQueueTemplate";
@@ -97,8 +104,18 @@ public final class JMSUtil {
      * @return The message selector.
      */
     public static String getMessageSelector(String eventName, IPublisherInfo publisherInfo) {
-        StringBuilder sb = new StringBuilder("(JMSType='" + eventName + "' OR JMSType LIKE '" + eventName
-                + ".%') AND (Recipients IS NULL");
+        return "(JMSType='" + eventName + "' OR JMSType LIKE '" + eventName + ".%') AND ("
+                + getRecipientSelector(publisherInfo) + ")";
+    }
+    
+    /**
+     * Creates a message selector which considers only the recipients property.
+     * 
+     * @param publisherInfo Info on the publisher. If null, then no recipients properties are added.
+     * @return The message selector.
+     */
+    public static String getRecipientSelector(IPublisherInfo publisherInfo) {
+        StringBuilder sb = new StringBuilder("Recipients IS NULL");
         
         if (publisherInfo != null) {
             for (String selector : publisherInfo.getAttributes().values()) {
@@ -106,7 +123,6 @@ public final class JMSUtil {
             }
         }
         
-        sb.append(')');
         return sb.toString();
     }
     
@@ -139,6 +155,27 @@ public final class JMSUtil {
         return decorateMessage(session.createObjectMessage(messageData), jmsType, sender, recipients);
     }
     
+    /**
+     * Creates a message using the specified serializer and sets properties of the message (JMSType,
+     * {@value #EVENT_SENDER_PROPERTY}, {@value #EVENT_RECIPIENTS_PROPERTY},
+     * {@value #EVENT_SERIALIZER_PROPERTY}).
+     * 
+     * @param session The session for which to create the message.
+     * @param serializer Serializer for the message data.
+     * @param jmsType Message's JMSType.
+     * @param messageData Message data.
+     * @param sender Sender client ID.
+     * @param recipients Comma-delimited list of recipient client IDs
+     * @return The newly created message.
+     * @throws JMSException if error thrown from creation of message
+     */
+    public static Message createMessage(Session session, IMessageSerializer serializer, String jmsType,
+                                        Serializable messageData, String sender, String recipients) throws JMSException {
+        Message message = decorateMessage(serializer.createMessage(session, messageData), jmsType, sender, recipients);
+        message.setStringProperty(EVENT_SERIALIZER_PROPERTY, serializer.getName());
+        return message;
+    }
+    
     /**
      * Creates a TextMessage from a given session and sets properties of the message (JMSType,
      * {@value #EVENT_SENDER_PROPERTY}, {@value #EVENT_RECIPIENTS_PROPERTY}.
@@ -0,0 +1,519 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.jms.serializer;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+
+import org.apache.commons.lang.ClassUtils;
+
+/**
+ * Serializes event data in a compact tagged binary format in a BytesMessage. Strings, primitive
+ * wrappers, dates, enums, byte arrays, the common collection and map types, and simple beans are
+ * encoded directly. A simple bean is a serializable class with a public default constructor whose
+ * instance fields are all exposed as read/write properties and which does not customize its
+ * serialized form. Anything else is written using standard Java serialization.
+ */
+public class BinaryMessageSerializer implements IMessageSerializer {
+    
+    public static final String NAME = "binary";
+    
+    private static final byte NULL = 0;
+    
+    private static final byte STRING = 1;
+    
+    private static final byte INTEGER = 2;
+    
+    private static final byte LONG = 3;
+    
+    private static final byte BOOLEAN_TRUE = 4;
+    
+    private static final byte BOOLEAN_FALSE = 5;
+    
+    private static final byte DOUBLE = 6;
+    
+    private static final byte FLOAT = 7;
+    
+    private static final byte SHORT = 8;
+    
+    private static final byte BYTE = 9;
+    
+    private static final byte CHARACTER = 10;
+    
+    private static final byte DATE = 11;
+    
+    private static final byte ENUM = 12;
+    
+    private static final byte BYTES = 13;
+    
+    private static final byte COLLECTION = 14;
+    
+    private static final byte MAP = 15;
+    
+    private static final byte BEAN = 16;
+    
+    private static final byte OBJECT = 17;
+    
+    /**
+     * Collection and map types that are encoded directly. Other implementations may carry state
+     * (e.g., a comparator) that would be lost.
+     */
+    private static final List<Class<?>> CONTAINER_TYPES = Arrays.<Class<?>> asList(ArrayList.class, LinkedList.class,
+        HashSet.class, LinkedHashSet.class, HashMap.class, LinkedHashMap.class);
+    
+    private static final BeanType NOT_A_BEAN = new BeanType(null, null);
+    
+    /**
+     * Cached encoding metadata for a bean class.
+     */
+    private static class BeanType {
+        
+        final Class<?> clazz;
+        
+        final PropertyDescriptor[] properties;
+        
+        BeanType(Class<?> clazz, PropertyDescriptor[] properties) {
+            this.clazz = clazz;
+            this.properties = properties;
+        }
+        
+        PropertyDescriptor getProperty(String name) {
+            for (PropertyDescriptor property : properties) {
+                if (property.getName().equals(name)) {
+                    return property;
+                }
+            }
+            
+            return null;
+        }
+    }
+    
+    /**
+     * Resolves classes using the thread context class loader.
+     */
+    private static class ContextObjectInputStream extends ObjectInputStream {
+        
+        ContextObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+        
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return ClassUtils.getClass(desc.getName());
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+    
+    private final Map<Class<?>, BeanType> beanTypes = new ConcurrentHashMap<>();
+    
+    private final Map<String, Class<?>> classes = new ConcurrentHashMap<>();
+    
+    @Override
+    public String getName() {
+        return NAME;
+    }
+    
+    @Override
+    public Message createMessage(Session session, Serializable data) throws JMSException {
+        BytesMessage message = session.createBytesMessage();
+        message.writeBytes(serialize(data));
+        return message;
+    }
+    
+    @Override
+    public Object getData(Message message) throws JMSException {
+        BytesMessage bytesMessage = (BytesMessage) message;
+        byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+        bytesMessage.readBytes(bytes);
+        return deserialize(bytes);
+    }
+    
+    /**
+     * Serializes an object to its binary form.
+     *
+     * @param object Object to serialize (may be null).
+     * @return Serialized form of the object.
+     */
+    public byte[] serialize(Object object) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            write(out, object);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (Exception e) {
+            throw new RuntimeException("Error serializing event data.", e);
+        }
+    }
+    
+    /**
+     * Deserializes an object from its binary form.
+     *
+     * @param data Serialized form of the object.
+     * @return The deserialized object (may be null).
+     */
+    public Object deserialize(byte[] data) {
+        try {
+            return read(new DataInputStream(new ByteArrayInputStream(data)));
+        } catch (Exception e) {
+            throw new RuntimeException("Error deserializing event data.", e);
+        }
+    }
+    
+    private void write(DataOutputStream out, Object object) throws Exception {
+        if (object == null) {
+            out.writeByte(NULL);
+        } else if (object instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) object);
+        } else if (object instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) object);
+        } else if (object instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) object);
+        } else if (object instanceof Boolean) {
+            out.writeByte((Boolean) object ? BOOLEAN_TRUE : BOOLEAN_FALSE);
+        } else if (object instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) object);
+        } else if (object instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) object);
+        } else if (object instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) object);
+        } else if (object instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) object);
+        } else if (object instanceof Character) {
+            out.writeByte(CHARACTER);
+            out.writeChar((Character) object);
+        } else if (object.getClass() == Date.class) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) object).getTime());
+        } else if (object instanceof Enum) {
+            out.writeByte(ENUM);
+            writeString(out, ((Enum<?>) object).getDeclaringClass().getName());
+            writeString(out, ((Enum<?>) object).name());
+        } else if (object instanceof byte[]) {
+            byte[] bytes = (byte[]) object;
+            out.writeByte(BYTES);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else if (CONTAINER_TYPES.contains(object.getClass())) {
+            writeContainer(out, object);
+        } else {
+            BeanType beanType = getBeanType(object.getClass());
+            
+            if (beanType != NOT_A_BEAN) {
+                writeBean(out, object, beanType);
+            } else {
+                writeObject(out, object);
+            }
+        }
+    }
+    
+    private void writeContainer(DataOutputStream out, Object object) throws Exception {
+        if (object instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) object;
+            out.writeByte(MAP);
+            writeString(out, object.getClass().getName());
+            out.writeInt(map.size());
+            
+            for (Entry<?, ?> entry : map.entrySet()) {
+                write(out, entry.getKey());
+                write(out, entry.getValue());
+            }
+        } else {
+            Collection<?> collection = (Collection<?>) object;
+            out.writeByte(COLLECTION);
+            writeString(out, object.getClass().getName());
+            out.writeInt(collection.size());
+            
+            for (Object item : collection) {
+                write(out, item);
+            }
+        }
+    }
+    
+    private void writeBean(DataOutputStream out, Object object, BeanType beanType) throws Exception {
+        out.writeByte(BEAN);
+        writeString(out, beanType.clazz.getName());
+        out.writeShort(beanType.properties.length);
+        
+        for (PropertyDescriptor property : beanType.properties) {
+            writeString(out, property.getName());
+            write(out, property.getReadMethod().invoke(object));
+        }
+    }
+    
+    private void writeObject(DataOutputStream out, Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(object);
+        }
+        
+        out.writeByte(OBJECT);
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+    
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object read(DataInputStream in) throws Exception {
+        byte tag = in.readByte();
+        
+        switch (tag) {
+            case NULL:
+                return null;
+            
+            case STRING:
+                return readString(in);
+            
+            case INTEGER:
+                return in.readInt();
+            
+            case LONG:
+                return in.readLong();
+            
+            case BOOLEAN_TRUE:
+                return Boolean.TRUE;
+            
+            case BOOLEAN_FALSE:
+                return Boolean.FALSE;
+            
+            case DOUBLE:
+                return in.readDouble();
+            
+            case FLOAT:
+                return in.readFloat();
+            
+            case SHORT:
+                return in.readShort();
+            
+            case BYTE:
+                return in.readByte();
+            
+            case CHARACTER:
+                return in.readChar();
+            
+            case DATE:
+                return new Date(in.readLong());
+            
+            case ENUM:
+                return Enum.valueOf((Class<Enum>) getClass(readString(in)), readString(in));
+            
+            case BYTES:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return bytes;
+            
+            case COLLECTION:
+                Collection<Object> collection = (Collection<Object>) newContainer(readString(in));
+                
+                for (int i = in.readInt(); i > 0; i--) {
+                    collection.add(read(in));
+                }
+                
+                return collection;
+            
+            case MAP:
+                Map<Object, Object> map = (Map<Object, Object>) newContainer(readString(in));
+                
+                for (int i = in.readInt(); i > 0; i--) {
+                    map.put(read(in), read(in));
+                }
+                
+                return map;
+            
+            case BEAN:
+                return readBean(in);
+            
+            case OBJECT:
+                byte[] serialized = new byte[in.readInt()];
+                in.readFully(serialized);
+                
+                try (ObjectInputStream ois = new ContextObjectInputStream(new ByteArrayInputStream(serialized))) {
+                    return ois.readObject();
+                }
+            
+            default:
+                throw new IOException("Unrecognized type tag: " + tag);
+        }
+    }
+    
+    private Object newContainer(String className) throws Exception {
+        Class<?> clazz = getClass(className);
+        
+        if (!CONTAINER_TYPES.contains(clazz)) {
+            throw new IOException("Unsupported container type: " + className);
+        }
+        
+        return clazz.newInstance();
+    }
+    
+    private Object readBean(DataInputStream in) throws Exception {
+        String className = readString(in);
+        BeanType beanType = getBeanType(getClass(className));
+        
+        if (beanType == NOT_A_BEAN) {
+            throw new IOException("Class is not serializable as a bean: " + className);
+        }
+        
+        Object bean = beanType.clazz.newInstance();
+        
+        for (int i = in.readShort(); i > 0; i--) {
+            PropertyDescriptor property = beanType.getProperty(readString(in));
+            Object value = read(in);
+            
+            if (property != null) {
+                property.getWriteMethod().invoke(bean, value);
+            }
+        }
+        
+        return bean;
+    }
+    
+    private String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private Class<?> getClass(String className) throws ClassNotFoundException {
+        Class<?> clazz = classes.get(className);
+        
+        if (clazz == null) {
+            clazz = ClassUtils.getClass(className);
+            classes.put(className, clazz);
+        }
+        
+        return clazz;
+    }
+    
+    /**
+     * Returns the bean encoding metadata for a class, introspecting it on first use.
+     *
+     * @param clazz The class.
+     * @return The bean encoding metadata, or NOT_A_BEAN if the class cannot be encoded as a bean.
+     */
+    private BeanType getBeanType(Class<?> clazz) {
+        BeanType beanType = beanTypes.get(clazz);
+        
+        if (beanType == null) {
+            beanType = introspect(clazz);
+            beanTypes.put(clazz, beanType);
+        }
+        
+        return beanType;
+    }
+    
+    private BeanType introspect(Class<?> clazz) {
+        try {
+            if (!Serializable.class.isAssignableFrom(clazz) || Externalizable.class.isAssignableFrom(clazz)
+                    || !Modifier.isPublic(clazz.getModifiers())
+                    || clazz.getName().startsWith("java.") || !Modifier.isPublic(clazz.getConstructor().getModifiers())) {
+                return NOT_A_BEAN;
+            }
+            
+            Map<String, PropertyDescriptor> descriptors = new HashMap<>();
+            
+            for (PropertyDescriptor descriptor : Introspector.getBeanInfo(clazz).getPropertyDescriptors()) {
+                descriptors.put(descriptor.getName(), descriptor);
+            }
+            
+            List<PropertyDescriptor> properties = new ArrayList<>();
+            
+            for (Class<?> c = clazz; c != Object.class; c = c.getSuperclass()) {
+                if (hasCustomSerialization(c)) {
+                    return NOT_A_BEAN;
+                }
+                
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                        continue;
+                    }
+                    
+                    PropertyDescriptor property = descriptors.get(field.getName());
+                    
+                    if (property == null || property.getReadMethod() == null || property.getWriteMethod() == null) {
+                        return NOT_A_BEAN;
+                    }
+                    
+                    properties.add(property);
+                }
+            }
+            
+            return new BeanType(clazz, properties.toArray(new PropertyDescriptor[properties.size()]));
+        } catch (Exception e) {
+            return NOT_A_BEAN;
+        }
+    }
+    
+    private boolean hasCustomSerialization(Class<?> clazz) {
+        for (String method : new String[] { "writeObject", "readObject", "writeReplace", "readResolve" }) {
+            for (Class<?>[] params : new Class<?>[][] { {}, { ObjectOutputStream.class }, { ObjectInputStream.class } }) {
+                try {
+                    clazz.getDeclaredMethod(method, params);
+                    return true;
+                } catch (NoSuchMethodException e) {
+                    continue;
+                }
+            }
+        }
+        
+        return false;
+    }
+    
+}
@@ -0,0 +1,50 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.jms.serializer;
+
+import java.io.Serializable;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+
+/**
+ * Converts event data to and from the body of a JMS message. The name of the serializer is carried
+ * in a message property so that the receiver can select the matching serializer.
+ */
+public interface IMessageSerializer {
+    
+    /**
+     * Returns the unique name of this serializer.
+     *
+     * @return The serializer name.
+     */
+    String getName();
+    
+    /**
+     * Creates a message whose body contains the serialized event data.
+     *
+     * @param session The session for which to create the message.
+     * @param data The event data (may be null).
+     * @return The newly created message.
+     * @throws JMSException JMS exception.
+     */
+    Message createMessage(Session session, Serializable data) throws JMSException;
+    
+    /**
+     * Extracts event data from a message created by this serializer.
+     *
+     * @param message The message.
+     * @return The deserialized event data (may be null).
+     * @throws JMSException JMS exception.
+     */
+    Object getData(Message message) throws JMSException;
+    
+}
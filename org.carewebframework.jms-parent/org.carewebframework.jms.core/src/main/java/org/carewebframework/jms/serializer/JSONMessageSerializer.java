@@ -0,0 +1,44 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.jms.serializer;
+
+import java.io.Serializable;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.carewebframework.common.JSONUtil;
+
+/**
+ * Serializes event data as JSON in a TextMessage. Event data must be serializable by
+ * {@link JSONUtil} (i.e., beans with a default constructor and accessors for their state).
+ */
+public class JSONMessageSerializer implements IMessageSerializer {
+    
+    public static final String NAME = "json";
+    
+    @Override
+    public String getName() {
+        return NAME;
+    }
+    
+    @Override
+    public Message createMessage(Session session, Serializable data) throws JMSException {
+        return session.createTextMessage(data == null ? null : JSONUtil.serialize(data));
+    }
+    
+    @Override
+    public Object getData(Message message) throws JMSException {
+        return JSONUtil.deserialize(((TextMessage) message).getText());
+    }
+    
+}
@@ -0,0 +1,42 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.jms.serializer;
+
+import java.io.Serializable;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.ObjectMessage;
+import javax.jms.Session;
+
+/**
+ * Serializes event data using standard Java serialization in an ObjectMessage. This is the wire
+ * format used by nodes that predate serializer negotiation.
+ */
+public class JavaMessageSerializer implements IMessageSerializer {
+    
+    public static final String NAME = "java";
+    
+    @Override
+    public String getName() {
+        return NAME;
+    }
+    
+    @Override
+    public Message createMessage(Session session, Serializable data) throws JMSException {
+        return session.createObjectMessage(data);
+    }
+    
+    @Override
+    public Object getData(Message message) throws JMSException {
+        return ((ObjectMessage) message).getObject();
+    }
+    
+}
@@ -0,0 +1,66 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.jms.serializer;
+
+import org.carewebframework.common.AbstractRegistry;
+import org.carewebframework.common.RegistryMap.DuplicateAction;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.DestructionAwareBeanPostProcessor;
+
+/**
+ * Registry for message serializers indexed by name. The built-in serializers are always registered;
+ * additional serializers declared as beans are registered automatically.
+ */
+public class MessageSerializerRegistry extends AbstractRegistry<String, IMessageSerializer> implements DestructionAwareBeanPostProcessor {
+    
+    private static MessageSerializerRegistry instance = new MessageSerializerRegistry();
+    
+    public static MessageSerializerRegistry getInstance() {
+        return instance;
+    }
+    
+    /**
+     * Enforce singleton instance.
+     */
+    private MessageSerializerRegistry() {
+        super(DuplicateAction.ERROR);
+        register(new JavaMessageSerializer());
+        register(new JSONMessageSerializer());
+        register(new BinaryMessageSerializer());
+    }
+    
+    @Override
+    protected String getKey(IMessageSerializer item) {
+        return item.getName();
+    }
+    
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+    
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof IMessageSerializer) {
+            register((IMessageSerializer) bean);
+        }
+        
+        return bean;
+    }
+    
+    @Override
+    public void postProcessBeforeDestruction(Object bean, String beanName) throws BeansException {
+        if (bean instanceof IMessageSerializer) {
+            unregister((IMessageSerializer) bean);
+        }
+    }
+    
+}
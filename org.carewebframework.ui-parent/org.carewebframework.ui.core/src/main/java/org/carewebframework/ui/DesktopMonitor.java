@@ -13,6 +13,11 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.BooleanUtils;
@@ -28,12 +33,13 @@ import org.carewebframework.api.event.IGenericEvent;
 import org.carewebframework.api.security.ISecurityService;
 import org.carewebframework.api.thread.ThreadUtil;
 import org.carewebframework.common.DateUtil;
-import org.carewebframework.common.DateUtil.TimeUnit;
 import org.carewebframework.common.StrUtil;
 import org.carewebframework.ui.Application.Command;
 import org.carewebframework.ui.zk.MessageWindow;
 import org.carewebframework.ui.zk.ZKUtil;
 
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
 import org.zkoss.zk.au.AuRequest;
 import org.zkoss.zk.au.AuService;
 import org.zkoss.zk.ui.Component;
@@ -54,13 +60,17 @@ import org.zkoss.zul.Textbox;
 import org.zkoss.zul.Window;
 
 /**
- * Desktop timeout thread that evaluates ZK's Desktop and the time a request was last sent. Used to
- * notify user regarding their inactivity and take appropriate action.
+ * Desktop timeout monitor that evaluates ZK's Desktop and the time a request was last sent. Used to
+ * notify user regarding their inactivity and take appropriate action. Rather than dedicating a
+ * thread to each desktop, monitors are polled by a shared scheduler. This is the framework's task
+ * scheduler if available or, if not, a single thread shared by all monitors.
  */
-public class DesktopMonitor extends Thread {
+public class DesktopMonitor implements Runnable {
     
     private static final Log log = LogFactory.getLog(DesktopMonitor.class);
     
+    private static ScheduledExecutorService defaultScheduler;
+    
     /**
      * Reflects the different execution states for the thread.
      */
@@ -180,6 +190,14 @@ public class DesktopMonitor extends Thread {
     
     private final Object monitor = new Object();
     
+    private ScheduledExecutorService scheduler;
+    
+    private ScheduledFuture<?> future;
+    
+    private boolean started;
+    
+    private boolean running;
+    
     private final UiLifeCycle uiLifeCycle = new UiLifeCycle() {
         
         /**
@@ -198,7 +216,7 @@ public class DesktopMonitor extends Thread {
             lblLocked.setValue(
                 Mode.BASELINE.getLabel(TIMEOUT_EXPIRATION, user.getFullName() + "@" + user.getSecurityDomain().getName()));
             desktop.addListener(desktopActivityMonitor);
-            ThreadUtil.startThread(DesktopMonitor.this);
+            start();
         }
         
         /*
@@ -280,7 +298,7 @@ public class DesktopMonitor extends Thread {
             
             switch (action) {
                 case UPDATE_COUNTDOWN:
-                    String s = nextMode().getLabel(TIMEOUT_WARNING, DateUtil.formatDuration(countdown, TimeUnit.SECONDS));
+                    String s = nextMode().getLabel(TIMEOUT_WARNING, DateUtil.formatDuration(countdown, DateUtil.TimeUnit.SECONDS));
                     lblDuration.setValue(s);
                     setSclass(SCLASS_COUNTDOWN);
                     ZKUtil.toggleSclass(timeoutPanel, "alert-danger", "alert-warning", countdown <= 10000);
@@ -345,7 +363,6 @@ public class DesktopMonitor extends Thread {
      */
     public DesktopMonitor(Desktop desktop) {
         this.desktop = desktop;
-        setName("DesktopMonitor-" + desktop.getId());
         inactivityDuration.put(Mode.BASELINE, 900000L);
         inactivityDuration.put(Mode.LOCK, 900000L);
         inactivityDuration.put(Mode.LOGOUT, 0L);
@@ -557,40 +574,74 @@ public class DesktopMonitor extends Thread {
     }
     
     /**
-     * Thread execution loop.
+     * Returns the scheduler used when the framework's task scheduler is not available, creating it
+     * if necessary.
      * 
-     * @see java.lang.Thread#run()
+     * @return The default scheduler.
      */
-    @Override
-    public void run() {
-        if (log.isTraceEnabled()) {
-            trace("The DesktopMonitor has started", getName());
+    private static synchronized ScheduledExecutorService getDefaultScheduler() {
+        if (defaultScheduler == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("DesktopMonitor-");
+            threadFactory.setDaemon(true);
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+            scheduler.setRemoveOnCancelPolicy(true);
+            defaultScheduler = scheduler;
         }
         
-        setMode(Mode.BASELINE);
-        
+        return defaultScheduler;
+    }
+    
+    /**
+     * Starts monitoring the desktop. This is normally called once the desktop's first page has been
+     * attached.
+     */
+    public void start() {
+        synchronized (monitor) {
+            if (!started) {
+                started = true;
+                scheduler = ThreadUtil.getTaskScheduler();
+                scheduler = scheduler == null ? getDefaultScheduler() : scheduler;
+                trace("The DesktopMonitor has started");
+                schedule(0);
+            }
+        }
+    }
+    
+    /**
+     * Polls the desktop, then schedules the next poll. Called by the scheduler.
+     */
+    @Override
+    public void run() {
         synchronized (monitor) {
-            while (!terminate && desktop.isAlive() && desktop.isServerPushEnabled()
-                    && !Thread.currentThread().isInterrupted()) {
-                try {
+            future = null;
+            running = true;
+            
+            try {
+                if (state == null) {
+                    setMode(Mode.BASELINE);
+                }
+                
+                if (!terminate && desktop.isAlive() && desktop.isServerPushEnabled()) {
                     process();
-                    monitor.wait(pollingInterval);
-                } catch (DesktopUnavailableException e) {
-                    log.warn(desktop + " DesktopUnavailableException: " + e.getMessage());
-                } catch (InterruptedException e) {
-                    log.warn(String.format("%s interrupted. Terminating.", this.getClass().getName()));
+                } else {
                     terminate = true;
-                    Thread.currentThread().interrupt();
-                } catch (Exception e) {
-                    log.error(desktop + " : " + e.getMessage(), e);
-                    throw UiException.Aide.wrap(e);
                 }
+            } catch (DesktopUnavailableException e) {
+                log.warn(desktop + " DesktopUnavailableException: " + e.getMessage());
+            } catch (Exception e) {
+                log.error(desktop + " : " + e.getMessage(), e);
+                terminate = true;
+            } finally {
+                running = false;
+            }
+            
+            if (!terminate) {
+                schedule(pollingInterval);
+                return;
             }
         }
         
-        if (log.isTraceEnabled()) {
-            trace("The DesktopMonitor terminated", getName());
-        }
+        trace("The DesktopMonitor terminated");
         
         if (desktopDead && desktop.isAlive()) {
             log.warn("Desktop presumed dead due to prolonged inactivity: " + this.desktop);
@@ -599,15 +650,39 @@ public class DesktopMonitor extends Thread {
     }
     
     /**
-     * Wakes up the background thread.
+     * Schedules the next poll, replacing any that is pending. Must be called while holding the
+     * monitor lock.
+     * 
+     * @param delay Delay before the next poll in ms.
+     */
+    private void schedule(long delay) {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+        
+        try {
+            future = scheduler.schedule(this, Math.max(0, delay), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.warn(desktop + " : unable to schedule desktop monitor. Terminating.");
+            terminate = true;
+        }
+    }
+    
+    /**
+     * Polls the desktop immediately. Has no effect if monitoring has not started, or if called
+     * while polling is in progress.
      * 
      * @return True if the operation was successful.
      */
-    private synchronized boolean wakeup() {
+    private boolean wakeup() {
         try {
             synchronized (monitor) {
-                monitor.notify();
+                if (started && !running && !terminate) {
+                    schedule(0);
+                }
             }
+            
             return true;
         } catch (Throwable t) {
             log.warn("Unexpected exception.", t);
@@ -632,8 +707,15 @@ public class DesktopMonitor extends Thread {
     public void tearDown() {
         eventManager.unsubscribe(Constants.DESKTOP_EVENT, desktopEventListener);
         desktop.removeListener(uiLifeCycle);
-        terminate = true;
-        wakeup();
+        
+        synchronized (monitor) {
+            terminate = true;
+            
+            if (future != null) {
+                future.cancel(false);
+                future = null;
+            }
+        }
     }
     
     public void lockDesktop(boolean lock) {
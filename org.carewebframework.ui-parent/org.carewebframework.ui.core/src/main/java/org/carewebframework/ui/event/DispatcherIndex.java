@@ -0,0 +1,151 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.ui.event;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe index of global event dispatchers by key (an event name or a recipient id). Lookups
+ * are lock-free; updates are serialized so that empty entries can be removed safely.
+ * <p>
+ * Dispatchers are held by weak reference, so a dispatcher that is never destroyed (e.g., one whose
+ * desktop was not cleaned up) does not remain reachable through the index. Entries for collected
+ * dispatchers are pruned on the next update.
+ */
+/*package*/class DispatcherIndex {
+    
+    /**
+     * Weak reference to an indexed dispatcher. Two entries are equal if they refer to the same
+     * dispatcher.
+     */
+    private static class Entry extends WeakReference<GlobalEventDispatcher> {
+        
+        private final String key;
+        
+        private final int hash;
+        
+        Entry(String key, GlobalEventDispatcher dispatcher, ReferenceQueue<GlobalEventDispatcher> queue) {
+            super(dispatcher, queue);
+            this.key = key;
+            this.hash = System.identityHashCode(dispatcher);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+        
+        @Override
+        public boolean equals(Object object) {
+            if (object == this) {
+                return true;
+            }
+            
+            Object dispatcher = get();
+            return dispatcher != null && object instanceof Entry && ((Entry) object).get() == dispatcher;
+        }
+    }
+    
+    private final ConcurrentMap<String, Set<Entry>> index = new ConcurrentHashMap<>();
+    
+    private final ReferenceQueue<GlobalEventDispatcher> queue = new ReferenceQueue<>();
+    
+    /**
+     * Adds a dispatcher to the index under the specified key.
+     *
+     * @param key The key.
+     * @param dispatcher The dispatcher.
+     */
+    public synchronized void add(String key, GlobalEventDispatcher dispatcher) {
+        prune();
+        Set<Entry> entries = index.get(key);
+        
+        if (entries == null) {
+            entries = Collections.newSetFromMap(new ConcurrentHashMap<Entry, Boolean>());
+            index.put(key, entries);
+        }
+        
+        entries.add(new Entry(key, dispatcher, queue));
+    }
+    
+    /**
+     * Removes a dispatcher from the index under the specified key.
+     *
+     * @param key The key.
+     * @param dispatcher The dispatcher.
+     */
+    public synchronized void remove(String key, GlobalEventDispatcher dispatcher) {
+        prune();
+        remove(new Entry(key, dispatcher, null));
+    }
+    
+    private void remove(Entry entry) {
+        Set<Entry> entries = index.get(entry.key);
+        
+        if (entries != null && entries.remove(entry) && entries.isEmpty()) {
+            index.remove(entry.key);
+        }
+    }
+    
+    /**
+     * Removes entries whose dispatchers have been garbage collected.
+     */
+    private void prune() {
+        Reference<? extends GlobalEventDispatcher> ref;
+        
+        while ((ref = queue.poll()) != null) {
+            remove((Entry) ref);
+        }
+    }
+    
+    /**
+     * Returns the dispatchers indexed under the specified key.
+     *
+     * @param key The key.
+     * @return The dispatchers (never null).
+     */
+    public List<GlobalEventDispatcher> get(String key) {
+        Set<Entry> entries = key == null ? null : index.get(key);
+        
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+        
+        List<GlobalEventDispatcher> dispatchers = new ArrayList<>(entries.size());
+        
+        for (Entry entry : entries) {
+            GlobalEventDispatcher dispatcher = entry.get();
+            
+            if (dispatcher != null) {
+                dispatchers.add(dispatcher);
+            }
+        }
+        
+        return dispatchers;
+    }
+    
+    /**
+     * Returns the number of keys in the index.
+     *
+     * @return Number of keys.
+     */
+    public synchronized int size() {
+        prune();
+        return index.size();
+    }
+}
@@ -9,6 +9,17 @@
  */
 package org.carewebframework.ui.event;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.carewebframework.api.thread.ThreadUtil;
+
 import org.zkoss.zk.au.AuRequest;
 import org.zkoss.zk.au.AuService;
 import org.zkoss.zk.ui.Desktop;
@@ -20,18 +31,67 @@ import org.zkoss.zk.ui.event.Events;
 /**
  * Subclasses framework's event manager to ensure that events are delivered in desktop's event
  * thread and to support delivering events sent from the client.
+ * <p>
+ * Events fired outside the desktop's event thread are coalesced: rather than scheduling one server
+ * push execution per event, events accumulate in a pending batch that is delivered, in order, by a
+ * single scheduled execution. Events arriving while a batch is awaiting delivery simply join it. If
+ * a coalescing window is specified, scheduling of a new batch is deferred by that interval to
+ * gather additional events.
  */
 public class EventManager extends org.carewebframework.api.event.EventManager implements AuService {
     
+    private static final Log log = LogFactory.getLog(EventManager.class);
+    
     private static final String GENERIC_EVENT = "onGenericEvent";
     
+    private static final String BATCH_EVENT = "onEventBatch";
+    
     private Desktop desktop;
     
-    private final EventListener<Event> eventListener = new EventListener<Event>() {
+    private long coalesceWindow;
+    
+    private final List<Event> pendingEvents = new ArrayList<>();
+    
+    private boolean batchScheduled;
+    
+    private final AtomicLong scheduleCount = new AtomicLong();
+    
+    private final AtomicLong scheduledEventCount = new AtomicLong();
+    
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    
+    private final AtomicLong discardedEventCount = new AtomicLong();
+    
+    private final EventListener<Event> batchListener = new EventListener<Event>() {
         
         @Override
         public void onEvent(Event event) throws Exception {
-            EventManager.super.fireLocalEvent(event.getName(), event.getData());
+            List<Event> batch;
+            
+            synchronized (pendingEvents) {
+                batch = new ArrayList<>(pendingEvents);
+                pendingEvents.clear();
+                batchScheduled = false;
+            }
+            
+            updateStatistics(batch.size());
+            
+            for (Event evt : batch) {
+                EventManager.super.fireLocalEvent(evt.getName(), evt.getData());
+            }
+        }
+        
+    };
+    
+    private final Runnable deferredSchedule = new Runnable() {
+        
+        @Override
+        public void run() {
+            try {
+                scheduleBatch();
+            } catch (Throwable e) {
+                log.error("Error scheduling event delivery.", e);
+            }
         }
         
     };
@@ -48,10 +108,152 @@ public class EventManager extends org.carewebframework.api.event.EventManager im
         if (Events.inEventListener()) {
             super.fireLocalEvent(eventName, eventData);
         } else {
-            Executions.schedule(desktop, eventListener, new Event(eventName, null, eventData));
+            queueEvent(new Event(eventName, null, eventData));
+        }
+    }
+    
+    /**
+     * Asynchronous delivery is not supported, since events must be delivered in the desktop's event
+     * thread.
+     * 
+     * @throws UnsupportedOperationException If asynchronous is true.
+     */
+    @Override
+    public void setAsynchronous(boolean asynchronous) {
+        if (asynchronous) {
+            throw new UnsupportedOperationException("Asynchronous delivery is not supported for desktop events.");
+        }
+    }
+    
+    /**
+     * Adds an event to the pending batch, scheduling delivery of the batch if it is not already
+     * scheduled. If deferred scheduling is not possible (e.g., the task scheduler is shutting
+     * down), delivery is scheduled immediately.
+     * 
+     * @param event The event to queue.
+     */
+    private void queueEvent(Event event) {
+        synchronized (pendingEvents) {
+            pendingEvents.add(event);
+            
+            if (batchScheduled) {
+                return;
+            }
+            
+            batchScheduled = true;
+        }
+        
+        try {
+            ScheduledExecutorService scheduler = coalesceWindow > 0 ? ThreadUtil.getTaskScheduler() : null;
+            
+            if (scheduler != null) {
+                scheduler.schedule(deferredSchedule, coalesceWindow, TimeUnit.MILLISECONDS);
+                return;
+            }
+        } catch (RuntimeException e) {
+            // e.g., RejectedExecutionException during shutdown
+            log.warn("Unable to defer event delivery, scheduling immediately.", e);
+        }
+        
+        scheduleBatch();
+    }
+    
+    /**
+     * Schedules delivery of the pending batch in the desktop's event thread. If scheduling fails
+     * (e.g., the desktop is no longer alive), the pending batch, including any events that joined
+     * it after scheduling was initiated, is discarded and counted.
+     */
+    private void scheduleBatch() {
+        try {
+            Executions.schedule(desktop, batchListener, new Event(BATCH_EVENT));
+        } catch (RuntimeException e) {
+            int discarded;
+            
+            synchronized (pendingEvents) {
+                discarded = pendingEvents.size();
+                pendingEvents.clear();
+                batchScheduled = false;
+            }
+            
+            discardedEventCount.addAndGet(discarded);
+            log.warn("Unable to schedule event delivery, discarded " + discarded + " pending event(s).");
+            throw e;
+        }
+    }
+    
+    /**
+     * Updates delivery statistics for a batch.
+     * 
+     * @param batchSize Number of events in the batch.
+     */
+    private void updateStatistics(long batchSize) {
+        scheduleCount.incrementAndGet();
+        scheduledEventCount.addAndGet(batchSize);
+        long max = maxBatchSize.get();
+        
+        while (batchSize > max && !maxBatchSize.compareAndSet(max, batchSize)) {
+            max = maxBatchSize.get();
         }
     }
     
+    /**
+     * Returns the interval, in milliseconds, over which events fired outside the event thread are
+     * gathered before scheduling their delivery.
+     * 
+     * @return The coalescing window.
+     */
+    public long getCoalesceWindow() {
+        return coalesceWindow;
+    }
+    
+    /**
+     * Sets the interval, in milliseconds, over which events fired outside the event thread are
+     * gathered before scheduling their delivery. If zero (the default), delivery is scheduled
+     * immediately and only events arriving before it executes are coalesced.
+     * 
+     * @param coalesceWindow The coalescing window.
+     */
+    public void setCoalesceWindow(long coalesceWindow) {
+        this.coalesceWindow = coalesceWindow;
+    }
+    
+    /**
+     * Returns the number of scheduled executions that have delivered events.
+     * 
+     * @return Count of scheduled executions.
+     */
+    public long getScheduleCount() {
+        return scheduleCount.get();
+    }
+    
+    /**
+     * Returns the number of events delivered by scheduled executions.
+     * 
+     * @return Count of delivered events.
+     */
+    public long getScheduledEventCount() {
+        return scheduledEventCount.get();
+    }
+    
+    /**
+     * Returns the largest number of events delivered by a single scheduled execution.
+     * 
+     * @return Maximum batch size.
+     */
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+    
+    /**
+     * Returns the number of pending events discarded because their delivery could not be
+     * scheduled.
+     * 
+     * @return Count of discarded events.
+     */
+    public long getDiscardedEventCount() {
+        return discardedEventCount.get();
+    }
+    
     public Desktop getDesktop() {
         return desktop;
     }
@@ -10,15 +10,17 @@
 package org.carewebframework.ui.event;
 
 import java.io.Serializable;
-import java.util.List;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
 
 import org.carewebframework.api.event.AbstractGlobalEventDispatcher;
+import org.carewebframework.api.event.EventUtil;
 import org.carewebframework.api.event.IEventManager;
 import org.carewebframework.common.StrUtil;
-import org.carewebframework.ui.Application;
-import org.carewebframework.ui.Application.SessionInfo;
 
 import org.zkoss.zk.ui.Desktop;
 import org.zkoss.zk.ui.Executions;
@@ -26,11 +28,24 @@ import org.zkoss.zk.ui.event.Event;
 import org.zkoss.zk.ui.event.EventListener;
 
 /**
- * This is a simple implementation of a global event dispatcher that delivers events to each active
- * desktop.
+ * This is a simple implementation of a global event dispatcher that delivers events to active
+ * desktops within the same application instance.
+ * <p>
+ * Dispatchers are indexed application-wide by subscribed event name and by recipient id (the
+ * endpoint, user, application and node ids of the publisher info). The indexes are maintained as
+ * dispatchers subscribe, unsubscribe, initialize and are destroyed, so the cost of delivering a
+ * remote event is proportional to the number of actual recipients rather than the number of active
+ * desktops. The indexes hold dispatchers by weak reference, so a dispatcher that is never destroyed
+ * does not outlive its desktop.
  */
 public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher {
     
+    private static final DispatcherIndex eventIndex = new DispatcherIndex();
+    
+    private static final DispatcherIndex recipientIndex = new DispatcherIndex();
+    
+    private final Set<String> subscribedEvents = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    
     private Desktop desktop;
     
     private final EventListener<Event> eventListener = new EventListener<Event>() {
@@ -54,8 +69,67 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher {
         this.desktop = desktop;
     }
     
+    /**
+     * Adds this dispatcher to the recipient index after initialization.
+     */
+    @Override
+    public void init() {
+        super.init();
+        
+        for (String recipientId : publisherInfo.getAttributes().values()) {
+            recipientIndex.add(recipientId, this);
+        }
+    }
+    
+    /**
+     * Removes this dispatcher from all indexes.
+     */
+    @Override
+    public void destroy() {
+        super.destroy();
+        
+        for (String recipientId : publisherInfo.getAttributes().values()) {
+            recipientIndex.remove(recipientId, this);
+        }
+        
+        for (String eventName : subscribedEvents) {
+            eventIndex.remove(eventName, this);
+        }
+        
+        subscribedEvents.clear();
+    }
+    
+    /**
+     * Adds or removes this dispatcher from the index for the specified event.
+     */
     @Override
     public void subscribeRemoteEvent(String eventName, boolean subscribe) {
+        if (subscribe) {
+            subscribedEvents.add(eventName);
+            eventIndex.add(eventName, this);
+        } else {
+            subscribedEvents.remove(eventName);
+            eventIndex.remove(eventName, this);
+        }
+    }
+    
+    /**
+     * Returns true if this dispatcher is subscribed to the specified event or any of its parent
+     * events.
+     * 
+     * @param eventName Name of the event.
+     * @return True if subscribed.
+     */
+    private boolean isSubscribed(String eventName) {
+        while (!eventName.isEmpty()) {
+            if (subscribedEvents.contains(eventName)) {
+                return true;
+            }
+            
+            eventName = EventUtil.stripLevel(eventName);
+        }
+        
+        return false;
     }
     
     /**
@@ -68,26 +142,49 @@ public class GlobalEventDispatcher extends AbstractGlobalEventDispatcher {
         return desktop.getId();
     }
     
+    /**
+     * Delivers the event to each subscribed dispatcher. If recipients are specified, only the
+     * dispatchers indexed under those recipient ids are considered. Otherwise, the dispatchers
+     * indexed under the event and each of its parent events are considered.
+     */
     @Override
     public void fireRemoteEvent(String eventName, Serializable eventData, String recipients) {
-        List<String> recp = StringUtils.isEmpty(recipients) ? null : StrUtil.toList(recipients, ",");
+        if (StringUtils.isEmpty(eventName)) {
+            return;
+        }
+        
+        Set<GlobalEventDispatcher> delivered = new HashSet<>();
         
-        for (SessionInfo sessionInfo : Application.getInstance().getActiveSessions()) {
-            for (Desktop dktop : sessionInfo.getDesktops()) {
-                if (recp == null || recp.contains(dktop.getId())) {
-                    try {
-                        Executions.schedule(dktop, eventListener, new Event(eventName, null, eventData));
-                    } catch (Throwable t) {}
-                    
-                    if (recp != null) {
-                        recp.remove(dktop.getId());
-                        
-                        if (recp.isEmpty()) {
-                            break;
-                        }
+        if (StringUtils.isEmpty(recipients)) {
+            for (String name = eventName; !name.isEmpty(); name = EventUtil.stripLevel(name)) {
+                for (GlobalEventDispatcher dispatcher : eventIndex.get(name)) {
+                    if (delivered.add(dispatcher)) {
+                        deliver(dispatcher, eventName, eventData);
+                    }
+                }
+            }
+        } else {
+            for (String recipient : StrUtil.split(recipients, ",")) {
+                for (GlobalEventDispatcher dispatcher : recipientIndex.get(recipient.trim())) {
+                    if (dispatcher.isSubscribed(eventName) && delivered.add(dispatcher)) {
+                        deliver(dispatcher, eventName, eventData);
                     }
                 }
             }
         }
     }
+    
+    /**
+     * Delivers an event to the desktop associated with the target dispatcher, in that desktop's
+     * event thread.
+     * 
+     * @param target The target dispatcher.
+     * @param eventName Name of the event.
+     * @param eventData Data associated with the event.
+     */
+    protected void deliver(GlobalEventDispatcher target, String eventName, Serializable eventData) {
+        try {
+            Executions.schedule(target.desktop, eventListener, new Event(eventName, null, eventData));
+        } catch (Throwable t) {}
+    }
 }
@@ -0,0 +1,282 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.ui.spring;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.config.ConstructorArgumentValues;
+import org.springframework.beans.factory.config.ConstructorArgumentValues.ValueHolder;
+import org.springframework.beans.factory.config.TypedStringValue;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.ManagedArray;
+import org.springframework.beans.factory.support.ManagedList;
+import org.springframework.beans.factory.support.ManagedMap;
+import org.springframework.beans.factory.support.ManagedProperties;
+import org.springframework.beans.factory.support.ManagedSet;
+
+/**
+ * Cache for parsed bean definitions. Improves startup time of child application contexts by
+ * parsing their configuration files only once. Because bean factory post processors (placeholder
+ * configurers in particular) modify bean definitions in place, the cache holds private copies of
+ * the definitions as originally parsed and each bean factory receives its own copies.
+ */
+public class BeanDefinitionCache extends ConcurrentHashMap<String, BeanDefinitionCache.Definitions> {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * The bean definitions and aliases parsed from a set of configuration files.
+     */
+    public static class Definitions {
+        
+        private final Map<String, BeanDefinition> beanDefinitions = new LinkedHashMap<>();
+        
+        private final Map<String, String[]> aliases = new LinkedHashMap<>();
+        
+        /**
+         * Captures copies of all bean definitions and aliases from a registry.
+         * 
+         * @param registry Registry containing the parsed bean definitions.
+         */
+        private Definitions(BeanDefinitionRegistry registry) {
+            for (String beanName : registry.getBeanDefinitionNames()) {
+                beanDefinitions.put(beanName, copy(registry.getBeanDefinition(beanName)));
+                aliases.put(beanName, registry.getAliases(beanName));
+            }
+        }
+        
+        /**
+         * Registers copies of the cached bean definitions and aliases with a registry.
+         * 
+         * @param registry Registry to receive the bean definitions.
+         */
+        private void register(BeanDefinitionRegistry registry) {
+            for (Entry<String, BeanDefinition> entry : beanDefinitions.entrySet()) {
+                String beanName = entry.getKey();
+                registry.registerBeanDefinition(beanName, copy(entry.getValue()));
+                
+                for (String alias : aliases.get(beanName)) {
+                    registry.registerAlias(beanName, alias);
+                }
+            }
+        }
+        
+        /**
+         * Returns the number of cached bean definitions.
+         * 
+         * @return The bean definition count.
+         */
+        public int size() {
+            return beanDefinitions.size();
+        }
+    }
+    
+    /**
+     * Callback for parsing bean definitions into a registry on a cache miss.
+     */
+    public interface IBeanDefinitionLoader {
+        
+        /**
+         * Parses bean definitions into the specified registry.
+         * 
+         * @param registry Registry to receive the bean definitions.
+         * @throws Exception Unspecified exception.
+         */
+        void loadBeanDefinitions(BeanDefinitionRegistry registry) throws Exception;
+    }
+    
+    /**
+     * Populates a registry with the bean definitions associated with the specified key. If they
+     * have not yet been cached, they are parsed by the loader and stored in the cache. The registry
+     * must not contain any bean definitions beforehand.
+     * 
+     * @param key Identifies the configuration files and profiles from which the bean definitions
+     *            are parsed.
+     * @param registry Registry to receive the bean definitions.
+     * @param loader Parses the bean definitions on a cache miss.
+     * @return True if the bean definitions were retrieved from the cache.
+     * @throws Exception Unspecified exception.
+     */
+    public boolean load(String key, BeanDefinitionRegistry registry, IBeanDefinitionLoader loader) throws Exception {
+        Definitions definitions = get(key);
+        
+        if (definitions != null) {
+            definitions.register(registry);
+            return true;
+        }
+        
+        loader.loadBeanDefinitions(registry);
+        putIfAbsent(key, new Definitions(registry));
+        return false;
+    }
+    
+    /**
+     * Returns a copy of a bean definition, including any values that may be modified in place by a
+     * bean definition visitor.
+     * 
+     * @param beanDefinition The bean definition to copy.
+     * @return A copy of the bean definition.
+     */
+    private static BeanDefinition copy(BeanDefinition beanDefinition) {
+        if (!(beanDefinition instanceof AbstractBeanDefinition)) {
+            return beanDefinition;
+        }
+        
+        AbstractBeanDefinition copy = ((AbstractBeanDefinition) beanDefinition).cloneBeanDefinition();
+        MutablePropertyValues pvs = copy.getPropertyValues();
+        List<PropertyValue> pvList = pvs.getPropertyValueList();
+        
+        for (int i = 0; i < pvList.size(); i++) {
+            PropertyValue pv = pvList.get(i);
+            pvs.setPropertyValueAt(new PropertyValue(pv, copyValue(pv.getValue())), i);
+        }
+        
+        ConstructorArgumentValues cas = copy.getConstructorArgumentValues();
+        
+        for (ValueHolder valueHolder : cas.getIndexedArgumentValues().values()) {
+            valueHolder.setValue(copyValue(valueHolder.getValue()));
+        }
+        
+        for (ValueHolder valueHolder : cas.getGenericArgumentValues()) {
+            valueHolder.setValue(copyValue(valueHolder.getValue()));
+        }
+        
+        return copy;
+    }
+    
+    /**
+     * Returns a copy of a bean metadata value. Values that are never modified in place are returned
+     * as is.
+     * 
+     * @param value The value to copy.
+     * @return A copy of the value.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object copyValue(Object value) {
+        if (value instanceof BeanDefinitionHolder) {
+            BeanDefinitionHolder holder = (BeanDefinitionHolder) value;
+            return new BeanDefinitionHolder(copy(holder.getBeanDefinition()), holder.getBeanName(), holder.getAliases());
+        }
+        
+        if (value instanceof BeanDefinition) {
+            return copy((BeanDefinition) value);
+        }
+        
+        if (value instanceof TypedStringValue) {
+            TypedStringValue tsv = (TypedStringValue) value;
+            TypedStringValue copy = tsv.hasTargetType() ? new TypedStringValue(tsv.getValue(), tsv.getTargetType())
+                    : new TypedStringValue(tsv.getValue());
+            
+            if (!tsv.hasTargetType() && tsv.getTargetTypeName() != null) {
+                copy.setTargetTypeName(tsv.getTargetTypeName());
+            }
+            
+            copy.setSpecifiedTypeName(tsv.getSpecifiedTypeName());
+            copy.setSource(tsv.getSource());
+            
+            if (tsv.isDynamic()) {
+                copy.setDynamic();
+            }
+            
+            return copy;
+        }
+        
+        if (value instanceof ManagedArray) {
+            ManagedArray array = (ManagedArray) value;
+            ManagedArray copy = new ManagedArray(array.getElementTypeName(), array.size());
+            copy.setMergeEnabled(array.isMergeEnabled());
+            copy.setSource(array.getSource());
+            
+            for (Object element : array) {
+                copy.add(copyValue(element));
+            }
+            
+            return copy;
+        }
+        
+        if (value instanceof ManagedList) {
+            ManagedList<Object> list = (ManagedList<Object>) value;
+            ManagedList<Object> copy = new ManagedList<>(list.size());
+            copy.setElementTypeName(list.getElementTypeName());
+            copy.setMergeEnabled(list.isMergeEnabled());
+            copy.setSource(list.getSource());
+            
+            for (Object element : list) {
+                copy.add(copyValue(element));
+            }
+            
+            return copy;
+        }
+        
+        if (value instanceof ManagedSet) {
+            ManagedSet<Object> set = (ManagedSet<Object>) value;
+            ManagedSet<Object> copy = new ManagedSet<>(set.size());
+            copy.setElementTypeName(set.getElementTypeName());
+            copy.setMergeEnabled(set.isMergeEnabled());
+            copy.setSource(set.getSource());
+            
+            for (Object element : set) {
+                copy.add(copyValue(element));
+            }
+            
+            return copy;
+        }
+        
+        if (value instanceof ManagedMap) {
+            ManagedMap<Object, Object> map = (ManagedMap<Object, Object>) value;
+            ManagedMap<Object, Object> copy = new ManagedMap<>(map.size());
+            copy.setKeyTypeName(map.getKeyTypeName());
+            copy.setValueTypeName(map.getValueTypeName());
+            copy.setMergeEnabled(map.isMergeEnabled());
+            copy.setSource(map.getSource());
+            
+            for (Entry<Object, Object> entry : map.entrySet()) {
+                copy.put(copyValue(entry.getKey()), copyValue(entry.getValue()));
+            }
+            
+            return copy;
+        }
+        
+        if (value instanceof ManagedProperties) {
+            ManagedProperties props = (ManagedProperties) value;
+            ManagedProperties copy = new ManagedProperties();
+            copy.setMergeEnabled(props.isMergeEnabled());
+            copy.setSource(props.getSource());
+            
+            for (Entry<Object, Object> entry : props.entrySet()) {
+                copy.put(copyValue(entry.getKey()), copyValue(entry.getValue()));
+            }
+            
+            return copy;
+        }
+        
+        if (value instanceof Object[]) {
+            Object[] array = ((Object[]) value).clone();
+            
+            for (int i = 0; i < array.length; i++) {
+                array[i] = copyValue(array[i]);
+            }
+            
+            return array;
+        }
+        
+        return value;
+    }
+    
+}
@@ -14,25 +14,39 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import javax.servlet.ServletContext;
 
 import org.apache.commons.lang.ArrayUtils;
 
+import org.carewebframework.api.IRegisterEvent;
+import org.carewebframework.api.context.IContextEvent;
+import org.carewebframework.api.context.IManagedContext;
 import org.carewebframework.api.spring.Constants;
 import org.carewebframework.api.spring.DomainPropertySource;
 import org.carewebframework.api.spring.FrameworkBeanFactory;
 import org.carewebframework.api.spring.LabelPropertySource;
 import org.carewebframework.api.spring.ResourceCache;
+import org.carewebframework.api.spring.SpringUtil;
 import org.carewebframework.ui.LabelFinder;
 import org.carewebframework.ui.util.MemoryLeakPreventionUtil;
 
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.context.ApplicationListener;
+import org.springframework.context.Lifecycle;
 import org.springframework.context.event.ApplicationEventMulticaster;
 import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.io.Resource;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.support.WebApplicationContextUtils;
 import org.springframework.web.context.support.XmlWebApplicationContext;
@@ -46,6 +60,10 @@ import org.zkoss.zk.ui.Session;
  * <p>
  * By disabling bean definition overriding, bean id name collisions will result in an exception when
  * the bean definition is processed.
+ * <p>
+ * Bean definitions for desktop contexts are parsed once and cached, so that creating a desktop
+ * context only instantiates its beans. Optionally, non-critical desktop beans may be lazily
+ * initialized (see {@link #setLazyInit}).
  */
 
 public class FrameworkAppContext extends XmlWebApplicationContext implements ResourceCache.IResourceCacheAware {
@@ -54,10 +72,41 @@ public class FrameworkAppContext extends XmlWebApplicationContext implements Res
     
     private static final ResourceCache resourceCache = new ResourceCache();
     
+    private static final BeanDefinitionCache beanDefinitionCache = new BeanDefinitionCache();
+    
+    /**
+     * Property that, if true, enables lazy initialization of non-critical desktop beans.
+     */
+    public static final String PROPERTY_LAZY_INIT = "org.carewebframework.ui.desktop.lazy.init";
+    
+    /**
+     * Desktop beans implementing any of these types are never lazily initialized. Besides Spring
+     * callbacks, these include the types acted upon by registration listeners when a bean is
+     * registered with the application framework (e.g., context subscribers).
+     */
+    private static final Set<Class<?>> criticalTypes = new CopyOnWriteArraySet<>(Arrays.<Class<?>> asList(
+        InitializingBean.class, ApplicationListener.class, Lifecycle.class, IRegisterEvent.class,
+        IContextEvent.class, IManagedContext.class));
+            
     private final Desktop desktop;
     
     private ContextClosedListener ctxListener;
     
+    private boolean cacheBeanDefinitions = true;
+    
+    private Boolean lazyInit;
+    
+    /**
+     * Registers a type whose desktop beans must never be lazily initialized. A registration
+     * listener ({@link IRegisterEvent}) should register each type it acts upon, so that beans of
+     * that type are registered with it when the desktop context is refreshed.
+     * 
+     * @param type The critical type.
+     */
+    public static void registerCriticalType(Class<?> type) {
+        criticalTypes.add(type);
+    }
+    
     /**
      * Returns the application context associated with the given desktop.
      * 
@@ -166,6 +215,54 @@ public class FrameworkAppContext extends XmlWebApplicationContext implements Res
         }
     }
     
+    /**
+     * Returns true if bean definitions for a desktop context are retrieved from the shared cache.
+     * 
+     * @return True if bean definitions are cached.
+     */
+    public boolean isCacheBeanDefinitions() {
+        return cacheBeanDefinitions;
+    }
+    
+    /**
+     * Determines whether bean definitions for a desktop context are retrieved from the shared cache
+     * (default is true). If false, the configuration files are parsed each time the context is
+     * refreshed. Has no effect on a root context.
+     * 
+     * @param cacheBeanDefinitions If true, bean definitions are cached.
+     */
+    public void setCacheBeanDefinitions(boolean cacheBeanDefinitions) {
+        this.cacheBeanDefinitions = cacheBeanDefinitions;
+    }
+    
+    /**
+     * Returns true if non-critical desktop beans are lazily initialized. Unless explicitly set, this
+     * is determined by the {@value #PROPERTY_LAZY_INIT} property.
+     * 
+     * @return True if non-critical beans are lazily initialized.
+     */
+    public boolean isLazyInit() {
+        if (lazyInit == null) {
+            lazyInit = !isRoot() && Boolean.parseBoolean(SpringUtil.getProperty(PROPERTY_LAZY_INIT));
+        }
+        
+        return lazyInit;
+    }
+    
+    /**
+     * Determines whether non-critical desktop singletons are lazily initialized, that is, created
+     * upon first request rather than when the context is refreshed. A bean is considered critical
+     * if it declares an init method or dependencies, or if it is a lifecycle bean, an application
+     * listener, a registration listener ({@link IRegisterEvent}), a context subscriber, or of any
+     * other type registered via {@link #registerCriticalType}. Lazily initialized beans are not
+     * registered with the application framework until created. Has no effect on a root context.
+     * 
+     * @param lazyInit If true, non-critical beans are lazily initialized.
+     */
+    public void setLazyInit(boolean lazyInit) {
+        this.lazyInit = lazyInit;
+    }
+    
     /**
      * Adds one or more locations to the list of current locations to search for configuration
      * files.
@@ -203,6 +300,83 @@ public class FrameworkAppContext extends XmlWebApplicationContext implements Res
         return factory;
     }
     
+    /**
+     * Override to retrieve the bean definitions for a desktop context from the shared cache, parsing
+     * them only if they have not yet been cached. Bean factory post processors still run for each
+     * context against its own copies of the bean definitions.
+     */
+    @Override
+    protected void loadBeanDefinitions(DefaultListableBeanFactory beanFactory) throws BeansException, IOException {
+        if (isRoot() || !cacheBeanDefinitions) {
+            super.loadBeanDefinitions(beanFactory);
+        } else {
+            String key = StringUtils.arrayToCommaDelimitedString(getConfigLocations()) + "|"
+                    + StringUtils.arrayToCommaDelimitedString(getEnvironment().getActiveProfiles());
+                    
+            try {
+                beanDefinitionCache.load(key, beanFactory, new BeanDefinitionCache.IBeanDefinitionLoader() {
+                    
+                    @Override
+                    public void loadBeanDefinitions(BeanDefinitionRegistry registry) throws Exception {
+                        FrameworkAppContext.super.loadBeanDefinitions((DefaultListableBeanFactory) registry);
+                    }
+                    
+                });
+            } catch (BeansException | IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new BeanDefinitionStoreException("Error loading bean definitions for " + getDisplayName(), e);
+            }
+        }
+        
+        if (!isRoot() && isLazyInit()) {
+            for (String beanName : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition beanDefinition = beanFactory.getBeanDefinition(beanName);
+                
+                if (beanDefinition.isSingleton() && !beanDefinition.isAbstract() && !isCritical(beanDefinition)) {
+                    beanDefinition.setLazyInit(true);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns true if a bean should always be eagerly initialized.
+     * 
+     * @param beanDefinition The bean definition.
+     * @return True if the bean is critical.
+     */
+    private boolean isCritical(BeanDefinition beanDefinition) {
+        if (beanDefinition instanceof AbstractBeanDefinition
+                && ((AbstractBeanDefinition) beanDefinition).getInitMethodName() != null) {
+            return true;
+        }
+        
+        if (beanDefinition.getDependsOn() != null && beanDefinition.getDependsOn().length > 0) {
+            return true;
+        }
+        
+        String className = beanDefinition.getBeanClassName();
+        
+        if (className == null || beanDefinition.getFactoryMethodName() != null) {
+            return false;
+        }
+        
+        try {
+            Class<?> clazz = ClassUtils.forName(className, getClassLoader());
+            
+            for (Class<?> criticalType : criticalTypes) {
+                if (criticalType.isAssignableFrom(clazz)) {
+                    return true;
+                }
+            }
+            
+            return false;
+        } catch (Throwable e) {
+            return true;
+        }
+    }
+    
     /**
      * Returns resources based on a location pattern. Overridden to support caching.
      */
@@ -11,13 +11,13 @@ package org.carewebframework.ui.thread;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.commons.lang.time.StopWatch;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.carewebframework.api.thread.IAbortable;
-import org.carewebframework.api.thread.ThreadUtil;
 import org.carewebframework.ui.FrameworkWebSupport;
 
 import org.springframework.web.context.request.RequestAttributes;
@@ -31,8 +31,8 @@ import org.zkoss.zk.ui.event.EventListener;
 import org.zkoss.zk.ui.event.Events;
 
 /**
- * Used to run long operations in the background. Uses ZK events to notify the requester of
- * completion.
+ * Used to run long operations in the background. Operations are run by the shared
+ * {@link ZKThreadPool}. Uses ZK events to notify the requester of completion.
  * <p>
  * <i>Note: reference {@link #getException()} to evaluate any exception the ZKRunnable target may
  * have thrown. You may also invoke {@link #rethrow()}. One of these methods should be referenced to
@@ -67,15 +67,19 @@ public class ZKThread implements IAbortable {
     }
     
     /**
-     * Subclasses the Thread class, notifying the requester when the target operation completes.
+     * Executes the target operation with timings, notifying the requester when it completes or if
+     * it is discarded by the pool without being run.
      */
-    private class ThreadEx extends Thread {
+    private class Task implements Runnable, ZKThreadPool.IRejectable {
         
-        /**
-         * Executes the target operation with timings.
-         */
         @Override
         public void run() {
+            if (aborted) {
+                ZKThread.this.done();
+                return;
+            }
+            
+            running = true;
             associateThread(desktop, requestAttributes);
             watch.start();
             
@@ -86,6 +90,13 @@ public class ZKThread implements IAbortable {
             }
             watch.stop();
             disassociateThread();
+            running = false;
+            ZKThread.this.done();
+        }
+        
+        @Override
+        public void rejected(RejectedExecutionException e) {
+            exception = e;
             ZKThread.this.done();
         }
         
@@ -106,7 +117,9 @@ public class ZKThread implements IAbortable {
         
     };
     
-    private boolean aborted;
+    private volatile boolean aborted;
+    
+    private volatile boolean running;
     
     private Throwable exception;
     
@@ -118,7 +131,7 @@ public class ZKThread implements IAbortable {
     
     private final Desktop desktop;
     
-    private final Thread thread;
+    private final Task task = new Task();
     
     private final RequestAttributes requestAttributes;
     
@@ -172,27 +185,38 @@ public class ZKThread implements IAbortable {
         this.event = new Event(eventName, requester, this);
         this.desktop = requester.getDesktop();
         this.requestAttributes = RequestContextHolder.getRequestAttributes();
-        this.thread = new ThreadEx();
     }
     
     /**
-     * Starts the background thread.
+     * Queues the target operation for execution by the shared {@link ZKThreadPool}. If the pool
+     * rejects the operation, the requester is notified of completion with a
+     * RejectedExecutionException as the exception.
      */
     public void start() {
         if (log.isDebugEnabled()) {
             log.debug("Executing ZKThread [target=" + target.getClass().getName() + "]");
         }
-        ThreadUtil.startThread(this.thread);
+        
+        try {
+            ZKThreadPool.getInstance().execute(desktop, task);
+        } catch (RejectedExecutionException e) {
+            log.warn(e.getMessage());
+            exception = e;
+            done();
+        }
     }
     
     /**
-     * Request that the thread abort and notify the target.
+     * Request that the thread abort and notify the target. If the target operation has not yet
+     * started, it is removed from the pool's queue and the requester is notified of completion.
      */
     @Override
     public void abort() {
         aborted = true;
         
-        if (thread.isAlive()) {
+        if (ZKThreadPool.getInstance().remove(task)) {
+            done();
+        } else if (running) {
             target.abort();
         }
     }
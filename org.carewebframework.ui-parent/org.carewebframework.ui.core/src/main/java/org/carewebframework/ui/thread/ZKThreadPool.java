@@ -0,0 +1,516 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.ui.thread;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import org.zkoss.zk.ui.Desktop;
+
+/**
+ * Bounded pool of worker threads for running {@link ZKThread} background tasks. Pending tasks are
+ * queued by desktop and the desktops are serviced in round robin fashion, so that a burst of
+ * requests from one desktop cannot starve the others. A task is rejected if the number of pending
+ * tasks for its desktop, or overall, would exceed the configured limit, or if the pool has been
+ * shut down.
+ */
+@ManagedResource(description = "Background task pool for ZK threads")
+public class ZKThreadPool {
+    
+    private static final Log log = LogFactory.getLog(ZKThreadPool.class);
+    
+    private static final ZKThreadPool instance = new ZKThreadPool();
+    
+    /**
+     * Implemented by a task that must be notified if it is discarded without being run.
+     */
+    public interface IRejectable {
+        
+        /**
+         * Called when the task has been discarded without being run.
+         * 
+         * @param exception Describes why the task was discarded.
+         */
+        void rejected(RejectedExecutionException exception);
+    }
+    
+    /**
+     * A pending task and the time it was queued.
+     */
+    private static class Task {
+        
+        private final Runnable runnable;
+        
+        private final long queued = System.nanoTime();
+        
+        private Task(Runnable runnable) {
+            this.runnable = runnable;
+        }
+    }
+    
+    /**
+     * Runs the next pending task. One of these is submitted to the executor for each queued task,
+     * but it is not necessarily the task that is run.
+     */
+    private final Runnable worker = new Runnable() {
+        
+        @Override
+        public void run() {
+            Task task = next();
+            
+            if (task != null) {
+                runTask(task);
+            }
+        }
+        
+    };
+    
+    private final Map<Desktop, Deque<Task>> queues = new LinkedHashMap<>();
+    
+    private final AtomicInteger active = new AtomicInteger();
+    
+    private final AtomicLong submitted = new AtomicLong();
+    
+    private final AtomicLong completed = new AtomicLong();
+    
+    private final AtomicLong rejected = new AtomicLong();
+    
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    
+    private final AtomicLong maxWaitTime = new AtomicLong();
+    
+    private ThreadPoolExecutor executor;
+    
+    private int queued;
+    
+    private boolean shutdown;
+    
+    private int poolSize = 10;
+    
+    private int maxQueued = 500;
+    
+    private int maxQueuedPerDesktop = 50;
+    
+    private String threadNamePrefix = "zkThread-";
+    
+    public static ZKThreadPool getInstance() {
+        return instance;
+    }
+    
+    /**
+     * Enforce singleton instance (visible for testing).
+     */
+    /*package*/ ZKThreadPool() {
+    }
+    
+    /**
+     * Queues a task for execution on behalf of a desktop.
+     * 
+     * @param desktop The desktop requesting the task (may be null).
+     * @param runnable The task to run.
+     * @throws RejectedExecutionException If the task would exceed the queue limits or the pool has
+     *             been shut down.
+     */
+    public void execute(Desktop desktop, Runnable runnable) {
+        synchronized (queues) {
+            if (shutdown) {
+                rejected.incrementAndGet();
+                throw new RejectedExecutionException("Background task pool has been shut down.");
+            }
+            
+            Deque<Task> queue = queues.get(desktop);
+            int size = queue == null ? 0 : queue.size();
+            
+            if (queued >= maxQueued || size >= maxQueuedPerDesktop) {
+                rejected.incrementAndGet();
+                throw new RejectedExecutionException("Too many pending background tasks"
+                        + (size >= maxQueuedPerDesktop ? " for desktop " + desktop : "") + ".");
+            }
+            
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(desktop, queue);
+            }
+            
+            queue.add(new Task(runnable));
+            queued++;
+            submitted.incrementAndGet();
+            getExecutor().execute(worker);
+        }
+    }
+    
+    /**
+     * Removes a task that has not yet started running.
+     * 
+     * @param runnable The task to remove.
+     * @return True if the task was removed. False if it has already started or was never queued.
+     */
+    public boolean remove(Runnable runnable) {
+        synchronized (queues) {
+            Iterator<Deque<Task>> iter = queues.values().iterator();
+            
+            while (iter.hasNext()) {
+                Deque<Task> queue = iter.next();
+                Iterator<Task> iter2 = queue.iterator();
+                
+                while (iter2.hasNext()) {
+                    if (iter2.next().runnable == runnable) {
+                        iter2.remove();
+                        queued--;
+                        
+                        if (queue.isEmpty()) {
+                            iter.remove();
+                        }
+                        
+                        return true;
+                    }
+                }
+            }
+            
+            return false;
+        }
+    }
+    
+    /**
+     * Removes the next pending task, taking desktops in turn.
+     * 
+     * @return The next task, or null if none are pending.
+     */
+    private Task next() {
+        synchronized (queues) {
+            Iterator<Entry<Desktop, Deque<Task>>> iter = queues.entrySet().iterator();
+            
+            if (!iter.hasNext()) {
+                return null;
+            }
+            
+            Entry<Desktop, Deque<Task>> entry = iter.next();
+            Deque<Task> queue = entry.getValue();
+            Task task = queue.poll();
+            iter.remove();
+            queued--;
+            
+            if (!queue.isEmpty()) {
+                queues.put(entry.getKey(), queue);
+            }
+            
+            return task;
+        }
+    }
+    
+    /**
+     * Runs a task, recording its statistics.
+     * 
+     * @param task The task to run.
+     */
+    private void runTask(Task task) {
+        long wait = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - task.queued);
+        totalWaitTime.addAndGet(wait);
+        
+        long max = maxWaitTime.get();
+        
+        while (wait > max && !maxWaitTime.compareAndSet(max, wait)) {
+            max = maxWaitTime.get();
+        }
+        
+        active.incrementAndGet();
+        
+        try {
+            task.runnable.run();
+        } catch (Throwable e) {
+            log.error("Unexpected error in background task.", e);
+        } finally {
+            active.decrementAndGet();
+            completed.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Returns the executor, creating it if necessary.
+     * 
+     * @return The executor.
+     */
+    private ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+            threadFactory.setDaemon(true);
+            executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    threadFactory);
+            executor.allowCoreThreadTimeOut(true);
+        }
+        
+        return executor;
+    }
+    
+    /**
+     * Stops accepting work, allowing running tasks to finish. Tasks that are still queued are
+     * discarded, and those implementing {@link IRejectable} are notified.
+     */
+    public void shutdown() {
+        List<Task> discarded = new ArrayList<>();
+        
+        synchronized (queues) {
+            if (shutdown) {
+                return;
+            }
+            
+            shutdown = true;
+            
+            for (Deque<Task> queue : queues.values()) {
+                discarded.addAll(queue);
+            }
+            
+            queues.clear();
+            queued = 0;
+            
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+        
+        RejectedExecutionException exception = new RejectedExecutionException("Background task pool has been shut down.");
+        
+        for (Task task : discarded) {
+            if (task.runnable instanceof IRejectable) {
+                try {
+                    ((IRejectable) task.runnable).rejected(exception);
+                } catch (Throwable e) {
+                    log.error("Error notifying discarded background task.", e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns true if the pool has been shut down.
+     * 
+     * @return True if shut down.
+     */
+    @ManagedAttribute(description = "True if the pool has been shut down")
+    public boolean isShutdown() {
+        synchronized (queues) {
+            return shutdown;
+        }
+    }
+    
+    /**
+     * Returns the maximum number of tasks that may run concurrently.
+     * 
+     * @return The pool size.
+     */
+    @ManagedAttribute(description = "Maximum number of concurrently running tasks")
+    public int getPoolSize() {
+        return poolSize;
+    }
+    
+    /**
+     * Sets the maximum number of tasks that may run concurrently.
+     * 
+     * @param poolSize The pool size.
+     */
+    @ManagedAttribute
+    public void setPoolSize(int poolSize) {
+        synchronized (queues) {
+            this.poolSize = Math.max(1, poolSize);
+            
+            if (executor != null) {
+                if (this.poolSize > executor.getMaximumPoolSize()) {
+                    executor.setMaximumPoolSize(this.poolSize);
+                    executor.setCorePoolSize(this.poolSize);
+                } else {
+                    executor.setCorePoolSize(this.poolSize);
+                    executor.setMaximumPoolSize(this.poolSize);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns the maximum number of pending tasks across all desktops.
+     * 
+     * @return The maximum number of pending tasks.
+     */
+    @ManagedAttribute(description = "Maximum number of pending tasks")
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+    
+    /**
+     * Sets the maximum number of pending tasks across all desktops.
+     * 
+     * @param maxQueued The maximum number of pending tasks.
+     */
+    @ManagedAttribute
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+    
+    /**
+     * Returns the maximum number of pending tasks for a single desktop.
+     * 
+     * @return The maximum number of pending tasks per desktop.
+     */
+    @ManagedAttribute(description = "Maximum number of pending tasks per desktop")
+    public int getMaxQueuedPerDesktop() {
+        return maxQueuedPerDesktop;
+    }
+    
+    /**
+     * Sets the maximum number of pending tasks for a single desktop.
+     * 
+     * @param maxQueuedPerDesktop The maximum number of pending tasks per desktop.
+     */
+    @ManagedAttribute
+    public void setMaxQueuedPerDesktop(int maxQueuedPerDesktop) {
+        this.maxQueuedPerDesktop = maxQueuedPerDesktop;
+    }
+    
+    /**
+     * Returns the prefix for worker thread names.
+     * 
+     * @return The thread name prefix.
+     */
+    public String getThreadNamePrefix() {
+        return threadNamePrefix;
+    }
+    
+    /**
+     * Sets the prefix for worker thread names. Takes effect when the executor is next created.
+     * 
+     * @param threadNamePrefix The thread name prefix.
+     */
+    public void setThreadNamePrefix(String threadNamePrefix) {
+        this.threadNamePrefix = threadNamePrefix;
+    }
+    
+    /**
+     * Returns the number of tasks currently running.
+     * 
+     * @return The number of running tasks.
+     */
+    @ManagedAttribute(description = "Number of running tasks")
+    public int getActiveCount() {
+        return active.get();
+    }
+    
+    /**
+     * Returns the number of tasks waiting to run.
+     * 
+     * @return The number of pending tasks.
+     */
+    @ManagedAttribute(description = "Number of pending tasks")
+    public int getQueuedCount() {
+        synchronized (queues) {
+            return queued;
+        }
+    }
+    
+    /**
+     * Returns the number of desktops with tasks waiting to run.
+     * 
+     * @return The number of desktops with pending tasks.
+     */
+    @ManagedAttribute(description = "Number of desktops with pending tasks")
+    public int getQueuedDesktopCount() {
+        synchronized (queues) {
+            return queues.size();
+        }
+    }
+    
+    /**
+     * Returns the number of tasks accepted for execution.
+     * 
+     * @return The number of submitted tasks.
+     */
+    @ManagedAttribute(description = "Number of tasks accepted")
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+    
+    /**
+     * Returns the number of tasks that have run.
+     * 
+     * @return The number of completed tasks.
+     */
+    @ManagedAttribute(description = "Number of tasks completed")
+    public long getCompletedCount() {
+        return completed.get();
+    }
+    
+    /**
+     * Returns the number of tasks rejected because a queue limit was reached.
+     * 
+     * @return The number of rejected tasks.
+     */
+    @ManagedAttribute(description = "Number of tasks rejected")
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+    
+    /**
+     * Returns the average time a task waited before running.
+     * 
+     * @return The average wait time in milliseconds.
+     */
+    @ManagedAttribute(description = "Average time (ms) a task waited to run")
+    public double getAverageWaitTime() {
+        long count = completed.get() + active.get();
+        return count == 0 ? 0 : (double) totalWaitTime.get() / count;
+    }
+    
+    /**
+     * Returns the longest time a task waited before running.
+     * 
+     * @return The maximum wait time in milliseconds.
+     */
+    @ManagedAttribute(description = "Longest time (ms) a task waited to run")
+    public long getMaxWaitTime() {
+        return maxWaitTime.get();
+    }
+    
+    /**
+     * Resets the task counts and wait times.
+     */
+    @ManagedOperation(description = "Resets statistics")
+    public void resetStatistics() {
+        submitted.set(0);
+        completed.set(0);
+        rejected.set(0);
+        totalWaitTime.set(0);
+        maxWaitTime.set(0);
+    }
+    
+    @Override
+    public String toString() {
+        return "active=" + getActiveCount() + ", queued=" + getQueuedCount() + ", submitted=" + submitted + ", completed="
+                + completed + ", rejected=" + rejected + ", maxWait=" + maxWaitTime + " ms";
+    }
+    
+}
@@ -36,10 +36,13 @@ public class ZulGlobalCache extends AbstractCache<String, PageDefinition> {
     }
     
     /**
-     * Enforce singleton instance.
+     * Enforce singleton instance. Page definitions that have not been used for an hour are
+     * discarded, as are the least recently used ones when there are more than 500.
      */
     private ZulGlobalCache() {
         super();
+        setMaxSize(500);
+        setExpireAfterAccess(60 * 60 * 1000);
     }
     
     /**
@@ -0,0 +1,161 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.zkoss.zk.ui.Desktop;
+import org.zkoss.zk.ui.Session;
+import org.zkoss.zk.ui.event.Event;
+import org.zkoss.zk.ui.sys.DesktopCtrl;
+import org.zkoss.zk.ui.sys.SessionCtrl;
+
+public class DesktopMonitorTest {
+    
+    private static final int DESKTOP_COUNT = 500;
+    
+    /**
+     * Simulates a desktop, recording the actions scheduled by its monitor.
+     */
+    private static class MockDesktop implements InvocationHandler {
+        
+        final String id;
+        
+        final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        
+        final Map<String, AtomicInteger> actions = new ConcurrentHashMap<>();
+        
+        volatile boolean alive = true;
+        
+        MockDesktop(int id) {
+            this.id = "desktop" + id;
+        }
+        
+        Desktop create() {
+            return (Desktop) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Desktop.class,
+                    DesktopCtrl.class }, this);
+        }
+        
+        int getActionCount(String action) {
+            AtomicInteger count = actions.get(action);
+            return count == null ? 0 : count.get();
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "toString":
+                case "getId":
+                    return id;
+                
+                case "hashCode":
+                    return id.hashCode();
+                
+                case "equals":
+                    return proxy == args[0];
+                
+                case "isAlive":
+                    return alive;
+                
+                case "isServerPushEnabled":
+                    return true;
+                
+                case "getSession":
+                    return session;
+                
+                case "hasAttribute":
+                    return attributes.containsKey(args[0]);
+                
+                case "setAttribute":
+                    return attributes.put((String) args[0], args[1]);
+                
+                case "scheduleServerPush":
+                    String action = ((Event) args[1]).getData().toString();
+                    actions.putIfAbsent(action, new AtomicInteger());
+                    actions.get(action).incrementAndGet();
+                    return null;
+            }
+            
+            return defaultValue(method);
+        }
+    }
+    
+    private static final Session session = (Session) Proxy.newProxyInstance(DesktopMonitorTest.class.getClassLoader(),
+        new Class<?>[] { Session.class, SessionCtrl.class }, new InvocationHandler() {
+            
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                return defaultValue(method);
+            }
+            
+        });
+    
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        return type == boolean.class ? Boolean.FALSE : type == int.class ? 0 : type == long.class ? 0L : null;
+    }
+    
+    @Test
+    public void testMonitors() throws Exception {
+        List<MockDesktop> desktops = new ArrayList<>(DESKTOP_COUNT);
+        List<DesktopMonitor> monitors = new ArrayList<>(DESKTOP_COUNT);
+        
+        for (int i = 0; i < DESKTOP_COUNT; i++) {
+            MockDesktop desktop = new MockDesktop(i);
+            DesktopMonitor monitor = new DesktopMonitor(desktop.create());
+            monitor.setBaselineInactivityDuration(300);
+            monitor.setLockInactivityDuration(300);
+            monitor.setBaselineCountdownDuration(200);
+            monitor.setLockCountdownDuration(200);
+            monitor.setCountdownInterval(100);
+            desktops.add(desktop);
+            monitors.add(monitor);
+        }
+        
+        int threads = Thread.activeCount();
+        long begin = System.currentTimeMillis();
+        
+        for (DesktopMonitor monitor : monitors) {
+            monitor.start();
+        }
+        
+        int maxThreads = 0;
+        
+        for (MockDesktop desktop : desktops) {
+            while (!desktop.attributes.containsKey("@logging_out")) {
+                assertTrue("Timed out waiting for logout.", System.currentTimeMillis() - begin < 60000);
+                maxThreads = Math.max(maxThreads, Thread.activeCount() - threads);
+                Thread.sleep(10);
+            }
+        }
+        
+        for (MockDesktop desktop : desktops) {
+            assertTrue(desktop.getActionCount("UPDATE_COUNTDOWN") > 0);
+            assertTrue(desktop.getActionCount("UPDATE_MODE") >= 3);
+            assertEquals(1, desktop.getActionCount("LOGOUT"));
+            desktop.alive = false;
+        }
+        
+        assertTrue("Too many threads: " + maxThreads, maxThreads <= 1);
+    }
+    
+}
@@ -0,0 +1,274 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.ui.thread;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.zkoss.zk.ui.Desktop;
+
+public class ZKThreadPoolTest {
+    
+    private static final int BURST_SIZE = 1000;
+    
+    private final ZKThreadPool pool = new ZKThreadPool();
+    
+    private Desktop createDesktop(final String name) {
+        return (Desktop) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Desktop.class },
+            new InvocationHandler() {
+                
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "toString":
+                            return name;
+                        
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        
+                        case "equals":
+                            return proxy == args[0];
+                        
+                        default:
+                            return null;
+                    }
+                }
+                
+            });
+    }
+    
+    /**
+     * Task that records its name and optionally waits until released.
+     */
+    private static class TestTask implements Runnable {
+        
+        private final String name;
+        
+        private final List<String> log;
+        
+        private final CountDownLatch release;
+        
+        private final CountDownLatch done;
+        
+        TestTask(String name, List<String> log, CountDownLatch release, CountDownLatch done) {
+            this.name = name;
+            this.log = log;
+            this.release = release;
+            this.done = done;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                if (release != null) {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            
+            log.add(name);
+            done.countDown();
+        }
+    }
+    
+    /**
+     * Task that records whether it was discarded without being run.
+     */
+    private static class RejectableTask extends TestTask implements ZKThreadPool.IRejectable {
+        
+        private volatile RejectedExecutionException rejected;
+        
+        RejectableTask(String name, List<String> log, CountDownLatch done) {
+            super(name, log, null, done);
+        }
+        
+        @Override
+        public void rejected(RejectedExecutionException exception) {
+            rejected = exception;
+        }
+    }
+    
+    @Before
+    public void before() {
+        pool.setPoolSize(1);
+    }
+    
+    @After
+    public void after() {
+        pool.shutdown();
+    }
+    
+    @Test
+    public void testFairness() throws Exception {
+        Desktop busy = createDesktop("busy");
+        Desktop quiet = createDesktop("quiet");
+        List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(22);
+        pool.execute(busy, new TestTask("blocker", log, release, done));
+        
+        while (pool.getActiveCount() == 0) {
+            Thread.sleep(10);
+        }
+        
+        for (int i = 0; i < 20; i++) {
+            pool.execute(busy, new TestTask("busy" + i, log, null, done));
+        }
+        
+        pool.execute(quiet, new TestTask("quiet", log, null, done));
+        assertEquals(21, pool.getQueuedCount());
+        assertEquals(2, pool.getQueuedDesktopCount());
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue("Quiet desktop was starved: " + log, log.indexOf("quiet") <= 2);
+        assertEquals(22, pool.getCompletedCount());
+        assertEquals(0, pool.getQueuedCount());
+    }
+    
+    @Test
+    public void testLimits() throws Exception {
+        Desktop desktop1 = createDesktop("desktop1");
+        Desktop desktop2 = createDesktop("desktop2");
+        List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(4);
+        pool.setMaxQueued(4);
+        pool.setMaxQueuedPerDesktop(3);
+        pool.execute(desktop1, new TestTask("blocker", log, release, done));
+        
+        while (pool.getActiveCount() == 0) {
+            Thread.sleep(10);
+        }
+        
+        TestTask removed = new TestTask("removed", log, null, done);
+        pool.execute(desktop1, new TestTask("1a", log, null, done));
+        pool.execute(desktop1, new TestTask("1b", log, null, done));
+        pool.execute(desktop1, removed);
+        
+        try {
+            pool.execute(desktop1, new TestTask("1c", log, null, done));
+            fail("Expected per-desktop limit to be enforced.");
+        } catch (RejectedExecutionException e) {}
+        
+        pool.execute(desktop2, new TestTask("2a", log, null, done));
+        
+        try {
+            pool.execute(desktop2, new TestTask("2b", log, null, done));
+            fail("Expected overall limit to be enforced.");
+        } catch (RejectedExecutionException e) {}
+        
+        assertTrue(pool.remove(removed));
+        assertFalse(pool.remove(removed));
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse(log.contains("removed"));
+        assertEquals(2, pool.getRejectedCount());
+        assertEquals(5, pool.getSubmittedCount());
+    }
+    
+    @Test
+    public void testBurst() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(BURST_SIZE);
+        Desktop desktop = createDesktop("desktop");
+        pool.setPoolSize(4);
+        pool.setMaxQueued(BURST_SIZE);
+        pool.setMaxQueuedPerDesktop(BURST_SIZE);
+        
+        for (int i = 0; i < BURST_SIZE; i++) {
+            pool.execute(desktop, new Runnable() {
+                
+                @Override
+                public void run() {
+                    int count = running.incrementAndGet();
+                    
+                    while (true) {
+                        int max = maxRunning.get();
+                        
+                        if (count <= max || maxRunning.compareAndSet(max, count)) {
+                            break;
+                        }
+                    }
+                    
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+                
+            });
+        }
+        
+        int workers = 0;
+        
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            workers += thread.getName().startsWith(pool.getThreadNamePrefix()) ? 1 : 0;
+        }
+        
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertTrue(maxRunning.get() <= 4);
+        assertTrue(workers <= 4);
+    }
+    
+    @Test
+    public void testShutdown() throws Exception {
+        Desktop desktop = createDesktop("desktop");
+        List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        pool.execute(desktop, new TestTask("blocker", log, release, done));
+        
+        while (pool.getActiveCount() == 0) {
+            Thread.sleep(10);
+        }
+        
+        RejectableTask pending = new RejectableTask("pending", log, new CountDownLatch(1));
+        pool.execute(desktop, pending);
+        pool.shutdown();
+        assertTrue(pool.isShutdown());
+        assertEquals(0, pool.getQueuedCount());
+        assertTrue(pending.rejected != null);
+        
+        try {
+            pool.execute(desktop, new TestTask("late", log, null, done));
+            fail("Expected task to be rejected after shutdown.");
+        } catch (RejectedExecutionException e) {}
+        
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(Collections.singletonList("blocker"), log);
+        assertEquals(1, pool.getCompletedCount());
+    }
+    
+}
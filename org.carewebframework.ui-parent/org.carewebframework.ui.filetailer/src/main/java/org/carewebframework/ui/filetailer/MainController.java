@@ -11,8 +11,7 @@ package org.carewebframework.ui.filetailer;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,7 +21,7 @@ import org.apache.commons.logging.LogFactory;
 
 import org.carewebframework.api.logging.ILogManager;
 import org.carewebframework.api.logging.LogFileTailer;
-import org.carewebframework.api.logging.LogFileTailerListener;
+import org.carewebframework.api.logging.LogFileTailerBatchListener;
 import org.carewebframework.common.StrUtil;
 import org.carewebframework.shell.plugins.PluginController;
 
@@ -59,7 +58,7 @@ public class MainController extends PluginController {
     
     private Label lblMessage;
     
-    private final Deque<String> logFileBuffer = new ArrayDeque<>();
+    private final StringBuilder logFileBuffer = new StringBuilder();
     
     private LogFileTailer tailer;
     
@@ -75,11 +74,20 @@ public class MainController extends PluginController {
      * FileTailListener callback interface handles processing when notified that the file being
      * tailed has new lines
      */
-    private final LogFileTailerListener tailListener = new LogFileTailerListener() {
+    private final LogFileTailerBatchListener tailListener = new LogFileTailerBatchListener() {
+        
+        @Override
+        public void newFileLines(List<String> lines) {
+            synchronized (logFileBuffer) {
+                for (String line : lines) {
+                    logFileBuffer.append(line).append('\n');
+                }
+            }
+        }
         
         @Override
         public void newFileLine(String line) {
-            logFileBuffer.add(line.concat("\n"));
+            newFileLines(Collections.singletonList(line));
         }
         
         @Override
@@ -121,16 +129,14 @@ public class MainController extends PluginController {
     public void onTimer$timer() {
         log.trace("onTimer event");
         
-        StringBuffer lines = new StringBuffer();
+        String lines;
         
         synchronized (logFileBuffer) {
-            for (String line : logFileBuffer) {
-                lines.append(line);
-            }
+            lines = logFileBuffer.toString();
+            logFileBuffer.setLength(0);
         }
         
-        txtOutput.setValue(txtOutput.getValue().concat(lines.toString()));
-        logFileBuffer.clear();
+        txtOutput.setValue(txtOutput.getValue().concat(lines));
         
         //check for state change of Tailer
         if (isTailerTerminated) {
@@ -224,7 +230,10 @@ public class MainController extends PluginController {
      */
     public void onClick$btnClear() {
         log.trace("Clearing LogFileTailer output and LogFileBuffer");
-        logFileBuffer.clear();
+        synchronized (logFileBuffer) {
+            logFileBuffer.setLength(0);
+        }
+        
         txtOutput.setValue(null);
     }
     
@@ -303,6 +303,10 @@ public class MockEnvironment {
         return webApp;
     }
     
+    public MockServerPush getServerPush() {
+        return serverPush;
+    }
+    
     /**
      * First, posts any pending echo requests to the event queue. Then empties the event queue,
      * sending each queued event to its target. Finally, processes any events on the server push
@@ -42,6 +42,8 @@ public class MockServerPush implements ServerPush {
     
     private final Queue<ScheduledEvent<?>> queue = new LinkedList<>();
     
+    private int scheduleCount;
+    
     @Override
     public boolean isActive() {
         return true;
@@ -58,6 +60,16 @@ public class MockServerPush implements ServerPush {
     @Override
     public <T extends Event> void schedule(EventListener<T> task, T event, Scheduler<T> scheduler) {
         queue.add(new ScheduledEvent<T>(task, event));
+        scheduleCount++;
+    }
+    
+    /**
+     * Returns the number of times an event has been scheduled.
+     * 
+     * @return The schedule count.
+     */
+    public int getScheduleCount() {
+        return scheduleCount;
     }
     
     @Override
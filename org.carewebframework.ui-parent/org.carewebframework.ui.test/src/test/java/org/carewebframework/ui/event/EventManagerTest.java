@@ -0,0 +1,74 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.ui.event;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.carewebframework.api.event.IGenericEvent;
+import org.carewebframework.ui.test.CommonTest;
+import org.carewebframework.ui.test.MockServerPush;
+
+import org.junit.Test;
+
+/**
+ * Tests delivery of events fired outside the desktop's event thread.
+ */
+public class EventManagerTest extends CommonTest {
+    
+    private static final int EVENT_COUNT = 500;
+    
+    @Test
+    public void testCoalescing() throws Exception {
+        EventManager eventManager = desktopContext.getBean("eventManager", EventManager.class);
+        MockServerPush serverPush = mockEnvironment.getServerPush();
+        final List<Object> received = new ArrayList<>();
+        List<Object> expected = new ArrayList<>();
+        
+        IGenericEvent<Object> subscriber = new IGenericEvent<Object>() {
+            
+            @Override
+            public void eventCallback(String eventName, Object eventData) {
+                received.add(eventData);
+            }
+            
+        };
+        
+        eventManager.subscribe("TEST.COALESCE", subscriber);
+        int scheduleCount = serverPush.getScheduleCount();
+        mockEnvironment.inEventListener(false);
+        
+        try {
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                eventManager.fireLocalEvent("TEST.COALESCE", i);
+                expected.add(i);
+            }
+        } finally {
+            mockEnvironment.inEventListener(true);
+        }
+        
+        int activations = serverPush.getScheduleCount() - scheduleCount;
+        mockEnvironment.flushEvents();
+        eventManager.unsubscribe("TEST.COALESCE", subscriber);
+        assertEquals(1, activations);
+        assertEquals(expected, received);
+        assertEquals(EVENT_COUNT, eventManager.getMaxBatchSize());
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void testAsynchronousRejected() {
+        EventManager eventManager = desktopContext.getBean("eventManager", EventManager.class);
+        eventManager.setAsynchronous(false);
+        eventManager.setAsynchronous(true);
+    }
+    
+}
@@ -0,0 +1,144 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.ui.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.carewebframework.ui.test.CommonTest;
+
+import org.zkoss.zk.ui.Desktop;
+
+import org.junit.Test;
+
+/**
+ * Tests routing of remote events to subscribed and targeted desktops.
+ */
+public class GlobalEventDispatcherTest extends CommonTest {
+    
+    /**
+     * Dispatcher that counts deliveries instead of scheduling them.
+     */
+    private static class TestDispatcher extends GlobalEventDispatcher {
+        
+        int received;
+        
+        TestDispatcher(final String id) {
+            setAppName("test");
+            setDesktop((Desktop) Proxy.newProxyInstance(Desktop.class.getClassLoader(), new Class<?>[] { Desktop.class },
+                new InvocationHandler() {
+                    
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        return "getId".equals(method.getName()) ? id : null;
+                    }
+                    
+                }));
+        }
+        
+        @Override
+        protected void deliver(GlobalEventDispatcher target, String eventName, Serializable eventData) {
+            ((TestDispatcher) target).received++;
+        }
+    }
+    
+    @Test
+    public void testRouting() {
+        List<TestDispatcher> dispatchers = createDispatchers(3);
+        
+        try {
+            TestDispatcher dispatcher = dispatchers.get(0);
+            dispatchers.get(0).subscribeRemoteEvent("TEST.ROUTE", true);
+            dispatchers.get(1).subscribeRemoteEvent("TEST", true);
+            dispatcher.fireRemoteEvent("TEST.ROUTE.CHILD", null, null);
+            assertEquals(1, dispatchers.get(0).received);
+            assertEquals(1, dispatchers.get(1).received);
+            assertEquals(0, dispatchers.get(2).received);
+            dispatcher.fireRemoteEvent("TEST.ROUTE", null, "dt1,dt2");
+            assertEquals(1, dispatchers.get(0).received);
+            assertEquals(2, dispatchers.get(1).received);
+            assertEquals(0, dispatchers.get(2).received);
+            dispatchers.get(1).subscribeRemoteEvent("TEST", false);
+            dispatcher.fireRemoteEvent("TEST.ROUTE", null, "dt0,dt1");
+            assertEquals(2, dispatchers.get(0).received);
+            assertEquals(2, dispatchers.get(1).received);
+        } finally {
+            destroyDispatchers(dispatchers);
+        }
+    }
+    
+    @Test
+    public void testFanOut() {
+        List<TestDispatcher> dispatchers = createDispatchers(100);
+        
+        try {
+            for (TestDispatcher dispatcher : dispatchers) {
+                dispatcher.subscribeRemoteEvent("TEST.FANOUT", true);
+            }
+            
+            TestDispatcher publisher = dispatchers.get(0);
+            publisher.fireRemoteEvent("TEST.FANOUT", null, "dt99");
+            assertEquals(1, dispatchers.get(99).received);
+            assertEquals(0, dispatchers.get(0).received);
+            publisher.fireRemoteEvent("TEST.FANOUT", null, null);
+            
+            for (TestDispatcher dispatcher : dispatchers) {
+                assertEquals(dispatcher == dispatchers.get(99) ? 2 : 1, dispatcher.received);
+            }
+        } finally {
+            destroyDispatchers(dispatchers);
+        }
+    }
+    
+    @Test
+    public void testWeakIndex() throws Exception {
+        DispatcherIndex index = new DispatcherIndex();
+        TestDispatcher retained = new TestDispatcher("dt0");
+        index.add("TEST.WEAK", retained);
+        index.add("TEST.WEAK", new TestDispatcher("dt1"));
+        
+        for (int i = 0; i < 50 && index.get("TEST.WEAK").size() > 1; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        
+        assertEquals(1, index.get("TEST.WEAK").size());
+        assertSame(retained, index.get("TEST.WEAK").get(0));
+        index.remove("TEST.WEAK", retained);
+        assertEquals(0, index.size());
+        assertTrue(index.get("TEST.WEAK").isEmpty());
+    }
+    
+    private List<TestDispatcher> createDispatchers(int count) {
+        List<TestDispatcher> dispatchers = new ArrayList<>(count);
+        
+        for (int i = 0; i < count; i++) {
+            TestDispatcher dispatcher = new TestDispatcher("dt" + i);
+            dispatcher.init();
+            dispatchers.add(dispatcher);
+        }
+        
+        return dispatchers;
+    }
+    
+    private void destroyDispatchers(List<TestDispatcher> dispatchers) {
+        for (TestDispatcher dispatcher : dispatchers) {
+            dispatcher.destroy();
+        }
+    }
+}
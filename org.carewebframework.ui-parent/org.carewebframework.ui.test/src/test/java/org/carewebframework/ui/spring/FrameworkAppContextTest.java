@@ -0,0 +1,119 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.ui.spring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.carewebframework.ui.DesktopMonitor;
+import org.carewebframework.ui.test.CommonTest;
+import org.carewebframework.ui.test.MockExecution;
+
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.TypedStringValue;
+
+import org.zkoss.zk.ui.Desktop;
+import org.zkoss.zk.ui.Execution;
+import org.zkoss.zk.ui.impl.DesktopImpl;
+import org.zkoss.zk.ui.sys.ExecutionsCtrl;
+
+import org.junit.Test;
+
+public class FrameworkAppContextTest extends CommonTest {
+    
+    private int desktopId;
+    
+    private DesktopImpl createDesktop() {
+        Execution current = mockEnvironment.getExecution();
+        HttpServletRequest request = (HttpServletRequest) current.getNativeRequest();
+        ExecutionsCtrl.setCurrent(new MockExecution(request.getServletContext(), request,
+                (HttpServletResponse) current.getNativeResponse(), null, null));
+        
+        try {
+            return new DesktopImpl(mockEnvironment.getWebApp(), "mock" + ++desktopId, null, null, request);
+        } finally {
+            ExecutionsCtrl.setCurrent(null);
+        }
+    }
+    
+    private FrameworkAppContext createContext(Desktop desktop, boolean cache, boolean lazy) {
+        FrameworkAppContext appContext = new FrameworkAppContext(desktop, true);
+        appContext.setCacheBeanDefinitions(cache);
+        appContext.setLazyInit(lazy);
+        appContext.refresh();
+        return appContext;
+    }
+    
+    private Object getPropertyValue(FrameworkAppContext appContext, String beanName, String propertyName) {
+        ConfigurableListableBeanFactory factory = appContext.getBeanFactory();
+        return factory.getBeanDefinition(beanName).getPropertyValues().getPropertyValue(propertyName).getValue();
+    }
+    
+    @Test
+    public void testCachedDefinitions() {
+        DesktopImpl desktop1 = createDesktop();
+        DesktopImpl desktop2 = createDesktop();
+        FrameworkAppContext appContext1 = createContext(desktop1, true, false);
+        FrameworkAppContext appContext2 = createContext(desktop2, true, false);
+        
+        try {
+            assertTrue(appContext1.getBeanFactory().containsSingleton("desktopMonitor"));
+            assertEquals(appContext1.getBeanDefinitionCount(), appContext2.getBeanDefinitionCount());
+            Object value1 = getPropertyValue(appContext1, "desktopMonitor", "countdownInterval");
+            Object value2 = getPropertyValue(appContext2, "desktopMonitor", "countdownInterval");
+            assertNotSame(value1, value2);
+            assertEquals("2000", ((TypedStringValue) value2).getValue());
+            assertEquals(2000, appContext2.getBean("desktopMonitor", DesktopMonitor.class).getCountdownInterval());
+        } finally {
+            appContext1.close();
+            appContext2.close();
+            desktop1.destroy();
+            desktop2.destroy();
+        }
+    }
+    
+    @Test
+    public void testLazyInit() {
+        DesktopImpl desktop = createDesktop();
+        FrameworkAppContext appContext = createContext(desktop, true, true);
+        
+        try {
+            ConfigurableListableBeanFactory factory = appContext.getBeanFactory();
+            assertTrue(factory.containsSingleton("desktopMonitor"));
+            assertTrue(factory.containsSingleton("globalEventDispatcher"));
+            assertFalse(factory.containsSingleton("popupManager"));
+            appContext.getBean("popupManager");
+            assertTrue(factory.containsSingleton("popupManager"));
+        } finally {
+            appContext.close();
+            desktop.destroy();
+        }
+    }
+    
+    @Test
+    public void testLazySubscriber() {
+        DesktopImpl desktop = createDesktop();
+        FrameworkAppContext appContext = createContext(desktop, true, true);
+        
+        try {
+            assertTrue(appContext.getBeanFactory().containsSingleton("testContextSubscriber"));
+            TestContext testContext = appContext.getBean("testContext", TestContext.class);
+            assertEquals(TestContext.Subscriber.RESPONSE, testContext.surveySubscribers(true));
+        } finally {
+            appContext.close();
+            desktop.destroy();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is also subject to the terms of the Health-Related Additional
+ * Disclaimer of Warranty and Limitation of Liability available at
+ * http://www.carewebframework.org/licensing/disclaimer.
+ */
+package org.carewebframework.ui.spring;
+
+import org.carewebframework.api.context.IContextEvent;
+import org.carewebframework.api.context.ManagedContext;
+
+/**
+ * Managed context used to test registration of context subscribers declared in a desktop context.
+ */
+public class TestContext extends ManagedContext<String> {
+    
+    public interface ITestContextEvent extends IContextEvent {};
+    
+    /**
+     * Subscriber that responds to a survey with a fixed response.
+     */
+    public static class Subscriber implements ITestContextEvent {
+        
+        public static final String RESPONSE = "surveyed";
+        
+        @Override
+        public String pending(boolean silent) {
+            return RESPONSE;
+        }
+        
+        @Override
+        public void committed() {
+        }
+        
+        @Override
+        public void canceled() {
+        }
+    }
+    
+    public TestContext() {
+        super("test", ITestContextEvent.class);
+    }
+}